@@ -0,0 +1,68 @@
+package net.sf.colossus.ai;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.colossus.ai.helper.CritterMove;
+import net.sf.colossus.ai.helper.LegionMove;
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.client.BattleClientFixture;
+import net.sf.colossus.client.Client;
+import net.sf.colossus.game.BattleCritter;
+
+
+/**
+ * Battle moves of the SimpleAI for the attacker of BattleBench, seen from
+ * its client: combining the moves of the single critters into legion
+ * moves, and evaluating legion moves.
+ */
+public class BattleAIBench extends Benchmark
+{
+    /** As many as findBestLegionMove evaluates at least */
+    private static final int EVALUATED_MOVES = SimpleAI.MIN_ITERATIONS;
+
+    private SimpleAI ai;
+
+    private final List<List<CritterMove>> allCritterMoves = new ArrayList<List<CritterMove>>();
+    private final List<LegionMove> legionMoves = new ArrayList<LegionMove>();
+
+    @Override
+    protected void setUp()
+    {
+        Client client = BattleClientFixture.makeClient();
+        ai = new SimpleAI(client);
+        for (BattleCritter critter : client.getActiveBattleUnits())
+        {
+            allCritterMoves.add(ai.findBattleMovesOneCritter(critter));
+        }
+        legionMoves.addAll(ai.generateLegionMoves(allCritterMoves, false));
+        legionMoves.subList(Math.min(EVALUATED_MOVES, legionMoves.size()),
+            legionMoves.size()).clear();
+    }
+
+    /** One op = the legion moves from the moves of the 7 attackers */
+    public int benchGenerateLegionMoves(int reps)
+    {
+        int moves = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            moves += ai.generateLegionMoves(allCritterMoves, false).size();
+        }
+        return moves;
+    }
+
+    /** One op = evaluating the first 50 legion moves */
+    public int benchEvaluateLegionBattleMove(int reps)
+    {
+        int sum = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (LegionMove lm : legionMoves)
+            {
+                sum += ai.evaluateLegionBattleMove(lm);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,26 @@
+package net.sf.colossus.bench;
+
+
+/**
+ * Base class for the micro benchmarks in core/src/bench/java.
+ *
+ * Every public method with a name starting with "bench", taking one int
+ * argument (the number of repetitions) is one benchmark. The method must
+ * do its work that many times and return something computed from the
+ * results, which BenchmarkRunner consumes so that the JIT can't drop the
+ * work as dead code.
+ *
+ * For each benchmark method a new instance is created and setUp() is
+ * called once, before warmup; the fixture should not be modified by the
+ * benchmark methods (or if, restored by them).
+ */
+public abstract class Benchmark
+{
+    /**
+     * Prepare the fixture. Not included in the measured time.
+     */
+    protected void setUp() throws Exception
+    {
+        // nothing to do by default
+    }
+}
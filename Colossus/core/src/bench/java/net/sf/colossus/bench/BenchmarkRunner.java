@@ -0,0 +1,283 @@
+package net.sf.colossus.bench;
+
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import net.sf.colossus.cmdline.CmdLine;
+import net.sf.colossus.cmdline.Opt;
+import net.sf.colossus.cmdline.Opts;
+
+
+/**
+ * Runs the micro benchmarks of the engine hot paths and prints the average
+ * time per operation for each of them, optionally also into a CSV file so
+ * that runs before and after a change can be compared.
+ *
+ * Each benchmark gets a number of warmup iterations (not counted) and then
+ * a number of measured iterations of a fixed duration. Within an iteration
+ * the benchmark method is called with a repetition count which was
+ * calibrated during warmup so that one call takes about 10 ms; thus the
+ * time measuring and reflection overhead is negligible.
+ *
+ * Usually run via "ant bench"; the options can be given there with
+ * -Dbench.args="...", e.g. -Dbench.args="-b Predict -i 20".
+ */
+public final class BenchmarkRunner
+{
+    private static final Logger LOGGER = Logger
+        .getLogger(BenchmarkRunner.class.getName());
+
+    /** All benchmark classes; new ones need to be added here. */
+    private static final String[] BENCHMARKS = {
+        "net.sf.colossus.server.BattleBench",
+        "net.sf.colossus.server.MovementBench",
+        "net.sf.colossus.server.SaveGameBench",
+        "net.sf.colossus.client.PredictSplitsBench",
+        "net.sf.colossus.client.BattleMovementBench",
+        "net.sf.colossus.ai.BattleAIBench",
+        "net.sf.colossus.util.ProbsBench",
+        "net.sf.colossus.util.MessageBench" };
+
+    private static final String[] CSV_HEADER = { "benchmark", "nsPerOp",
+        "stddev", "minNsPerOp", "maxNsPerOp", "iterations" };
+
+    private static final long CALIBRATION_NANOS = 10 * 1000 * 1000L;
+
+    /** Consumes the benchmark results, see Benchmark */
+    private static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    private final List<String[]> results = new ArrayList<String[]>();
+
+    BenchmarkRunner(int warmupIterations, int iterations, int iterationMillis)
+    {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1000000L;
+    }
+
+    void runAll(Pattern filter) throws Exception
+    {
+        for (String className : BENCHMARKS)
+        {
+            Class<?> benchClass = Class.forName(className);
+            for (Method method : findBenchMethods(benchClass))
+            {
+                String name = benchClass.getSimpleName() + "."
+                    + method.getName();
+                if (filter == null || filter.matcher(name).find())
+                {
+                    runOne(name, benchClass, method);
+                }
+            }
+        }
+    }
+
+    private static List<Method> findBenchMethods(Class<?> benchClass)
+    {
+        List<Method> methods = new ArrayList<Method>();
+        for (Method method : benchClass.getMethods())
+        {
+            Class<?>[] params = method.getParameterTypes();
+            if (method.getName().startsWith("bench") && params.length == 1
+                && params[0] == int.class)
+            {
+                methods.add(method);
+            }
+        }
+        Collections.sort(methods, new Comparator<Method>()
+        {
+            public int compare(Method m1, Method m2)
+            {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        return methods;
+    }
+
+    private void runOne(String name, Class<?> benchClass, Method method)
+        throws Exception
+    {
+        Benchmark bench = (Benchmark)benchClass.getDeclaredConstructor()
+            .newInstance();
+        bench.setUp();
+
+        // Calibrate: double the repetitions until one call takes long enough
+        int reps = 1;
+        while (timeCall(bench, method, reps) < CALIBRATION_NANOS
+            && reps < (1 << 30))
+        {
+            reps *= 2;
+        }
+
+        for (int i = 0; i < warmupIterations; i++)
+        {
+            runIteration(bench, method, reps);
+        }
+
+        double[] nsPerOp = new double[iterations];
+        for (int i = 0; i < iterations; i++)
+        {
+            nsPerOp[i] = runIteration(bench, method, reps);
+        }
+
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (double value : nsPerOp)
+        {
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = sum / iterations;
+        double squares = 0;
+        for (double value : nsPerOp)
+        {
+            squares += (value - mean) * (value - mean);
+        }
+        double stddev = iterations > 1 ? Math.sqrt(squares
+            / (iterations - 1)) : 0;
+
+        System.out.println(String.format(Locale.US,
+            "%-50s %14.1f ns/op  +- %10.1f", name, Double.valueOf(mean),
+            Double.valueOf(stddev)));
+        results.add(new String[] { name, format(mean), format(stddev),
+            format(min), format(max), String.valueOf(iterations) });
+    }
+
+    /**
+     * @return Average nanoseconds per operation during this iteration
+     */
+    private double runIteration(Benchmark bench, Method method, int reps)
+        throws Exception
+    {
+        long ops = 0;
+        long elapsed = 0;
+        while (elapsed < iterationNanos)
+        {
+            elapsed += timeCall(bench, method, reps);
+            ops += reps;
+        }
+        return (double)elapsed / ops;
+    }
+
+    private static long timeCall(Benchmark bench, Method method, int reps)
+        throws Exception
+    {
+        long start = System.nanoTime();
+        sink = method.invoke(bench, Integer.valueOf(reps));
+        return System.nanoTime() - start;
+    }
+
+    private static String format(double value)
+    {
+        return String.format(Locale.US, "%.1f", Double.valueOf(value));
+    }
+
+    void writeCsv(String filename) throws IOException
+    {
+        PrintWriter out = new PrintWriter(new FileWriter(filename));
+        try
+        {
+            out.println(join(CSV_HEADER));
+            for (String[] row : results)
+            {
+                out.println(join(row));
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static String join(String[] fields)
+    {
+        StringBuilder line = new StringBuilder();
+        for (String field : fields)
+        {
+            if (line.length() > 0)
+            {
+                line.append(',');
+            }
+            line.append(field);
+        }
+        return line.toString();
+    }
+
+    private static void usage(Opts opts)
+    {
+        System.out.println("Usage: java " + BenchmarkRunner.class.getName()
+            + " [options]");
+        for (Opt opt : opts.getOptions())
+        {
+            System.out.println(opt.toString());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        Opts opts = new Opts();
+        opts.addOption('h', "help", false, "Show options help");
+        opts.addOption('b', "bench", true,
+            "Run only benchmarks whose Class.method name matches this regex");
+        opts.addOption('w', "warmup", true, "Warmup iterations (default: 5)");
+        opts.addOption('i', "iterations", true,
+            "Measured iterations (default: 10)");
+        opts.addOption('t', "time", true,
+            "Duration of one iteration in ms (default: 500)");
+        opts.addOption('o', "output", true, "Also write results to CSV file");
+
+        CmdLine cl = opts.parse(args);
+        if (cl.optIsSet('h'))
+        {
+            usage(opts);
+            return;
+        }
+
+        Pattern filter = cl.optIsSet('b') ? Pattern.compile(cl
+            .getOptValue('b')) : null;
+        int warmup = cl.optIsSet('w') ? Integer.parseInt(cl.getOptValue('w'))
+            : 5;
+        int iterations = cl.optIsSet('i') ? Integer.parseInt(cl
+            .getOptValue('i')) : 10;
+        int millis = cl.optIsSet('t') ? Integer.parseInt(cl.getOptValue('t'))
+            : 500;
+
+        // Fixture setup logs a lot on INFO level (variant loading etc.)
+        Logger.getLogger("net.sf.colossus").setLevel(Level.WARNING);
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations,
+            millis);
+        try
+        {
+            runner.runAll(filter);
+            if (cl.optIsSet('o'))
+            {
+                runner.writeCsv(cl.getOptValue('o'));
+            }
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.SEVERE, "Running benchmarks failed", e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package net.sf.colossus.client;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import net.sf.colossus.common.Constants;
+import net.sf.colossus.game.BattlePhase;
+import net.sf.colossus.game.EntrySide;
+import net.sf.colossus.server.IServer;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.util.ResourceLoader;
+import net.sf.colossus.variant.BattleHex;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.MasterBoardTerrain;
+import net.sf.colossus.variant.MasterHex;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * The client side of the battle of BattleBench, for the benchmarks of the
+ * client and the AI: a Client of the Black player, without server and
+ * without GUI, in the move phase of the first battle turn of its attack
+ * on a Jungle of the Default variant. Everything is placed on fixed hexes
+ * and no dice are rolled, so every run computes the same moves.
+ */
+public final class BattleClientFixture
+{
+    private static final String[] DEFENDER_HEXES = { "D1", "E1", "F1", "C1",
+        "D2", "E2", "F2" };
+
+    /** Attackers out of contact, so that all of them may move */
+    private static final String[] ATTACKER_HEXES = { "A1", "A2", "A3", "B1",
+        "B2", "B3", "C5" };
+
+    private BattleClientFixture()
+    {
+        // only the static factory
+    }
+
+    /** The server side is never asked anything in the benchmarks */
+    private static class NoServerConnection implements IServerConnection
+    {
+        public void setClient(Client client)
+        {
+            // not needed
+        }
+
+        public String getReasonFail()
+        {
+            return null;
+        }
+
+        public String getVariantNameForInit()
+        {
+            return "Default";
+        }
+
+        public Collection<String> getPreliminaryPlayerNames()
+        {
+            return Arrays.asList("Black", "Green");
+        }
+
+        public void startThread()
+        {
+            // no thread
+        }
+
+        public void updatePlayerName(String playerName)
+        {
+            // not needed
+        }
+
+        public IServer getIServer()
+        {
+            return (IServer)Proxy.newProxyInstance(
+                IServer.class.getClassLoader(),
+                new Class<?>[] { IServer.class }, new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method,
+                        Object[] args)
+                    {
+                        return null;
+                    }
+                });
+        }
+
+        public boolean isAlreadyDown()
+        {
+            return false;
+        }
+
+        public void stopSocketClientThread(boolean sendDispose)
+        {
+            // no thread
+        }
+
+        public void enforcedConnectionException()
+        {
+            // not needed
+        }
+
+        public void requestSyncDelta(int lastRcvdMsgNr, int syncCounter)
+        {
+            // not needed
+        }
+
+        public int abandonAndGetMessageCounter()
+        {
+            return 0;
+        }
+
+        public int getDisposedQueueLen()
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @return A Client of Black, in the battle move phase
+     */
+    public static Client makeClient()
+    {
+        Variant variant = VariantSupport.loadVariantByName("Default", true);
+        Client client = new Client("Black",
+            Constants.aiPackage + "SimpleAI", null, null, false, true, false,
+            new ResourceLoader(null, 0), new NoServerConnection(), variant,
+            false);
+        client.updatePlayerInfo(Arrays.asList(
+            "false:Black:100:Black:SimpleAI::1:7:6:0:1",
+            "false:Green:500:Green:SimpleAI::1:7:6:0:1"));
+        client.initBoard();
+
+        GameClientSide game = client.getGameClientSide();
+        MasterHex hex = variant.getMasterBoard().getHexByLabel("40"); // Jungle
+        LegionClientSide attacker = makeLegion(client,
+            (PlayerClientSide)client.getPlayerByName("Black"), "Bk03", hex,
+            "Gargoyle", "Cyclops", "Cyclops", "Cyclops", "Gorgon", "Gorgon",
+            "Ranger");
+        LegionClientSide defender = makeLegion(client,
+            (PlayerClientSide)client.getPlayerByName("Green"), "Gr03", hex,
+            "Centaur", "Centaur", "Lion", "Lion", "Ranger", "Ranger",
+            "Ranger");
+        attacker.setEntrySide(EntrySide.LEFT);
+
+        game.createEngagement(hex, attacker, defender);
+        client.initBattle(hex, 1, attacker.getPlayer(), BattlePhase.MOVE,
+            attacker, defender);
+
+        MasterBoardTerrain terrain = hex.getTerrain();
+        placeChits(client, defender, true, DEFENDER_HEXES, terrain, 0);
+        placeChits(client, attacker, false, ATTACKER_HEXES, terrain,
+            DEFENDER_HEXES.length);
+        return client;
+    }
+
+    private static LegionClientSide makeLegion(Client client,
+        PlayerClientSide player, String markerId, MasterHex hex,
+        String... creatureNames)
+    {
+        LegionClientSide legion = new LegionClientSide(player, markerId, hex);
+        player.addLegion(legion);
+        List<CreatureType> creatures = new ArrayList<CreatureType>();
+        for (String name : creatureNames)
+        {
+            creatures.add(client.getGame().getVariant()
+                .getCreatureByName(name));
+        }
+        client.revealCreatures(legion, creatures, "bench");
+        return legion;
+    }
+
+    private static void placeChits(Client client, LegionClientSide legion,
+        boolean defender, String[] hexLabels, MasterBoardTerrain terrain,
+        int firstTag)
+    {
+        List<CreatureType> creatures = legion.getCreatureTypes();
+        for (int i = 0; i < hexLabels.length; i++)
+        {
+            BattleHex hex = terrain.getHexByLabel(hexLabels[i]);
+            client.placeNewChit(creatures.get(i).getName(), defender,
+                firstTag + i, hex);
+        }
+    }
+}
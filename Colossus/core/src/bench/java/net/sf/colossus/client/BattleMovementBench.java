@@ -0,0 +1,49 @@
+package net.sf.colossus.client;
+
+
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.game.BattleCritter;
+
+
+/**
+ * Battle movement on the client side, for the attacker of BattleBench:
+ * what the GUI shows and what the AI starts from.
+ */
+public class BattleMovementBench extends Benchmark
+{
+    private Client client;
+
+    @Override
+    protected void setUp()
+    {
+        client = BattleClientFixture.makeClient();
+    }
+
+    /** One op = all legal moves for each of the 7 attackers */
+    public int benchFindMoves(int reps)
+    {
+        int moves = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (BattleCritter critter : client.getActiveBattleUnits())
+            {
+                moves += client.showBattleMoves(critter, false).size();
+            }
+        }
+        return moves;
+    }
+
+    /** One op = the moves of each of the 7 attackers in isolation */
+    public int benchFindMovesIgnoringAllies(int reps)
+    {
+        int moves = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (BattleCritter critter : client.getActiveBattleUnits())
+            {
+                moves += client.showBattleMoves(critter, true).size();
+            }
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,159 @@
+package net.sf.colossus.client;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.game.Game;
+import net.sf.colossus.game.Legion;
+import net.sf.colossus.game.Player;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.MasterHex;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * Split prediction: enumerating the possible splits of a legion, and a
+ * few turns of splitting, revealing and recruiting like the client does
+ * it for each opponent legion.
+ */
+public class PredictSplitsBench extends Benchmark
+{
+    private Variant variant;
+    private Player player;
+
+    private PredictSplitNode startingLegion;
+    private PredictSplitNode sevenHigh;
+
+    /** Just enough of a Legion to serve as split target */
+    private static class BenchLegion extends Legion
+    {
+        BenchLegion(Player player, String markerId)
+        {
+            super(player, markerId, new MasterHex("dummy", null, 0, 0));
+        }
+
+        @Override
+        public int getPointValue()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean hasRecruited()
+        {
+            return false;
+        }
+
+        @Override
+        public List<CreatureType> findEligibleAngels(int tmpScore)
+        {
+            return new ArrayList<CreatureType>();
+        }
+
+        @Override
+        public void addCreature(CreatureType type)
+        {
+            // not needed for split prediction
+        }
+
+        @Override
+        public void removeCreature(CreatureType type)
+        {
+            // not needed for split prediction
+        }
+    }
+
+    @Override
+    protected void setUp()
+    {
+        variant = VariantSupport.loadVariantByName("Default", true);
+        player = new Player(new Game(variant, new String[] {}), "Bench", 1);
+
+        startingLegion = new PredictSplits("Rd01", creatures("Titan",
+            "Angel", "Centaur", "Centaur", "Gargoyle", "Gargoyle", "Ogre",
+            "Ogre"), variant).getRoots().get(0);
+        sevenHigh = new PredictSplits("Bk01", creatures("Titan", "Cyclops",
+            "Cyclops", "Gorgon", "Lion", "Troll", "Ranger"), variant)
+            .getRoots().get(0);
+    }
+
+    private List<CreatureType> creatures(String... names)
+    {
+        List<CreatureType> list = new ArrayList<CreatureType>();
+        for (String name : names)
+        {
+            list.add(variant.getCreatureByName(name));
+        }
+        return list;
+    }
+
+    /** One op = all possible 4/4 initial splits */
+    public int benchFindInitialSplits(int reps)
+    {
+        int splits = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            splits += startingLegion.findAllPossibleSplits(4,
+                new ArrayList<CreatureType>(), new ArrayList<CreatureType>())
+                .size();
+        }
+        return splits;
+    }
+
+    /** One op = all possible 2-creature splits of a 7-high legion */
+    public int benchFindSevenHighSplits(int reps)
+    {
+        int splits = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            splits += sevenHigh.findAllPossibleSplits(2,
+                new ArrayList<CreatureType>(), new ArrayList<CreatureType>())
+                .size();
+        }
+        return splits;
+    }
+
+    /** One op = four turns of one player's splits, reveals and recruits */
+    public int benchPredictFourTurns(int reps)
+    {
+        int leaves = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            PredictSplits ps = new PredictSplits("Rd01", creatures("Titan",
+                "Angel", "Centaur", "Centaur", "Gargoyle", "Gargoyle",
+                "Ogre", "Ogre"), variant);
+
+            ps.getLeaf("Rd01").split(4, new BenchLegion(player, "Rd02"), 1);
+            ps.getLeaf("Rd01").revealCreatures(creatures("Ogre", "Ogre"));
+            ps.getLeaf("Rd01").addCreature(variant.getCreatureByName("Troll"));
+            ps.getLeaf("Rd02").revealCreatures(
+                creatures("Centaur", "Centaur"));
+            ps.getLeaf("Rd02").addCreature(variant.getCreatureByName("Lion"));
+
+            ps.getLeaf("Rd01").revealCreatures(creatures("Gargoyle"));
+            ps.getLeaf("Rd01").addCreature(
+                variant.getCreatureByName("Gargoyle"));
+            ps.getLeaf("Rd02").revealCreatures(creatures("Lion"));
+            ps.getLeaf("Rd02").addCreature(variant.getCreatureByName("Lion"));
+
+            ps.getLeaf("Rd01").revealCreatures(creatures("Titan"));
+            ps.getLeaf("Rd01").addCreature(
+                variant.getCreatureByName("Warlock"));
+            ps.getLeaf("Rd02").addCreature(
+                variant.getCreatureByName("Gargoyle"));
+
+            ps.getLeaf("Rd01").split(2, new BenchLegion(player, "Rd03"), 4);
+            ps.getLeaf("Rd02").split(2, new BenchLegion(player, "Rd04"), 4);
+            ps.getLeaf("Rd01").revealCreatures(
+                creatures("Gargoyle", "Gargoyle"));
+            ps.getLeaf("Rd01").addCreature(
+                variant.getCreatureByName("Cyclops"));
+
+            leaves += ps.getAllLeaves().size();
+        }
+        return leaves;
+    }
+}
@@ -0,0 +1,123 @@
+package net.sf.colossus.server;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.game.BattlePhase;
+import net.sf.colossus.game.EntrySide;
+import net.sf.colossus.game.Player;
+import net.sf.colossus.variant.BattleHex;
+import net.sf.colossus.variant.MasterBoardTerrain;
+import net.sf.colossus.variant.MasterHex;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * Line of sight and battle movement on a Jungle (many obstacles) battle
+ * land of the Default variant, with two full 7-high legions.
+ */
+public class BattleBench extends Benchmark
+{
+    private BattleServerSide battle;
+    private BattleMovementServerSide battleMovement;
+
+    private final List<CreatureServerSide> attackers = new ArrayList<CreatureServerSide>();
+    private final List<BattleHex> allHexes = new ArrayList<BattleHex>();
+
+    @Override
+    protected void setUp()
+    {
+        Variant variant = VariantSupport.loadVariantByName("Default", true);
+        GameServerSide game = GameServerSide.makeNewGameServerSide(variant);
+        Player black = game.createAndAddPlayer("Black", "SimpleAI");
+        Player green = game.createAndAddPlayer("Green", "SimpleAI");
+
+        MasterHex hex = variant.getMasterBoard().getHexByLabel("40"); // Jungle
+        LegionServerSide defender = new LegionServerSide("Gr03", null, hex,
+            hex, green, game, variant.getCreatureByName("Centaur"),
+            variant.getCreatureByName("Centaur"),
+            variant.getCreatureByName("Lion"),
+            variant.getCreatureByName("Lion"),
+            variant.getCreatureByName("Ranger"),
+            variant.getCreatureByName("Ranger"),
+            variant.getCreatureByName("Ranger"));
+        LegionServerSide attacker = new LegionServerSide("Bk03", null, hex,
+            hex, black, game, variant.getCreatureByName("Gargoyle"),
+            variant.getCreatureByName("Cyclops"),
+            variant.getCreatureByName("Cyclops"),
+            variant.getCreatureByName("Cyclops"),
+            variant.getCreatureByName("Gorgon"),
+            variant.getCreatureByName("Gorgon"),
+            variant.getCreatureByName("Ranger"));
+        green.addLegion(defender);
+        black.addLegion(attacker);
+        attacker.setEntrySide(EntrySide.LEFT);
+
+        game.createBattle(attacker, defender,
+            BattleServerSide.LegionTags.ATTACKER, hex, BattlePhase.MOVE);
+        battle = game.getBattleSS();
+        battleMovement = new BattleMovementServerSide(game.getOptions(), game);
+
+        MasterBoardTerrain terrain = hex.getTerrain();
+        String[] defenderHexes = { "D1", "E1", "F1", "C1", "D2", "E2", "F2" };
+        for (int i = 0; i < defenderHexes.length; i++)
+        {
+            defender.getCritter(i).setCurrentHex(
+                terrain.getHexByLabel(defenderHexes[i]));
+        }
+        // Attackers out of contact, so that all of them may move
+        String[] attackerHexes = { "A1", "A2", "A3", "B1", "B2", "B3", "C5" };
+        for (int i = 0; i < attackerHexes.length; i++)
+        {
+            CreatureServerSide critter = attacker.getCritter(i);
+            critter.setCurrentHex(terrain.getHexByLabel(attackerHexes[i]));
+            critter.commitMove();
+            attackers.add(critter);
+        }
+
+        for (String label : defenderHexes)
+        {
+            allHexes.add(terrain.getHexByLabel(label));
+        }
+        for (String label : attackerHexes)
+        {
+            allHexes.add(terrain.getHexByLabel(label));
+        }
+    }
+
+    /** One op = LOS between all 14 x 14 pairs of occupied hexes */
+    public int benchIsLOSBlocked(int reps)
+    {
+        int blocked = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (BattleHex from : allHexes)
+            {
+                for (BattleHex to : allHexes)
+                {
+                    if (from != to && battle.isLOSBlocked(from, to))
+                    {
+                        blocked++;
+                    }
+                }
+            }
+        }
+        return blocked;
+    }
+
+    /** One op = all legal moves for each of the 7 attackers */
+    public int benchFindMoves(int reps)
+    {
+        int moves = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (CreatureServerSide critter : attackers)
+            {
+                moves += battleMovement.showMoves(critter, false).size();
+            }
+        }
+        return moves;
+    }
+}
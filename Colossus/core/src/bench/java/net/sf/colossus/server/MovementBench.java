@@ -0,0 +1,88 @@
+package net.sf.colossus.server;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.common.Options;
+import net.sf.colossus.game.Legion;
+import net.sf.colossus.game.MovementServerSide;
+import net.sf.colossus.game.Player;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.MasterBoard;
+import net.sf.colossus.variant.MasterHex;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * Masterboard movement (normal and teleport moves) for a mid-game like
+ * board of the Default variant: three players with four legions each.
+ */
+public class MovementBench extends Benchmark
+{
+    private static final String[][] POSITIONS = {
+        { "100", "5", "112", "27" }, { "300", "14", "124", "35" },
+        { "500", "21", "136", "40" } };
+
+    private MovementServerSide movement;
+    private final List<Legion> legions = new ArrayList<Legion>();
+
+    @Override
+    protected void setUp()
+    {
+        Variant variant = VariantSupport.loadVariantByName("Default", true);
+        GameServerSide game = GameServerSide.makeNewGameServerSide(variant);
+        movement = new MovementServerSide(game, new Options("Bench", true));
+
+        MasterBoard board = variant.getMasterBoard();
+        CreatureType titan = variant.getCreatureByName("Titan");
+        CreatureType angel = variant.getCreatureByName("Angel");
+        CreatureType ogre = variant.getCreatureByName("Ogre");
+        CreatureType troll = variant.getCreatureByName("Troll");
+
+        String[] names = { "Black", "Green", "Red" };
+        String[] markerPrefix = { "Bk", "Gr", "Rd" };
+        for (int p = 0; p < names.length; p++)
+        {
+            Player player = game.createAndAddPlayer(names[p], "SimpleAI");
+            for (int l = 0; l < POSITIONS[p].length; l++)
+            {
+                MasterHex hex = board.getHexByLabel(POSITIONS[p][l]);
+                LegionServerSide legion;
+                if (l == 0)
+                {
+                    legion = new LegionServerSide(markerPrefix[p] + "01",
+                        null, hex, hex, player, game, titan, angel, ogre,
+                        troll);
+                }
+                else
+                {
+                    legion = new LegionServerSide(markerPrefix[p] + "0"
+                        + (l + 1), null, hex, hex, player, game, ogre, ogre,
+                        troll);
+                }
+                player.addLegion(legion);
+                legions.add(legion);
+            }
+        }
+    }
+
+    /** One op = all moves for each of the 12 legions with each roll 1-6 */
+    public int benchListAllMoves(int reps)
+    {
+        int moves = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (Legion legion : legions)
+            {
+                for (int roll = 1; roll <= 6; roll++)
+                {
+                    moves += movement.listAllMoves(legion,
+                        legion.getCurrentHex(), roll).size();
+                }
+            }
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,122 @@
+package net.sf.colossus.server;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.common.Constants;
+import net.sf.colossus.common.Options;
+import net.sf.colossus.common.WhatNextManager;
+import net.sf.colossus.util.ViableEntityManager;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * Reading and writing of a savegame file. Reading uses the 6 player
+ * savegame from the functional tests (relative to the Colossus directory,
+ * which is the working directory when run via "ant bench"); writing saves,
+ * through GameSaving, a game which three SimpleAIs played until turn 5.
+ */
+public class SaveGameBench extends Benchmark
+{
+    private static final String SAVEGAME = "core/src/functest/resource/"
+        + "colossus-home/saves/Simple-6-players.xml";
+
+    private static final int SAVE_IN_TURN = 5;
+
+    private File file;
+    private File saveFile;
+    private GameServerSide game;
+
+    /** An AI game which ends when the given turn begins */
+    private static class PlayedGame extends GameServerSide
+    {
+        PlayedGame(WhatNextManager whatNextManager, Options serverOptions,
+            Variant variant)
+        {
+            super(whatNextManager, serverOptions, variant);
+        }
+
+        @Override
+        protected boolean isTurnLimitReached(int turn)
+        {
+            return turn >= SAVE_IN_TURN;
+        }
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        file = new File(SAVEGAME);
+        GameLoading loader = new GameLoading();
+        String failure = loader.loadGameFromFile(file);
+        if (failure != null)
+        {
+            throw new IOException(failure);
+        }
+
+        saveFile = File.createTempFile("savegamebench", ".xml");
+        saveFile.deleteOnExit();
+        game = playGame();
+        // one line per save would swamp the results
+        Logger.getLogger(GameSaving.class.getName()).setLevel(Level.WARNING);
+    }
+
+    private static GameServerSide playGame() throws IOException
+    {
+        Options startOptions = new Options(Constants.OPTIONS_START, true);
+        WhatNextManager whatNextManager = new WhatNextManager(startOptions);
+        whatNextManager.setInProcessRunner(true);
+
+        Options serverOptions = new Options(Constants.OPTIONS_SERVER_NAME,
+            true);
+        serverOptions.setOption(Options.variant, "Default");
+        serverOptions.setOption(Options.serveAtPort, 26681);
+        serverOptions.setOption(Options.autoQuit, true);
+        serverOptions.setOption(Options.autoStop, false);
+        serverOptions.setOption(Options.aiDelay, Constants.MIN_AI_DELAY);
+        for (int i = 0; i < 3; i++)
+        {
+            serverOptions.setOption(Options.playerName + i, Constants.byType
+                + i);
+            serverOptions.setOption(Options.playerType + i, "SimpleAI");
+        }
+        Variant variant = VariantSupport.loadVariantByName("Default", true);
+        GameServerSide game = new PlayedGame(whatNextManager, serverOptions,
+            variant);
+        if (!game.startNewGameAndWaitUntilOver(null))
+        {
+            throw new IOException("Starting the game to save failed");
+        }
+        ViableEntityManager.waitUntilAllGone();
+        return game;
+    }
+
+    /** One op = parse the savegame and (re)load its variant */
+    public int benchLoadSavegame(int reps)
+    {
+        int elements = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            GameLoading loader = new GameLoading();
+            loader.loadGameFromFile(file);
+            elements += loader.getRoot().getChildren().size();
+        }
+        return elements;
+    }
+
+    /** One op = save the game to a file, as File-Save As does */
+    public int benchWriteSavegame(int reps)
+    {
+        int length = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            game.saveGameWithErrorHandling(saveFile.getPath(), false);
+            length += (int)saveFile.length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,59 @@
+package net.sf.colossus.util;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.colossus.bench.Benchmark;
+import net.sf.colossus.common.Constants;
+
+
+/**
+ * Building and splitting of protocol messages, which happens for every
+ * line sent between server and clients.
+ */
+public class MessageBench extends Benchmark
+{
+    private static final String sep = Constants.protocolTermSeparator;
+
+    private final List<String> creatures = Arrays.asList("Titan", "Angel",
+        "Cyclops", "Cyclops", "Gorgon", "Lion", "Ranger");
+
+    private final String didMoveLine = Constants.didMove + sep + "Rd01" + sep
+        + "300" + sep + "14" + sep + "Left" + sep + "false" + sep + "null"
+        + sep + "false";
+
+    private final String revealLine = Constants.revealCreatures + sep
+        + "Rd01" + sep + Glob.glob(creatures) + sep + "reason";
+
+    /** One op = build one didMove and one revealCreatures message */
+    public int benchGlob(int reps)
+    {
+        int length = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            String didMove = Constants.didMove + sep + "Rd01" + sep + "300"
+                + sep + "14" + sep + "Left" + sep + false + sep + null + sep
+                + false;
+            String reveal = Constants.revealCreatures + sep + "Rd01" + sep
+                + Glob.glob(creatures) + sep + "reason";
+            length += didMove.length() + reveal.length();
+        }
+        return length;
+    }
+
+    /** One op = split one didMove and one revealCreatures message */
+    public int benchSplit(int reps)
+    {
+        int terms = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            List<String> args = Split.split(sep, didMoveLine);
+            terms += args.size();
+            args = Split.split(sep, revealLine);
+            terms += args.size();
+            terms += Split.split(Glob.sep, args.get(2)).size();
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,47 @@
+package net.sf.colossus.util;
+
+
+import net.sf.colossus.bench.Benchmark;
+
+
+/**
+ * Strike probabilities as the AI evaluates them for each possible strike.
+ */
+public class ProbsBench extends Benchmark
+{
+    /** One op = hit probabilities for 1-12 dice and strike numbers 2-6 */
+    public double benchProbHitsOrMore(int reps)
+    {
+        double sum = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (int dice = 1; dice <= 12; dice++)
+            {
+                for (int strikeNumber = 2; strikeNumber <= 6; strikeNumber++)
+                {
+                    sum += Probs.probHitsOrMore(dice, strikeNumber, 1);
+                    sum += Probs.probHitsOrMore(dice, strikeNumber,
+                        (dice + 1) / 2);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /** One op = mean hits for 1-12 dice and strike numbers 2-6 */
+    public double benchMeanHits(int reps)
+    {
+        double sum = 0;
+        for (int r = 0; r < reps; r++)
+        {
+            for (int dice = 1; dice <= 12; dice++)
+            {
+                for (int strikeNumber = 2; strikeNumber <= 6; strikeNumber++)
+                {
+                    sum += Probs.meanHits(dice, strikeNumber);
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.colossus.ai.helper.CritterMove;
@@ -2779,6 +2780,8 @@ public class ClemensAI extends AbstractAI
             Collections.shuffle((List<LegionMove>)legionMoves, random);
 
         Timer findBestLegionMoveTimer = setupTimer();
+        // building the move strings is expensive, do it only if needed
+        boolean traceMoves = LOGGER.isLoggable(Level.FINEST);
 
         int count = 0;
         for (LegionMove lm : legionMoves)
@@ -2788,10 +2791,13 @@ public class ClemensAI extends AbstractAI
             {
                 bestScore = score;
                 best = lm;
-                LOGGER.finest("INTERMEDIATE Best legion move: "
-                    + lm.getStringWithEvaluation() + " (" + score + ")");
+                if (traceMoves)
+                {
+                    LOGGER.finest("INTERMEDIATE Best legion move: "
+                        + lm.getStringWithEvaluation() + " (" + score + ")");
+                }
             }
-            else
+            else if (traceMoves)
             {
                 LOGGER.finest("INTERMEDIATE      legion move: "
                     + lm.getStringWithEvaluation() + " (" + score + ")");
@@ -2816,12 +2822,15 @@ public class ClemensAI extends AbstractAI
             }
         }
         findBestLegionMoveTimer.cancel();
-        String msg = "Best legion move of " + count + " checked (turn "
-            + client.getBattleTurnNumber() + "): "
-            + ((best == null) ? "none " : best.getStringWithEvaluation())
-            + " (" + bestScore + ")";
-        LOGGER.finer(msg);
-        // System.out.println(msg);
+        if (LOGGER.isLoggable(Level.FINER))
+        {
+            String msg = "Best legion move of " + count + " checked (turn "
+                + client.getBattleTurnNumber() + "): "
+                + ((best == null) ? "none " : best.getStringWithEvaluation())
+                + " (" + bestScore + ")";
+            LOGGER.finer(msg);
+            // System.out.println(msg);
+        }
         return best;
     }
 
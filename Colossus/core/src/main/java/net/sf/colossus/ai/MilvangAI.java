@@ -6,10 +6,8 @@ package net.sf.colossus.ai;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,7 +37,11 @@ public class MilvangAI extends RationalAI // NO_UCD
         // TODO Auto-generated constructor stub
     }
 
-    double findRecruitPotential(Map<CreatureType, Integer> critters,
+    /**
+     * @param critterCounts Number of creatures of each type, indexed by
+     *     {@link CreatureType#getIndex()}
+     */
+    double findRecruitPotential(int[] critterCounts,
         MasterBoardTerrain terrain)
     {
         int recruitNow = 0;
@@ -53,7 +55,14 @@ public class MilvangAI extends RationalAI // NO_UCD
         List<CreatureType> recruiters = TerrainRecruitLoader
             .getPossibleRecruiters(terrain, null);
 
-        recruiters.retainAll(critters.keySet());
+        Iterator<CreatureType> rit = recruiters.iterator();
+        while (rit.hasNext())
+        {
+            if (critterCounts[rit.next().getIndex()] == 0)
+            {
+                rit.remove();
+            }
+        }
 
         Iterator<CreatureType> lit = tempRecruits.iterator();
         while (lit.hasNext())
@@ -73,7 +82,7 @@ public class MilvangAI extends RationalAI // NO_UCD
                 // directly anyway.
                 int hintValue = getHintedRecruitmentValueNonTitan(creature);
                 if (hintValue > recruitNow
-                    && numNeeded <= critters.get(lesser).intValue())
+                    && numNeeded <= critterCounts[lesser.getIndex()])
                 {
                     recruitNow = hintValue;
                 }
@@ -123,23 +132,14 @@ public class MilvangAI extends RationalAI // NO_UCD
             List<CreatureType> keepers = it.next();
             double critterValue = 0;
             boolean keepTitan = false;
-            Map<CreatureType, Integer> critterMap = new HashMap<CreatureType, Integer>();
+            int[] critterCounts = new int[variant.getCreatureTypeCount()];
             for (CreatureType creatureType : keepers)
             {
                 keepTitan |= creatureType.getName().equals("Titan");
                 // TODO: should this use the Titan-aware form of the method?
                 int tmp = getHintedRecruitmentValueNonTitan(creatureType);
                 critterValue += tmp * tmp;
-                Integer numCritters = critterMap.get(creatureType);
-                if (numCritters == null)
-                {
-                    critterMap.put(creatureType, Integer.valueOf(1));
-                }
-                else
-                {
-                    critterMap.put(creatureType,
-                        Integer.valueOf(numCritters.intValue() + 1));
-                }
+                critterCounts[creatureType.getIndex()]++;
             }
 
             if (hasTitan && !keepTitan)
@@ -151,8 +151,8 @@ public class MilvangAI extends RationalAI // NO_UCD
             double bestRecruitValue = 0;
             for (MasterBoardTerrain terrain : variant.getTerrains())
             {
-                double currRecruitValue = findRecruitPotential(critterMap,
-                    terrain);
+                double currRecruitValue = findRecruitPotential(
+                    critterCounts, terrain);
                 // TODO shouldn't that rather be terrain.isTower()?
                 if (currRecruitValue > bestRecruitValue
                     && !terrain.getId().equals("Tower"))
@@ -97,6 +97,7 @@ public class ParallelEvaluatorAI extends ExperimentalAI // NO_UCD
             int count = 0;
 
             Timer findBestLegionMoveTimer = threadedSetupTimer();
+            boolean traceMoves = LOGGER.isLoggable(Level.FINEST);
             boolean done = false;
             while (!done)
             {
@@ -121,11 +122,14 @@ public class ParallelEvaluatorAI extends ExperimentalAI // NO_UCD
                     {
                         bestScore = score;
                         best = lm;
-                        LOGGER.finest("INTERMEDIATE Best legion move: "
-                            + lm.getStringWithEvaluation() + " (" + score
-                            + ")");
+                        if (traceMoves)
+                        {
+                            LOGGER.finest("INTERMEDIATE Best legion move: "
+                                + lm.getStringWithEvaluation() + " ("
+                                + score + ")");
+                        }
                     }
-                    else
+                    else if (traceMoves)
                     {
                         LOGGER.finest("INTERMEDIATE      legion move: "
                             + lm.getStringWithEvaluation() + " (" + score
@@ -155,10 +159,14 @@ public class ParallelEvaluatorAI extends ExperimentalAI // NO_UCD
                 }
             }
             findBestLegionMoveTimer.cancel();
-            LOGGER.finer("Best legion move of " + count + " checked (turn "
-                + client.getBattleTurnNumber() + "): "
-                + ((best == null) ? "none " : best.getStringWithEvaluation())
-                + " (" + bestScore + ")");
+            if (LOGGER.isLoggable(Level.FINER))
+            {
+                LOGGER.finer("Best legion move of " + count
+                    + " checked (turn " + client.getBattleTurnNumber()
+                    + "): "
+                    + ((best == null) ? "none " : best
+                        .getStringWithEvaluation()) + " (" + bestScore + ")");
+            }
         }
     }
 
@@ -215,10 +223,13 @@ public class ParallelEvaluatorAI extends ExperimentalAI // NO_UCD
                 }
             }
         }
-        LOGGER.finer("// Best legion move (turn "
-            + client.getBattleTurnNumber() + "): "
-            + (best == null ? "none" : best.getStringWithEvaluation()) + " ("
-            + (best == null ? "-" : ("" + best.getValue())) + ")");
+        if (LOGGER.isLoggable(Level.FINER))
+        {
+            LOGGER.finer("// Best legion move (turn "
+                + client.getBattleTurnNumber() + "): "
+                + (best == null ? "none" : best.getStringWithEvaluation())
+                + " (" + (best == null ? "-" : ("" + best.getValue())) + ")");
+        }
         return best;
     }
 }
@@ -13,6 +13,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.colossus.ai.helper.CritterMove;
@@ -20,6 +21,7 @@ import net.sf.colossus.ai.helper.LegionMove;
 import net.sf.colossus.client.Client;
 import net.sf.colossus.client.LegionClientSide;
 import net.sf.colossus.client.PlayerClientSide;
+import net.sf.colossus.client.PredictedContents;
 import net.sf.colossus.common.Constants;
 import net.sf.colossus.common.Options;
 import net.sf.colossus.game.Battle;
@@ -2042,24 +2044,46 @@ public class SimpleAI extends AbstractAI
         return val;
     }
 
-    private int getCombatValue(Legion legion, MasterBoardTerrain terrain)
+    /**
+     * The combat value of the legion. For a legion as the client knows it,
+     * each creature type counts with its expected number according to the
+     * split prediction, instead of only the single most likely guess; for
+     * legions whose contents are certain that is the same.
+     */
+    private double getCombatValue(Legion legion, MasterBoardTerrain terrain)
     {
-        int val = 0;
-        for (CreatureType creature : legion.getCreatureTypes())
+        if (legion instanceof LegionClientSide)
         {
-            if (creature.isTitan())
-            {
-                val += getTitanCombatValue(legion.getPlayer().getTitanPower());
-            }
-            else
+            PredictedContents contents = ((LegionClientSide)legion)
+                .getPredictedContents();
+            double val = 0;
+            for (CreatureType creature : contents.getCreatureTypes())
             {
-                val += getCombatValue(creature, terrain);
+                val += contents.getExpectedCount(creature)
+                    * getCombatValue(creature, legion, terrain);
             }
+            return val;
+        }
+
+        int val = 0;
+        for (CreatureType creature : legion.getCreatureTypes())
+        {
+            val += getCombatValue(creature, legion, terrain);
         }
 
         return val;
     }
 
+    private int getCombatValue(CreatureType creature, Legion legion,
+        MasterBoardTerrain terrain)
+    {
+        if (creature.isTitan())
+        {
+            return getTitanCombatValue(legion.getPlayer().getTitanPower());
+        }
+        return getCombatValue(creature, terrain);
+    }
+
     /** Return a list of critter moves, in best move order. */
     public List<CritterMove> battleMove()
     {
@@ -2312,7 +2336,7 @@ public class SimpleAI extends AbstractAI
         return legionMoves;
     }
 
-    private List<CritterMove> findBattleMovesOneCritter(BattleCritter critter)
+    List<CritterMove> findBattleMovesOneCritter(BattleCritter critter)
     {
         BattleHex currentHex = critter.getCurrentHex();
 
@@ -2399,6 +2423,8 @@ public class SimpleAI extends AbstractAI
             Collections.shuffle((List<LegionMove>)legionMoves, random);
 
         Timer findBestLegionMoveTimer = setupTimer();
+        // building the move strings is expensive, do it only if needed
+        boolean traceMoves = LOGGER.isLoggable(Level.FINEST);
 
         int count = 0;
         for (LegionMove lm : legionMoves)
@@ -2408,10 +2434,13 @@ public class SimpleAI extends AbstractAI
             {
                 bestScore = score;
                 best = lm;
-                LOGGER.finest("INTERMEDIATE Best legion move: "
-                    + lm.getStringWithEvaluation() + " (" + score + ")");
+                if (traceMoves)
+                {
+                    LOGGER.finest("INTERMEDIATE Best legion move: "
+                        + lm.getStringWithEvaluation() + " (" + score + ")");
+                }
             }
-            else
+            else if (traceMoves)
             {
                 LOGGER.finest("INTERMEDIATE      legion move: "
                     + lm.getStringWithEvaluation() + " (" + score + ")");
@@ -2436,10 +2465,13 @@ public class SimpleAI extends AbstractAI
             }
         }
         findBestLegionMoveTimer.cancel();
-        LOGGER.finer("Best legion move of " + count + " checked (turn "
-            + client.getBattleTurnNumber() + "): "
-            + ((best == null) ? "none " : best.getStringWithEvaluation())
-            + " (" + bestScore + ")");
+        if (LOGGER.isLoggable(Level.FINER))
+        {
+            LOGGER.finer("Best legion move of " + count + " checked (turn "
+                + client.getBattleTurnNumber() + "): "
+                + ((best == null) ? "none " : best.getStringWithEvaluation())
+                + " (" + bestScore + ")");
+        }
         return best;
     }
 
@@ -0,0 +1,307 @@
+package net.sf.colossus.ai;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.colossus.ai.helper.CritterMove;
+import net.sf.colossus.client.LegionClientSide;
+import net.sf.colossus.game.EntrySide;
+import net.sf.colossus.game.Legion;
+import net.sf.colossus.game.PlayerColor;
+import net.sf.colossus.game.SummonInfo;
+import net.sf.colossus.util.EventMetrics;
+import net.sf.colossus.variant.BattleHex;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.MasterHex;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * Decorator around an actual AI which measures how much time each kind
+ * of decision (split, masterMove, battleMove, ...) takes.
+ *
+ * Client always wraps its AI into this. The times go into the
+ * EventMetrics of the whole JVM, and are also kept per AI, e.g. for the
+ * Tournament runner which collects them after the game is over.
+ */
+public class TimedAI implements AI
+{
+    private final AI ai;
+
+    private final Map<String, DecisionTiming> timings = new TreeMap<String, DecisionTiming>();
+
+    public TimedAI(AI ai)
+    {
+        this.ai = ai;
+    }
+
+    /**
+     * @return The actual AI this one delegates to
+     */
+    public AI getWrappedAI()
+    {
+        return ai;
+    }
+
+    /**
+     * @return Copy of the timings collected so far, by decision name
+     */
+    public synchronized Map<String, DecisionTiming> getTimings()
+    {
+        Map<String, DecisionTiming> copy = new TreeMap<String, DecisionTiming>();
+        for (Map.Entry<String, DecisionTiming> entry : timings.entrySet())
+        {
+            copy.put(entry.getKey(), new DecisionTiming(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private synchronized void record(String decision, long startNanos)
+    {
+        long elapsed = System.nanoTime() - startNanos;
+        EventMetrics.AI_DECISIONS.record(decision, elapsed);
+        DecisionTiming timing = timings.get(decision);
+        if (timing == null)
+        {
+            timing = new DecisionTiming();
+            timings.put(decision, timing);
+        }
+        timing.add(elapsed);
+    }
+
+    /**
+     * Count, total and maximum time for one kind of AI decision.
+     */
+    public static class DecisionTiming
+    {
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+
+        DecisionTiming()
+        {
+            // empty
+        }
+
+        DecisionTiming(DecisionTiming other)
+        {
+            this.count = other.count;
+            this.totalNanos = other.totalNanos;
+            this.maxNanos = other.maxNanos;
+        }
+
+        void add(long nanos)
+        {
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos)
+            {
+                maxNanos = nanos;
+            }
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public long getTotalNanos()
+        {
+            return totalNanos;
+        }
+
+        public long getMaxNanos()
+        {
+            return maxNanos;
+        }
+    }
+
+    public void setVariant(Variant variant)
+    {
+        ai.setVariant(variant);
+    }
+
+    public PlayerColor pickColor(List<PlayerColor> colors,
+        List<PlayerColor> favoriteColors)
+    {
+        long start = System.nanoTime();
+        PlayerColor result = ai.pickColor(colors, favoriteColors);
+        record("pickColor", start);
+        return result;
+    }
+
+    public String pickMarker(Set<String> markerIds, String preferredShortColor)
+    {
+        long start = System.nanoTime();
+        String result = ai.pickMarker(markerIds, preferredShortColor);
+        record("pickMarker", start);
+        return result;
+    }
+
+    public boolean split()
+    {
+        long start = System.nanoTime();
+        boolean result = ai.split();
+        record("split", start);
+        return result;
+    }
+
+    public boolean splitCallback(Legion parent, Legion child)
+    {
+        long start = System.nanoTime();
+        boolean result = ai.splitCallback(parent, child);
+        record("splitCallback", start);
+        return result;
+    }
+
+    public boolean masterMove()
+    {
+        long start = System.nanoTime();
+        boolean result = ai.masterMove();
+        record("masterMove", start);
+        return result;
+    }
+
+    public void muster()
+    {
+        long start = System.nanoTime();
+        ai.muster();
+        record("muster", start);
+    }
+
+    public void reinforce(Legion legion)
+    {
+        long start = System.nanoTime();
+        ai.reinforce(legion);
+        record("reinforce", start);
+    }
+
+    public MasterHex pickEngagement()
+    {
+        long start = System.nanoTime();
+        MasterHex result = ai.pickEngagement();
+        record("pickEngagement", start);
+        return result;
+    }
+
+    public boolean flee(Legion legion, Legion enemy)
+    {
+        long start = System.nanoTime();
+        boolean result = ai.flee(legion, enemy);
+        record("flee", start);
+        return result;
+    }
+
+    public boolean concede(Legion legion, Legion enemy)
+    {
+        long start = System.nanoTime();
+        boolean result = ai.concede(legion, enemy);
+        record("concede", start);
+        return result;
+    }
+
+    public EntrySide pickEntrySide(MasterHex hex, Legion legion,
+        Set<EntrySide> entrySides)
+    {
+        long start = System.nanoTime();
+        EntrySide result = ai.pickEntrySide(hex, legion, entrySides);
+        record("pickEntrySide", start);
+        return result;
+    }
+
+    public void initBattle()
+    {
+        ai.initBattle();
+    }
+
+    public List<CritterMove> battleMove()
+    {
+        long start = System.nanoTime();
+        List<CritterMove> result = ai.battleMove();
+        record("battleMove", start);
+        return result;
+    }
+
+    public void setupBattleMove()
+    {
+        long start = System.nanoTime();
+        ai.setupBattleMove();
+        record("setupBattleMove", start);
+    }
+
+    public void handleFailedBattleMove()
+    {
+        ai.handleFailedBattleMove();
+    }
+
+    public void retryFailedBattleMoves(List<CritterMove> bestMoveOrder)
+    {
+        ai.retryFailedBattleMoves(bestMoveOrder);
+    }
+
+    public void markBattleMoveSuccessful(int tag, BattleHex endingHex)
+    {
+        ai.markBattleMoveSuccessful(tag, endingHex);
+    }
+
+    public boolean strike(Legion legion)
+    {
+        long start = System.nanoTime();
+        boolean result = ai.strike(legion);
+        record("strike", start);
+        return result;
+    }
+
+    public void handleCarries(int carryDamage, Set<String> carryTargets)
+    {
+        long start = System.nanoTime();
+        ai.handleCarries(carryDamage, carryTargets);
+        record("handleCarries", start);
+    }
+
+    public String pickStrikePenalty(List<String> choices)
+    {
+        long start = System.nanoTime();
+        String result = ai.pickStrikePenalty(choices);
+        record("pickStrikePenalty", start);
+        return result;
+    }
+
+    public SummonInfo summonAngel(Legion summoner, List<Legion> possibleDonors)
+    {
+        long start = System.nanoTime();
+        SummonInfo result = ai.summonAngel(summoner, possibleDonors);
+        record("summonAngel", start);
+        return result;
+    }
+
+    public void cleanupBattle()
+    {
+        ai.cleanupBattle();
+    }
+
+    public CreatureType acquireAngel(Legion legion, List<CreatureType> recruits)
+    {
+        long start = System.nanoTime();
+        CreatureType result = ai.acquireAngel(legion, recruits);
+        record("acquireAngel", start);
+        return result;
+    }
+
+    public CreatureType getVariantRecruitHint(LegionClientSide legion,
+        MasterHex hex, List<CreatureType> recruits)
+    {
+        long start = System.nanoTime();
+        CreatureType result = ai.getVariantRecruitHint(legion, hex, recruits);
+        record("recruitHint", start);
+        return result;
+    }
+
+    public void evaluateGivenLegionBattleMove(Legion activeLegion)
+    {
+        ai.evaluateGivenLegionBattleMove(activeLegion);
+    }
+}
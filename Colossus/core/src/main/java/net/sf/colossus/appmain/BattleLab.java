@@ -0,0 +1,471 @@
+package net.sf.colossus.appmain;
+
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.colossus.cmdline.CmdLine;
+import net.sf.colossus.cmdline.Opt;
+import net.sf.colossus.cmdline.Opts;
+import net.sf.colossus.common.Constants;
+
+
+/**
+ * Fights the same battle(s) many times with AI players inside one JVM,
+ * several of them concurrently, and writes the single results and the win
+ * rates, battle turns and surviving points per setup as CSV files.
+ *
+ * This replaces making a savegame with MakeBattle and running it with
+ * run-battle.sh / run-n-battles.sh, which starts a whole Colossus with
+ * log files for every single battle. The battles here start directly from
+ * an in-memory savegame (see {@link LabBattle}) and end as soon as the
+ * engagement is decided. As in the {@link Tournament} every worker loads
+ * the game classes through an own class loader and uses an own port.
+ *
+ * Example:
+ *   java -cp Colossus.jar net.sf.colossus.appmain.BattleLab -n 1000 -j 4
+ *        -t Jungle -A Titan,Angel,Gargoyle,Gargoyle,Cyclops
+ *        -D Ogre,Ogre,Troll,Troll,Ranger,Ranger -d RationalAI
+ *
+ * Instead of -t, -A, -D, -a and -d a battles file can be given, one setup
+ * per line, each of them fought -n times:
+ *   Jungle Titan,Angel,Gargoyle,Gargoyle Ogre,Troll,Troll SimpleAI SimpleAI
+ *   Tower Lion,Lion,Ranger Centaur,Centaur,Warlock SimpleAI RationalAI
+ */
+public final class BattleLab
+{
+    private static final Logger LOGGER = Logger.getLogger(BattleLab.class
+        .getName());
+
+    private static final String BATTLE_CLASS = "net.sf.colossus.appmain.LabBattle";
+
+    private static final String[] BATTLES_HEADER = { "battle", "setup",
+        "winner", "method", "battleTurn", "survivorPoints", "survivorCount",
+        "survivors", "durationMs" };
+
+    private static final String[] SUMMARY_HEADER = { "setup", "terrain",
+        "attacker", "defender", "attackerAI", "defenderAI", "battles",
+        "attackerWins", "defenderWins", "draws", "failed", "attackerWinRate",
+        "avgBattleTurns", "avgAttackerSurvivorPoints",
+        "avgDefenderSurvivorPoints" };
+
+    private final List<BattleSpec> setups;
+    private final int count;
+    private final String variant;
+    private final String entrySide;
+    private final int workers;
+    private final int basePort;
+    private final int aiTimeLimit;
+
+    private final ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<Integer>();
+
+    private final Map<Integer, String[]> results = new TreeMap<Integer, String[]>();
+
+    /**
+     * Terrain, legions and AI types of one battle setup.
+     */
+    static class BattleSpec
+    {
+        final String terrain;
+        final List<String> attacker;
+        final List<String> defender;
+        final String attackerAI;
+        final String defenderAI;
+
+        BattleSpec(String terrain, List<String> attacker,
+            List<String> defender, String attackerAI, String defenderAI)
+        {
+            this.terrain = terrain;
+            this.attacker = attacker;
+            this.defender = defender;
+            this.attackerAI = attackerAI;
+            this.defenderAI = defenderAI;
+        }
+    }
+
+    BattleLab(List<BattleSpec> setups, int count, String variant,
+        String entrySide, int workers, int basePort, int aiTimeLimit)
+    {
+        this.setups = setups;
+        this.count = count;
+        this.variant = variant;
+        this.entrySide = entrySide;
+        this.workers = Math.max(1, Math.min(workers, setups.size() * count));
+        this.basePort = basePort;
+        this.aiTimeLimit = aiTimeLimit;
+    }
+
+    private int getTotal()
+    {
+        return setups.size() * count;
+    }
+
+    /** Setup of the battle with the given number (counted from 0) */
+    private BattleSpec getSetup(int battle)
+    {
+        return setups.get(battle / count);
+    }
+
+    /**
+     * Fight all battles and wait until they are completed.
+     */
+    void runAll()
+    {
+        for (int i = 0; i < getTotal(); i++)
+        {
+            pending.add(Integer.valueOf(i));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++)
+        {
+            final int port = basePort + 2 * i;
+            pool.execute(new Runnable()
+            {
+                public void run()
+                {
+                    runWorker(port);
+                }
+            });
+        }
+        pool.shutdown();
+        try
+        {
+            while (!pool.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                LOGGER.info("BattleLab: " + getCompletedCount() + " of "
+                    + getTotal() + " battles completed.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            LOGGER.log(Level.WARNING, "Waiting for battles interrupted", e);
+        }
+    }
+
+    private synchronized int getCompletedCount()
+    {
+        return results.size();
+    }
+
+    private synchronized void storeResult(Integer battle, String[] row)
+    {
+        results.put(battle, row);
+    }
+
+    private void runWorker(int port)
+    {
+        ClassLoader loader = Tournament.createIsolatedClassLoader();
+        Method fightMethod;
+        try
+        {
+            fightMethod = loader.loadClass(BATTLE_CLASS).getMethod("fight",
+                String.class, String.class, String.class, List.class,
+                List.class, String.class, String.class, int.class, int.class);
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.SEVERE, "Could not load " + BATTLE_CLASS, e);
+            return;
+        }
+
+        Integer battle;
+        while ((battle = pending.poll()) != null)
+        {
+            BattleSpec spec = getSetup(battle.intValue());
+            String[] row;
+            try
+            {
+                row = (String[])fightMethod.invoke(null, variant,
+                    spec.terrain, entrySide, spec.attacker, spec.defender,
+                    spec.attackerAI, spec.defenderAI, Integer.valueOf(port),
+                    Integer.valueOf(aiTimeLimit));
+            }
+            catch (Exception e)
+            {
+                LOGGER.log(Level.SEVERE, "Battle " + (battle.intValue() + 1)
+                    + " failed", e);
+                row = new String[] { "", "Exception: " + e, "0", "0", "0",
+                    "", "0" };
+            }
+            storeResult(battle, row);
+        }
+    }
+
+    /**
+     * Write the single battles and the summary per setup to two CSV
+     * files, prefix-battles.csv and prefix-summary.csv.
+     */
+    synchronized void writeSummary(String prefix) throws IOException
+    {
+        PrintWriter battlesOut = new PrintWriter(new FileWriter(prefix
+            + "-battles.csv"));
+        PrintWriter summaryOut = new PrintWriter(new FileWriter(prefix
+            + "-summary.csv"));
+        try
+        {
+            Tournament.writeCsvLine(battlesOut, null, BATTLES_HEADER);
+            Tournament.writeCsvLine(summaryOut, null, SUMMARY_HEADER);
+            for (Map.Entry<Integer, String[]> entry : results.entrySet())
+            {
+                int battle = entry.getKey().intValue();
+                Tournament.writeCsvLine(battlesOut, String.valueOf(battle + 1),
+                    prepend(String.valueOf(battle / count + 1),
+                        entry.getValue()));
+            }
+            for (int i = 0; i < setups.size(); i++)
+            {
+                String[] row = summarize(i);
+                Tournament.writeCsvLine(summaryOut, null, row);
+                LOGGER.info("Setup " + row[0] + " (" + row[1] + ": "
+                    + row[2] + " vs. " + row[3] + "): attacker won "
+                    + row[7] + ", defender " + row[8] + ", draws " + row[9]
+                    + " of " + row[6] + " battles.");
+            }
+        }
+        finally
+        {
+            battlesOut.close();
+            summaryOut.close();
+        }
+    }
+
+    private String[] summarize(int setup)
+    {
+        BattleSpec spec = setups.get(setup);
+        int attackerWins = 0;
+        int defenderWins = 0;
+        int draws = 0;
+        int failed = 0;
+        long turns = 0;
+        long attackerPoints = 0;
+        long defenderPoints = 0;
+        for (int i = setup * count; i < (setup + 1) * count; i++)
+        {
+            String[] row = results.get(Integer.valueOf(i));
+            String winner = row == null ? "" : row[0];
+            if (LabBattle.ATTACKER.equals(winner))
+            {
+                attackerWins++;
+                attackerPoints += Integer.parseInt(row[3]);
+            }
+            else if (LabBattle.DEFENDER.equals(winner))
+            {
+                defenderWins++;
+                defenderPoints += Integer.parseInt(row[3]);
+            }
+            else if (winner.length() > 0)
+            {
+                draws++;
+            }
+            else
+            {
+                failed++;
+                continue;
+            }
+            turns += Integer.parseInt(row[2]);
+        }
+        int decided = count - failed;
+        return new String[] { String.valueOf(setup + 1), spec.terrain,
+            join(spec.attacker), join(spec.defender), spec.attackerAI,
+            spec.defenderAI, String.valueOf(count),
+            String.valueOf(attackerWins), String.valueOf(defenderWins),
+            String.valueOf(draws), String.valueOf(failed),
+            average(attackerWins, decided), average(turns, decided),
+            average(attackerPoints, attackerWins),
+            average(defenderPoints, defenderWins) };
+    }
+
+    private static String average(long sum, int n)
+    {
+        if (n == 0)
+        {
+            return "";
+        }
+        return String.format("%.3f", Double.valueOf((double)sum / n));
+    }
+
+    private static String join(List<String> creatures)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String name : creatures)
+        {
+            if (sb.length() > 0)
+            {
+                sb.append('+');
+            }
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+    private static String[] prepend(String first, String[] fields)
+    {
+        String[] row = new String[fields.length + 1];
+        row[0] = first;
+        System.arraycopy(fields, 0, row, 1, fields.length);
+        return row;
+    }
+
+    private static List<BattleSpec> readBattlesFile(String filename)
+        throws IOException
+    {
+        List<BattleSpec> specs = new ArrayList<BattleSpec>();
+        BufferedReader in = new BufferedReader(new FileReader(filename));
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 3 && parts.length != 5)
+                {
+                    throw new IOException("Invalid line in battles file "
+                        + filename + ": " + line);
+                }
+                String attackerAI = parts.length == 5 ? parts[3]
+                    : "SimpleAI";
+                String defenderAI = parts.length == 5 ? parts[4]
+                    : "SimpleAI";
+                specs.add(new BattleSpec(parts[0], Arrays.asList(parts[1]
+                    .split(",")), Arrays.asList(parts[2].split(",")),
+                    attackerAI, defenderAI));
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return specs;
+    }
+
+    private static void usage(Opts opts)
+    {
+        System.out.println("Usage: java -cp Colossus.jar "
+            + BattleLab.class.getName() + " [options]");
+        for (Opt opt : opts.getOptions())
+        {
+            System.out.println(opt.toString());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        Opts opts = new Opts();
+        opts.addOption('h', "help", false, "Show options help");
+        opts.addOption('n', "battles", true,
+            "Number of battles per setup (default: 1)");
+        opts.addOption('j', "workers", true,
+            "Battles to run in parallel (default: number of processors)");
+        opts.addOption('v', "variant", true, "Variant (default: Default)");
+        opts.addOption('t', "terrain", true,
+            "Master board terrain of the battle (default: Plains)");
+        opts.addOption('e', "entryside", true,
+            "Side the attacker enters: Left, Bottom or Right"
+                + " (default: Bottom)");
+        opts.addOption('A', "attacker", true,
+            "Comma separated creatures of the attacking legion");
+        opts.addOption('D', "defender", true,
+            "Comma separated creatures of the defending legion");
+        opts.addOption('a', "attackerai", true,
+            "AI type of the attacker (default: SimpleAI)");
+        opts.addOption('d', "defenderai", true,
+            "AI type of the defender (default: SimpleAI)");
+        opts.addOption('f', "battlesfile", true,
+            "File with one 'terrain attacker defender [attackerAI"
+                + " defenderAI]' line per setup");
+        opts.addOption('p', "port", true, "First server port to use");
+        opts.addOption('l', "timelimit", true, "AI time limit in s");
+        opts.addOption('o', "output", true,
+            "Prefix for the result files (default: battlelab)");
+
+        CmdLine cl = opts.parse(args);
+        if (cl.optIsSet('h')
+            || (!cl.optIsSet('f') && !(cl.optIsSet('A') && cl
+                .optIsSet('D'))))
+        {
+            usage(opts);
+            return;
+        }
+
+        List<BattleSpec> specs;
+        if (cl.optIsSet('f'))
+        {
+            try
+            {
+                specs = readBattlesFile(cl.getOptValue('f'));
+            }
+            catch (IOException e)
+            {
+                LOGGER.log(Level.SEVERE, "Reading battles file failed", e);
+                return;
+            }
+        }
+        else
+        {
+            String terrain = cl.optIsSet('t') ? cl.getOptValue('t')
+                : "Plains";
+            String attackerAI = cl.optIsSet('a') ? cl.getOptValue('a')
+                : "SimpleAI";
+            String defenderAI = cl.optIsSet('d') ? cl.getOptValue('d')
+                : "SimpleAI";
+            specs = new ArrayList<BattleSpec>();
+            specs.add(new BattleSpec(terrain, Arrays.asList(cl.getOptValue(
+                'A').split(",")), Arrays.asList(cl.getOptValue('D').split(
+                ",")), attackerAI, defenderAI));
+        }
+
+        int count = cl.optIsSet('n') ? Integer.parseInt(cl.getOptValue('n'))
+            : 1;
+        String variant = cl.optIsSet('v') ? cl.getOptValue('v')
+            : Constants.variantArray[0];
+        String entrySide = cl.optIsSet('e') ? cl.getOptValue('e') : "Bottom";
+        int workers = cl.optIsSet('j') ? Integer.parseInt(cl
+            .getOptValue('j')) : Runtime.getRuntime().availableProcessors();
+        int port = cl.optIsSet('p') ? Integer.parseInt(cl.getOptValue('p'))
+            : Constants.defaultPort;
+        int timeLimit = cl.optIsSet('l') ? Integer.parseInt(cl
+            .getOptValue('l')) : Constants.DEFAULT_AI_TIME_LIMIT;
+        String prefix = cl.optIsSet('o') ? cl.getOptValue('o')
+            : "battlelab";
+
+        BattleLab lab = new BattleLab(specs, count, variant, entrySide,
+            workers, port, timeLimit);
+        long start = System.currentTimeMillis();
+        lab.runAll();
+        LOGGER.info("BattleLab: " + lab.getTotal() + " battles took "
+            + (System.currentTimeMillis() - start) + " ms.");
+
+        try
+        {
+            lab.writeSummary(prefix);
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.SEVERE, "Writing battle results failed", e);
+        }
+        // Some non-demon threads of finished battles might still linger
+        System.exit(0);
+    }
+}
@@ -0,0 +1,273 @@
+package net.sf.colossus.appmain;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import net.sf.colossus.common.Constants;
+import net.sf.colossus.common.Options;
+import net.sf.colossus.common.WhatNextManager;
+import net.sf.colossus.game.EntrySide;
+import net.sf.colossus.game.Legion;
+import net.sf.colossus.game.Phase;
+import net.sf.colossus.game.PlayerColor;
+import net.sf.colossus.server.GameServerSide;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.util.Glob;
+import net.sf.colossus.util.StaticResourceLoader;
+import net.sf.colossus.util.ViableEntityManager;
+import net.sf.colossus.variant.MasterHex;
+import net.sf.colossus.variant.Variant;
+
+import org.jdom.Element;
+
+
+/**
+ * One battle between two given legions, fought by AI players until it is
+ * decided, inside the BattleLab.
+ *
+ * Instead of a savegame file like Battle-stuff/battle.xml this builds the
+ * savegame as JDOM tree in memory: two players with one legion each, both
+ * legions in the same master board hex, in the fight phase of the
+ * attacking player. The game ends as soon as the engagement is completed.
+ *
+ * Like the TournamentGame, each BattleLab worker loads this class through
+ * its own class loader and calls
+ * {@link #fight(String, String, String, List, List, String, String, int, int)}
+ * reflectively, so the result is passed back only as JDK types.
+ */
+public class LabBattle extends GameServerSide
+{
+    private static final Logger LOGGER = Logger.getLogger(LabBattle.class
+        .getName());
+
+    static final String ATTACKER = "Attacker";
+
+    static final String DEFENDER = "Defender";
+
+    private static final String DRAW = "Draw";
+
+    private static final Comparator<MasterHex> BY_LABEL = new Comparator<MasterHex>()
+    {
+        public int compare(MasterHex h1, MasterHex h2)
+        {
+            return h1.getLabel().compareTo(h2.getLabel());
+        }
+    };
+
+    private String winnerSide = "";
+    private String method = "";
+    private int battleTurn = 0;
+    private int survivorPoints = 0;
+    private int survivorCount = 0;
+    private String survivors = "";
+
+    private LabBattle(WhatNextManager whatNextMgr, Options serverOptions,
+        Variant variant)
+    {
+        super(whatNextMgr, serverOptions, variant);
+    }
+
+    @Override
+    protected boolean isEndAfterFirstBattle()
+    {
+        return true;
+    }
+
+    @Override
+    protected void engagementCompleted(Legion winner, String method,
+        int points, int battleTurn)
+    {
+        this.method = method;
+        this.battleTurn = battleTurn;
+        if (winner == null)
+        {
+            winnerSide = DRAW;
+            return;
+        }
+        winnerSide = winner.getPlayer().getName();
+        survivorPoints = winner.getPointValue();
+        survivorCount = winner.getHeight();
+        survivors = Glob.glob("+", winner.getCreatureTypes());
+    }
+
+    /**
+     * Fight one battle with AI players until it is decided.
+     *
+     * @param variantName Variant to use
+     * @param terrainId Master board terrain of the battle, e.g. Jungle
+     * @param entrySide Label of the side the attacker enters, e.g. Bottom
+     * @param attackerCreatures Creature names of the attacking legion
+     * @param defenderCreatures Creature names of the defending legion
+     * @param attackerAI (Short) AI type of the attacker, e.g. SimpleAI
+     * @param defenderAI (Short) AI type of the defender
+     * @param port Port for the server of this battle
+     * @param aiTimeLimit AI time limit in seconds
+     * @return Winner (Attacker, Defender, Draw or empty if the battle did
+     *         not take place), how it was decided, battle turn, points and
+     *         number of the surviving creatures of the winner, the
+     *         survivors, and the duration in ms
+     */
+    public static String[] fight(String variantName, String terrainId,
+        String entrySide, List<String> attackerCreatures,
+        List<String> defenderCreatures, String attackerAI,
+        String defenderAI, int port, int aiTimeLimit)
+    {
+        Options startOptions = new Options(Constants.OPTIONS_START, true);
+        WhatNextManager whatNextManager = new WhatNextManager(startOptions);
+        whatNextManager.setInProcessRunner(true);
+
+        Options serverOptions = new Options(Constants.OPTIONS_SERVER_NAME,
+            true);
+        serverOptions.setOption(Options.variant, variantName);
+        serverOptions.setOption(Options.serveAtPort, port);
+        serverOptions.setOption(Options.autoQuit, true);
+        serverOptions.setOption(Options.autoStop, false);
+        serverOptions.setOption(Options.aiDelay, Constants.MIN_AI_DELAY);
+        serverOptions.setOption(Options.aiTimeLimit, aiTimeLimit);
+
+        Variant variant = VariantSupport.loadVariantByName(variantName, true);
+        LabBattle game = new LabBattle(whatNextManager, serverOptions,
+            variant);
+
+        long startTime = System.currentTimeMillis();
+        boolean ok;
+        try
+        {
+            Element root = makeSnapshot(variant, terrainId,
+                EntrySide.fromLabel(entrySide), attackerCreatures,
+                defenderCreatures, attackerAI, defenderAI);
+            ok = game.loadGameAndWaitUntilOver(root);
+        }
+        catch (IllegalArgumentException e)
+        {
+            LOGGER.warning("Invalid battle setup: " + e.getMessage());
+            game.method = e.getMessage();
+            ok = false;
+        }
+        long duration = System.currentTimeMillis() - startTime;
+
+        ViableEntityManager.waitUntilAllGone();
+        StaticResourceLoader.resetDataServer();
+
+        if (!ok && game.method.length() == 0)
+        {
+            game.method = "Battle startup failed";
+        }
+        return new String[] { game.winnerSide, game.method,
+            String.valueOf(game.battleTurn),
+            String.valueOf(game.survivorPoints),
+            String.valueOf(game.survivorCount), game.survivors,
+            String.valueOf(duration) };
+    }
+
+    /**
+     * The savegame for the battle, as GameServerSide.loadGame() expects
+     * it: both legions are revealed in turn 1 in the history (which
+     * creates them during the replay), and are then put in the battle hex
+     * by the loaded legion data.
+     */
+    private static Element makeSnapshot(Variant variant, String terrainId,
+        EntrySide entrySide, List<String> attackerCreatures,
+        List<String> defenderCreatures, String attackerAI, String defenderAI)
+    {
+        MasterHex battleHex = findHex(variant, terrainId);
+        List<MasterHex> towers = new ArrayList<MasterHex>(variant
+            .getMasterBoard().getTowerSet());
+        Collections.sort(towers, BY_LABEL);
+
+        Element root = new Element("ColossusSnapshot");
+        root.setAttribute("version", Constants.XML_SNAPSHOT_VERSION);
+        root.addContent(new Element("TurnNumber").addContent("2"));
+        root.addContent(new Element("CurrentPlayer").addContent("0"));
+        root.addContent(new Element("CurrentPhase").addContent(""
+            + Phase.FIGHT.toInt()));
+        root.addContent(new Element("Caretaker"));
+
+        Element history = new Element("History");
+        root.addContent(makePlayer(variant, ATTACKER, attackerAI,
+            PlayerColor.RED, towers.get(0), battleHex, entrySide,
+            attackerCreatures, history));
+        root.addContent(makePlayer(variant, DEFENDER, defenderAI,
+            PlayerColor.BLUE, towers.get(1), battleHex, EntrySide.NOT_SET,
+            defenderCreatures, history));
+        root.addContent(history);
+        root.addContent(new Element("Redo"));
+        return root;
+    }
+
+    private static Element makePlayer(Variant variant, String name,
+        String aiType, PlayerColor color, MasterHex tower,
+        MasterHex battleHex, EntrySide entrySide, List<String> creatures,
+        Element history)
+    {
+        Element player = new Element("Player");
+        player.setAttribute("name", name);
+        player.setAttribute("type", Constants.aiPackage + aiType);
+        player.setAttribute("color", color.getName());
+        player.setAttribute("startingTower", tower.getLabel());
+        player.setAttribute("score", "0");
+        player.setAttribute("dead", "false");
+        player.setAttribute("mulligansLeft", "0");
+        player.setAttribute("colorsElim", "null");
+        player.setAttribute("summoned", "false");
+
+        String markerId = color.getShortName() + "01";
+        Element legion = new Element("Legion");
+        legion.setAttribute("name", markerId);
+        legion.setAttribute("currentHex", battleHex.getLabel());
+        legion.setAttribute("startingHex", battleHex.getLabel());
+        legion.setAttribute("moved", "" + (entrySide != EntrySide.NOT_SET));
+        legion.setAttribute("entrySide", "" + entrySide.ordinal());
+        legion.setAttribute("parent", "null");
+        legion.setAttribute("recruitName", "null");
+        legion.setAttribute("battleTally", "0");
+
+        Element reveal = new Element("Reveal");
+        reveal.setAttribute("markerId", markerId);
+        reveal.setAttribute("allPlayers", "true");
+        reveal.setAttribute("turn", "1");
+        reveal.setAttribute("reason", "BattleLab");
+        Element revealed = new Element("creatures");
+        reveal.addContent(revealed);
+
+        for (String creatureName : creatures)
+        {
+            if (variant.getCreatureByName(creatureName) == null)
+            {
+                throw new IllegalArgumentException("Unknown creature "
+                    + creatureName);
+            }
+            legion.addContent(new Element("Creature").setAttribute("name",
+                creatureName));
+            revealed.addContent(new Element("creature")
+                .addContent(creatureName));
+        }
+        player.addContent(legion);
+        history.addContent(reveal);
+        return player;
+    }
+
+    /** The master board hex with the lowest label of the given terrain */
+    private static MasterHex findHex(Variant variant, String terrainId)
+    {
+        MasterHex found = null;
+        for (MasterHex hex : variant.getMasterBoard().getAllHexes())
+        {
+            if (hex.getTerrain().getId().equals(terrainId)
+                && (found == null || BY_LABEL.compare(hex, found) < 0))
+            {
+                found = hex;
+            }
+        }
+        if (found == null)
+        {
+            throw new IllegalArgumentException("No " + terrainId
+                + " hex in variant " + variant.getName());
+        }
+        return found;
+    }
+}
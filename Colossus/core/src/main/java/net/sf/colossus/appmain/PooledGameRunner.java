@@ -0,0 +1,123 @@
+package net.sf.colossus.appmain;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+
+/**
+ * A game process which the WebServer starts before a game needs it, so
+ * that starting a game does not have to wait until a JVM is up.
+ *
+ * While idle, it warms up by loading a variant, in a class loader of its
+ * own: the game itself must get fresh classes, because the Colossus home
+ * directory is taken from user.home as soon as the classes are loaded.
+ * Then it waits for one line from the WebServer on stdin, with the
+ * fields separated by tabs (empty if not set):
+ *
+ *   game directory, logging config file, random.org directory,
+ *   then the arguments for Start
+ *
+ * It sets the system properties which RunGameInOwnJVM otherwise gives on
+ * the command line, and runs Start with the arguments. Each process runs
+ * only one game; when the WebServer takes one from its pool, it starts a
+ * new one.
+ */
+public final class PooledGameRunner
+{
+    private static final Logger LOGGER = Logger
+        .getLogger(PooledGameRunner.class.getName());
+
+    private static final String WARMUP_CLASS = "net.sf.colossus.appmain.VariantCheckLoad";
+
+    private static final String WARMUP_VARIANT = "Default";
+
+    private PooledGameRunner()
+    {
+        // only static methods
+    }
+
+    /**
+     * Load a variant once, so that the JVM has loaded and compiled what
+     * parsing the variant files needs.
+     */
+    private static void warmUp()
+    {
+        Logger root = Logger.getLogger("");
+        Level level = root.getLevel();
+        // the WebServer logs what we print, keep that short
+        root.setLevel(Level.WARNING);
+        long start = System.currentTimeMillis();
+        try
+        {
+            ClassLoader loader = Tournament.createIsolatedClassLoader();
+            loader.loadClass(WARMUP_CLASS)
+                .getMethod("load", String.class, int.class)
+                .invoke(null, WARMUP_VARIANT, Integer.valueOf(1));
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.WARNING, "Warming up failed", e);
+        }
+        root.setLevel(level);
+        LOGGER.info("Warmed up in " + (System.currentTimeMillis() - start)
+            + " ms, waiting for a game.");
+    }
+
+    public static void main(String[] args)
+    {
+        warmUp();
+
+        String line;
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                System.in));
+            line = in.readLine();
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.SEVERE, "Reading the game from stdin failed", e);
+            line = null;
+        }
+        if (line == null)
+        {
+            // WebServer has gone, or shuts down its pool
+            return;
+        }
+
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 3)
+        {
+            LOGGER.severe("Invalid game line '" + line + "'");
+            System.exit(1);
+        }
+
+        System.setProperty("user.home", fields[0]);
+        if (fields[1].length() > 0)
+        {
+            System.setProperty("java.util.logging.config.file", fields[1]);
+            try
+            {
+                LogManager.getLogManager().readConfiguration();
+            }
+            catch (IOException e)
+            {
+                LOGGER.log(Level.WARNING, "Reading logging config "
+                    + fields[1] + " failed", e);
+            }
+        }
+        if (fields[2].length() > 0)
+        {
+            System.setProperty("net.sf.colossus.randomDotOrgDirectory",
+                fields[2]);
+        }
+
+        Start.main(Arrays.copyOfRange(fields, 3, fields.length));
+    }
+}
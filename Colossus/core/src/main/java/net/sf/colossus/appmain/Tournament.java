@@ -0,0 +1,406 @@
+package net.sf.colossus.appmain;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.colossus.cmdline.CmdLine;
+import net.sf.colossus.cmdline.Opt;
+import net.sf.colossus.cmdline.Opts;
+import net.sf.colossus.common.Constants;
+
+
+/**
+ * Runs a number of headless AI-only games inside one JVM, several of them
+ * concurrently on a pool of worker threads, and writes a summary of the
+ * results (winners, turns, duration) and of the per-decision AI timing
+ * as CSV files.
+ *
+ * This replaces the batch-run.sh / loop-batch-run.sh approach of starting
+ * one JVM per game.
+ *
+ * Much of the game code keeps state in static fields (current variant,
+ * caretaker of the recruit graph, custom recruit bases, ...), therefore
+ * every worker loads the game classes through a class loader of its own;
+ * within one worker the games run one after another, like the stresstest
+ * does it. Every worker's server gets an own port (and port+1 for the
+ * file server).
+ *
+ * Example:
+ *   java -cp Colossus.jar net.sf.colossus.appmain.Tournament -n 20 -j 4
+ *        -v Default -a SimpleAI,ClemensAI,RationalAI,MilvangAI
+ *
+ * Instead of -v and -a a games file can be given, one game per line:
+ *   Default SimpleAI,SimpleAI,ClemensAI
+ *   Abyssal6 RationalAI,MilvangAI
+ */
+public final class Tournament
+{
+    private static final Logger LOGGER = Logger.getLogger(Tournament.class
+        .getName());
+
+    private static final String GAME_CLASS = "net.sf.colossus.appmain.TournamentGame";
+
+    private static final String[] GAMES_HEADER = { "game", "variant",
+        "players", "winner", "winnerType", "turns", "durationMs", "result" };
+
+    private static final String[] TIMING_HEADER = { "game", "player",
+        "aiType", "decision", "count", "totalMs", "maxMs" };
+
+    private final List<GameSpec> games;
+    private final int workers;
+    private final int basePort;
+    private final int aiTimeLimit;
+    private final int maxTurns;
+
+    private final ConcurrentLinkedQueue<GameSpec> pending = new ConcurrentLinkedQueue<GameSpec>();
+
+    private final Map<Integer, List<String[]>> results = new TreeMap<Integer, List<String[]>>();
+
+    /**
+     * Variant and AI types of one game of the tournament.
+     */
+    static class GameSpec
+    {
+        final int number;
+        final String variant;
+        final List<String> aiTypes;
+
+        GameSpec(int number, String variant, List<String> aiTypes)
+        {
+            this.number = number;
+            this.variant = variant;
+            this.aiTypes = aiTypes;
+        }
+    }
+
+    Tournament(List<GameSpec> games, int workers, int basePort,
+        int aiTimeLimit, int maxTurns)
+    {
+        this.games = games;
+        this.workers = Math.max(1, Math.min(workers, games.size()));
+        this.basePort = basePort;
+        this.aiTimeLimit = aiTimeLimit;
+        this.maxTurns = maxTurns;
+    }
+
+    /**
+     * Run all games and wait until they are completed.
+     */
+    void runAll()
+    {
+        pending.addAll(games);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++)
+        {
+            final int port = basePort + 2 * i;
+            pool.execute(new Runnable()
+            {
+                public void run()
+                {
+                    runWorker(port);
+                }
+            });
+        }
+        pool.shutdown();
+        try
+        {
+            while (!pool.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                LOGGER.info("Tournament: " + getCompletedCount() + " of "
+                    + games.size() + " games completed.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            LOGGER.log(Level.WARNING, "Waiting for tournament interrupted",
+                e);
+        }
+    }
+
+    private synchronized int getCompletedCount()
+    {
+        return results.size();
+    }
+
+    private synchronized void storeResult(int number, List<String[]> rows)
+    {
+        results.put(Integer.valueOf(number), rows);
+    }
+
+    private void runWorker(int port)
+    {
+        ClassLoader loader = createIsolatedClassLoader();
+        Method playMethod;
+        try
+        {
+            playMethod = loader.loadClass(GAME_CLASS).getMethod("play",
+                String.class, List.class, int.class, int.class, int.class);
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.SEVERE, "Could not load " + GAME_CLASS, e);
+            return;
+        }
+
+        GameSpec spec;
+        while ((spec = pending.poll()) != null)
+        {
+            LOGGER.info("Starting game " + spec.number + " (" + spec.variant
+                + ", " + spec.aiTypes + ") at port " + port);
+            List<String[]> rows;
+            try
+            {
+                @SuppressWarnings("unchecked")
+                List<String[]> played = (List<String[]>)playMethod.invoke(
+                    null, spec.variant, spec.aiTypes, Integer.valueOf(port),
+                    Integer.valueOf(aiTimeLimit), Integer.valueOf(maxTurns));
+                rows = played;
+            }
+            catch (Exception e)
+            {
+                LOGGER.log(Level.SEVERE, "Game " + spec.number + " failed",
+                    e);
+                rows = new ArrayList<String[]>();
+                rows.add(new String[] { spec.variant,
+                    spec.aiTypes.toString(), "", "", "", "",
+                    "Exception: " + e });
+            }
+            storeResult(spec.number, rows);
+        }
+    }
+
+    /**
+     * A class loader over the same class path, but not delegating to the
+     * application class loader, so that it gets own copies of all
+     * Colossus classes and with that of their static fields.
+     */
+    static ClassLoader createIsolatedClassLoader()
+    {
+        String classPath = System.getProperty("java.class.path");
+        List<URL> urls = new ArrayList<URL>();
+        for (String entry : classPath.split(File.pathSeparator))
+        {
+            try
+            {
+                urls.add(new File(entry).toURI().toURL());
+            }
+            catch (MalformedURLException e)
+            {
+                LOGGER.warning("Ignoring class path entry " + entry + ": "
+                    + e);
+            }
+        }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]),
+            ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    /**
+     * Write the game results and the AI timings to two CSV files,
+     * prefix-games.csv and prefix-aitiming.csv.
+     */
+    synchronized void writeSummary(String prefix) throws IOException
+    {
+        PrintWriter gamesOut = new PrintWriter(new FileWriter(prefix
+            + "-games.csv"));
+        PrintWriter timingOut = new PrintWriter(new FileWriter(prefix
+            + "-aitiming.csv"));
+        try
+        {
+            writeCsvLine(gamesOut, null, GAMES_HEADER);
+            writeCsvLine(timingOut, null, TIMING_HEADER);
+            for (Map.Entry<Integer, List<String[]>> entry : results
+                .entrySet())
+            {
+                String number = entry.getKey().toString();
+                Iterator<String[]> it = entry.getValue().iterator();
+                writeCsvLine(gamesOut, number, it.next());
+                while (it.hasNext())
+                {
+                    writeCsvLine(timingOut, number, it.next());
+                }
+            }
+        }
+        finally
+        {
+            gamesOut.close();
+            timingOut.close();
+        }
+    }
+
+    static void writeCsvLine(PrintWriter out, String first,
+        String[] fields)
+    {
+        StringBuilder line = new StringBuilder();
+        if (first != null)
+        {
+            line.append(first);
+        }
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (first != null || i > 0)
+            {
+                line.append(',');
+            }
+            String field = fields[i];
+            if (field.indexOf(',') != -1 || field.indexOf('"') != -1)
+            {
+                field = "\"" + field.replace("\"", "\"\"") + "\"";
+            }
+            line.append(field);
+        }
+        out.println(line.toString());
+    }
+
+    private static List<GameSpec> readGamesFile(String filename)
+        throws IOException
+    {
+        List<GameSpec> specs = new ArrayList<GameSpec>();
+        BufferedReader in = new BufferedReader(new FileReader(filename));
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2)
+                {
+                    throw new IOException("Invalid line in games file "
+                        + filename + ": " + line);
+                }
+                specs.add(new GameSpec(specs.size() + 1, parts[0],
+                    Arrays.asList(parts[1].split(","))));
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return specs;
+    }
+
+    private static void usage(Opts opts)
+    {
+        System.out.println("Usage: java -cp Colossus.jar "
+            + Tournament.class.getName() + " [options]");
+        for (Opt opt : opts.getOptions())
+        {
+            System.out.println(opt.toString());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        // No game in here has any use for a window (StartupProgress etc.)
+        System.setProperty("java.awt.headless", "true");
+
+        Opts opts = new Opts();
+        opts.addOption('h', "help", false, "Show options help");
+        opts.addOption('n', "games", true, "Number of games (default: 1)");
+        opts.addOption('j', "workers", true,
+            "Games to run in parallel (default: number of processors)");
+        opts.addOption('v', "variant", true,
+            "Variant, or comma separated list of variants used in turn");
+        opts.addOption('a', "ais", true,
+            "Comma separated AI types, one per player");
+        opts.addOption('f', "gamesfile", true,
+            "File with one 'variant AItype,AItype,...' line per game");
+        opts.addOption('p', "port", true, "First server port to use");
+        opts.addOption('t', "timelimit", true, "AI time limit in s");
+        opts.addOption('T', "maxturns", true,
+            "End game as draw after so many turns (default: 0 = never)");
+        opts.addOption('o', "output", true,
+            "Prefix for the summary files (default: tournament)");
+
+        CmdLine cl = opts.parse(args);
+        if (cl.optIsSet('h'))
+        {
+            usage(opts);
+            return;
+        }
+
+        List<GameSpec> specs;
+        try
+        {
+            if (cl.optIsSet('f'))
+            {
+                specs = readGamesFile(cl.getOptValue('f'));
+            }
+            else
+            {
+                int count = cl.optIsSet('n') ? Integer.parseInt(cl
+                    .getOptValue('n')) : 1;
+                String[] variants = (cl.optIsSet('v') ? cl.getOptValue('v')
+                    : Constants.variantArray[0]).split(",");
+                String ais = cl.optIsSet('a') ? cl.getOptValue('a')
+                    : "SimpleAI,SimpleAI,SimpleAI";
+                List<String> aiTypes = Arrays.asList(ais.split(","));
+                specs = new ArrayList<GameSpec>();
+                for (int i = 0; i < count; i++)
+                {
+                    specs.add(new GameSpec(i + 1,
+                        variants[i % variants.length], aiTypes));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.SEVERE, "Reading games file failed", e);
+            return;
+        }
+
+        int workers = cl.optIsSet('j') ? Integer.parseInt(cl
+            .getOptValue('j')) : Runtime.getRuntime().availableProcessors();
+        int port = cl.optIsSet('p') ? Integer.parseInt(cl.getOptValue('p'))
+            : Constants.defaultPort;
+        int timeLimit = cl.optIsSet('t') ? Integer.parseInt(cl
+            .getOptValue('t')) : Constants.DEFAULT_AI_TIME_LIMIT;
+        int maxTurns = cl.optIsSet('T') ? Integer.parseInt(cl
+            .getOptValue('T')) : 0;
+        String prefix = cl.optIsSet('o') ? cl.getOptValue('o')
+            : "tournament";
+
+        Tournament tournament = new Tournament(specs, workers, port,
+            timeLimit, maxTurns);
+        long start = System.currentTimeMillis();
+        tournament.runAll();
+        LOGGER.info("Tournament of " + specs.size() + " games took "
+            + (System.currentTimeMillis() - start) + " ms.");
+
+        try
+        {
+            tournament.writeSummary(prefix);
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.SEVERE, "Writing tournament summary failed", e);
+        }
+        // Some non-demon threads of finished games might still linger
+        System.exit(0);
+    }
+}
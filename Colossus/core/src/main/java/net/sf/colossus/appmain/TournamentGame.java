@@ -0,0 +1,200 @@
+package net.sf.colossus.appmain;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.colossus.ai.AI;
+import net.sf.colossus.ai.TimedAI;
+import net.sf.colossus.ai.TimedAI.DecisionTiming;
+import net.sf.colossus.client.Client;
+import net.sf.colossus.common.Constants;
+import net.sf.colossus.common.Options;
+import net.sf.colossus.common.WhatNextManager;
+import net.sf.colossus.game.Player;
+import net.sf.colossus.server.GameServerSide;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.util.StaticResourceLoader;
+import net.sf.colossus.util.ViableEntityManager;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * One headless AI-only game, run to completion inside the Tournament.
+ *
+ * Each Tournament worker loads this class through its own class loader
+ * (so that all the static state - current variant, caretaker, custom
+ * recruit bases, ... - is private to that worker), and calls
+ * {@link #play(String, List, int, int, int)} reflectively. Therefore the
+ * result is passed back only as JDK types.
+ */
+public class TournamentGame extends GameServerSide
+{
+    private final List<Client> localClients = new ArrayList<Client>();
+
+    /** Stop the game as draw after so many turns, 0 = never */
+    private final int maxTurns;
+
+    private TournamentGame(WhatNextManager whatNextMgr, Options serverOptions,
+        Variant variant, int maxTurns)
+    {
+        super(whatNextMgr, serverOptions, variant);
+        this.maxTurns = maxTurns;
+    }
+
+    /**
+     * AIs sometimes keep running around forever; if the game goes on too
+     * long, it ends as draw.
+     */
+    @Override
+    protected boolean isTurnLimitReached(int turn)
+    {
+        return maxTurns > 0 && turn > maxTurns;
+    }
+
+    @Override
+    protected void storeLocalClient(String playerName, Client c)
+    {
+        super.storeLocalClient(playerName, c);
+        if (c != null)
+        {
+            synchronized (localClients)
+            {
+                localClients.add(c);
+            }
+        }
+    }
+
+    /**
+     * Play one game with only AI players until it is over.
+     *
+     * @param variantName Variant to play
+     * @param aiTypes One (short) AI type name per player, e.g. SimpleAI
+     * @param port Port for the server of this game
+     * @param aiTimeLimit AI time limit in seconds
+     * @param maxTurns Stop the game as draw after so many turns, 0 = never
+     * @return First element: variant, player types, winner name, winner
+     *         type, turns, duration in ms and game over message.
+     *         Following elements: player name, AI type, decision, count,
+     *         total ms and max ms, one per player and AI decision kind.
+     */
+    public static List<String[]> play(String variantName,
+        List<String> aiTypes, int port, int aiTimeLimit, int maxTurns)
+    {
+        Options startOptions = new Options(Constants.OPTIONS_START, true);
+        WhatNextManager whatNextManager = new WhatNextManager(startOptions);
+        whatNextManager.setInProcessRunner(true);
+
+        Options serverOptions = new Options(Constants.OPTIONS_SERVER_NAME,
+            true);
+        serverOptions.setOption(Options.variant, variantName);
+        serverOptions.setOption(Options.serveAtPort, port);
+        serverOptions.setOption(Options.autoQuit, true);
+        serverOptions.setOption(Options.autoStop, false);
+        serverOptions.setOption(Options.aiDelay, Constants.MIN_AI_DELAY);
+        serverOptions.setOption(Options.aiTimeLimit, aiTimeLimit);
+        for (int i = 0; i < aiTypes.size(); i++)
+        {
+            serverOptions.setOption(Options.playerName + i, Constants.byType
+                + i);
+            serverOptions.setOption(Options.playerType + i, aiTypes.get(i));
+        }
+
+        Variant variant = VariantSupport.loadVariantByName(variantName, true);
+        TournamentGame game = new TournamentGame(whatNextManager,
+            serverOptions, variant, maxTurns);
+
+        long startTime = System.currentTimeMillis();
+        boolean ok = game.startNewGameAndWaitUntilOver(null);
+        long duration = System.currentTimeMillis() - startTime;
+
+        ViableEntityManager.waitUntilAllGone();
+        StaticResourceLoader.resetDataServer();
+
+        List<String[]> result = new ArrayList<String[]>();
+        result.add(game.makeGameRow(ok, duration, aiTypes));
+        result.addAll(game.makeTimingRows());
+        return result;
+    }
+
+    private String[] makeGameRow(boolean ok, long duration,
+        List<String> aiTypes)
+    {
+        StringBuilder lineup = new StringBuilder();
+        for (String type : aiTypes)
+        {
+            if (lineup.length() > 0)
+            {
+                lineup.append('+');
+            }
+            lineup.append(type);
+        }
+
+        String winnerName = "";
+        String winnerType = "";
+        Player winner = null;
+        for (Player player : getPlayers())
+        {
+            if (!player.isDead())
+            {
+                if (winner != null)
+                {
+                    // more than one alive - no winner
+                    winner = null;
+                    break;
+                }
+                winner = player;
+            }
+        }
+        if (winner != null && !TURN_LIMIT_MESSAGE.equals(getGameOverMessage()))
+        {
+            winnerName = winner.getName();
+            winnerType = shortType(winner.getType());
+        }
+
+        String message = ok ? getGameOverMessage() : "Game startup failed";
+        return new String[] { getVariant().getName(), lineup.toString(),
+            winnerName, winnerType, String.valueOf(getTurnNumber()),
+            String.valueOf(duration), message == null ? "" : message };
+    }
+
+    private List<String[]> makeTimingRows()
+    {
+        List<String[]> rows = new ArrayList<String[]>();
+        synchronized (localClients)
+        {
+            for (Client client : localClients)
+            {
+                AI ai = client.getAI();
+                if (!(ai instanceof TimedAI))
+                {
+                    continue;
+                }
+                TimedAI timedAI = (TimedAI)ai;
+                String aiType = timedAI.getWrappedAI().getClass()
+                    .getSimpleName();
+                Map<String, DecisionTiming> timings = timedAI.getTimings();
+                for (Map.Entry<String, DecisionTiming> entry : timings
+                    .entrySet())
+                {
+                    DecisionTiming t = entry.getValue();
+                    rows.add(new String[] { client.getOwningPlayer().getName(),
+                        aiType, entry.getKey(), String.valueOf(t.getCount()),
+                        String.valueOf(t.getTotalNanos() / 1000000),
+                        String.valueOf(t.getMaxNanos() / 1000000) });
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static String shortType(String type)
+    {
+        if (type != null && type.startsWith(Constants.aiPackage))
+        {
+            return type.substring(Constants.aiPackage.length());
+        }
+        return type;
+    }
+}
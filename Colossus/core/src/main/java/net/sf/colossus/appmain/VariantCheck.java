@@ -0,0 +1,382 @@
+package net.sf.colossus.appmain;
+
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import net.sf.colossus.cmdline.CmdLine;
+import net.sf.colossus.cmdline.Opt;
+import net.sf.colossus.cmdline.Opts;
+import net.sf.colossus.common.Constants;
+
+
+/**
+ * Loads all (or the given) variants headless, several of them in
+ * parallel, and reports whether they load without problems and how long
+ * the single steps take. This replaces starting a game for each variant
+ * with the StartEachVariant functest to just check the variant files.
+ *
+ * Two CSV files are written:
+ *   prefix-variants.csv: per variant whether it loaded, the number of
+ *     warnings logged while loading, the size of the variant, the time of
+ *     the first and the fastest load, the time for building the recruit
+ *     tables, the memory allocated by all loads and (only with
+ *     one worker, since the heap is shared) the heap it occupies;
+ *   prefix-steps.csv: the time of each step (files parsed, battlelands,
+ *     derived tables) of each load.
+ *
+ * The first load of a variant in a worker includes class loading and
+ * interpreted code, so with -r 3 or so one can see what the loading
+ * itself costs once the JVM is warm.
+ *
+ * Example:
+ *   java -cp Colossus.jar net.sf.colossus.appmain.VariantCheck -j 4 -r 3
+ *
+ * The exit code is 1 if any variant failed to load.
+ */
+public final class VariantCheck
+{
+    private static final Logger LOGGER = Logger.getLogger(VariantCheck.class
+        .getName());
+
+    private static final String LOAD_CLASS = "net.sf.colossus.appmain.VariantCheckLoad";
+
+    private static final String[] VARIANTS_HEADER = { "variant", "status",
+        "warnings", "creatures", "terrains", "hexes", "firstLoadMs",
+        "fastestLoadMs", "derivedMs", "allocatedKB", "heapKB" };
+
+    private static final String[] STEPS_HEADER = { "variant", "run", "step",
+        "file", "ms" };
+
+    private final List<String> variants;
+    private final int workers;
+    private final int runs;
+
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<String>();
+
+    private final Map<String, String[]> summaries = new TreeMap<String, String[]>();
+
+    private final Map<String, List<String[]>> steps = new TreeMap<String, List<String[]>>();
+
+    /**
+     * Warnings logged by the current thread, for the threads loading
+     * variants (logging happens synchronously in the logging thread).
+     */
+    private final ThreadLocal<AtomicInteger> warnings = new ThreadLocal<AtomicInteger>();
+
+    VariantCheck(List<String> variants, int workers, int runs)
+    {
+        this.variants = variants;
+        this.workers = Math.max(1, Math.min(workers, variants.size()));
+        this.runs = Math.max(1, runs);
+    }
+
+    /**
+     * Load all variants and wait until that is completed.
+     */
+    void runAll()
+    {
+        Handler warningCounter = new Handler()
+        {
+            @Override
+            public void publish(LogRecord record)
+            {
+                if (record.getLevel().intValue() >= Level.WARNING.intValue())
+                {
+                    AtomicInteger count = warnings.get();
+                    if (count != null)
+                    {
+                        count.incrementAndGet();
+                    }
+                }
+            }
+
+            @Override
+            public void flush()
+            {
+                // nothing to flush
+            }
+
+            @Override
+            public void close()
+            {
+                // nothing to close
+            }
+        };
+        Logger.getLogger("").addHandler(warningCounter);
+
+        pending.addAll(variants);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++)
+        {
+            pool.execute(new Runnable()
+            {
+                public void run()
+                {
+                    runWorker();
+                }
+            });
+        }
+        pool.shutdown();
+        try
+        {
+            while (!pool.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                LOGGER.info("VariantCheck: " + getCompletedCount() + " of "
+                    + variants.size() + " variants loaded.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            LOGGER.log(Level.WARNING, "Waiting for variants interrupted", e);
+        }
+        Logger.getLogger("").removeHandler(warningCounter);
+    }
+
+    private synchronized int getCompletedCount()
+    {
+        return summaries.size();
+    }
+
+    private synchronized void storeResult(String variant, String[] summary,
+        List<String[]> variantSteps)
+    {
+        summaries.put(variant, summary);
+        steps.put(variant, variantSteps);
+    }
+
+    private synchronized boolean allLoaded()
+    {
+        for (String[] summary : summaries.values())
+        {
+            if (!"ok".equals(summary[0]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void runWorker()
+    {
+        AtomicInteger warningCount = new AtomicInteger();
+        warnings.set(warningCount);
+
+        String variant;
+        while ((variant = pending.poll()) != null)
+        {
+            LOGGER.info("Loading variant " + variant);
+            warningCount.set(0);
+            long allocatedBefore = getAllocatedBytes();
+            long heapBefore = workers == 1 ? getUsedHeap() : 0;
+
+            // A fresh class loader for each variant, so that nothing is
+            // left from the previous one
+            ClassLoader loader = Tournament.createIsolatedClassLoader();
+            List<String[]> rows;
+            try
+            {
+                Method loadMethod = loader.loadClass(LOAD_CLASS).getMethod(
+                    "load", String.class, int.class);
+                @SuppressWarnings("unchecked")
+                List<String[]> loaded = (List<String[]>)loadMethod.invoke(
+                    null, variant, Integer.valueOf(runs));
+                rows = loaded;
+            }
+            catch (Exception e)
+            {
+                LOGGER.log(Level.SEVERE, "Loading variant " + variant
+                    + " failed", e);
+                rows = new ArrayList<String[]>();
+                rows.add(new String[] { "Exception: " + e, "0", "0", "0" });
+            }
+
+            long allocated = getAllocatedBytes() - allocatedBefore;
+            String heap = "";
+            if (workers == 1)
+            {
+                heap = String.valueOf((getUsedHeap() - heapBefore) / 1024);
+            }
+            // keep the loader, and with it the variant, alive until here
+            LOGGER.finest("Measured " + loader);
+
+            storeResult(variant, summarize(rows, warningCount.get(),
+                allocated, heap), rows.subList(1, rows.size()));
+        }
+    }
+
+    /** The line for the variants file from what VariantCheckLoad gave */
+    private static String[] summarize(List<String[]> rows, int warningCount,
+        long allocated, String heap)
+    {
+        String[] status = rows.get(0);
+        double firstLoad = -1;
+        double fastestLoad = -1;
+        double derived = 0;
+        for (String[] row : rows.subList(1, rows.size()))
+        {
+            double ms = Double.parseDouble(row[3]);
+            if ("load".equals(row[1]))
+            {
+                if (firstLoad < 0)
+                {
+                    firstLoad = ms;
+                }
+                if (fastestLoad < 0 || ms < fastestLoad)
+                {
+                    fastestLoad = ms;
+                }
+            }
+            else if ("derived".equals(row[1]) && "1".equals(row[0]))
+            {
+                derived += ms;
+            }
+        }
+        return new String[] { status[0], String.valueOf(warningCount),
+            status[1], status[2], status[3], format(firstLoad),
+            format(fastestLoad), format(derived),
+            allocated < 0 ? "" : String.valueOf(allocated / 1024), heap };
+    }
+
+    private static String format(double ms)
+    {
+        return ms < 0 ? "" : String.format("%.1f", Double.valueOf(ms));
+    }
+
+    /**
+     * The bytes allocated by the current thread so far, if the JVM can
+     * tell, otherwise a negative number.
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean)threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return Long.MIN_VALUE / 2;
+    }
+
+    private static long getUsedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Write the results to prefix-variants.csv and prefix-steps.csv.
+     */
+    synchronized void writeSummary(String prefix) throws IOException
+    {
+        PrintWriter variantsOut = new PrintWriter(new FileWriter(prefix
+            + "-variants.csv"));
+        PrintWriter stepsOut = new PrintWriter(new FileWriter(prefix
+            + "-steps.csv"));
+        try
+        {
+            Tournament.writeCsvLine(variantsOut, null, VARIANTS_HEADER);
+            Tournament.writeCsvLine(stepsOut, null, STEPS_HEADER);
+            for (Map.Entry<String, String[]> entry : summaries.entrySet())
+            {
+                String[] summary = entry.getValue();
+                Tournament.writeCsvLine(variantsOut, entry.getKey(), summary);
+                LOGGER.info("Variant " + entry.getKey() + ": " + summary[0]
+                    + ", " + summary[1] + " warnings, first load "
+                    + summary[5] + " ms, fastest " + summary[6] + " ms");
+                Iterator<String[]> it = steps.get(entry.getKey()).iterator();
+                while (it.hasNext())
+                {
+                    Tournament.writeCsvLine(stepsOut, entry.getKey(),
+                        it.next());
+                }
+            }
+        }
+        finally
+        {
+            variantsOut.close();
+            stepsOut.close();
+        }
+    }
+
+    private static void usage(Opts opts)
+    {
+        System.out.println("Usage: java -cp Colossus.jar "
+            + VariantCheck.class.getName() + " [options]");
+        for (Opt opt : opts.getOptions())
+        {
+            System.out.println(opt.toString());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        Opts opts = new Opts();
+        opts.addOption('h', "help", false, "Show options help");
+        opts.addOption('v', "variants", true,
+            "Comma separated variants (default: all bundled variants)");
+        opts.addOption('j', "workers", true,
+            "Variants to load in parallel (default: number of processors)");
+        opts.addOption('r', "runs", true,
+            "How often to load each variant (default: 1)");
+        opts.addOption('o', "output", true,
+            "Prefix for the result files (default: variantcheck)");
+
+        CmdLine cl = opts.parse(args);
+        if (cl.optIsSet('h'))
+        {
+            usage(opts);
+            return;
+        }
+
+        List<String> variants = cl.optIsSet('v') ? Arrays.asList(cl
+            .getOptValue('v').split(",")) : Constants.getVariantList();
+        int workers = cl.optIsSet('j') ? Integer.parseInt(cl
+            .getOptValue('j')) : Runtime.getRuntime().availableProcessors();
+        int runs = cl.optIsSet('r') ? Integer.parseInt(cl.getOptValue('r'))
+            : 1;
+        String prefix = cl.optIsSet('o') ? cl.getOptValue('o')
+            : "variantcheck";
+
+        VariantCheck check = new VariantCheck(variants, workers, runs);
+        long start = System.currentTimeMillis();
+        check.runAll();
+        LOGGER.info("VariantCheck: " + variants.size() + " variants took "
+            + (System.currentTimeMillis() - start) + " ms.");
+
+        try
+        {
+            check.writeSummary(prefix);
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.SEVERE, "Writing variant results failed", e);
+        }
+        System.exit(check.allLoaded() ? 0 : 1);
+    }
+}
@@ -0,0 +1,116 @@
+package net.sf.colossus.appmain;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.util.LoadProfile;
+import net.sf.colossus.util.StaticResourceLoader;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.MasterBoardTerrain;
+import net.sf.colossus.variant.Variant;
+import net.sf.colossus.xmlparser.TerrainRecruitLoader;
+
+
+/**
+ * Loading of one variant with a profile of the single steps, inside the
+ * VariantCheck tool.
+ *
+ * Like the TournamentGame, each VariantCheck worker loads this class
+ * through its own class loader (VariantSupport and the loaders keep their
+ * data in static fields) and calls {@link #load(String, int)}
+ * reflectively, so the result is passed back only as JDK types.
+ */
+public final class VariantCheckLoad
+{
+    private VariantCheckLoad()
+    {
+        // only static methods
+    }
+
+    /**
+     * Load a variant freshly the given number of times, each time also
+     * building the tables which are otherwise built on first use during
+     * the game.
+     *
+     * @param variantName The variant to load
+     * @param runs How often to load it
+     * @return First { status, creature types, terrains, master board
+     *         hexes }, where status is "ok" or what went wrong, then one
+     *         { run, step, file, milliseconds } for each step of each run
+     */
+    public static List<String[]> load(String variantName, int runs)
+    {
+        List<String[]> rows = new ArrayList<String[]>();
+        String[] summary = new String[] { "ok", "0", "0", "0" };
+        rows.add(summary);
+        for (int run = 1; run <= runs; run++)
+        {
+            VariantSupport.unloadVariant();
+            LoadProfile.start();
+            long begin = LoadProfile.begin();
+            Variant variant = null;
+            try
+            {
+                variant = VariantSupport.loadVariantByName(variantName, true);
+                LoadProfile.end("load", "", begin);
+                if (variant == null || !variantName.equals(variant.getName()))
+                {
+                    summary[0] = "Loading failed";
+                }
+                else
+                {
+                    buildDerivedTables(variant);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                summary[0] = "Loading failed: " + e;
+            }
+            for (String[] step : LoadProfile.stop())
+            {
+                rows.add(new String[] { String.valueOf(run), step[0],
+                    step[1], step[2] });
+            }
+            if (!"ok".equals(summary[0]))
+            {
+                break;
+            }
+            summary[1] = String.valueOf(variant.getCreatureTypeCount());
+            summary[2] = String.valueOf(variant.getTerrains().size());
+            summary[3] = String.valueOf(variant.getMasterBoard()
+                .getAllHexes().size());
+        }
+        StaticResourceLoader.resetDataServer();
+        return rows;
+    }
+
+    /**
+     * Build what is otherwise built during the first turns of a game, and
+     * by that also check that the recruit data is consistent.
+     */
+    private static void buildDerivedTables(Variant variant)
+    {
+        long begin = LoadProfile.begin();
+        for (MasterBoardTerrain terrain : variant.getTerrains())
+        {
+            for (CreatureType recruit : TerrainRecruitLoader
+                .getPossibleRecruits(terrain, null))
+            {
+                for (CreatureType recruiter : TerrainRecruitLoader
+                    .getPossibleRecruiters(terrain, null))
+                {
+                    TerrainRecruitLoader.numberOfRecruiterNeeded(recruiter,
+                        recruit, terrain, null);
+                }
+            }
+        }
+        LoadProfile.end("derived", "recruit tables", begin);
+
+        begin = LoadProfile.begin();
+        TerrainRecruitLoader.getRecruitGraph().getMaximumUsefulNumber(
+            variant.getCreatureByIndex(0).getName());
+        LoadProfile.end("derived", "recruit graph closure", begin);
+    }
+}
@@ -1,12 +1,15 @@
 package net.sf.colossus.client;
 
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import net.sf.colossus.common.IOptions;
 import net.sf.colossus.common.Options;
 import net.sf.colossus.game.BattleCritter;
+import net.sf.colossus.game.BattleReachability;
 import net.sf.colossus.game.Game;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.CreatureType;
@@ -35,6 +38,8 @@ final class BattleMovement
     final boolean cumulativeSlow;
     final boolean oneHexAllowed;
 
+    private final Map<MasterBoardTerrain, BattleReachability> reachabilities = new HashMap<MasterBoardTerrain, BattleReachability>();
+
     BattleMovement(Game game, IOptions options)
     {
         this.game = game;
@@ -43,73 +48,52 @@ final class BattleMovement
         oneHexAllowed = options.getOption(Options.oneHexAllowed);
     }
 
-    /** Recursively find moves from this hex.  Return a set of all
-     * legal destinations.  Do not double back.  */
-    private Set<BattleHex> findMoves(BattleHex hex, CreatureType creature,
-        boolean flies, int movesLeft, int cameFrom, boolean first,
-        boolean ignoreAllies)
+    /** The reachability engine for the given battle land, created once
+     *  per land and game.
+     */
+    private BattleReachability getReachability(MasterBoardTerrain terrain)
     {
-        Set<BattleHex> set = new HashSet<BattleHex>();
-        for (int i = 0; i < 6; i++)
+        BattleReachability reachability = reachabilities.get(terrain);
+        if (reachability == null)
+        {
+            reachability = new BattleReachability(terrain);
+            reachabilities.put(terrain, reachability);
+        }
+        return reachability;
+    }
+
+    /** The hexes a moving critter can not enter.  If ignoreAllies is true,
+     *  pretend that allied creatures that can move out of the way are not
+     *  there. */
+    private long findOccupiedHexes(boolean ignoreAllies)
+    {
+        long occupied = 0;
+        BattleClientSide bcs = (BattleClientSide)game.getBattle();
+        if (ignoreAllies)
         {
-            // Do not double back.
-            if (i != cameFrom)
+            for (BattleCritter enemyCritter : bcs.getInactiveBattleUnits())
+            {
+                occupied = BattleReachability.with(occupied,
+                    enemyCritter.getCurrentHex());
+            }
+            for (BattleCritter alliedCritter : bcs.getActiveBattleUnits())
             {
-                BattleHex neighbor = hex.getNeighbor(i);
-                if (neighbor != null)
+                if (bcs.critterHasEnemyContact(alliedCritter))
                 {
-                    int reverseDir = (i + 3) % 6;
-                    int entryCost;
-                    boolean occupied;
-                    if (ignoreAllies)
-                    {
-                        BattleClientSide bss = (BattleClientSide)game
-                            .getBattle();
-                        occupied = bss.isOccupiedByEnemyOrImmobileAlly(neighbor);
-                    }
-                    else
-                    {
-                        occupied = game.getBattle().isOccupied(neighbor);
-                    }
-
-                    if (!occupied)
-                    {
-                        entryCost = neighbor.getEntryCost(creature,
-                            reverseDir, cumulativeSlow);
-                    }
-                    else
-                    {
-                        entryCost = BattleHex.IMPASSIBLE_COST;
-                    }
-
-                    if ((entryCost != BattleHex.IMPASSIBLE_COST)
-                        && ((entryCost <= movesLeft) || (first && oneHexAllowed)))
-                    {
-                        // Mark that hex as a legal move.
-                        set.add(neighbor);
-
-                        // If there are movement points remaining, continue
-                        // checking moves from there.  Fliers skip this
-                        // because flying is more efficient.
-                        if (!flies && movesLeft > entryCost)
-                        {
-                            set.addAll(findMoves(neighbor, creature, flies,
-                                movesLeft - entryCost, reverseDir, false, ignoreAllies));
-                        }
-                    }
-
-                    // Fliers can fly over any hex for 1 movement point,
-                    // but some Hex cannot be flown over by some creatures.
-                    if (flies && movesLeft > 1
-                        && neighbor.canBeFlownOverBy(creature))
-                    {
-                        set.addAll(findMoves(neighbor, creature, flies,
-                            movesLeft - 1, reverseDir, false, ignoreAllies));
-                    }
+                    occupied = BattleReachability.with(occupied,
+                        alliedCritter.getCurrentHex());
                 }
             }
         }
-        return set;
+        else
+        {
+            for (BattleCritter critter : bcs.getAllCritters())
+            {
+                occupied = BattleReachability.with(occupied,
+                    critter.getCurrentHex());
+            }
+        }
+        return occupied;
     }
 
     /** This method is called by the defender on turn 1 in a
@@ -152,9 +136,12 @@ final class BattleMovement
             else
             {
                 CreatureType type = critter.getType();
-                BattleHex hex = critter.getCurrentHex();
-                set = findMoves(hex, type, type.isFlier(), type.getSkill()
-                    - critter.getSlowed(), -1, true, ignoreAllies);
+                BattleReachability reachability = getReachability(terrain);
+                long moves = reachability.findMoves(critter.getCurrentHex(),
+                    type, type.getSkill() - critter.getSlowed(),
+                    findOccupiedHexes(ignoreAllies), cumulativeSlow,
+                    oneHexAllowed);
+                set = reachability.toHexSet(moves);
             }
         }
         return set;
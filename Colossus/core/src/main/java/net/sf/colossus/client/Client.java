@@ -1,6 +1,7 @@
 package net.sf.colossus.client;
 
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -13,6 +14,7 @@ import java.util.logging.Logger;
 
 import net.sf.colossus.ai.AI;
 import net.sf.colossus.ai.SimpleAI;
+import net.sf.colossus.ai.TimedAI;
 import net.sf.colossus.ai.helper.CritterMove;
 import net.sf.colossus.common.Constants;
 import net.sf.colossus.common.Constants.AiDevPrinting;
@@ -46,6 +48,7 @@ import net.sf.colossus.util.Glob;
 import net.sf.colossus.util.InstanceTracker;
 import net.sf.colossus.util.ResourceLoader;
 import net.sf.colossus.util.Split;
+import net.sf.colossus.util.StaticResourceLoader;
 import net.sf.colossus.util.ViableEntityManager;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.CreatureType;
@@ -97,9 +100,8 @@ public final class Client implements IClient, IOracle, IVariant,
      *  acts for us as server.
      *
      *  Right now this is always a SocketClientThread as deputy (relay)
-     *  which forwards everything that we do/tell, to the Server.
-     *  Perhaps one day this could either be a SocketConnection or e.g.
-     *  a Queue type of connection for local Clients...
+     *  which forwards everything that we do/tell, to the Server - either
+     *  over a socket, or for local AI clients via a LoopbackChannel.
      */
     private IServer server;
 
@@ -296,8 +298,19 @@ public final class Client implements IClient, IOracle, IVariant,
             remote = false;
         }
 
-        IServerConnection conn = SocketClientThread.createConnection(host,
-            port, playerName, remote, spectator);
+        IServerConnection conn;
+        if (theServer != null && playerType.endsWith(Constants.ai)
+            && !spectator && !Options.isLoopbackDisabled())
+        {
+            // AI in same JVM as server: no need to go through a socket
+            conn = SocketClientThread.createLoopbackConnection(theServer,
+                playerName, spectator);
+        }
+        else
+        {
+            conn = SocketClientThread.createConnection(host, port,
+                playerName, remote, spectator);
+        }
 
         // TODO For now, loading the variant is needed only if remote client.
         // ( => theServer is null; theServer != null is the server object in
@@ -320,7 +333,12 @@ public final class Client implements IClient, IOracle, IVariant,
                 + " - let's make sure we really get text files from server.");
 
             VariantSupport.unloadVariant();
-            variant = VariantSupport.loadVariantByName(variantName, true);
+            // Get all files the server has loaded in one go, the ones
+            // unchanged since an earlier game even from the local cache
+            StaticResourceLoader.prefetchFromDataServer(new File(
+                Constants.FILE_CACHE_DIR_NAME));
+            // not serverSide: that would purge the prefetched files again
+            variant = VariantSupport.loadVariantByName(variantName, false);
         }
         else
         {
@@ -553,7 +571,7 @@ public final class Client implements IClient, IOracle, IVariant,
             createdAI = new SimpleAI(this);
         }
 
-        return createdAI;
+        return new TimedAI(createdAI);
     }
 
     public void appendToConnectionLog(String s)
@@ -2058,6 +2076,17 @@ public final class Client implements IClient, IOracle, IVariant,
         }
     }
 
+    /**
+     * When loading a game, instead of replaying the whole history the
+     * server may send the resulting split prediction for each player.
+     */
+    public void restoreSplitPrediction(Player owner, String summary)
+    {
+        LOGGER.log(Level.FINEST, this.owningPlayer.getName()
+            + " restoreSplitPrediction(" + owner + ", " + summary + ")");
+        ((PlayerClientSide)owner).restorePredictSplits(summary);
+    }
+
     public void tellGameOver(String message, boolean disposeFollows, boolean suspended)
     {
         LOGGER.info("Client " + getOwningPlayer()
@@ -3858,29 +3887,14 @@ public final class Client implements IClient, IOracle, IVariant,
             return recruits;
         }
 
-        MasterBoardTerrain terrain = hex.getTerrain();
-
-        List<CreatureType> tempRecruits = TerrainRecruitLoader
-            .getPossibleRecruits(terrain, hex);
-        List<CreatureType> recruiters = TerrainRecruitLoader
-            .getPossibleRecruiters(terrain, hex);
-
-        for (CreatureType creature : tempRecruits)
+        for (CreatureType creature : TerrainRecruitLoader.getRecruitsWith(
+            hex.getTerrain(), hex, legion.getCreatureTypes()))
         {
             if (getTurnNumber() != 1
                 || !options.getOption(Options.noFirstTurnWarlockRecruit)
                 || !creature.getName().equals("Warlock"))
             {
-                for (CreatureType lesser : recruiters)
-                {
-                    if ((TerrainRecruitLoader.numberOfRecruiterNeeded(lesser,
-                        creature, terrain, hex) <= ((LegionClientSide)legion)
-                        .numCreature(lesser))
-                        && (recruits.indexOf(creature) == -1))
-                    {
-                        recruits.add(creature);
-                    }
-                }
+                recruits.add(creature);
             }
         }
 
@@ -4236,6 +4250,15 @@ public final class Client implements IClient, IOracle, IVariant,
         return options;
     }
 
+    /**
+     * @return The AI of this client (for AI players the one that plays,
+     *         for human players the one used for autoplay)
+     */
+    public AI getAI()
+    {
+        return ai;
+    }
+
     public String getClientName()
     {
         if (getOwningPlayer() != null)
@@ -2,7 +2,6 @@ package net.sf.colossus.client;
 
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,8 +16,10 @@ import net.sf.colossus.game.EntrySide;
 import net.sf.colossus.game.Legion;
 import net.sf.colossus.game.Player;
 import net.sf.colossus.game.PlayerColor;
+import net.sf.colossus.util.EventMetrics;
 import net.sf.colossus.util.Glob;
 import net.sf.colossus.util.Split;
+import net.sf.colossus.util.TraceRecorder;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.CreatureType;
 import net.sf.colossus.variant.MasterHex;
@@ -55,6 +56,9 @@ public class ClientThread extends Thread implements EventExecutor
 
     private final LinkedBlockingQueue<ServerEvent> queue;
 
+    /** Where the length of the queue is recorded, once the player is known */
+    private volatile EventMetrics.ClientStats stats;
+
     private boolean done = false;
 
     private final boolean _DEBUG_MSGS = false;
@@ -88,6 +92,21 @@ public class ClientThread extends Thread implements EventExecutor
     public void enqueue(String method, List<String> args)
     {
         queue.offer(new ServerEvent(ClientThread.getNow(), method, args));
+        recordQueueLength();
+    }
+
+    private void recordQueueLength()
+    {
+        if (stats == null)
+        {
+            if (client == null || client.getOwningPlayer() == null)
+            {
+                return;
+            }
+            stats = EventMetrics.getClientStats(client.getOwningPlayer()
+                .getName());
+        }
+        stats.setEventQueueLength(queue.size());
     }
 
     // Client checks whether still something to do from "here" before
@@ -231,15 +250,21 @@ public class ClientThread extends Thread implements EventExecutor
             try
             {
                 event = queue.take();
+                recordQueueLength();
                 if (event == END_EVENT)
                 {
                     continue;
                 }
                 event.executionStarts(ClientThread.getNow());
                 retriggeredEventOngoing = event.isRetriggered;
+                long startNanos = System.nanoTime();
                 callMethod(event);
                 retriggeredEventOngoing = false;
                 event.executionCompleted(ClientThread.getNow());
+                long nanos = System.nanoTime() - startNanos;
+                event.recordMetrics(nanos);
+                TraceRecorder.record(TraceRecorder.CLIENT_EXECUTED,
+                    event.getMethod(), nanos);
             }
             catch (InterruptedException e)
             {
@@ -316,8 +341,11 @@ public class ClientThread extends Thread implements EventExecutor
         }
         else
         {
-            LOGGER.finest("Client (CT) '" + getNameMaybe()
-                + "' processing message: " + method);
+            if (LOGGER.isLoggable(Level.FINEST))
+            {
+                LOGGER.finest("Client (CT) '" + getNameMaybe()
+                    + "' processing message: " + method);
+            }
         }
 
         showDebugOutputMaybe(method, args);
@@ -330,8 +358,11 @@ public class ClientThread extends Thread implements EventExecutor
             {
                 reason = args.remove(0);
             }
-            LOGGER.finest("tellMovementRoll, roll=" + roll + ", reason='"
-                + reason + ".");
+            if (LOGGER.isLoggable(Level.FINEST))
+            {
+                LOGGER.finest("tellMovementRoll, roll=" + roll + ", reason='"
+                    + reason + ".");
+            }
             client.tellMovementRoll(roll, reason);
 
         }
@@ -533,6 +564,13 @@ public class ClientThread extends Thread implements EventExecutor
                 slayerName.equals("null") ? null : (client.getGameClientSide()
                     .getPlayerByName(slayerName)));
         }
+        else if (method.equals(Constants.restoreSplitPrediction))
+        {
+            String playerName = args.remove(0);
+            String summary = args.isEmpty() ? "" : args.remove(0);
+            client.restoreSplitPrediction(client.getPlayerByName(playerName),
+                summary);
+        }
         else if (method.equals(Constants.askConcede))
         {
             rememberEvent(event);
@@ -950,8 +988,11 @@ public class ClientThread extends Thread implements EventExecutor
             LOGGER.log(Level.SEVERE, "Bogus packet (Client, method: '"
                 + method + "', args: " + args + ")");
         }
-        LOGGER.finest("Client '" + getNameMaybe()
-            + "' finished method processing");
+        if (LOGGER.isLoggable(Level.FINEST))
+        {
+            LOGGER.finest("Client '" + getNameMaybe()
+                + "' finished method processing");
+        }
     }
 
     private void showDebugOutputMaybe(String method, List<String> args)
@@ -1031,16 +1072,23 @@ public class ClientThread extends Thread implements EventExecutor
             return;
         }
 
-        String argsList = Glob.glob("::", event.getArgs());
+        boolean trace = LOGGER.isLoggable(Level.FINEST);
         if (event.getIsRetriggered())
         {
-            LOGGER.finest("NOT Storing retriggered event "
-                + event.getMethod() + "'" + argsList + "'");
+            if (trace)
+            {
+                LOGGER.finest("NOT Storing retriggered event "
+                    + event.getMethod() + "'"
+                    + Glob.glob("::", event.getArgs()) + "'");
+            }
         }
         else
         {
-            LOGGER.finest("\n\nStoring event " + event.getMethod() + "'"
-                + argsList + "'");
+            if (trace)
+            {
+                LOGGER.finest("\n\nStoring event " + event.getMethod() + "'"
+                    + Glob.glob("::", event.getArgs()) + "'");
+            }
             lastInactivityRelevantEvent = event;
         }
 
@@ -1117,7 +1165,7 @@ public class ClientThread extends Thread implements EventExecutor
 
     public static long getNow()
     {
-        return new Date().getTime();
+        return System.currentTimeMillis();
     }
 
     public static class ServerEvent
@@ -1188,6 +1236,17 @@ public class ClientThread extends Thread implements EventExecutor
             return this.executionCompleted;
         }
 
+        /**
+         * Record execution time and time spent in the queue, see
+         * EventMetrics.
+         */
+        void recordMetrics(long executionNanos)
+        {
+            EventMetrics.CLIENT_COMMANDS.record(method, executionNanos);
+            EventMetrics.CLIENT_QUEUE_WAIT
+                .record((executionStarted - enqueued) * 1000000L);
+        }
+
         public void logProcessing()
         {
             long enqueuing = enqueued - received;
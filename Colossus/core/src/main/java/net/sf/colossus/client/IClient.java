@@ -90,6 +90,8 @@ public interface IClient
 
     public void tellPlayerElim(Player player, Player slayer);
 
+    public void restoreSplitPrediction(Player owner, String summary);
+
     public void askConcede(Legion ally, Legion enemy);
 
     public void askFlee(Legion ally, Legion enemy);
@@ -209,6 +209,7 @@ public final class LegionClientSide extends Legion implements IOracleLegion
     {
         getNode().split(childHeight, child, turn);
         myNode = myNode.getChild1();
+        getPlayer().getPredictSplits().pruneResolvedSplits(turn);
     }
 
     void merge(Legion splitoff)
@@ -241,6 +242,44 @@ public final class LegionClientSide extends Legion implements IOracleLegion
         return sum;
     }
 
+    /**
+     * Return the probabilities of what this legion contains, for those who
+     * want more than the single guess of getCreatureTypes().
+     */
+    public PredictedContents getPredictedContents()
+    {
+        PredictSplitNode node = getNode();
+        if (node == null)
+        {
+            return new PredictedContents(new ArrayList<CreatureType>());
+        }
+        return node.getPredictedContents();
+    }
+
+    /** Return the expected point value of this legion, according to the
+     *  probabilities of its contents.
+     */
+    public double getExpectedPointValue()
+    {
+        PredictedContents contents = getPredictedContents();
+        double sum = 0;
+        for (CreatureType type : contents.getCreatureTypes())
+        {
+            int value;
+            if (type.isTitan())
+            {
+                // Titan skill is changed by variants.
+                value = getPlayer().getTitanPower() * type.getSkill();
+            }
+            else
+            {
+                value = type.getPointValue();
+            }
+            sum += value * contents.getExpectedCount(type);
+        }
+        return sum;
+    }
+
     /** Return the total point value of those creatures of this legion
      *  which are certain.
      */
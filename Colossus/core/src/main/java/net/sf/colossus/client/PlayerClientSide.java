@@ -130,6 +130,30 @@ public final class PlayerClientSide extends Player
             creatures, getGame().getVariant());
     }
 
+    /**
+     * Replace the split prediction by one the server computed (instead of
+     * replaying the whole history), and create the legions it contains;
+     * their location will be told separately.
+     *
+     * @param summary Output of SplitPredictionView.getSummary()
+     */
+    void restorePredictSplits(String summary)
+    {
+        removeAllLegions();
+        if (summary.length() == 0)
+        {
+            this.predictSplits = null;
+            return;
+        }
+        this.predictSplits = PredictSplits.fromSummary(summary, getGame()
+            .getVariant());
+        for (PredictSplitNode leaf : predictSplits.getAllLeaves())
+        {
+            addLegion(new LegionClientSide(this, leaf.getMarkerId(),
+                getStartingTower()));
+        }
+    }
+
     @Override
     public LegionClientSide getLegionByMarkerId(String markerId)
     {
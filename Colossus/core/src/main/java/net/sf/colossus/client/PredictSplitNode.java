@@ -5,13 +5,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.colossus.game.Legion;
 import net.sf.colossus.util.Combos;
+import net.sf.colossus.util.Probs;
 import net.sf.colossus.variant.CreatureType;
 import net.sf.colossus.variant.Variant;
 
@@ -34,16 +34,40 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
     // only if atSplit
     private final CreatureInfoList removed = new CreatureInfoList();
 
-    private final PredictSplitNode parent;
+    private PredictSplitNode parent;
     // Size of child2 at the time this node was split.
     private int childSize2;
     private PredictSplitNode child1; // child that keeps the marker
     private PredictSplitNode child2; // child with the new marker
+    // Split, but the children were detached, see detachChildren().
+    private boolean childrenDetached;
     private final Variant variant;
     private final CreatureType titan;
     private final CreatureType angel;
     private static CreatureInfoComparator cic = new CreatureInfoComparator();
 
+    /**
+     * Counts the changes of any node of the tree; shared by all nodes
+     * created below the same root, since the predicted contents of a node
+     * depend on its parent and sibling as well.
+     */
+    private final AtomicInteger treeVersion;
+
+    /** What getPredictedContents() computed, and for which treeVersion */
+    private volatile CachedPrediction cachedPrediction;
+
+    private static final class CachedPrediction
+    {
+        final int version;
+        final PredictedContents contents;
+
+        CachedPrediction(int version, PredictedContents contents)
+        {
+            this.version = version;
+            this.contents = contents;
+        }
+    }
+
     PredictSplitNode(String markerId, int turnCreated, CreatureInfoList cil,
         PredictSplitNode parent, Variant variant)
     {
@@ -54,11 +78,20 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
         this.variant = variant;
         this.titan = variant.getCreatureByName("Titan");
         this.angel = variant.getCreatureByName("Angel");
+        this.treeVersion = parent == null ? new AtomicInteger()
+            : parent.treeVersion;
         clearChildren();
     }
 
+    /** Invalidates the predicted contents of all nodes of the tree */
+    private void changed()
+    {
+        treeVersion.incrementAndGet();
+    }
+
     private void clearChildren()
     {
+        changed();
         childSize2 = 0;
         child1 = null;
         child2 = null;
@@ -94,6 +127,39 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
         return turnCreated;
     }
 
+    /**
+     * Forget the parent; used by PredictSplits when the split which
+     * created this node is fully resolved, so that this node becomes the
+     * root of a tree of its own.
+     */
+    void detachFromParent()
+    {
+        changed();
+        parent = null;
+    }
+
+    /**
+     * Make both children roots of trees of their own; used by
+     * PredictSplits when the split of this node is fully resolved. This
+     * node stays in the tree of its parent, whose split still needs its
+     * contents, but it is no legion any more.
+     */
+    void detachChildren()
+    {
+        changed();
+        child1.detachFromParent();
+        child2.detachFromParent();
+        child1 = null;
+        child2 = null;
+        childrenDetached = true;
+    }
+
+    /** True if this node has split, but its children were detached. */
+    boolean hasDetachedChildren()
+    {
+        return childrenDetached;
+    }
+
     @Override
     public String toString()
     {
@@ -138,6 +204,7 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
 
     void setCreatures(CreatureInfoList creatures)
     {
+        changed();
         this.creatures = creatures;
     }
 
@@ -322,6 +389,7 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
 
     void revealCreatures(List<CreatureType> cnl)
     {
+        changed();
         if (cnl == null)
         {
             // this means we are updating the parent, and the info gained is
@@ -536,31 +604,124 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
             unknowns.remove(cre);
         }
 
-        Combos<CreatureType> combos = new Combos<CreatureType>(unknowns,
+        // Identical creatures are interchangeable, so the distinct combos
+        // give each possible split exactly once
+        Combos<CreatureType> combos = Combos.distinct(unknowns,
             numUnknownsToSplit);
 
-        Set<List<CreatureType>> possibleSplitsSet = new HashSet<List<CreatureType>>();
-        for (Iterator<List<CreatureType>> it = combos.iterator(); it.hasNext();)
+        boolean initialSplit = (getHeight() == 8);
+        List<List<CreatureType>> possibleSplits = new ArrayList<List<CreatureType>>();
+        for (List<CreatureType> combo : combos)
         {
-            List<CreatureType> combo = it.next();
-            List<CreatureType> pos = new ArrayList<CreatureType>();
+            List<CreatureType> pos = new ArrayList<CreatureType>(
+                knownSplit.size() + combo.size());
             pos.addAll(knownSplit);
             pos.addAll(combo);
-            if (getHeight() != 8)
+            if (!initialSplit || isLegalInitialSplitoff(pos))
             {
-                possibleSplitsSet.add(pos);
+                possibleSplits.add(pos);
             }
-            else
+        }
+        return possibleSplits;
+    }
+
+    /**
+     * Return the probability distribution of the contents of this legion.
+     *
+     * The contents at split time are one of the possible splits of the
+     * parent (given everything revealed so far); each of those is weighted
+     * by the number of ways to pick its unknown creatures, so that e.g. a
+     * split taking one of three unknown Ogres counts three times. Then the
+     * creatures removed and added since the split are applied.
+     *
+     * The parent's contents are taken as predicted, i.e. uncertainty
+     * further up the tree does not spread into the probabilities.
+     *
+     * The result is kept until any node of the tree changes.
+     */
+    PredictedContents getPredictedContents()
+    {
+        int version = treeVersion.get();
+        CachedPrediction cached = cachedPrediction;
+        if (cached != null && cached.version == version)
+        {
+            return cached.contents;
+        }
+        PredictedContents contents = computePredictedContents();
+        cachedPrediction = new CachedPrediction(version, contents);
+        return contents;
+    }
+
+    private PredictedContents computePredictedContents()
+    {
+        List<CreatureType> current = creatures.getCreatureTypes();
+        if (allCertain() || parent == null || !parent.hasSplit()
+            || (parent.child1 != this && parent.child2 != this))
+        {
+            return new PredictedContents(current);
+        }
+
+        List<CreatureType> knownKeep = parent.child1
+            .getCertainAtSplitOrRemovedCreatures().getCreatureTypes();
+        List<CreatureType> knownSplit = parent.child2
+            .getCertainAtSplitOrRemovedCreatures().getCreatureTypes();
+        List<List<CreatureType>> possibleSplits = parent
+            .findAllPossibleSplits(parent.childSize2, knownKeep, knownSplit);
+
+        // findAllPossibleSplits has updated knownKeep and knownSplit
+        List<CreatureType> parentTypes = parent.creatures.getCreatureTypes();
+        List<CreatureType> unknowns = subtractLists(
+            subtractLists(parentTypes, knownKeep), knownSplit);
+        List<CreatureType> removedTypes = getRemovedCreatures()
+            .getCreatureTypes();
+        List<CreatureType> addedTypes = getAfterSplitCreatures()
+            .getCreatureTypes();
+
+        List<List<CreatureType>> possibleContents = new ArrayList<List<CreatureType>>();
+        double[] weights = new double[possibleSplits.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < weights.length; i++)
+        {
+            List<CreatureType> splitoffs = possibleSplits.get(i);
+            weights[i] = countWays(unknowns,
+                subtractLists(splitoffs, knownSplit));
+            totalWeight += weights[i];
+
+            List<CreatureType> contents = (this == parent.child2) ? new ArrayList<CreatureType>(
+                splitoffs) : subtractLists(parentTypes, splitoffs);
+            contents = subtractLists(contents, removedTypes);
+            contents.addAll(addedTypes);
+            possibleContents.add(contents);
+        }
+
+        if (totalWeight == 0)
+        {
+            return new PredictedContents(current);
+        }
+        return new PredictedContents(possibleContents, weights);
+    }
+
+    /** Number of ways to pick the creatures in chosen out of available */
+    private int countWays(List<CreatureType> available,
+        List<CreatureType> chosen)
+    {
+        int ways = 1;
+        List<CreatureType> done = new ArrayList<CreatureType>();
+        for (CreatureType type : chosen)
+        {
+            if (!done.contains(type))
             {
-                if (isLegalInitialSplitoff(pos))
+                done.add(type);
+                int numAvailable = count(available, type);
+                int numChosen = count(chosen, type);
+                if (numChosen > numAvailable)
                 {
-                    possibleSplitsSet.add(pos);
+                    return 0;
                 }
+                ways *= Probs.choose(numAvailable, numChosen);
             }
         }
-        List<List<CreatureType>> possibleSplits = new ArrayList<List<CreatureType>>(
-            possibleSplitsSet);
-        return possibleSplits;
+        return ways;
     }
 
     private static <T> boolean safeEquals(T obj1, T obj2)
@@ -682,13 +843,26 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
      * Perform the initial split of a stack, and create the children
      *
      * @param childSize
-     * @param otherMarkerId
+     * @param otherLegion
      * @param turn
      */
     void split(int childSize, Legion otherLegion, int turn)
+    {
+        split(childSize, otherLegion.getMarkerId(), turn);
+    }
+
+    /**
+     * Perform the initial split of a stack, and create the children
+     *
+     * @param childSize
+     * @param otherMarkerId
+     * @param turn
+     */
+    void split(int childSize, String otherMarkerId, int turn)
     {
         assert creatures.size() <= 8 : "> 8 creatures in legion";
         assert !hasSplit() : "use reSplit to recalculate old splits";
+        changed();
 
         List<CreatureType> knownKeep = new ArrayList<CreatureType>();
         List<CreatureType> knownSplit = new ArrayList<CreatureType>();
@@ -716,8 +890,8 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
         }
 
         child1 = new PredictSplitNode(markerId, turn, keepList, this, variant);
-        child2 = new PredictSplitNode(otherLegion.getMarkerId(), turn,
-            splitList, this, variant);
+        child2 = new PredictSplitNode(otherMarkerId, turn, splitList, this,
+            variant);
         childSize2 = child2.getHeight();
     }
 
@@ -777,6 +951,8 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
      */
     void merge(PredictSplitNode other)
     {
+        changed();
+        other.changed();
         if (this.parent == other.parent)
         {
             assert getMarkerId().equals(parent.getMarkerId())
@@ -856,11 +1032,13 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
         assert getHeight() < 7 || child1 == null : "Tried adding to 7-high legion";
         CreatureInfo ci = new CreatureInfo(type, true, false);
         creatures.add(ci);
+        changed();
     }
 
     void removeCreature(CreatureType type)
     {
         assert getHeight() > 0 : "Tried removing from 0-high legion";
+        changed();
 
         List<CreatureType> cnl = Collections.singletonList(type);
         revealCreatures(cnl);
@@ -893,6 +1071,171 @@ public class PredictSplitNode implements Comparable<PredictSplitNode>
         }
     }
 
+    /**
+     * A copy of this node and all its descendants, which can be changed
+     * independently of this one.
+     *
+     * @param parent The parent of the copy
+     */
+    PredictSplitNode copy(PredictSplitNode parent)
+    {
+        PredictSplitNode node = new PredictSplitNode(markerId, turnCreated,
+            creatures, parent, variant);
+        node.removed.addAll(removed.clone());
+        node.childSize2 = childSize2;
+        node.childrenDetached = childrenDetached;
+        if (child1 != null)
+        {
+            node.child1 = child1.copy(node);
+            node.child2 = child2.copy(node);
+        }
+        return node;
+    }
+
+    /**
+     * Append a compact textual form of this node and all its descendants,
+     * which can be read back with fromSummary().
+     *
+     * Format: markerId/turn/childSize2/creatures/removed, followed by
+     * (child1|child2) if this node has split, or by (-) if its children
+     * were detached. Creatures are separated by
+     * commas; a '?' is appended if not certain, a '*' if not there at the
+     * time of the split.
+     */
+    void appendSummary(StringBuilder sb)
+    {
+        sb.append(markerId);
+        sb.append('/');
+        sb.append(turnCreated);
+        sb.append('/');
+        sb.append(childSize2);
+        sb.append('/');
+        appendSummary(sb, creatures);
+        sb.append('/');
+        appendSummary(sb, removed);
+        if (child1 != null)
+        {
+            sb.append('(');
+            child1.appendSummary(sb);
+            sb.append('|');
+            child2.appendSummary(sb);
+            sb.append(')');
+        }
+        else if (childrenDetached)
+        {
+            sb.append("(-)");
+        }
+    }
+
+    private static void appendSummary(StringBuilder sb, CreatureInfoList cil)
+    {
+        for (int i = 0; i < cil.size(); i++)
+        {
+            CreatureInfo ci = cil.get(i);
+            if (i > 0)
+            {
+                sb.append(',');
+            }
+            sb.append(ci.getType().getName());
+            if (!ci.isCertain())
+            {
+                sb.append('?');
+            }
+            if (!ci.isAtSplit())
+            {
+                sb.append('*');
+            }
+        }
+    }
+
+    /**
+     * Read a node and its descendants as written by appendSummary(),
+     * starting at pos[0]; afterwards pos[0] points behind it.
+     *
+     * @throws IllegalArgumentException if the summary is malformed
+     */
+    static PredictSplitNode fromSummary(String summary, int[] pos,
+        PredictSplitNode parent, Variant variant)
+    {
+        int end = pos[0];
+        while (end < summary.length()
+            && "(|);".indexOf(summary.charAt(end)) == -1)
+        {
+            end++;
+        }
+        String text = summary.substring(pos[0], end);
+        String[] fields = text.split("/", -1);
+        if (fields.length != 5)
+        {
+            throw new IllegalArgumentException("Malformed split prediction "
+                + "node '" + text + "'");
+        }
+        PredictSplitNode node = new PredictSplitNode(fields[0], Integer
+            .parseInt(fields[1]), parseCreatureInfos(fields[3], variant),
+            parent, variant);
+        node.removed.addAll(parseCreatureInfos(fields[4], variant));
+
+        pos[0] = end;
+        if (summary.startsWith("(-)", end))
+        {
+            pos[0] += 3;
+            node.childrenDetached = true;
+            node.childSize2 = Integer.parseInt(fields[2]);
+        }
+        else if (end < summary.length() && summary.charAt(end) == '(')
+        {
+            pos[0]++;
+            node.child1 = fromSummary(summary, pos, node, variant);
+            expect(summary, pos, '|');
+            node.child2 = fromSummary(summary, pos, node, variant);
+            expect(summary, pos, ')');
+            node.childSize2 = Integer.parseInt(fields[2]);
+        }
+        return node;
+    }
+
+    private static void expect(String summary, int[] pos, char c)
+    {
+        if (pos[0] >= summary.length() || summary.charAt(pos[0]) != c)
+        {
+            throw new IllegalArgumentException("Expected '" + c
+                + "' at position " + pos[0] + " of split prediction '"
+                + summary + "'");
+        }
+        pos[0]++;
+    }
+
+    private static CreatureInfoList parseCreatureInfos(String text,
+        Variant variant)
+    {
+        CreatureInfoList cil = new CreatureInfoList();
+        if (text.length() == 0)
+        {
+            return cil;
+        }
+        for (String token : text.split(","))
+        {
+            boolean atSplit = !token.endsWith("*");
+            if (!atSplit)
+            {
+                token = token.substring(0, token.length() - 1);
+            }
+            boolean certain = !token.endsWith("?");
+            if (!certain)
+            {
+                token = token.substring(0, token.length() - 1);
+            }
+            CreatureType type = variant.getCreatureByName(token);
+            if (type == null)
+            {
+                throw new IllegalArgumentException("Unknown creature '"
+                    + token + "' in split prediction");
+            }
+            cil.add(new CreatureInfo(type, certain, atSplit));
+        }
+        return cil;
+    }
+
     // TODO Comparable not implemented properly since equals() not
     //      overridden
     public int compareTo(PredictSplitNode other)
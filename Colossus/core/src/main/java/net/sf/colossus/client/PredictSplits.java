@@ -26,7 +26,11 @@ public final class PredictSplits
     private static final Logger LOGGER = Logger.getLogger(PredictSplits.class
         .getName());
 
-    private final PredictSplitNode root; // All contents of root must be known.
+    /**
+     * Roots of the split trees; all contents of a root must be known.
+     * Initially only the starting legion, see pruneResolvedSplits().
+     */
+    private final List<PredictSplitNode> roots = new ArrayList<PredictSplitNode>();
     private final NodeTurnComparator nodeTurnComparator = new NodeTurnComparator();
 
     PredictSplits(String rootId, List<CreatureType> creatureTypes,
@@ -39,26 +43,109 @@ public final class PredictSplits
             CreatureInfo ci = new CreatureInfo(type, true, true);
             infoList.add(ci);
         }
-        root = new PredictSplitNode(rootId, 0, infoList, null, variant);
+        roots.add(new PredictSplitNode(rootId, 0, infoList, null, variant));
+    }
+
+    private PredictSplits()
+    {
+        // roots are filled by fromSummary()
+    }
+
+    /** A copy of all split trees of other */
+    PredictSplits(PredictSplits other)
+    {
+        for (PredictSplitNode root : other.roots)
+        {
+            roots.add(root.copy(null));
+        }
+    }
+
+    /**
+     * A compact textual form of all split trees, from which fromSummary()
+     * recreates them; the trees are separated by ';', for the format of
+     * one tree see PredictSplitNode.appendSummary().
+     */
+    String toSummary()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (PredictSplitNode root : roots)
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(';');
+            }
+            root.appendSummary(sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Recreate the split trees from the output of toSummary().
+     *
+     * @throws IllegalArgumentException if the summary is malformed
+     */
+    static PredictSplits fromSummary(String summary, Variant variant)
+    {
+        PredictSplits ps = new PredictSplits();
+        int[] pos = new int[] { 0 };
+        while (pos[0] < summary.length())
+        {
+            if (!ps.roots.isEmpty())
+            {
+                if (summary.charAt(pos[0]) != ';')
+                {
+                    throw new IllegalArgumentException("Expected ';' at "
+                        + "position " + pos[0] + " of split prediction '"
+                        + summary + "'");
+                }
+                pos[0]++;
+            }
+            ps.roots.add(PredictSplitNode.fromSummary(summary, pos, null,
+                variant));
+        }
+        return ps;
     }
 
     /** Return all non-empty childless nodes in subtree starting from node. */
     List<PredictSplitNode> getLeaves(PredictSplitNode node)
     {
         List<PredictSplitNode> leaves = new ArrayList<PredictSplitNode>();
+        collectLeaves(node, leaves);
+        pruneDuplicateLeaves(leaves);
+        return leaves;
+    }
+
+    /** Return all non-empty childless nodes of all trees. */
+    List<PredictSplitNode> getAllLeaves()
+    {
+        List<PredictSplitNode> leaves = new ArrayList<PredictSplitNode>();
+        for (PredictSplitNode root : roots)
+        {
+            collectLeaves(root, leaves);
+        }
+        pruneDuplicateLeaves(leaves);
+        return leaves;
+    }
+
+    private void collectLeaves(PredictSplitNode node,
+        List<PredictSplitNode> leaves)
+    {
         if (node.getChild1() == null)
         {
-            if (!node.getCreatures().isEmpty())
+            if (node.getHeight() > 0 && !node.hasDetachedChildren())
             {
                 leaves.add(node);
             }
         }
         else
         {
-            leaves.addAll(getLeaves(node.getChild1()));
-            leaves.addAll(getLeaves(node.getChild2()));
+            collectLeaves(node.getChild1(), leaves);
+            collectLeaves(node.getChild2(), leaves);
         }
+    }
 
+    private void pruneDuplicateLeaves(List<PredictSplitNode> leaves)
+    {
         TreeSet<Integer> prunes = new TreeSet<Integer>(
             new ReverseIntegerComparator());
 
@@ -92,8 +179,6 @@ public final class PredictSplits
         {
             leaves.remove(in.intValue());
         }
-
-        return leaves;
     }
 
     /** Return all non-empty nodes in subtree starting from node. */
@@ -126,7 +211,7 @@ public final class PredictSplits
     void printLeaves()
     {
         LOGGER.log(Level.FINEST, "");
-        List<PredictSplitNode> leaves = getLeaves(root);
+        List<PredictSplitNode> leaves = getAllLeaves();
         Collections.sort(leaves);
         for (PredictSplitNode leaf : leaves)
         {
@@ -139,7 +224,11 @@ public final class PredictSplits
     void printNodes()
     {
         LOGGER.log(Level.FINEST, "");
-        List<PredictSplitNode> nodes = getNodes(root);
+        List<PredictSplitNode> nodes = new ArrayList<PredictSplitNode>();
+        for (PredictSplitNode root : roots)
+        {
+            nodes.addAll(getNodes(root));
+        }
         Collections.sort(nodes, nodeTurnComparator);
         for (PredictSplitNode node : nodes)
         {
@@ -151,7 +240,7 @@ public final class PredictSplits
     /** Return the leaf PredictSplitNode with matching markerId. */
     PredictSplitNode getLeaf(String markerId)
     {
-        List<PredictSplitNode> leaves = getLeaves(root);
+        List<PredictSplitNode> leaves = getAllLeaves();
         for (PredictSplitNode leaf : leaves)
         {
             if (markerId.equals(leaf.getMarkerId()))
@@ -162,9 +251,76 @@ public final class PredictSplits
         return null;
     }
 
-    public PredictSplitNode getRoot()
+    /**
+     * The roots of all split trees, oldest first. Initially this is only
+     * the starting legion, later more when resolved splits got pruned.
+     */
+    public List<PredictSplitNode> getRoots()
+    {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * Drop the history of splits which are fully resolved, i.e. where the
+     * contents of the split legion and of both resulting legions are
+     * certain. Such a split can not tell anything more about its
+     * descendants, so the two children become roots of their own. This is
+     * done anywhere in the trees, also below splits which are not
+     * resolved yet; there the split node stays, since the split of its
+     * parent still needs its contents, but it has no children any more
+     * and is no leaf. Once it becomes a root itself it goes away, as do
+     * the trees of eliminated legions (no creatures left in any leaf).
+     *
+     * So the nodes kept are the legions alive, the splits not resolved
+     * and their children; without this the trees grow for the whole
+     * game, and so does the time to find a leaf for each reveal.
+     *
+     * @param turn The current turn; splits made in this turn are kept,
+     *        since they still may be undone or merged.
+     */
+    void pruneResolvedSplits(int turn)
     {
-        return root;
+        List<PredictSplitNode> newRoots = new ArrayList<PredictSplitNode>();
+        List<PredictSplitNode> todo = new ArrayList<PredictSplitNode>(roots);
+        while (!todo.isEmpty())
+        {
+            PredictSplitNode root = todo.remove(0);
+            List<PredictSplitNode> detached = new ArrayList<PredictSplitNode>();
+            pruneResolvedSplits(root, turn, detached);
+            todo.addAll(0, detached);
+            if (!root.hasDetachedChildren()
+                && (root.getChild1() != null || root.getHeight() > 0))
+            {
+                newRoots.add(root);
+            }
+        }
+        roots.clear();
+        roots.addAll(newRoots);
+    }
+
+    private void pruneResolvedSplits(PredictSplitNode node, int turn,
+        List<PredictSplitNode> detached)
+    {
+        PredictSplitNode child1 = node.getChild1();
+        PredictSplitNode child2 = node.getChild2();
+        if (child1 == null)
+        {
+            return;
+        }
+        if (child1.getTurnCreated() < turn && node.allCertain()
+            && child1.allCertain() && child2.allCertain())
+        {
+            LOGGER.log(Level.FINEST, "Pruning resolved split of "
+                + node.getFullName());
+            node.detachChildren();
+            detached.add(child1);
+            detached.add(child2);
+        }
+        else
+        {
+            pruneResolvedSplits(child1, turn, detached);
+            pruneResolvedSplits(child2, turn, detached);
+        }
     }
 }
 
@@ -0,0 +1,178 @@
+package net.sf.colossus.client;
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.colossus.variant.CreatureType;
+
+
+/**
+ *  Probability distribution of the contents of one (enemy) legion, as far
+ *  as split prediction can tell: for each creature type the probability
+ *  that the legion contains exactly 0, 1, 2, ... of it.
+ *
+ *  Created from the possible contents of the legion, each with a weight
+ *  telling how many of the ways to do the split lead to these contents.
+ *  Immutable.
+ *
+ *  See PredictSplitNode.getPredictedContents()
+ */
+public final class PredictedContents
+{
+    private final Map<CreatureType, double[]> distributions = new TreeMap<CreatureType, double[]>(
+        CreatureType.NAME_ORDER);
+
+    /** Contents known for sure */
+    PredictedContents(List<CreatureType> contents)
+    {
+        this(Collections.singletonList(contents), new double[] { 1.0 });
+    }
+
+    /**
+     * @param possibleContents All possible contents of the legion
+     * @param weights For each of possibleContents its relative likeliness
+     */
+    PredictedContents(List<List<CreatureType>> possibleContents,
+        double[] weights)
+    {
+        assert possibleContents.size() == weights.length : "One weight per possible contents";
+
+        double totalWeight = 0;
+        for (double weight : weights)
+        {
+            totalWeight += weight;
+        }
+
+        for (int i = 0; i < weights.length; i++)
+        {
+            Map<CreatureType, Integer> counts = new TreeMap<CreatureType, Integer>(
+                CreatureType.NAME_ORDER);
+            for (CreatureType type : possibleContents.get(i))
+            {
+                Integer count = counts.get(type);
+                counts.put(type,
+                    Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+            }
+            double probability = weights[i] / totalWeight;
+            for (Map.Entry<CreatureType, Integer> entry : counts.entrySet())
+            {
+                int count = entry.getValue().intValue();
+                double[] distribution = distributions.get(entry.getKey());
+                if (distribution == null)
+                {
+                    distribution = new double[count + 1];
+                }
+                else if (distribution.length <= count)
+                {
+                    double[] longer = new double[count + 1];
+                    System.arraycopy(distribution, 0, longer, 0,
+                        distribution.length);
+                    distribution = longer;
+                }
+                distribution[count] += probability;
+                distributions.put(entry.getKey(), distribution);
+            }
+        }
+
+        // Probability of count 0 is whatever is left
+        for (double[] distribution : distributions.values())
+        {
+            double sum = 0;
+            for (int count = 1; count < distribution.length; count++)
+            {
+                sum += distribution[count];
+            }
+            distribution[0] = Math.max(0, 1 - sum);
+        }
+    }
+
+    /** All creature types which possibly are in the legion */
+    public Set<CreatureType> getCreatureTypes()
+    {
+        return Collections.unmodifiableSet(distributions.keySet());
+    }
+
+    /** Probability that the legion contains exactly count of type */
+    public double getProbability(CreatureType type, int count)
+    {
+        double[] distribution = distributions.get(type);
+        if (distribution == null)
+        {
+            return count == 0 ? 1 : 0;
+        }
+        if (count < 0 || count >= distribution.length)
+        {
+            return 0;
+        }
+        return distribution[count];
+    }
+
+    /** Probability that the legion contains at least count of type */
+    public double getProbabilityOfAtLeast(CreatureType type, int count)
+    {
+        double[] distribution = distributions.get(type);
+        if (distribution == null)
+        {
+            return count <= 0 ? 1 : 0;
+        }
+        double sum = 0;
+        for (int i = Math.max(count, 0); i < distribution.length; i++)
+        {
+            sum += distribution[i];
+        }
+        return sum;
+    }
+
+    /** Expected number of creatures of type in the legion */
+    public double getExpectedCount(CreatureType type)
+    {
+        double[] distribution = distributions.get(type);
+        if (distribution == null)
+        {
+            return 0;
+        }
+        double sum = 0;
+        for (int count = 1; count < distribution.length; count++)
+        {
+            sum += count * distribution[count];
+        }
+        return sum;
+    }
+
+    /** True if the contents are known for sure */
+    public boolean isCertain()
+    {
+        for (double[] distribution : distributions.values())
+        {
+            for (double probability : distribution)
+            {
+                if (probability > 1e-9 && probability < 1 - 1e-9)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (CreatureType type : distributions.keySet())
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(type.getName());
+            sb.append(String.format(" %.2f", Double
+                .valueOf(getExpectedCount(type))));
+        }
+        return sb.toString();
+    }
+}
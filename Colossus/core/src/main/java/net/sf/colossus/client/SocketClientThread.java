@@ -4,6 +4,7 @@ package net.sf.colossus.client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.net.ConnectException;
 import java.net.Socket;
@@ -26,12 +27,15 @@ import net.sf.colossus.game.PlayerColor;
 import net.sf.colossus.game.actions.Recruitment;
 import net.sf.colossus.game.actions.Summoning;
 import net.sf.colossus.server.IServer;
+import net.sf.colossus.server.LoopbackChannel;
+import net.sf.colossus.server.Server;
 import net.sf.colossus.util.BuildInfo;
 import net.sf.colossus.util.ErrorUtils;
 import net.sf.colossus.util.Glob;
 import net.sf.colossus.util.InstanceTracker;
 import net.sf.colossus.util.Split;
 import net.sf.colossus.util.SystemInfo;
+import net.sf.colossus.util.TraceRecorder;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.CreatureType;
 import net.sf.colossus.variant.MasterHex;
@@ -40,6 +44,10 @@ import net.sf.colossus.variant.MasterHex;
 /**
  *  Thread to handle server connection on client side.
  *
+ *  Usually the connection is a socket; clients which run in the same JVM
+ *  as the server (local AI players) use instead a LoopbackChannel, which
+ *  hands the very same messages over via in-memory queues.
+ *
  *  @author David Ripton
  */
 
@@ -58,6 +66,12 @@ final class SocketClientThread extends Thread implements IServer,
     private Socket socket;
     private BufferedReader in;
     private PrintWriter out;
+
+    /**
+     * Instead of socket/in/out, if client is in same JVM as the server
+     */
+    private final Server localServer;
+    private final LoopbackChannel loopback;
     private boolean goingDown = false;
     private boolean selfInterrupted = false;
     private boolean serverReceiveTimedout = false;
@@ -83,6 +97,8 @@ final class SocketClientThread extends Thread implements IServer,
     private final static String sep = Constants.protocolTermSeparator;
 
     private String reasonFail = null;
+    /** What the constructor is doing while connecting, for error messages */
+    private String task = "";
     private String initialLine = null;
 
     private String variantNameForInit;
@@ -124,6 +140,30 @@ final class SocketClientThread extends Thread implements IServer,
         return conn;
     }
 
+    /**
+     * Connect a client in the same JVM as the server via a LoopbackChannel
+     * instead of a socket.
+     */
+    public static SocketClientThread createLoopbackConnection(
+        Server localServer, String initialName, boolean spectator)
+        throws ConnectionInitException
+    {
+        LOGGER.info("SCT: trying loopback connection for playerName "
+            + initialName);
+
+        SocketClientThread conn = new SocketClientThread(localServer,
+            initialName, spectator, -1);
+
+        String reasonFail = conn.getReasonFail();
+        if (reasonFail != null)
+        {
+            LOGGER.warning("Client startup failed: " + reasonFail);
+            throw new ConnectionInitException(reasonFail);
+        }
+
+        return conn;
+    }
+
     protected static SocketClientThread recreateConnection(
         IServerConnection prevConnection) throws ConnectionInitException
     {
@@ -141,8 +181,17 @@ final class SocketClientThread extends Thread implements IServer,
             + " at port " + port + " for playerName " + playerName
             + " witgh conectionId " + prevConnId);
 
-        SocketClientThread newConn = new SocketClientThread(host, port,
-            playerName, remote, spectator, prevConnId);
+        SocketClientThread newConn;
+        if (previousConnection.localServer != null)
+        {
+            newConn = new SocketClientThread(previousConnection.localServer,
+                playerName, spectator, prevConnId);
+        }
+        else
+        {
+            newConn = new SocketClientThread(host, port, playerName, remote,
+                spectator, prevConnId);
+        }
         String reasonFail = newConn.getReasonFail();
         if (reasonFail != null)
         {
@@ -185,11 +234,11 @@ final class SocketClientThread extends Thread implements IServer,
         this.internalSpectator = (spectator && playerName
             .equals(Constants.INTERNAL_DUMMY_CLIENT_NAME));
         this.connectionId = prevId;
+        this.localServer = null;
+        this.loopback = null;
 
         InstanceTracker.register(this, "SCT " + initialName);
 
-        String task = "";
-
         try
         {
             task = "Creating Socket to connect to " + host + ":" + port;
@@ -205,37 +254,11 @@ final class SocketClientThread extends Thread implements IServer,
             in = new BufferedReader(new InputStreamReader(
                 socket.getInputStream()));
 
-            task = "Waiting for prompt";
-            LOGGER.log(Level.FINEST, "Next: " + task);
-            waitForPrompt();
-
             task = "Preparing PrintWriter";
             LOGGER.log(Level.FINEST, "Next: " + task);
             out = new PrintWriter(socket.getOutputStream(), true);
 
-            task = "Sending signOn message";
-            LOGGER.log(Level.FINEST, "Next: " + task);
-            signOn(initialName, isRemote, IServer.CLIENT_VERSION,
-                BuildInfo.getFullBuildInfoString(), spectator, connectionId);
-
-            task = "Waiting for signOn acknowledge";
-            LOGGER.log(Level.FINEST, "Next: " + task);
-            reasonFail = waitForSignonOk();
-
-            if (reasonFail == null)
-            {
-                task = "Sending System Info";
-                LOGGER.log(Level.FINEST, "Next: " + task);
-                sendSystemInfo();
-
-                task = "Requesting GameInfo";
-                LOGGER.log(Level.FINEST, "Next: " + task);
-                requestGameInfo();
-
-                task = "Waiting for GameInfo";
-                LOGGER.log(Level.FINEST, "Next: " + task);
-                reasonFail = waitForGameInfo();
-            }
+            connect(initialName, isRemote);
         }
 
         catch (UnknownHostException e)
@@ -332,13 +355,125 @@ final class SocketClientThread extends Thread implements IServer,
         }
     }
 
+    /**
+     * Same as above, but connecting via a LoopbackChannel.
+     *
+     * @param localServer The server in the same JVM
+     * @param initialName
+     * @param spectator
+     * @param prevId     Id of connection to replace, or -1 if initial
+     */
+    SocketClientThread(Server localServer, String initialName,
+        boolean spectator, int prevId)
+    {
+        super("SCT-" + initialName);
+
+        this.host = null;
+        this.port = -1;
+        this.playerName = initialName;
+        this.remote = false;
+        this.spectator = spectator;
+        this.internalSpectator = (spectator && playerName
+            .equals(Constants.INTERNAL_DUMMY_CLIENT_NAME));
+        this.connectionId = prevId;
+        this.localServer = localServer;
+        this.loopback = localServer.connectLoopbackClient();
+
+        InstanceTracker.register(this, "SCT " + initialName);
+
+        try
+        {
+            connect(initialName, false);
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.SEVERE, "Exception in SCT during loopback "
+                + "connect, " + task + ": ", e);
+            reasonFail = "Exception during loopback connect, " + task + ": "
+                + e.toString();
+        }
+    }
+
+    /**
+     * The handshake after the connection is there, same for socket and
+     * loopback: wait for the prompt, sign on and get the game info.
+     * Sets reasonFail if the server refuses the client.
+     */
+    private void connect(String initialName, boolean isRemote)
+        throws IOException
+    {
+        task = "Waiting for prompt";
+        LOGGER.log(Level.FINEST, "Next: " + task);
+        waitForPrompt();
+
+        task = "Sending signOn message";
+        LOGGER.log(Level.FINEST, "Next: " + task);
+        signOn(initialName, isRemote, IServer.CLIENT_VERSION,
+            BuildInfo.getFullBuildInfoString(), spectator, connectionId);
+
+        task = "Waiting for signOn acknowledge";
+        LOGGER.log(Level.FINEST, "Next: " + task);
+        reasonFail = waitForSignonOk();
+
+        if (reasonFail == null)
+        {
+            task = "Sending System Info";
+            LOGGER.log(Level.FINEST, "Next: " + task);
+            sendSystemInfo();
+
+            task = "Requesting GameInfo";
+            LOGGER.log(Level.FINEST, "Next: " + task);
+            requestGameInfo();
+
+            task = "Waiting for GameInfo";
+            LOGGER.log(Level.FINEST, "Next: " + task);
+            reasonFail = waitForGameInfo();
+        }
+    }
+
     private String readOneLine() throws IOException
     {
-        String line = in.readLine();
+        String line;
+        if (loopback != null)
+        {
+            try
+            {
+                line = loopback.readFromServer();
+            }
+            catch (InterruptedException e)
+            {
+                throw new InterruptedIOException("Loopback read interrupted");
+            }
+        }
+        else
+        {
+            line = in.readLine();
+        }
         showDebugOutput(line);
         return line;
     }
 
+    private void writeOneLine(String line)
+    {
+        if (loopback != null)
+        {
+            loopback.writeToServer(line);
+        }
+        else
+        {
+            out.println(line);
+        }
+    }
+
+    private boolean isConnected()
+    {
+        if (loopback != null)
+        {
+            return !loopback.isClosedByClient();
+        }
+        return socket != null;
+    }
+
     private boolean msg_tracking()
     {
         return _MSG_TRACKING;
@@ -424,7 +559,10 @@ final class SocketClientThread extends Thread implements IServer,
         // Directly after connect we should get some first message
         // rather quickly... if not, probably Server has already enough
         // clients and we would hang in the queue...
-        socket.setSoTimeout(5000);
+        if (socket != null)
+        {
+            socket.setSoTimeout(5000);
+        }
         initialLine = readOneLine();
         if (initialLine.startsWith("SignOn:"))
         {
@@ -434,7 +572,10 @@ final class SocketClientThread extends Thread implements IServer,
         // ... but after we got first data, during game it might take
         // unpredictable time before next thing comes, so reset it to 0
         //  ( = wait forever).
-        socket.setSoTimeout(0);
+        if (socket != null)
+        {
+            socket.setSoTimeout(0);
+        }
 
         return;
     }
@@ -660,8 +801,11 @@ final class SocketClientThread extends Thread implements IServer,
                 {
                     try
                     {
-                        LOGGER.finest("SCT of client '" + getName()
-                            + "' got message from server: " + fromServer);
+                        if (LOGGER.isLoggable(Level.FINEST))
+                        {
+                            LOGGER.finest("SCT of client '" + getName()
+                                + "' got message from server: " + fromServer);
+                        }
                         parseLine(fromServer);
                     }
                     catch (Exception ex)
@@ -672,6 +816,7 @@ final class SocketClientThread extends Thread implements IServer,
                                 + ", parseLine(): got Exception "
                                 + ex.toString() + "\n" + ex.getMessage()
                                 + "\nline=" + fromServer, ex);
+                        LOGGER.info(TraceRecorder.dump());
                     }
 
                     // increment it now, so that during parsing of next it has right value.
@@ -758,6 +903,11 @@ final class SocketClientThread extends Thread implements IServer,
                 serverReceiveTimedout = true;
                 goingDown = true;
             }
+            catch (InterruptedIOException ex)
+            {
+                // loopback read interrupted - only done to go down.
+                goingDown = true;
+            }
             catch (SocketException ex)
             {
                 if (selfInterrupted)
@@ -798,6 +948,10 @@ final class SocketClientThread extends Thread implements IServer,
 
     private void cleanupSocket()
     {
+        if (loopback != null)
+        {
+            loopback.closeByClient();
+        }
         try
         {
             if (socket != null && !socket.isClosed())
@@ -981,9 +1135,12 @@ final class SocketClientThread extends Thread implements IServer,
             }
             if (messageNr == ownMessageCounter)
             {
-                LOGGER.finest(getPrintName() + ": received commit point "
-                    + commitPointNr + " msg Nr " + messageNr + " own counter "
-                    + ownMessageCounter);
+                if (LOGGER.isLoggable(Level.FINEST))
+                {
+                    LOGGER.finest(getPrintName() + ": received commit point "
+                        + commitPointNr + " msg Nr " + messageNr
+                        + " own counter " + ownMessageCounter);
+                }
             }
             else
             {
@@ -1066,11 +1223,14 @@ final class SocketClientThread extends Thread implements IServer,
 
     private void sendToServer(String message)
     {
-        if (socket != null)
+        if (isConnected())
         {
-            LOGGER.finer("Client '" + getPrintName() + "' sends to server: "
-                + message);
-            out.println(message);
+            if (LOGGER.isLoggable(Level.FINER))
+            {
+                LOGGER.finer("Client '" + getPrintName() + "' sends to server: "
+                    + message);
+            }
+            writeOneLine(message);
             clientThread.notifyUserIfGameIsPaused(message);
         }
         else if (message.startsWith(Constants.replyToPing))
@@ -1104,20 +1264,20 @@ final class SocketClientThread extends Thread implements IServer,
     private void signOn(String loginName, boolean isRemote, int version,
         String buildInfo, boolean spectator, int prevConnId)
     {
-        out.println(Constants.signOn + sep + loginName + sep + isRemote + sep
+        writeOneLine(Constants.signOn + sep + loginName + sep + isRemote + sep
             + version + sep + buildInfo + sep + spectator + sep + prevConnId);
     }
 
     private void sendSystemInfo()
     {
-        out.println(Constants.systemInfo + sep + SystemInfo.getOsInfo() + sep
+        writeOneLine(Constants.systemInfo + sep + SystemInfo.getOsInfo() + sep
             + SystemInfo.getFullJavaInfo());
     }
 
     // Setup method
     private void requestGameInfo()
     {
-        out.println(Constants.requestGameInfo);
+        writeOneLine(Constants.requestGameInfo);
     }
 
     /* Server tells client changed name, Client calls us to keep in sync */
@@ -1417,7 +1577,7 @@ final class SocketClientThread extends Thread implements IServer,
     public void replyToPing(int requestNr, long requestSent,
         long requestReceived)
     {
-        out.println(Constants.replyToPing + sep + requestNr + sep
+        writeOneLine(Constants.replyToPing + sep + requestNr + sep
             + requestSent + sep + requestReceived);
         // sendToServer(Constants.replyToPing);
     }
@@ -0,0 +1,156 @@
+package net.sf.colossus.client;
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ *  The split prediction one client has about the legions of all players,
+ *  kept outside of a client: it follows the same reveal, split, merge,
+ *  add and remove events a client gets, but without Legion objects, so
+ *  that the server can compute what a client would know after replaying
+ *  the history, and hand that over to it instead of the whole history.
+ *
+ *  The players are identified just by name; which player owns a marker
+ *  is up to the caller.
+ */
+public final class SplitPredictionView
+{
+    private final Variant variant;
+
+    /** Split trees per owning player, in the same way as in PlayerClientSide */
+    private final Map<String, PredictSplits> predictSplits = new TreeMap<String, PredictSplits>();
+
+    public SplitPredictionView(Variant variant)
+    {
+        this.variant = variant;
+    }
+
+    /**
+     * A copy of other, which follows further events independently of it
+     */
+    public SplitPredictionView(SplitPredictionView other)
+    {
+        this.variant = other.variant;
+        for (Map.Entry<String, PredictSplits> entry : other.predictSplits
+            .entrySet())
+        {
+            predictSplits.put(entry.getKey(), new PredictSplits(entry
+                .getValue()));
+        }
+    }
+
+    private PredictSplitNode getLeaf(String owner, String markerId)
+    {
+        PredictSplits ps = predictSplits.get(owner);
+        PredictSplitNode leaf = ps == null ? null : ps.getLeaf(markerId);
+        if (leaf == null)
+        {
+            throw new IllegalStateException("No split prediction for legion "
+                + markerId + " of " + owner);
+        }
+        return leaf;
+    }
+
+    /** See LegionClientSide.revealCreatures() */
+    public void revealCreatures(String owner, String markerId,
+        List<CreatureType> creatures)
+    {
+        if (!predictSplits.containsKey(owner))
+        {
+            predictSplits.put(owner, new PredictSplits(markerId, creatures,
+                variant));
+        }
+        getLeaf(owner, markerId).revealCreatures(creatures);
+    }
+
+    /** See LegionClientSide.split() */
+    public void split(String owner, String parentId, String childId,
+        int childHeight, int turn)
+    {
+        getLeaf(owner, parentId).split(childHeight, childId, turn);
+        predictSplits.get(owner).pruneResolvedSplits(turn);
+    }
+
+    /** See LegionClientSide.merge() */
+    public void merge(String owner, String splitoffId, String survivorId)
+    {
+        getLeaf(owner, survivorId).merge(getLeaf(owner, splitoffId));
+    }
+
+    public void addCreature(String owner, String markerId, CreatureType type)
+    {
+        getLeaf(owner, markerId).addCreature(type);
+    }
+
+    public void removeCreature(String owner, String markerId,
+        CreatureType type)
+    {
+        getLeaf(owner, markerId).removeCreature(type);
+    }
+
+    /** The owner was eliminated, nothing more to predict for him */
+    public void removeOwner(String owner)
+    {
+        predictSplits.remove(owner);
+    }
+
+    /** All players for which there is split prediction */
+    public Set<String> getOwners()
+    {
+        return Collections.unmodifiableSet(predictSplits.keySet());
+    }
+
+    /**
+     * The predicted legions of owner: height for each marker id
+     */
+    public Map<String, Integer> getLegionHeights(String owner)
+    {
+        Map<String, Integer> heights = new TreeMap<String, Integer>();
+        PredictSplits ps = predictSplits.get(owner);
+        if (ps != null)
+        {
+            for (PredictSplitNode leaf : ps.getAllLeaves())
+            {
+                heights.put(leaf.getMarkerId(), Integer.valueOf(leaf
+                    .getHeight()));
+            }
+        }
+        return heights;
+    }
+
+    /**
+     * The split prediction for owner in a compact textual form, as needed
+     * by restore() and PlayerClientSide.restorePredictSplits().
+     */
+    public String getSummary(String owner)
+    {
+        PredictSplits ps = predictSplits.get(owner);
+        return ps == null ? "" : ps.toSummary();
+    }
+
+    /**
+     * Replace the split prediction for owner by the one from getSummary().
+     *
+     * @throws IllegalArgumentException if the summary is malformed
+     */
+    public void restore(String owner, String summary)
+    {
+        if (summary.length() == 0)
+        {
+            predictSplits.remove(owner);
+        }
+        else
+        {
+            predictSplits.put(owner, PredictSplits.fromSummary(summary,
+                variant));
+        }
+    }
+}
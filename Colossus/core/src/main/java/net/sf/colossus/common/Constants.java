@@ -64,6 +64,10 @@ public final class Constants
     public static final String SAVE_DIR_NAME = DEFAULT_COLOSSUS_HOME
         + File.separator + "saves" + File.separator;
     public static final String XML_EXTENSION = ".xml";
+
+    /** Remote clients keep the files they got from servers in here */
+    public static final String FILE_CACHE_DIR_NAME = DEFAULT_COLOSSUS_HOME
+        + File.separator + "filecache";
     public static final String XML_SNAPSHOT_START = "snap";
     // in version 14 the iscmName and file was added
     public static final String XML_SNAPSHOT_VERSION = "14";
@@ -354,6 +358,7 @@ public final class Constants
     public static final String askChooseStrikePenalty = "askChooseStrikePenalty";
     public static final String tellGameOver = "tellGameOver";
     public static final String tellPlayerElim = "tellPlayerElim";
+    public static final String restoreSplitPrediction = "restoreSplitPrediction";
     public static final String askConcede = "askConcede";
     public static final String askFlee = "askFlee";
     public static final String askNegotiate = "askNegotiate";
@@ -63,6 +63,7 @@ public final class Options implements IOptions
     public static final String hotSeatMode = "Hot seat mode";
     public static final String keepAccepting = "Keep accepting clients";
     public static final String diceStatisticsFile = "Dice statistics file";
+    public static final String gameTelemetryFile = "Game telemetry file";
     public static final String lastJava7Warning = "Last Java 7 warning";
 
     // Rules options
@@ -656,6 +657,29 @@ public final class Options implements IOptions
         return System.getProperty(propNameStresstestRounds) != null;
     }
 
+    private static String propNameNoLoopback = "net.sf.colossus.noLoopback";
+
+    /**
+     * If this property is set, local AI clients connect to the server
+     * over a socket like all others, instead of the in-memory loopback.
+     */
+    public static boolean isLoopbackDisabled()
+    {
+        return System.getProperty(propNameNoLoopback) != null;
+    }
+
+    private static String propNameFullReplay = "net.sf.colossus.fullReplay";
+
+    /**
+     * If this property is set, loading a game replays the whole history
+     * to all clients and verifies the result against the loaded legions,
+     * instead of starting from the history checkpoint in the save game.
+     */
+    public static boolean isFullReplayOnLoad()
+    {
+        return System.getProperty(propNameFullReplay) != null;
+    }
+
     synchronized public static int getHowManyStresstestRoundsProperty()
     {
         String propHowMany = System.getProperty(propNameStresstestRounds);
@@ -14,6 +14,7 @@ public class WhatNextManager
     private boolean interactive;
     private WhatToDoNext whatToDoNext;
     private int howManyGamesLeft;
+    private boolean inProcessRunner = false;
 
     public WhatNextManager(Options startOpts)
     {
@@ -22,6 +23,17 @@ public class WhatNextManager
         this.howManyGamesLeft = Options.getHowManyStresstestRoundsProperty();
     }
 
+    /**
+     * Mark this manager as belonging to a game that is run by some
+     * in-process runner (e.g. the Tournament), which has more work to do
+     * in the same JVM after the game is over. Then a timed quit must never
+     * be triggered.
+     */
+    public void setInProcessRunner(boolean val)
+    {
+        this.inProcessRunner = val;
+    }
+
     public WhatToDoNext getWhatToDoNext()
     {
         return whatToDoNext;
@@ -113,6 +125,11 @@ public class WhatNextManager
             LOGGER.info("Functional test ongoing - ignoring the "
                 + "request to trigger a timed quit.");
         }
+        else if (inProcessRunner)
+        {
+            LOGGER.info("Game run by in-process runner - ignoring the "
+                + "request to trigger a timed quit.");
+        }
         else if (Options.isStresstest() && howManyGamesLeft > 0)
         {
             LOGGER.info("HowManyGamesLeft now " + howManyGamesLeft
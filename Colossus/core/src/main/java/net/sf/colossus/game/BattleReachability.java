@@ -0,0 +1,330 @@
+package net.sf.colossus.game;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.colossus.variant.BattleHex;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.HazardTerrain;
+import net.sf.colossus.variant.MasterBoardTerrain;
+
+
+/**
+ *  Finds the hexes of one battle land a creature can reach in one battle
+ *  move, for the client side BattleMovement (which all AIs use) and the
+ *  server side BattleMovementServerSide alike.
+ *
+ *  The hexes are identified by small int indices: the 36 positions of the
+ *  hex grid plus the 6 entrances, so that a set of hexes fits into one long
+ *  (bit i set = hex with index i in the set). The entry costs are computed
+ *  only once per movement profile, i.e. for all creatures which are alike
+ *  as far as moving on this land is concerned; which hexes are occupied is
+ *  passed in as such a long as well.
+ *
+ *  The search follows the same rules as the recursive search did before:
+ *  do not double back, fliers may fly over hexes for 1 movement point, and
+ *  with oneHexAllowed the first step is possible regardless of its cost.
+ *  It just never explores the same (hex, came from, moves left) state
+ *  twice.
+ */
+public final class BattleReachability
+{
+    /** 6 x 6 hex grid positions, and the 6 entrances behind them */
+    private static final int HEX_COUNT = 42;
+
+    private static final int FIRST_ENTRANCE = 36;
+
+    /** "came from" value for the start hex */
+    private static final int NO_DIRECTION = 6;
+
+    private final BattleHex[] hexes = new BattleHex[HEX_COUNT];
+
+    /** Index of the neighbor of each hex in each direction, or -1 */
+    private final int[] neighbors = new int[HEX_COUNT * 6];
+
+    /** The hazard terrains which occur on this land */
+    private final List<HazardTerrain> hazards = new ArrayList<HazardTerrain>();
+
+    /** Move costs by creature type index, filled in as needed */
+    private MoveCosts[] costsByCreature = new MoveCosts[0];
+
+    private final Map<Long, MoveCosts> costsByProfile = new HashMap<Long, MoveCosts>();
+
+    public BattleReachability(MasterBoardTerrain terrain)
+    {
+        Arrays.fill(neighbors, -1);
+
+        // All hexes of the land can be reached from the entrances
+        List<BattleHex> toDo = new ArrayList<BattleHex>();
+        for (int k = 0; k < 6; k++)
+        {
+            toDo.add(terrain.getHexByLabel("X" + k));
+        }
+        while (!toDo.isEmpty())
+        {
+            BattleHex hex = toDo.remove(toDo.size() - 1);
+            int index = indexOf(hex);
+            if (hexes[index] != null)
+            {
+                continue;
+            }
+            hexes[index] = hex;
+            if (!hazards.contains(hex.getTerrain()))
+            {
+                hazards.add(hex.getTerrain());
+            }
+            for (int dir = 0; dir < 6; dir++)
+            {
+                BattleHex neighbor = hex.getNeighbor(dir);
+                neighbors[index * 6 + dir] = neighbor == null ? -1
+                    : indexOf(neighbor);
+                if (neighbor != null)
+                {
+                    toDo.add(neighbor);
+                }
+            }
+        }
+    }
+
+    /** Index of the given hex, as used for the bits of the hex sets */
+    public static int indexOf(BattleHex hex)
+    {
+        if (hex.isEntrance())
+        {
+            return FIRST_ENTRANCE + hex.getYCoord();
+        }
+        return hex.getXCoord() * 6 + hex.getYCoord();
+    }
+
+    /** Add the given hex to the hex set mask */
+    public static long with(long mask, BattleHex hex)
+    {
+        return mask | (1L << indexOf(hex));
+    }
+
+    public static boolean contains(long mask, BattleHex hex)
+    {
+        return (mask & (1L << indexOf(hex))) != 0;
+    }
+
+    /** The hexes of this land in the given hex set */
+    public Set<BattleHex> toHexSet(long mask)
+    {
+        Set<BattleHex> set = new HashSet<BattleHex>();
+        for (int i = 0; i < HEX_COUNT; i++)
+        {
+            if ((mask & (1L << i)) != 0)
+            {
+                set.add(hexes[i]);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Find all hexes the creature can move to.
+     *
+     * @param start Where the creature is
+     * @param creature The type of the creature
+     * @param movesLeft Movement points, i.e. skill reduced by slowing
+     * @param occupied Set of hexes which block the movement
+     * @param cumulativeSlow Whether slowing effects add up
+     * @param oneHexAllowed Whether a creature may always move one hex
+     * @return The set of reachable hexes
+     */
+    public long findMoves(BattleHex start, CreatureType creature,
+        int movesLeft, long occupied, boolean cumulativeSlow,
+        boolean oneHexAllowed)
+    {
+        Search search = new Search(getMoveCosts(creature, cumulativeSlow),
+            occupied, oneHexAllowed, creature.isFlier(), movesLeft);
+        search.visit(indexOf(start), NO_DIRECTION, movesLeft, true);
+        return search.reached;
+    }
+
+    private MoveCosts getMoveCosts(CreatureType creature,
+        boolean cumulativeSlow)
+    {
+        int index = creature.getIndex();
+        if (index >= costsByCreature.length)
+        {
+            costsByCreature = Arrays.copyOf(costsByCreature, index + 1);
+        }
+        MoveCosts costs = costsByCreature[index];
+        if (costs == null)
+        {
+            Long profile = Long.valueOf(getProfile(creature));
+            costs = costsByProfile.get(profile);
+            if (costs == null)
+            {
+                costs = new MoveCosts(creature);
+                costsByProfile.put(profile, costs);
+            }
+            costsByCreature[index] = costs;
+        }
+        return costs.get(cumulativeSlow);
+    }
+
+    /**
+     * Everything about the creature that BattleHex.getEntryCost() and
+     * BattleHex.canBeFlownOverBy() look at, on this land.
+     */
+    private long getProfile(CreatureType creature)
+    {
+        long profile = (creature.isFlier() ? 1 : 0)
+            | (creature.isWaterDwelling() ? 2 : 0)
+            | (creature.isNativeRiver() ? 4 : 0)
+            | (creature.isNativeSlope() ? 8 : 0);
+        for (int i = 0; i < hazards.size(); i++)
+        {
+            if (creature.isNativeIn(hazards.get(i)))
+            {
+                profile |= 16L << i;
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Entry costs and fly over permissions of all hexes for one movement
+     * profile; one instance for each setting of the cumulativeSlow option,
+     * the second created only when needed.
+     */
+    private final class MoveCosts
+    {
+        private final CreatureType creature;
+
+        private final boolean cumulativeSlow;
+
+        /** Cost to enter each hex, coming from each direction */
+        private final int[] entryCosts = new int[HEX_COUNT * 6];
+
+        private long canFlyOver = 0;
+
+        private MoveCosts other;
+
+        MoveCosts(CreatureType creature)
+        {
+            this(creature, false);
+        }
+
+        private MoveCosts(CreatureType creature, boolean cumulativeSlow)
+        {
+            this.creature = creature;
+            this.cumulativeSlow = cumulativeSlow;
+            Arrays.fill(entryCosts, BattleHex.IMPASSIBLE_COST);
+            for (int i = 0; i < HEX_COUNT; i++)
+            {
+                for (int dir = 0; dir < 6; dir++)
+                {
+                    // only the ways in which a hex can actually be entered
+                    int neighbor = neighbors[i * 6 + dir];
+                    if (neighbor >= 0)
+                    {
+                        int reverseDir = (dir + 3) % 6;
+                        entryCosts[neighbor * 6 + reverseDir] = hexes[neighbor]
+                            .getEntryCost(creature, reverseDir, cumulativeSlow);
+                    }
+                }
+                if (hexes[i] != null && hexes[i].canBeFlownOverBy(creature))
+                {
+                    canFlyOver |= 1L << i;
+                }
+            }
+        }
+
+        MoveCosts get(boolean cumulative)
+        {
+            if (cumulative == cumulativeSlow)
+            {
+                return this;
+            }
+            if (other == null)
+            {
+                other = new MoveCosts(creature, cumulative);
+                other.other = this;
+            }
+            return other;
+        }
+    }
+
+    /** State of one findMoves() run */
+    private final class Search
+    {
+        private final MoveCosts costs;
+        private final long occupied;
+        private final boolean oneHexAllowed;
+        private final boolean flies;
+        private final int maxMoves;
+
+        /** Explored (hex, came from, moves left) states */
+        private final boolean[] visited;
+
+        long reached = 0;
+
+        Search(MoveCosts costs, long occupied, boolean oneHexAllowed,
+            boolean flies, int maxMoves)
+        {
+            this.costs = costs;
+            this.occupied = occupied;
+            this.oneHexAllowed = oneHexAllowed;
+            this.flies = flies;
+            this.maxMoves = Math.max(maxMoves, 0);
+            this.visited = new boolean[HEX_COUNT * 7 * (this.maxMoves + 1)];
+        }
+
+        void visit(int hex, int cameFrom, int movesLeft, boolean first)
+        {
+            if (!first)
+            {
+                int state = (hex * 7 + cameFrom) * (maxMoves + 1)
+                    + movesLeft;
+                if (visited[state])
+                {
+                    return;
+                }
+                visited[state] = true;
+            }
+
+            for (int dir = 0; dir < 6; dir++)
+            {
+                // Do not double back.
+                int neighbor = neighbors[hex * 6 + dir];
+                if (dir == cameFrom || neighbor < 0)
+                {
+                    continue;
+                }
+                int reverseDir = (dir + 3) % 6;
+                long bit = 1L << neighbor;
+                int entryCost = (occupied & bit) != 0 ? BattleHex.IMPASSIBLE_COST
+                    : costs.entryCosts[neighbor * 6 + reverseDir];
+
+                if (entryCost != BattleHex.IMPASSIBLE_COST
+                    && (entryCost <= movesLeft || (first && oneHexAllowed)))
+                {
+                    reached |= bit;
+
+                    // Fliers skip this because flying is more efficient.
+                    if (!flies && movesLeft > entryCost)
+                    {
+                        visit(neighbor, reverseDir, movesLeft - entryCost,
+                            false);
+                    }
+                }
+
+                // Fliers can fly over any hex for 1 movement point,
+                // but some Hex cannot be flown over by some creatures.
+                if (flies && movesLeft > 1 && (costs.canFlyOver & bit) != 0)
+                {
+                    visit(neighbor, reverseDir, movesLeft - 1, false);
+                }
+            }
+        }
+    }
+}
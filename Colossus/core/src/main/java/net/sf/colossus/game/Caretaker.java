@@ -2,12 +2,11 @@ package net.sf.colossus.game;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Logger;
 
 import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.Variant;
 
 
 /**
@@ -66,14 +65,20 @@ public class Caretaker
     }
 
     /**
-     * Map of creature types to the number of available creatures.
+     * Number of available creatures, indexed by {@link CreatureType#getIndex()}.
      */
-    private final Map<CreatureType, Integer> creatureAvailableCounts = new HashMap<CreatureType, Integer>();
+    private int[] creatureAvailableCounts = new int[0];
 
     /**
-     * Map of creature types to the number of dead creatures.
+     * Number of dead creatures, indexed by {@link CreatureType#getIndex()}.
      */
-    private final Map<CreatureType, Integer> creatureDeadCounts = new HashMap<CreatureType, Integer>();
+    private int[] creatureDeadCounts = new int[0];
+
+    /**
+     * Lock for the available counts (the arrays themselves are replaced
+     * when all counts are reset).
+     */
+    private final Object availableCountsLock = new Object();
 
     /**
      * The game of which we manage the creatures.
@@ -98,14 +103,17 @@ public class Caretaker
             // TODO for some reason this can happen during stresstesting -> fix game initialization
             return;
         }
-        for (CreatureType type : game.getVariant().getCreatureTypes())
+        Variant variant = game.getVariant();
+        int[] available = new int[variant.getCreatureTypeCount()];
+        for (CreatureType type : variant.getCreatureTypes())
+        {
+            available[type.getIndex()] = type.getMaxCount();
+        }
+        synchronized (availableCountsLock)
         {
-            // We don't need synchronized access here, because this happens
-            // only at game start, not during game
-            creatureAvailableCounts.put(type,
-                Integer.valueOf(type.getMaxCount()));
-            creatureDeadCounts.put(type, Integer.valueOf(0));
+            creatureAvailableCounts = available;
         }
+        creatureDeadCounts = new int[available.length];
         triggerFullUpdate();
     }
 
@@ -122,9 +130,9 @@ public class Caretaker
         // and/or every if client has it's own caretaker, recruit graph,
         // and custom recruit base,
         // then this whole synchronized access could be dropped.
-        synchronized (creatureAvailableCounts)
+        synchronized (availableCountsLock)
         {
-            creatureAvailableCounts.put(type, Integer.valueOf(availableCount));
+            creatureAvailableCounts[type.getIndex()] = availableCount;
         }
         triggerOneAvailabilityCount(type, availableCount);
     }
@@ -132,15 +140,15 @@ public class Caretaker
     public void setDeadCount(CreatureType type, int deadCount)
     {
         assert type != null : "Can not update counts unless creature type given";
-        creatureDeadCounts.put(type, Integer.valueOf(deadCount));
+        creatureDeadCounts[type.getIndex()] = deadCount;
         triggerOneDeadCount(type, deadCount);
     }
 
     public int getAvailableCount(CreatureType type)
     {
-        synchronized (creatureAvailableCounts)
+        synchronized (availableCountsLock)
         {
-            return creatureAvailableCounts.get(type).intValue();
+            return creatureAvailableCounts[type.getIndex()];
         }
     }
 
@@ -172,7 +180,7 @@ public class Caretaker
 
     public int getDeadCount(CreatureType type)
     {
-        return creatureDeadCounts.get(type).intValue();
+        return creatureDeadCounts[type.getIndex()];
     }
 
     protected Game getGame()
@@ -260,9 +268,8 @@ public class Caretaker
 
                     // We don't need synchronized access here, because Balrog
                     // is not immortal
-                    creatureAvailableCounts.put(type,
-                        Integer.valueOf(live + dead));
-                    creatureDeadCounts.put(type, Integer.valueOf(0));
+                    creatureAvailableCounts[type.getIndex()] = live + dead;
+                    creatureDeadCounts[type.getIndex()] = 0;
                     triggerOneCountUpdate(type);
                 }
             }
@@ -2,12 +2,14 @@ package net.sf.colossus.game;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +47,57 @@ public class RecruitGraph
     /** 99 creatures can muster one means: can not muster at all */
     public static final int BIGNUM = 99;
 
+    /**
+     * What can be reached from where, ignoring availability; computed on
+     * first use after the graph has changed.
+     */
+    private volatile Closure closure;
+
+    /**
+     * The number of available creatures for each vertex index, kept up to
+     * date by listening to the caretaker; null without caretaker.
+     */
+    private volatile int[] remaining;
+
+    /**
+     * Like the traversal positions of the closure, but only through
+     * creatures still available: computed per vertex on first use, and
+     * dropped when a change of the counts makes an edge usable or
+     * unusable, or the graph changes; null without caretaker.
+     * Each row is complete before it is set, and the AtomicReferenceArray
+     * makes it visible as such to the other threads sharing the graph.
+     */
+    private volatile AtomicReferenceArray<int[]> availablePosition;
+
+    private final Caretaker.ChangeListener caretakerListener = new Caretaker.ChangeListener()
+    {
+        public void creatureTypeAvailabilityUpdated(CreatureType type,
+            int availableCount)
+        {
+            setRemaining(type, availableCount);
+        }
+
+        public void creatureTypeDeadCountUpdated(CreatureType type,
+            int deadCount)
+        {
+            // dead ones do not matter for recruiting
+        }
+
+        public void creatureTypeCountsUpdated(CreatureType type)
+        {
+            Caretaker current = caretaker;
+            if (current != null)
+            {
+                setRemaining(type, current.getAvailableCount(type));
+            }
+        }
+
+        public void fullUpdate()
+        {
+            updateRemaining();
+        }
+    };
+
     /**
      * The vertex of the Recruit Graph
      *
@@ -54,13 +107,15 @@ public class RecruitGraph
     {
         private final String cre;
         private final RecruitGraph graph;
+        private final int index;
         private final List<RecruitEdge> outgoingEdges = new ArrayList<RecruitEdge>();
         private final List<RecruitEdge> incomingEdges = new ArrayList<RecruitEdge>();
 
-        RecruitVertex(String name, RecruitGraph graph)
+        RecruitVertex(String name, RecruitGraph graph, int index)
         {
             this.cre = name;
             this.graph = graph;
+            this.index = index;
         }
 
         List<RecruitEdge> getOutgoingEdges()
@@ -100,15 +155,7 @@ public class RecruitGraph
 
         int getRemaining()
         {
-            if (graph.getCaretaker() != null)
-            {
-                CreatureType type = graph.getVariant().getCreatureByName(cre);
-                return graph.getCaretaker().getAvailableCount(type);
-            }
-            else
-            {
-                return BIGNUM;
-            }
+            return graph.getRemaining(this);
         }
 
         @Override
@@ -243,6 +290,129 @@ public class RecruitGraph
         }
     }
 
+    /**
+     * Everything about the graph that does not depend on availability,
+     * as tables indexed by vertex index.
+     */
+    private static final class Closure
+    {
+        private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+        /**
+         * Position of each vertex in the depth first traversal from each
+         * vertex, UNREACHABLE if it is not reached; this is what
+         * traverse() gives when availability does not matter.
+         */
+        private final int[][] traversalPosition;
+
+        /** Least number of recruit steps from each vertex to each vertex */
+        private final int[][] distance;
+
+        /** Highest number of a creature needed to recruit something */
+        private final int[] maximumUsefulNumber;
+
+        Closure(List<RecruitVertex> vertices)
+        {
+            int n = vertices.size();
+            traversalPosition = new int[n][];
+            distance = new int[n][];
+            maximumUsefulNumber = new int[n];
+            for (RecruitVertex v : vertices)
+            {
+                int[] position = new int[n];
+                Arrays.fill(position, UNREACHABLE);
+                number(v, position, 0, null);
+                traversalPosition[v.index] = position;
+                distance[v.index] = findDistances(v, n);
+
+                int mun = -1;
+                for (RecruitEdge e : v.outgoingEdges)
+                {
+                    mun = Math.max(mun, e.getNumber());
+                }
+                maximumUsefulNumber[v.index] = mun;
+            }
+        }
+
+        int size()
+        {
+            return maximumUsefulNumber.length;
+        }
+
+        /**
+         * Position of each vertex in the depth first traversal from the
+         * given one, only through creatures still available
+         *
+         * @param counts Available count per vertex index
+         */
+        int[] availablePositions(RecruitVertex from, int[] counts)
+        {
+            int[] position = new int[size()];
+            Arrays.fill(position, UNREACHABLE);
+            number(from, position, 0, counts);
+            return position;
+        }
+
+        /**
+         * Depth first, in the same order as traverse()
+         *
+         * @param counts Available count per vertex index, or null if
+         *     availability does not matter
+         */
+        private static int number(RecruitVertex v, int[] position,
+            int next, int[] counts)
+        {
+            position[v.index] = next++;
+            for (RecruitEdge e : v.outgoingEdges)
+            {
+                RecruitVertex dst = e.getDestination();
+                if (position[dst.index] == UNREACHABLE
+                    && isUsable(e, counts))
+                {
+                    next = number(dst, position, next, counts);
+                }
+            }
+            return next;
+        }
+
+        /** The condition of traverse() without a legion */
+        private static boolean isUsable(RecruitEdge e, int[] counts)
+        {
+            if (counts == null)
+            {
+                return e.getNumber() <= BIGNUM;
+            }
+            return counts[e.getSource().index] >= e.getNumber()
+                && counts[e.getDestination().index] > 0;
+        }
+
+        /** Breadth first */
+        private static int[] findDistances(RecruitVertex from, int n)
+        {
+            int[] dist = new int[n];
+            Arrays.fill(dist, UNREACHABLE);
+            RecruitVertex[] queue = new RecruitVertex[n];
+            int head = 0;
+            int tail = 0;
+            dist[from.index] = 0;
+            queue[tail++] = from;
+            while (head < tail)
+            {
+                RecruitVertex v = queue[head++];
+                for (RecruitEdge e : v.outgoingEdges)
+                {
+                    RecruitVertex dst = e.getDestination();
+                    if (dist[dst.index] == UNREACHABLE)
+                    {
+                        dist[dst.index] = dist[v.index] + 1;
+                        queue[tail++] = dst;
+                    }
+                }
+            }
+            return dist;
+        }
+    }
+
     // TODO variantKnower is only a temporary solution. Instead the variant
     // should be passed in (not possible right now), or perhaps the Game,
     // from which the variant can be asked.
@@ -257,7 +427,7 @@ public class RecruitGraph
         RecruitVertex temp = creatureToVertex.get(cre);
         if (temp == null)
         {
-            temp = new RecruitVertex(cre, this);
+            temp = new RecruitVertex(cre, this, allVertex.size());
             allVertex.add(temp);
             creatureToVertex.put(cre, temp);
         }
@@ -282,6 +452,8 @@ public class RecruitGraph
         int number, MasterBoardTerrain terrain)
     {
         RecruitEdge e = new RecruitEdge(src, dst, number, terrain);
+        closure = null;
+        availablePosition = null;
         allEdge.add(e);
         src.addOutgoingEdge(e);
         dst.addIncomingEdge(e);
@@ -297,24 +469,18 @@ public class RecruitGraph
      * @param s The base vertex
      * @param visited Already visited vertexes
      * @param legion The legion to use for availability
-     * @return The list of all reachable Vertex from parameter s.
+     * @param all Receives all reachable Vertex from parameter s.
      */
-    private List<RecruitVertex> traverse(RecruitVertex s,
-        Set<RecruitVertex> visited, Legion legion)
+    private void traverse(RecruitVertex s, Set<RecruitVertex> visited,
+        Legion legion, List<RecruitVertex> all)
     {
-        List<RecruitVertex> all = new ArrayList<RecruitVertex>();
-
         if (s != null)
         {
             all.add(s);
             visited.add(s);
 
-            List<RecruitEdge> oe = s.getOutgoingEdges();
-            Iterator<RecruitEdge> it = oe.iterator();
-
-            while (it.hasNext())
+            for (RecruitEdge e : s.outgoingEdges)
             {
-                RecruitEdge e = it.next();
                 RecruitVertex v = e.getDestination();
                 String creName = s.getCreatureName();
 
@@ -331,7 +497,7 @@ public class RecruitGraph
                     if (((s.getRemaining() + already) >= e.getNumber())
                         && (v.getRemaining() > 0))
                     {
-                        all.addAll(traverse(v, visited, legion));
+                        traverse(v, visited, legion, all);
                     }
                     else
                     {
@@ -344,7 +510,6 @@ public class RecruitGraph
                 }
             }
         }
-        return all;
     }
 
     Caretaker getCaretaker()
@@ -352,6 +517,130 @@ public class RecruitGraph
         return caretaker;
     }
 
+    private Closure getClosure()
+    {
+        Closure result = closure;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = closure;
+                if (result == null)
+                {
+                    result = new Closure(allVertex);
+                    closure = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int getRemaining(RecruitVertex vertex)
+    {
+        Caretaker current = caretaker;
+        if (current == null)
+        {
+            return BIGNUM;
+        }
+        int[] counts = remaining;
+        if (counts != null && vertex.index < counts.length)
+        {
+            return counts[vertex.index];
+        }
+        CreatureType type = getVariant().getCreatureByName(
+            vertex.getCreatureName());
+        return current.getAvailableCount(type);
+    }
+
+    private void setRemaining(CreatureType type, int count)
+    {
+        RecruitVertex vertex = creatureToVertex.get(type.getName());
+        int[] counts = remaining;
+        if (vertex != null && counts != null && vertex.index < counts.length)
+        {
+            int old = counts[vertex.index];
+            counts[vertex.index] = count;
+            if (changesUsableEdges(vertex, old, count))
+            {
+                availablePosition = null;
+            }
+        }
+    }
+
+    /**
+     * Whether an edge from or to the vertex becomes usable or unusable
+     * when its available count changes
+     */
+    private static boolean changesUsableEdges(RecruitVertex vertex,
+        int oldCount, int newCount)
+    {
+        if ((oldCount > 0) != (newCount > 0)
+            && !vertex.incomingEdges.isEmpty())
+        {
+            return true;
+        }
+        for (RecruitEdge e : vertex.outgoingEdges)
+        {
+            if ((oldCount >= e.getNumber()) != (newCount >= e.getNumber()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Read the available counts of all creatures from the caretaker */
+    private void updateRemaining()
+    {
+        Caretaker current = caretaker;
+        availablePosition = null;
+        if (current == null)
+        {
+            remaining = null;
+            return;
+        }
+        Variant variant = getVariant();
+        int[] counts = new int[allVertex.size()];
+        for (RecruitVertex vertex : allVertex)
+        {
+            String name = vertex.getCreatureName();
+            if (variant.isCreature(name))
+            {
+                counts[vertex.index] = current.getAvailableCount(variant
+                    .getCreatureByName(name));
+            }
+        }
+        remaining = counts;
+        availablePosition = null;
+    }
+
+    /**
+     * The positions in the depth first traversal from the vertex, only
+     * through creatures still available
+     */
+    private int[] getAvailablePositions(Closure c, RecruitVertex from)
+    {
+        AtomicReferenceArray<int[]> positions = availablePosition;
+        if (positions == null || positions.length() != c.size())
+        {
+            int[] counts = remaining;
+            if (counts == null || counts.length < c.size())
+            {
+                // vertices were added since the counts were read
+                updateRemaining();
+            }
+            positions = new AtomicReferenceArray<int[]>(c.size());
+            availablePosition = positions;
+        }
+        int[] position = positions.get(from.index);
+        if (position == null)
+        {
+            position = c.availablePositions(from, remaining);
+            positions.set(from.index, position);
+        }
+        return position;
+    }
+
     private Variant getVariant()
     {
         return variantKnower.getTheCurrentVariant();
@@ -387,7 +676,9 @@ public class RecruitGraph
      */
     private List<RecruitVertex> traverse(String cre, Legion legion)
     {
-        return traverse(getVertex(cre), new HashSet<RecruitVertex>(), legion);
+        List<RecruitVertex> all = new ArrayList<RecruitVertex>();
+        traverse(getVertex(cre), new HashSet<RecruitVertex>(), legion, all);
+        return all;
     }
 
     /* PUBLIC */
@@ -409,7 +700,7 @@ public class RecruitGraph
     public int numberOfRecruiterNeeded(String recruiter, String recruit,
         MasterBoardTerrain terrain, MasterHex hex)
     {
-        List<RecruitEdge> allEdge = getIncomingEdges(recruit);
+        List<RecruitEdge> allEdge = getVertex(recruit).incomingEdges;
         RecruitVertex source = getVertex(recruiter);
         CreatureType recruiterCre = getVariant().getCreatureByName(recruiter);
         CreatureType recruitCre = getVariant().getCreatureByName(recruit);
@@ -466,7 +757,16 @@ public class RecruitGraph
      */
     public void setCaretaker(Caretaker caretaker)
     {
+        if (this.caretaker != null)
+        {
+            this.caretaker.removeListener(caretakerListener);
+        }
         this.caretaker = caretaker;
+        updateRemaining();
+        if (caretaker != null)
+        {
+            caretaker.addListener(caretakerListener);
+        }
     }
 
     /**
@@ -474,7 +774,8 @@ public class RecruitGraph
      */
     public void clear()
     {
-        caretaker = null;
+        setCaretaker(null);
+        closure = null;
         allVertex.clear();
         allEdge.clear();
         creatureToVertex.clear();
@@ -489,21 +790,11 @@ public class RecruitGraph
      */
     public int getMaximumUsefulNumber(String cre)
     {
-        int mun = -1;
-
-        List<RecruitEdge> outgoing = getOutgoingEdges(cre);
-        Iterator<RecruitEdge> it = outgoing.iterator();
-        while (it.hasNext())
-        {
-            RecruitEdge e = it.next();
-
-            if (e.getNumber() > mun)
-            {
-                mun = e.getNumber();
-            }
-        }
-        return mun;
-
+        RecruitVertex vertex = getVertex(cre);
+        Closure c = getClosure();
+        // vertices added after the closure was computed have no edges
+        return vertex.index < c.size() ? c.maximumUsefulNumber[vertex.index]
+            : -1;
     }
 
     /**
@@ -642,27 +933,28 @@ public class RecruitGraph
     public boolean isRecruitDistanceLessThan(String lesser, String greater,
         int distance)
     {
-        List<RecruitVertex> all = traverse(lesser, null);
-        Iterator<RecruitVertex> it = all.iterator();
-        // Log.debug("isReachable('" + lesser + "', '" + greater + "')");
-        int steps = 0;
-        // distance including self - i.e. distance + 1
-        while (it.hasNext() && steps < distance + 1)
+        RecruitVertex from = getVertex(lesser);
+        RecruitVertex to = creatureToVertex.get(greater);
+        if (to == null)
         {
-            RecruitVertex v2 = it.next();
-            String name = v2.getCreatureName();
-            // Log.debug("isReachable: '" + name + "'");
-            if (name.compareTo(greater) == 0)
-            {
-                // Log.debug("Matched");
-                return true;
-            }
-            else
-            {
-                // Log.debug("Unmatched");
-            }
-            steps++;
+            return false;
         }
-        return false;
+        Closure c = getClosure();
+        if (from.index >= c.size() || to.index >= c.size())
+        {
+            // added after the closure was computed, i.e. without edges
+            return from == to;
+        }
+        if (caretaker == null)
+        {
+            return c.traversalPosition[from.index][to.index] <= distance;
+        }
+        // Without some creatures the way can only become longer
+        if (c.distance[from.index][to.index] > distance)
+        {
+            return false;
+        }
+        // distance including self - i.e. distance + 1
+        return getAvailablePositions(c, from)[to.index] <= distance;
     }
 }
@@ -13,6 +13,7 @@ import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -70,6 +71,9 @@ class Chit extends JPanel
     // Initialize early to avoid NullPointerException with GTK L&F
     private final String id;
 
+    /** The scale for which the creature images are pre-rendered */
+    private static volatile int prerenderScale = -1;
+
     final static BasicStroke oneWide = new BasicStroke(1);
     private final static BasicStroke threeWide = new BasicStroke(3);
 
@@ -195,12 +199,7 @@ class Chit extends JPanel
 
         Point point = getLocation();
 
-        // Images are 60x60, so if scale is close to that, avoid
-        // rescaling.
-        if (scale > 50 && scale < 70)
-        {
-            scale = 60;
-        }
+        scale = getImageScale(scale);
 
         rect = new Rectangle(point.x, point.y, scale, scale);
         setBounds(rect);
@@ -221,14 +220,8 @@ class Chit extends JPanel
             String[] names = cre.getImageNames();
             if (dubious)
             {
-                String[] names2 = new String[names.length + 1];
-                for (int i = 0; i < names.length; i++)
-                {
-                    names2[i] = names[i];
-                }
-                names2[names.length] = "QuestionMarkMask"
-                    + (cre.getBaseColor().equals("black") ? "Red" : "");
-                names = names2;
+                names = addQuestionMarkMask(names, cre.getBaseColor()
+                    .equals("black"));
             }
             bufferedImage = getImage(names, scale);
         }
@@ -236,44 +229,28 @@ class Chit extends JPanel
         {
             if (idPerhapsWithColor.startsWith("Titan-"))
             {
-                String[] filenames = new String[4 + (dubious ? 1 : 0)];
                 int power = getTitanPower();
                 String color = idPerhapsWithColor.split("-")[2] + "Colossus";
-                filenames[0] = "Plain" + "-" + color;
-                filenames[1] = "TitanMask";
-                filenames[2] = "Power-" + power + "-" + color;
-                int skill = (VariantSupport.getCurrentVariant()
-                    .getCreatureByName("Titan")).getSkill();
-                filenames[3] = "Skill-" + skill + "-" + color;
+                String[] filenames = getTitanImageNames(power, color);
 
                 if (dubious)
                 {
-                    filenames[4] = "QuestionMarkMask"
-                        + (color.equals("BlackColossus") ? "Red" : "");
+                    filenames = addQuestionMarkMask(filenames,
+                        color.equals("BlackColossus"));
                 }
 
                 bufferedImage = getImage(filenames, scale);
             }
             else if (idPerhapsWithColor.startsWith("Angel-"))
             {
-                String[] filenames = new String[5 + (dubious ? 1 : 0)];
-                int power = (VariantSupport.getCurrentVariant()
-                    .getCreatureByName("Angel")).getPower();
                 String color = playerColoredAngel ? (idPerhapsWithColor
                     .split("-")[2] + "Colossus") : "giantBlue";
-
-                filenames[0] = "Plain" + "-" + color;
-                filenames[1] = "AngelMask";
-                filenames[2] = "Power-" + power + "-" + color;
-                int skill = (VariantSupport.getCurrentVariant()
-                    .getCreatureByName("Angel")).getSkill();
-                filenames[3] = "Skill-" + skill + "-" + color;
-                filenames[4] = "Angel-Name-" + color;
+                String[] filenames = getAngelImageNames(color);
 
                 if (dubious)
                 {
-                    filenames[5] = "QuestionMarkMask"
-                        + (color.equals("BlackColossus") ? "Red" : "");
+                    filenames = addQuestionMarkMask(filenames,
+                        color.equals("BlackColossus"));
                 }
 
                 bufferedImage = getImage(filenames, scale);
@@ -338,6 +315,124 @@ class Chit extends JPanel
         return power;
     }
 
+    /**
+     * Images are 60x60, so if scale is close to that, avoid rescaling.
+     */
+    private static int getImageScale(int scale)
+    {
+        if (scale > 50 && scale < 70)
+        {
+            return 60;
+        }
+        return scale;
+    }
+
+    /**
+     * The layers of the image of a Titan chit.
+     * @param power The power of the Titan
+     * @param color The player color, e.g. "BlackColossus"
+     */
+    private static String[] getTitanImageNames(int power, String color)
+    {
+        int skill = (VariantSupport.getCurrentVariant()
+            .getCreatureByName("Titan")).getSkill();
+        return new String[] { "Plain" + "-" + color, "TitanMask",
+            "Power-" + power + "-" + color, "Skill-" + skill + "-" + color };
+    }
+
+    /**
+     * The layers of the image of an Angel chit in a player color.
+     * @param color The player color, e.g. "BlackColossus"
+     */
+    private static String[] getAngelImageNames(String color)
+    {
+        CreatureType angel = VariantSupport.getCurrentVariant()
+            .getCreatureByName("Angel");
+        return new String[] { "Plain" + "-" + color, "AngelMask",
+            "Power-" + angel.getPower() + "-" + color,
+            "Skill-" + angel.getSkill() + "-" + color, "Angel-Name-" + color };
+    }
+
+    /** The layers with the question mark on top, for dubious chits */
+    private static String[] addQuestionMarkMask(String[] names, boolean red)
+    {
+        String[] withMask = new String[names.length + 1];
+        System.arraycopy(names, 0, withMask, 0, names.length);
+        withMask[names.length] = "QuestionMarkMask" + (red ? "Red" : "");
+        return withMask;
+    }
+
+    /**
+     * Render the images of all creatures of the current variant, and of
+     * the Titans and Angels in all player colors, in the sizes in which
+     * their chits are mostly shown with the given scale (master board,
+     * dialogs, battle board), in a background thread.
+     * Then rescaling or opening the battle board does not have to render
+     * them one by one in the EDT; the images come from the cache.
+     */
+    public static void prerenderCreatureImages(final int scale)
+    {
+        prerenderScale = scale;
+        Thread prerenderer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                int[] sizes = { 2 * scale, 4 * scale, 5 * scale };
+                try
+                {
+                    List<String[]> allNames = getAllCreatureImageNames();
+                    List<String> directories = VariantSupport
+                        .getImagesDirectoriesList();
+                    for (int size : sizes)
+                    {
+                        if (prerenderScale != scale)
+                        {
+                            // rescaled meanwhile, these are not needed
+                            return;
+                        }
+                        int imageScale = getImageScale(size);
+                        StaticResourceLoader.prerenderCompositeImages(
+                            allNames, directories, imageScale, imageScale);
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    LOGGER.log(Level.WARNING,
+                        "Pre-rendering of creature images failed", e);
+                }
+                LOGGER.finest("Pre-rendered creature images for scale "
+                    + scale + ", "
+                    + StaticResourceLoader.getImageCacheStatus());
+            }
+        }, "ChitPrerenderer-" + scale);
+        prerenderer.setDaemon(true);
+        prerenderer.setPriority(Thread.MIN_PRIORITY);
+        prerenderer.start();
+    }
+
+    /**
+     * The layers of the images of all creatures, and of the starting
+     * Titans and the Angels in all player colors.
+     */
+    private static List<String[]> getAllCreatureImageNames()
+    {
+        List<String[]> allNames = new ArrayList<String[]>();
+        for (CreatureType type : VariantSupport.getCurrentVariant()
+            .getCreatureTypes())
+        {
+            allNames.add(type.getImageNames());
+        }
+        // what Player.getTitanPower() gives at the start of the game
+        int titanPower = 6;
+        for (PlayerColor playerColor : PlayerColor.values())
+        {
+            String color = playerColor.getName() + "Colossus";
+            allNames.add(getTitanImageNames(titanPower, color));
+            allNames.add(getAngelImageNames(color));
+        }
+        return allNames;
+    }
+
     private static Image getImage(String imageFilename, int scale)
     {
         ImageIcon tempIcon = null;
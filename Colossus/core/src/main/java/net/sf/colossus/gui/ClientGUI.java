@@ -442,6 +442,7 @@ public class ClientGUI implements IClientGUI, GUICallbacks
             options.saveOptions();
         }
         Scale.set(scale);
+        Chit.prerenderCreatureImages(scale);
 
         board = new MasterBoard(client, this);
 
@@ -1257,6 +1258,7 @@ public class ClientGUI implements IClientGUI, GUICallbacks
                 CreatureType.setNoBaseColor(newValue);
                 options.setOption(Options.noBaseColor, newValue);
                 net.sf.colossus.util.StaticResourceLoader.purgeImageCache();
+                Chit.prerenderCreatureImages(Scale.get());
                 repaintAllWindows();
             }
         });
@@ -1384,6 +1386,7 @@ public class ClientGUI implements IClientGUI, GUICallbacks
                 if (scale > 0)
                 {
                     Scale.set(scale);
+                    Chit.prerenderCreatureImages(scale);
                     rescaleAllWindows();
                 }
             }
@@ -1709,7 +1712,6 @@ public class ClientGUI implements IClientGUI, GUICallbacks
         board.alignLegions(startingHex);
         board.alignLegions(currentHex);
         board.highlightUnmovedLegions();
-        board.repaint();
         if (client.isMyLegion(legion))
         {
             pushUndoStack(legion.getMarkerId());
@@ -1734,7 +1736,6 @@ public class ClientGUI implements IClientGUI, GUICallbacks
         board.alignLegions(formerHex);
         board.alignLegions(currentHex);
         board.highlightUnmovedLegions();
-        board.repaint();
         if (isMyTurn())
         {
             if (isUndoStackEmpty())
@@ -100,7 +100,15 @@ public final class LegionInfoPanel extends JPanel
                 ucString = uncertainIndicator.substring(0);
             }
 
-            valueText = " (" + value + ucString + " points)";
+            String expectedString = "";
+            if (viewMode != Options.viewableOwnNum && ucString.length() > 0)
+            {
+                expectedString = ", ~"
+                    + Math.round(legion.getExpectedPointValue())
+                    + " expected";
+            }
+            valueText = " (" + value + ucString + " points" + expectedString
+                + ")";
         }
     }
 
@@ -545,10 +545,9 @@ public final class MasterBoard extends JPanel
         {
             public void actionPerformed(ActionEvent e)
             {
+                // both repaint the areas of the chits
                 clearRecruitedChits();
                 clearPossibleRecruitChits();
-                // TODO Only repaint needed hexes.
-                repaint();
             }
         };
 
@@ -2014,7 +2013,7 @@ public final class MasterBoard extends JPanel
             int chitScale2 = chitScale / 2;
             point.x -= chitScale2;
             point.y -= chitScale2;
-            marker.setLocation(point);
+            moveMarker(marker, point);
         }
         else if (numLegions == 2)
         {
@@ -2022,7 +2021,7 @@ public final class MasterBoard extends JPanel
             int chitScale4 = chitScale / 4;
             point.x -= 3 * chitScale4;
             point.y -= 3 * chitScale4;
-            marker.setLocation(point);
+            moveMarker(marker, point);
 
             point = new Point(startingPoint);
             point.x -= chitScale4;
@@ -2033,7 +2032,7 @@ public final class MasterBoard extends JPanel
             {
                 // Second marker can be null when loading during
                 // the engagement phase.
-                marker.setLocation(point);
+                moveMarker(marker, point);
             }
         }
         else if (numLegions == 3)
@@ -2042,26 +2041,40 @@ public final class MasterBoard extends JPanel
             int chitScale4 = chitScale / 4;
             point.x -= 3 * chitScale4;
             point.y -= 3 * chitScale4;
-            marker.setLocation(point);
+            moveMarker(marker, point);
 
             point = new Point(startingPoint);
             point.x -= chitScale4;
             point.y -= chitScale4;
             legion = (LegionClientSide)legions.get(1);
             marker = legionToMarkerMap.get(legion);
-            marker.setLocation(point);
+            moveMarker(marker, point);
 
             point = new Point(startingPoint);
             point.x -= chitScale4;
             point.y -= chitScale;
             legion = (LegionClientSide)legions.get(2);
             marker = legionToMarkerMap.get(legion);
-            marker.setLocation(point);
+            moveMarker(marker, point);
         }
 
         hex.repaint();
     }
 
+    /**
+     * Move a marker, repainting where it was and where it is now (a marker
+     * can stick out of its hex).
+     */
+    private void moveMarker(Marker marker, Point point)
+    {
+        if (!point.equals(marker.getLocation()))
+        {
+            repaint(marker.getBounds());
+            marker.setLocation(point);
+        }
+        repaint(marker.getBounds());
+    }
+
     private void alignLegions(Set<MasterHex> hexes)
     {
         for (MasterHex masterHex : hexes)
@@ -2076,7 +2089,6 @@ public final class MasterBoard extends JPanel
         selectHexes(client.findTallLegionHexes());
         selectHexes(client.findPendingSplitHexes(), Color.blue);
         selectHexes(client.findPendingUndoSplitHexes(), Color.blue);
-        repaint();
         Thread.yield();
     }
 
@@ -2086,7 +2098,6 @@ public final class MasterBoard extends JPanel
         selectHexes(gui.getStillToMoveHexes());
         selectHexes(gui.getPendingMoveHexes(), Color.blue);
         gui.setMover(null);
-        repaint();
     }
 
     void setPendingText(String text)
@@ -2192,7 +2203,7 @@ public final class MasterBoard extends JPanel
     {
         synchronized (legionToMarkerMap)
         {
-            legionToMarkerMap.remove(legion);
+            repaintChit(legionToMarkerMap.remove(legion));
             legionToMarkerMap.put(legion, marker);
         }
     }
@@ -2201,8 +2212,17 @@ public final class MasterBoard extends JPanel
     {
         synchronized (legionToMarkerMap)
         {
-            legionToMarkerMap.remove(legion);
-            recruitedChits.remove(legion);
+            repaintChit(legionToMarkerMap.remove(legion));
+            repaintChit(recruitedChits.remove(legion));
+        }
+    }
+
+    /** Repaint the area of a chit on the board, if there is one */
+    private void repaintChit(Chit chit)
+    {
+        if (chit != null)
+        {
+            repaint(chit.getBounds());
         }
     }
 
@@ -2324,7 +2344,6 @@ public final class MasterBoard extends JPanel
                     return false; // keep going
                 }
             });
-        repaint();
     }
 
     /*
@@ -2838,6 +2857,7 @@ public final class MasterBoard extends JPanel
 
     private void paintHighlights(final Graphics2D g)
     {
+        final Rectangle clip = g.getClipBounds();
         ArrayHelper.findFirstMatch(guiHexArray,
             new NullCheckPredicate<GUIMasterHex>(false)
             {
@@ -2845,7 +2865,10 @@ public final class MasterBoard extends JPanel
                 public boolean matchesNonNullValue(GUIMasterHex hex)
 
                 {
-                    hex.paintHighlightIfNeeded(g);
+                    if (clip.intersects(hex.getBounds()))
+                    {
+                        hex.paintHighlightIfNeeded(g);
+                    }
                     return false; // keep going
                 }
             });
@@ -2868,9 +2891,13 @@ public final class MasterBoard extends JPanel
 
     public void paintRecruitedChits(Graphics g)
     {
+        Rectangle clip = g.getClipBounds();
         for (Chit chit : recruitedChits.values())
         {
-            chit.paintComponent(g);
+            if (clip.intersects(chit.getBounds()))
+            {
+                chit.paintComponent(g);
+            }
         }
     }
 
@@ -2930,14 +2957,13 @@ public final class MasterBoard extends JPanel
             point.x -= scale / 2;
             point.y -= scale / 2;
             chit.setLocation(point);
+            repaintChit(chit);
         }
-        repaint();
     }
 
     void cleanRecruitedChit(LegionClientSide legion)
     {
-        recruitedChits.remove(legion);
-        repaint();
+        repaintChit(recruitedChits.remove(legion));
     }
 
     // all possible recruit chits, one hex
@@ -2973,6 +2999,7 @@ public final class MasterBoard extends JPanel
         for (Chit chit : recruitedChits.values())
         {
             remove(chit);
+            repaintChit(chit);
         }
         recruitedChits.clear();
     }
@@ -2991,11 +3018,15 @@ public final class MasterBoard extends JPanel
     private void paintPossibleRecruitChits(Graphics g)
     {
         // Each returned list is the list of chits for one hex
+        Rectangle clip = g.getClipBounds();
         for (List<Chit> chits : possibleRecruitChits.values())
         {
             for (Chit chit : chits)
             {
-                chit.paintComponent(g);
+                if (clip.intersects(chit.getBounds()))
+                {
+                    chit.paintComponent(g);
+                }
             }
         }
     }
@@ -1,11 +1,15 @@
 package net.sf.colossus.server;
 
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import net.sf.colossus.common.IOptions;
 import net.sf.colossus.common.Options;
+import net.sf.colossus.game.BattleCritter;
+import net.sf.colossus.game.BattleReachability;
 import net.sf.colossus.game.Game;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.MasterBoardTerrain;
@@ -34,6 +38,8 @@ public class BattleMovementServerSide
     final boolean cumulativeSlow;
     final boolean oneHexAllowed;
 
+    private final Map<MasterBoardTerrain, BattleReachability> reachabilities = new HashMap<MasterBoardTerrain, BattleReachability>();
+
     BattleMovementServerSide(IOptions options, Game game)
     {
         this.game = game;
@@ -42,72 +48,46 @@ public class BattleMovementServerSide
         oneHexAllowed = options.getOption(Options.oneHexAllowed);
     }
 
-    /** Recursively find moves from this hex.  Return a set of string hex IDs
-     *  for all legal destinations.  Do not double back.  If ignoreMobileAllies
-     *  is true, pretend that allied creatures that can move out of the
-     *  way are not there. */
-    private Set<BattleHex> findMoves(BattleHex hex,
-        CreatureServerSide critter, boolean flies, int movesLeft,
-        int cameFrom, boolean ignoreMobileAllies, boolean first)
+    /** The reachability engine for the given battle land, created once
+     *  per land and game.
+     */
+    private BattleReachability getReachability(MasterBoardTerrain terrain)
     {
-        Set<BattleHex> set = new HashSet<BattleHex>();
-        for (int i = 0; i < 6; i++)
+        BattleReachability reachability = reachabilities.get(terrain);
+        if (reachability == null)
         {
-            // Do not double back.
-            if (i != cameFrom)
-            {
-                BattleHex neighbor = hex.getNeighbor(i);
-                if (neighbor != null)
-                {
-                    int reverseDir = (i + 3) % 6;
-                    int entryCost;
-
-                    CreatureServerSide bogey = getBattleSS().getCreatureSS(
-                        neighbor);
-                    if (bogey == null
-                        || (ignoreMobileAllies
-                            && bogey.getMarkerId().equals(
-                                critter.getMarkerId()) && !getBattleSS()
-                            .isInContact(bogey, false)))
-                    {
-                        entryCost = neighbor.getEntryCost(critter.getType(),
-                            reverseDir, cumulativeSlow);
-                    }
-                    else
-                    {
-                        entryCost = BattleHex.IMPASSIBLE_COST;
-                    }
-
-                    if ((entryCost != BattleHex.IMPASSIBLE_COST)
-                        && ((entryCost <= movesLeft) || (first && oneHexAllowed)))
-                    {
-                        // Mark that hex as a legal move.
-                        set.add(neighbor);
-
-                        // If there are movement points remaining, continue
-                        // checking moves from there.  Fliers skip this
-                        // because flying is more efficient.
-                        if (!flies && movesLeft > entryCost)
-                        {
-                            set.addAll(findMoves(neighbor, critter, flies,
-                                movesLeft - entryCost, reverseDir,
-                                ignoreMobileAllies, false));
-                        }
-                    }
+            reachability = new BattleReachability(terrain);
+            reachabilities.put(terrain, reachability);
+        }
+        return reachability;
+    }
 
-                    // Fliers can fly over any hex for 1 movement point,
-                    // but some Hex cannot be flown over by some creatures.
-                    if (flies && movesLeft > 1
-                        && neighbor.canBeFlownOverBy(critter.getType()))
-                    {
-                        set.addAll(findMoves(neighbor, critter, flies,
-                            movesLeft - 1, reverseDir, ignoreMobileAllies,
-                            false));
-                    }
-                }
+    /** The hexes the critter can not enter.  If ignoreMobileAllies is
+     *  true, pretend that allied creatures that can move out of the way
+     *  are not there. */
+    private long findOccupiedHexes(CreatureServerSide critter,
+        boolean ignoreMobileAllies)
+    {
+        long seen = 0;
+        long occupied = 0;
+        for (BattleCritter bogey : getBattleSS().getAllCritters())
+        {
+            BattleHex hex = bogey.getCurrentHex();
+            // like getCreatureSS(hex): the first one in a hex decides
+            if (BattleReachability.contains(seen, hex))
+            {
+                continue;
+            }
+            seen = BattleReachability.with(seen, hex);
+            if (!(ignoreMobileAllies
+                && ((CreatureServerSide)bogey).getMarkerId().equals(
+                    critter.getMarkerId()) && !getBattleSS().isInContact(
+                bogey, false)))
+            {
+                occupied = BattleReachability.with(occupied, hex);
             }
         }
-        return set;
+        return occupied;
     }
 
     /** This method is called by the defender on turn 1 in a
@@ -149,10 +129,14 @@ public class BattleMovementServerSide
             }
             else
             {
-                set = findMoves(critter.getCurrentHex(), critter,
-                    critter.isFlier(),
-                    critter.getSkill() - critter.getSlowed(), -1,
-                    ignoreMobileAllies, true);
+                BattleReachability reachability = getReachability(getBattleSS()
+                    .getLocation().getTerrain());
+                long moves = reachability.findMoves(critter.getCurrentHex(),
+                    critter.getType(),
+                    critter.getSkill() - critter.getSlowed(),
+                    findOccupiedHexes(critter, ignoreMobileAllies),
+                    cumulativeSlow, oneHexAllowed);
+                set = reachability.toHexSet(moves);
             }
         }
         return set;
@@ -26,8 +26,10 @@ import net.sf.colossus.game.PlayerColor;
 import net.sf.colossus.game.actions.Recruitment;
 import net.sf.colossus.game.actions.Summoning;
 import net.sf.colossus.util.ErrorUtils;
+import net.sf.colossus.util.EventMetrics;
 import net.sf.colossus.util.InstanceTracker;
 import net.sf.colossus.util.Split;
+import net.sf.colossus.util.TraceRecorder;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.CreatureType;
 import net.sf.colossus.variant.MasterHex;
@@ -46,7 +48,7 @@ import net.sf.colossus.variant.MasterHex;
  *
  *  @author David Ripton
  */
-final class ClientHandler extends ClientHandlerStub implements IClient
+class ClientHandler extends ClientHandlerStub implements IClient
 {
     private static final Logger LOGGER = Logger.getLogger(ClientHandler.class
         .getName());
@@ -221,14 +223,19 @@ final class ClientHandler extends ClientHandlerStub implements IClient
     {
         try
         {
+            EventMetrics.getClientStats(getClientName()).addBytesIn(
+                byteBuffer.remaining());
             CharBuffer charBuff = decoder.decode(byteBuffer);
 
             String msg = incompleteInput + charBuff.toString();
             incompleteInput = "";
             incompleteText = "";
 
-            String msg1 = msg.replaceAll("\r\n|\r|\n", "\\\\n");
-            LOGGER.finest("Decoded string is >>>>>" + msg1 + "<<<<<");
+            if (LOGGER.isLoggable(Level.FINEST))
+            {
+                String msg1 = msg.replaceAll("\r\n|\r|\n", "\\\\n");
+                LOGGER.finest("Decoded string is >>>>>" + msg1 + "<<<<<");
+            }
 
             int processed = 0;
 
@@ -239,24 +246,7 @@ final class ClientHandler extends ClientHandlerStub implements IClient
                 String line = lines[i];
                 if (i < len - 1)
                 {
-                    LOGGER.finest("before processing cmd '" + line + "'");
-                    List<String> li = Split.split(sep, line);
-                    String method = li.remove(0);
-                    if (signonName == null && !method.equals(Constants.signOn))
-                    {
-                        LOGGER
-                            .log(Level.SEVERE,
-                                "First packet must be signOn, but it is "
-                                    + method);
-                    }
-                    else
-                    {
-                        String logMessage = "RECEIVD "
-                            + getTruncatedPlayerName() + " <- " + line;
-                        LOGGER.finer(logMessage);
-                        doCallMethodInTryBlock(line, method, li);
-                    }
-                    LOGGER.finest("after  processing line '" + line + "'");
+                    processLine(line);
                     processed++;
                 }
                 else if (i == len - 1 && line.equals(""))
@@ -274,8 +264,11 @@ final class ClientHandler extends ClientHandlerStub implements IClient
                 }
             }
 
-            LOGGER.log(Level.FINEST, "Processed " + processed + " commands"
-                + incompleteText + ".");
+            if (LOGGER.isLoggable(Level.FINEST))
+            {
+                LOGGER.log(Level.FINEST, "Processed " + processed + " commands"
+                    + incompleteText + ".");
+            }
         }
         catch (CharacterCodingException cce)
         {
@@ -285,11 +278,53 @@ final class ClientHandler extends ClientHandlerStub implements IClient
         }
     }
 
-    private void sendViaChannel(String msg)
+    /**
+     * Process one complete line (= one message) received from the client.
+     */
+    void processLine(String line)
+    {
+        if (LOGGER.isLoggable(Level.FINEST))
+        {
+            LOGGER.finest("before processing cmd '" + line + "'");
+        }
+        TraceRecorder.record(TraceRecorder.SERVER_RECEIVED, line,
+            getConnectionId());
+        List<String> li = Split.split(sep, line);
+        String method = li.remove(0);
+        if (signonName == null && !method.equals(Constants.signOn))
+        {
+            LOGGER.log(Level.SEVERE, "First packet must be signOn, but it is "
+                + method);
+        }
+        else
+        {
+            if (LOGGER.isLoggable(Level.FINER))
+            {
+                String logMessage = "RECEIVD " + getTruncatedPlayerName()
+                    + " <- " + line;
+                LOGGER.finer(logMessage);
+            }
+            doCallMethodInTryBlock(line, method, li);
+        }
+        if (LOGGER.isLoggable(Level.FINEST))
+        {
+            LOGGER.finest("after  processing line '" + line + "'");
+        }
+    }
+
+    protected void sendViaChannel(String msg)
     {
         sendViaChannelRaw(msg);
     }
 
+    /**
+     * @return Whether there is (still) a connection to send messages over
+     */
+    protected boolean hasChannel()
+    {
+        return socketChannel != null;
+    }
+
     @Override
     protected void flushQueuedContent()
     {
@@ -393,6 +428,12 @@ final class ClientHandler extends ClientHandlerStub implements IClient
         return clientVersion >= IServer.CLIENT_VERSION_NEW_PLAYER_INFO;
     }
 
+    @Override
+    public boolean canHandleSplitPredictionRestore()
+    {
+        return clientVersion >= IServer.CLIENT_VERSION_SPLIT_PREDICTION_RESTORE;
+    }
+
     public void cloneRedoQueue(ClientHandler oldCH)
     {
         // Remove the reconnect-related messages
@@ -445,7 +486,11 @@ final class ClientHandler extends ClientHandlerStub implements IClient
     private void enqueueForResend(MessageForClient mfc)
     {
         // System.out.println("Putting to redo queue: " + mfc.getShortenedMessage());
-        LOGGER.finest("Putting to redo queue: " + mfc.getShortenedMessage());
+        if (LOGGER.isLoggable(Level.FINEST))
+        {
+            LOGGER.finest("Putting to redo queue: "
+                + mfc.getShortenedMessage());
+        }
         MessageForClient newOne = new MessageForClient(mfc, newCounterRedo++);
         resendQueue.add(newOne);
     }
@@ -532,6 +577,70 @@ final class ClientHandler extends ClientHandlerStub implements IClient
             + "contains now " + resendQueue.size() + " items!");
     }
 
+    /**
+     * For a spectator: instead of everything the stub got since the game
+     * started, only the messages needed to set up the board, and then the
+     * snapshot of the current game state.
+     *
+     * @param stub The stub which collected all messages for spectators
+     * @param snapshot Stub which recorded the snapshot messages, see
+     *        Server.recordSpectatorSnapshot()
+     */
+    public void initResendQueueFromSnapshot(ClientHandlerStub stub,
+        ClientHandlerStub snapshot)
+    {
+        boolean initBoardSeen = false;
+
+        resendQueue.clear();
+        List<MessageForClient> tempQ = new ArrayList<MessageForClient>();
+        tempQ.addAll(stub.historyQueue);
+        tempQ.addAll(stub.resendQueue);
+
+        for (MessageForClient mfc : tempQ)
+        {
+            String method = mfc.getMethod();
+            if (method.equals(Constants.initBoard) && !initBoardSeen)
+            {
+                initBoardSeen = true;
+                int maxTurn = server.getGame().getTurnNumber();
+                String replayOn = Constants.replayOngoing + sep + true + sep
+                    + maxTurn;
+                enqueueForResend(new MessageForClient(0, 0, replayOn));
+                enqueueForResend(mfc);
+            }
+
+            // after the board is set up, only option changes are needed,
+            // the snapshot tells the rest
+            else if (initBoardSeen && !method.equals(Constants.syncOption))
+            {
+                // skip
+            }
+
+            else if (method.equals(Constants.replayOngoing)
+                || method.equals(Constants.redoOngoing)
+                || method.equals(Constants.updateCreatureCount)
+                || method.equals(Constants.tellWhatsHappening))
+            {
+                // skip
+            }
+
+            else
+            {
+                enqueueForResend(mfc);
+            }
+        }
+
+        for (MessageForClient mfc : snapshot.resendQueue)
+        {
+            enqueueForResend(mfc);
+        }
+
+        String replayOff = Constants.replayOngoing + sep + false + sep + 0;
+        enqueueForResend(new MessageForClient(0, 0, replayOff));
+        LOGGER.fine("Initialized resendQueue from stub and snapshot, "
+            + "contains now " + resendQueue.size() + " items!");
+    }
+
     public void initResendQueueFromOther(ClientHandlerStub otherCH)
     {
         boolean kickPhaseSeen = false;
@@ -947,6 +1056,7 @@ final class ClientHandler extends ClientHandlerStub implements IClient
 
         if (isTemporarilyInTrouble())
         {
+            recordSendQueueLength();
             return;
         }
 
@@ -965,6 +1075,7 @@ final class ClientHandler extends ClientHandlerStub implements IClient
             attemptWritingToChannel();
         }
 
+        recordSendQueueLength();
         if (previousRetries > 0)
         {
             setTemporarilyInTrouble();
@@ -980,6 +1091,12 @@ final class ClientHandler extends ClientHandlerStub implements IClient
         }
     }
 
+    private void recordSendQueueLength()
+    {
+        EventMetrics.getClientStats(getClientName()).setSendQueueLength(
+            queue.size());
+    }
+
     private String truncateMessage(String message)
     {
         String printLine;
@@ -1015,6 +1132,8 @@ final class ClientHandler extends ClientHandlerStub implements IClient
             if (written > 0)
             {
                 writtenTotal += written;
+                EventMetrics.getClientStats(getClientName()).addBytesOut(
+                    written);
             }
 
             if (writtenTotal < should)
@@ -1125,7 +1244,11 @@ final class ClientHandler extends ClientHandlerStub implements IClient
                 recentlyProcessedLines.remove(0);
             }
             recentlyProcessedLines.add(line);
+            long startNanos = System.nanoTime();
             callMethod(method, li);
+            long nanos = System.nanoTime() - startNanos;
+            EventMetrics.SERVER_COMMANDS.record(method, nanos);
+            EventMetrics.getClientStats(getClientName()).addCommand(nanos);
         }
         catch (Exception e)
         {
@@ -1136,6 +1259,7 @@ final class ClientHandler extends ClientHandlerStub implements IClient
                 + "\n\nGame might be unstable or hang from now on...";
             LOGGER.severe(message);
             LOGGER.info(dumpLastProcessedLines());
+            LOGGER.info(TraceRecorder.dump());
             ErrorUtils.showExceptionDialog(null, message, "Exception caught!",
                 true);
         }
@@ -1734,13 +1858,12 @@ final class ClientHandler extends ClientHandlerStub implements IClient
             LOGGER.finest("Skipping sendToClient to player " + playerName
                 + " because isGone is already set.");
         }
-        else if (obsolete || socketChannel == null)
+        else if (obsolete || !hasChannel())
         {
             // do not send any more
             if (cantSendMessageRepeated < 3)
             {
-                int flags = (obsolete ? 1 : 0)
-                    | (socketChannel == null ? 2 : 0);
+                int flags = (obsolete ? 1 : 0) | (!hasChannel() ? 2 : 0);
                 LOGGER.info("Attempt to send to player " + playerName
                     + " when client connection already gone (reason: " + flags
                     + ")- message: " + message);
@@ -1764,6 +1887,8 @@ final class ClientHandler extends ClientHandlerStub implements IClient
             //prn(logMessage);
             // LOGGER.finer(logMessage);
 
+            TraceRecorder.record(TraceRecorder.SERVER_SENT, message,
+                getConnectionId());
             sendViaChannel(message);
 
             // TODO: are the null checks needed? Can that ever happen?
@@ -138,6 +138,12 @@ public class ClientHandlerStub implements IClient
         return true;
     }
 
+    public boolean canHandleSplitPredictionRestore()
+    {
+        // stub can, real clients depending on client version
+        return true;
+    }
+
     public void setConnectionId(int id)
     {
         this.connectionId = id;
@@ -450,6 +456,12 @@ public class ClientHandlerStub implements IClient
             + (slayer != null ? slayer.getName() : null));
     }
 
+    public void restoreSplitPrediction(Player owner, String summary)
+    {
+        sendToClient(Constants.restoreSplitPrediction + sep + owner.getName()
+            + sep + summary);
+    }
+
     public void askConcede(Legion ally, Legion enemy)
     {
         sendToClient(Constants.askConcede + sep + ally.getMarkerId() + sep
@@ -10,6 +10,10 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +40,24 @@ final class FileServerThread extends Thread
     private final int port;
     private boolean keepGoingOn = true;
 
+    /**
+     * Requests are answered in these threads, so that one slow client
+     * (e.g. getting a whole variant bundle) does not hold up the others.
+     */
+    private final ExecutorService requestHandlers = Executors
+        .newFixedThreadPool(Constants.MAX_MAX_PLAYERS, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "FileServerRequest-"
+                    + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
     FileServerThread(Server server, int port)
     {
         super();
@@ -93,88 +115,20 @@ final class FileServerThread extends Thread
             {
                 try
                 {
-                    Socket fileClient = fileServer.accept();
+                    final Socket fileClient = fileServer.accept();
                     if (!keepGoingOn)
                     {
+                        fileClient.close();
                         break;
                     }
 
-                    InetAddress requester = fileClient.getInetAddress();
-                    boolean knownIP = server.isKnownClient(requester);
-                    if (knownIP)
+                    requestHandlers.execute(new Runnable()
                     {
-                        InputStream is = fileClient.getInputStream();
-
-                        BufferedReader in = new BufferedReader(
-                            new InputStreamReader(is));
-
-                        String request = in.readLine();
-
-                        if (request == null)
-                        {
-                            LOGGER.log(Level.WARNING,
-                                "Could not read request, got null");
-                            fileClient.close();
-                            continue;
-                        }
-
-                        OutputStream os = fileClient.getOutputStream();
-
-                        LOGGER.log(Level.FINEST, "Serving request " + request
-                            + " from " + fileClient);
-
-                        boolean ignoreFail = false;
-
-                        List<String> li = Split.split(separator, request);
-
-                        String filename = li.remove(0);
-
-                        // TODO Remove this comment if nothing happened :)
-                        // 2009-03 Now clients sends it. Let's see.
-
-                        if (filename
-                            .equals(StaticResourceLoader.FILESERVER_IGNOREFAIL_SIGNAL))
+                        public void run()
                         {
-                            ignoreFail = true;
-                            filename = li.remove(0);
+                            serveRequest(fileClient);
                         }
-
-                        // TODO Currently only commented out, remove whole
-                        //      stuff below at some point.
-                        // Meanwhile, suppress the warnings at least for the
-                        // README and the markersFile...
-                        // we know that they usually print warnings for other
-                        // than "Default" directory.
-
-                        // @TODO: e.g. when the over-next public build is out
-                        // (the one right now (20.4.2007) does not contain
-                        // this yet), make the client one day submit the
-                        // ignore-fail signal, and remove this
-                        //  markersFileName/README temporary hack.
-                        /*
-                                                if (filename.startsWith(Constants.markersNameFile)
-                                                    || filename.startsWith("README"))
-                                                {
-                                                    ignoreFail = true;
-                                                }
-                        */
-                        byte[] data = StaticResourceLoader.getBytesFromFile(
-                            filename, li, true, ignoreFail);
-
-                        if (data != null)
-                        {
-                            os.write(data);
-                        }
-                        // else we just write nothing.
-                    }
-                    else
-                    {
-                        LOGGER.log(Level.WARNING, "SOMEBODY NOT A CLIENT "
-                            + "IS TRYING TO ACCESS A FILE !");
-                        LOGGER.log(Level.WARNING, "Request was from "
-                            + fileClient);
-                    }
-                    fileClient.close();
+                    });
                 }
                 catch (Exception e)
                 {
@@ -183,6 +137,7 @@ final class FileServerThread extends Thread
                 }
             }
 
+            requestHandlers.shutdown();
             LOGGER.log(Level.FINEST, "FileServerThread is done");
 
             try
@@ -204,4 +159,117 @@ final class FileServerThread extends Thread
         }
 
     }
+
+    /**
+     * Answer one request: a single file, the manifest of all cached files,
+     * or a bundle of cached files.
+     */
+    private void serveRequest(Socket fileClient)
+    {
+        try
+        {
+            InetAddress requester = fileClient.getInetAddress();
+            boolean knownIP = server.isKnownClient(requester);
+            if (knownIP)
+            {
+                InputStream is = fileClient.getInputStream();
+
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                    is));
+
+                String request = in.readLine();
+
+                if (request == null)
+                {
+                    LOGGER.log(Level.WARNING,
+                        "Could not read request, got null");
+                    return;
+                }
+
+                OutputStream os = fileClient.getOutputStream();
+
+                LOGGER.log(Level.FINEST, "Serving request " + request
+                    + " from " + fileClient);
+
+                boolean ignoreFail = false;
+
+                List<String> li = Split.split(separator, request);
+
+                String filename = li.remove(0);
+
+                if (filename
+                    .equals(StaticResourceLoader.FILESERVER_MANIFEST_SIGNAL))
+                {
+                    StaticResourceLoader.writeFileCacheManifest(os);
+                    return;
+                }
+                if (filename
+                    .equals(StaticResourceLoader.FILESERVER_BUNDLE_SIGNAL))
+                {
+                    StaticResourceLoader.writeFileCacheBundle(li, os);
+                    return;
+                }
+
+                // TODO Remove this comment if nothing happened :)
+                // 2009-03 Now clients sends it. Let's see.
+
+                if (filename
+                    .equals(StaticResourceLoader.FILESERVER_IGNOREFAIL_SIGNAL))
+                {
+                    ignoreFail = true;
+                    filename = li.remove(0);
+                }
+
+                // TODO Currently only commented out, remove whole
+                //      stuff below at some point.
+                // Meanwhile, suppress the warnings at least for the
+                // README and the markersFile...
+                // we know that they usually print warnings for other
+                // than "Default" directory.
+
+                // @TODO: e.g. when the over-next public build is out
+                // (the one right now (20.4.2007) does not contain
+                // this yet), make the client one day submit the
+                // ignore-fail signal, and remove this
+                //  markersFileName/README temporary hack.
+                /*
+                                        if (filename.startsWith(Constants.markersNameFile)
+                                            || filename.startsWith("README"))
+                                        {
+                                            ignoreFail = true;
+                                        }
+                */
+                byte[] data = StaticResourceLoader.getBytesFromFile(
+                    filename, li, true, ignoreFail);
+
+                if (data != null)
+                {
+                    os.write(data);
+                }
+                // else we just write nothing.
+            }
+            else
+            {
+                LOGGER.log(Level.WARNING, "SOMEBODY NOT A CLIENT "
+                    + "IS TRYING TO ACCESS A FILE !");
+                LOGGER.log(Level.WARNING, "Request was from " + fileClient);
+            }
+        }
+        catch (Exception e)
+        {
+            LOGGER.log(Level.WARNING, "FileServerThread : " + e.toString());
+        }
+        finally
+        {
+            try
+            {
+                fileClient.close();
+            }
+            catch (IOException e)
+            {
+                LOGGER.log(Level.FINEST, "FileServerThread : " + e
+                    + " while closing client socket");
+            }
+        }
+    }
 }
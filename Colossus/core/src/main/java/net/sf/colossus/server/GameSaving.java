@@ -27,6 +27,7 @@ import net.sf.colossus.game.Phase;
 import net.sf.colossus.game.Player;
 import net.sf.colossus.util.BuildInfo;
 import net.sf.colossus.util.ErrorUtils;
+import net.sf.colossus.util.EventMetrics;
 import net.sf.colossus.variant.BattleHex;
 import net.sf.colossus.variant.CreatureType;
 
@@ -114,6 +115,7 @@ public class GameSaving
         */
         takeSnapshotAtBeginOfPhase();
         game.getHistory().flushRecentToRoot();
+        game.updateHistoryCheckpoint();
     }
 
     // unchecked conversions from JDOM
@@ -157,6 +159,13 @@ public class GameSaving
         // System.out.println("- Adding history");
         root.addContent(game.getHistory().getCopy());
 
+        // What replaying that history gives, so that loading can skip it
+        Element checkpoint = game.getHistoryCheckpointElement();
+        if (checkpoint != null)
+        {
+            root.addContent(checkpoint);
+        }
+
         // Add the events since last commit point, some of them are more
         // detailed level. Redo log might also be empty, add it anyway,
         // otherwise there is trouble during loading.
@@ -557,7 +566,9 @@ public class GameSaving
     {
         try
         {
+            long start = System.nanoTime();
             saveGame(filename, autoSave);
+            EventMetrics.SAVE_GAME.record(System.nanoTime() - start);
         }
         catch (Exception e)
         {
@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,6 +21,7 @@ import org.jdom.Element;
 
 import net.sf.colossus.client.Client;
 import net.sf.colossus.client.Client.ConnectionInitException;
+import net.sf.colossus.client.SplitPredictionView;
 import net.sf.colossus.common.Constants;
 import net.sf.colossus.common.IOptions;
 import net.sf.colossus.common.Options;
@@ -73,6 +75,9 @@ public class GameServerSide extends Game
     private static final Logger LOGGER = Logger.getLogger(GameServerSide.class
         .getName());
 
+    /** Game over message when isTurnLimitReached() ended the game */
+    protected static final String TURN_LIMIT_MESSAGE = "Draw (turn limit)";
+
     private int activePlayerNum;
     private int lastRecruitTurnNumber;
     private boolean battleInProgress;
@@ -107,6 +112,15 @@ public class GameServerSide extends Game
     private final WhatNextManager whatNextManager;
     private History history;
 
+    /**
+     * State the history replay would produce, kept up to date at each
+     * commit point; null if not yet created or found unusable.
+     */
+    private HistoryCheckpoint historyCheckpoint;
+
+    /** Whether loading the game skipped the replay, for tests */
+    private boolean loadedFromCheckpoint = false;
+
     private final BattleStrikeServerSide battleStrikeSS;
     private final MovementServerSide movementSS;
 
@@ -137,6 +151,9 @@ public class GameServerSide extends Game
 
     private final DiceStatistics diceStatCollector;
 
+    /** Only if the WebServer wants the game's statistics */
+    private final GameTelemetry telemetry;
+
     /** Shortcut for UnitTests,
      *  to create a Game with dummy input objects on the fly.
      */
@@ -201,6 +218,18 @@ public class GameServerSide extends Game
             this.diceStatCollector = null;
         }
 
+        String telemetryFileName = options
+            .getStringOption(Options.gameTelemetryFile);
+        if (telemetryFileName != null)
+        {
+            this.telemetry = new GameTelemetry(telemetryFileName,
+                variant.getName());
+        }
+        else
+        {
+            this.telemetry = null;
+        }
+
         InstanceTracker.register(this, "Game at port " + getPort());
 
         // The caretaker object was created by super(...)
@@ -1470,6 +1499,12 @@ public class GameServerSide extends Game
 
             pendingAdvancePhase = false;
 
+            // e.g. turn limit reached
+            if (!gameShouldContinue())
+            {
+                return;
+            }
+
             if (isPhase(Phase.SPLIT))
             {
                 server.allSetupTurnState();
@@ -1507,6 +1542,12 @@ public class GameServerSide extends Game
             {
                 activePlayerNum = 0;
                 turnNumber++;
+                if (isTurnLimitReached(turnNumber))
+                {
+                    LOGGER.info("Turn limit reached in turn " + turnNumber
+                        + ", ending game as draw.");
+                    setGameOver(true, TURN_LIMIT_MESSAGE);
+                }
                 if (turnNumber - lastRecruitTurnNumber > 100
                     && Options.isStresstest())
                 {
@@ -1539,6 +1580,11 @@ public class GameServerSide extends Game
 
     private void setupPhase()
     {
+        if (telemetry != null)
+        {
+            telemetry.phaseStarted(getTurnNumber(), getActivePlayer()
+                .getName());
+        }
         if (isPhase(Phase.SPLIT))
         {
             setupSplit();
@@ -1869,6 +1915,8 @@ public class GameServerSide extends Game
 
             // Load history (RedoLog stuff is handled later)
             history = new History(root);
+            historyCheckpoint = HistoryCheckpoint.fromElement(root
+                .getChild(HistoryCheckpoint.ELEMENT_NAME), getVariant());
 
             initServer();
             // Remaining stuff has been moved to loadGame2()
@@ -2010,14 +2058,37 @@ public class GameServerSide extends Game
         server.allTellReplay(true, turnNumber);
         server.allInitBoard();
 
-        // XXX
-        // System.out
-        //     .println("\n################\nFiring history events from XML");
-        history.fireEventsFromXML(server);
-        // System.out
-        //    .println("################\nCompleted Firing history events from XML\n");
+        if (historyCheckpoint != null)
+        {
+            // Apply the history events saved after the checkpoint
+            historyCheckpoint.update(history.getEventElements());
+            if (!historyCheckpoint.matchesLoadedLegions(this))
+            {
+                LOGGER.warning("History checkpoint does not match the "
+                    + "loaded game, replaying the whole history instead");
+                historyCheckpoint = null;
+            }
+        }
 
-        boolean ok = resyncBackupData();
+        boolean ok;
+        if (historyCheckpoint != null && !Options.isFullReplayOnLoad()
+            && server.allCanHandleSplitPredictionRestore())
+        {
+            restoreFromHistoryCheckpoint();
+            loadedFromCheckpoint = true;
+            ok = true;
+        }
+        else
+        {
+            // XXX
+            // System.out
+            //     .println("\n################\nFiring history events from XML");
+            history.fireEventsFromXML(server);
+            // System.out
+            //    .println("################\nCompleted Firing history events from XML\n");
+
+            ok = resyncBackupData();
+        }
         LOGGER.info("Loading and resync result: " + ok);
 
         if (!ok)
@@ -2069,6 +2140,92 @@ public class GameServerSide extends Game
         return ok;
     }
 
+    /**
+     * Instead of replaying the whole history to all clients: put the loaded
+     * data into place, and give the clients what the replay would have
+     * told them, from the history checkpoint.
+     */
+    private void restoreFromHistoryCheckpoint()
+    {
+        LOGGER.info("Loading from history checkpoint, skipping replay of "
+            + historyCheckpoint.getEventCount() + " history events");
+
+        for (Player p : getPlayers())
+        {
+            PlayerServerSide player = (PlayerServerSide)p;
+            player.restoreBackupData();
+            if (player.getDeadBeforeSave())
+            {
+                player.setDead(true);
+            }
+        }
+
+        Integer lastRoll = null;
+        for (Map.Entry<String, Integer> entry : historyCheckpoint
+            .getMovementRolls().entrySet())
+        {
+            lastRoll = entry.getValue();
+            ((PlayerServerSide)getPlayerByName(entry.getKey()))
+                .setMovementRoll(lastRoll.intValue());
+        }
+        if (lastRoll != null)
+        {
+            server.allTellMovementRoll(lastRoll.intValue(), null);
+        }
+
+        server.allRestoreSplitPrediction(historyCheckpoint);
+        server.allUpdatePlayerInfo("LoadFromCheckpoint");
+        for (Player player : getPlayers())
+        {
+            if (player.isDead())
+            {
+                server.allTellPlayerElim(player, null, false);
+            }
+        }
+    }
+
+    boolean wasLoadedFromCheckpoint()
+    {
+        return loadedFromCheckpoint;
+    }
+
+    /**
+     * Bring the history checkpoint up to date with the events flushed to
+     * the history; called at each commit point.
+     */
+    void updateHistoryCheckpoint()
+    {
+        if (historyCheckpoint == null)
+        {
+            historyCheckpoint = new HistoryCheckpoint(this);
+        }
+        historyCheckpoint.update(history.getEventElements());
+    }
+
+    /**
+     * @return What spectators know about the contents of all legions as of
+     *         now, or null if that is not known
+     */
+    SplitPredictionView getPublicSplitPrediction()
+    {
+        if (historyCheckpoint == null || !historyCheckpoint.isValid())
+        {
+            return null;
+        }
+        return historyCheckpoint.getCurrentPublicView(history
+            .getRecentEventElements());
+    }
+
+    /**
+     * @return The history checkpoint for the save game, or null if there
+     *         is no usable one
+     */
+    Element getHistoryCheckpointElement()
+    {
+        return historyCheckpoint == null ? null : historyCheckpoint
+            .toElement();
+    }
+
     private boolean resyncBackupData()
     {
         boolean allOk = true;
@@ -2086,29 +2243,9 @@ public class GameServerSide extends Game
      */
     List<CreatureType> findEligibleRecruits(Legion legion, MasterHex hex)
     {
-        List<CreatureType> recruits;
-
-        MasterBoardTerrain terrain = hex.getTerrain();
-
-        recruits = new ArrayList<CreatureType>();
-        List<CreatureType> tempRecruits = TerrainRecruitLoader
-            .getPossibleRecruits(terrain, hex);
-        List<CreatureType> recruiters = TerrainRecruitLoader
-            .getPossibleRecruiters(terrain, hex);
-
-        for (CreatureType creature : tempRecruits)
-        {
-            for (CreatureType lesser : recruiters)
-            {
-                if ((TerrainRecruitLoader.numberOfRecruiterNeeded(lesser,
-                    creature, terrain, hex) <= ((LegionServerSide)legion)
-                    .numCreature(lesser))
-                    && (recruits.indexOf(creature) == -1))
-                {
-                    recruits.add(creature);
-                }
-            }
-        }
+        List<CreatureType> recruits = new ArrayList<CreatureType>(
+            TerrainRecruitLoader.getRecruitsWith(hex.getTerrain(), hex,
+                legion.getCreatureTypes()));
 
         // Make sure that the potential recruits are available.
         Iterator<CreatureType> it = recruits.iterator();
@@ -2312,6 +2449,10 @@ public class GameServerSide extends Game
 
         LOGGER.info("GSS: Disposing game (thread "
             + Thread.currentThread().getName() + ")");
+        if (telemetry != null)
+        {
+            telemetry.finish();
+        }
         if (server != null)
         {
             LOGGER.info("GSS: Stop Server running");
@@ -3128,6 +3269,7 @@ public class GameServerSide extends Game
         server.allTellEngagementResults(winner, engagementResult,
             pointsScored, turnCombatFinished);
 
+        String method = engagementResult;
         engagementResult = null;
 
         // This output is produced for optimizing AI battle functionality:
@@ -3161,8 +3303,9 @@ public class GameServerSide extends Game
             }
         }
 
-        // This comes from a system property:
-        if (Constants.END_AFTER_FIRST_BATTLE)
+        engagementCompleted(winner, method, pointsScored, turnCombatFinished);
+
+        if (isEndAfterFirstBattle())
         {
             LOGGER.info("endAfterFirstBattle is set, terminating game.");
             server.doSetWhatToDoNext(WhatToDoNext.QUIT_ALL, true);
@@ -3187,6 +3330,41 @@ public class GameServerSide extends Game
         }
     }
 
+    /**
+     * Called when an engagement is completed, after the winner has
+     * acquired angels or recruited a reinforcement, before the game goes
+     * on. Does nothing here; for subclasses which evaluate battles.
+     *
+     * @param winner The winning legion, or null for a draw
+     * @param method How it was decided, one of the Constants.erMethod...
+     * @param points Points scored by the winner
+     * @param battleTurn Battle turn in which a fight ended, else 0
+     */
+    protected void engagementCompleted(Legion winner, String method,
+        int points, int battleTurn)
+    {
+        // nothing to do by default
+    }
+
+    /**
+     * Whether the game shall end as soon as the first engagement is
+     * completed. By default this comes from a system property.
+     */
+    protected boolean isEndAfterFirstBattle()
+    {
+        return Constants.END_AFTER_FIRST_BATTLE;
+    }
+
+    /**
+     * Whether the game shall end as draw (with TURN_LIMIT_MESSAGE) when
+     * the given turn begins. Never by default; for subclasses which limit
+     * the length of games.
+     */
+    protected boolean isTurnLimitReached(int turn)
+    {
+        return false;
+    }
+
     /*
      * returns true if game should go on.
      */
@@ -0,0 +1,222 @@
+package net.sf.colossus.server;
+
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.colossus.util.EventMetrics;
+
+
+/**
+ *  Statistics of one game for the operator of a game server: how long
+ *  the game and the turns of the players take, how much time each player
+ *  was the active one, how much time the AIs needed for their decisions,
+ *  how many commands and bytes were exchanged with the clients, and how
+ *  much heap the process needed.
+ *
+ *  A record is appended to the telemetry file every minute (system
+ *  property net.sf.colossus.telemetryInterval, in seconds; 0 for none)
+ *  and when the game is disposed, as one line of key=value pairs separated by spaces.
+ *  So if the process dies, the last record written tells at least how
+ *  far the game got. The WebServer collects the last record of each game
+ *  into its GameTelemetryStore.
+ */
+public class GameTelemetry
+{
+    private static final Logger LOGGER = Logger.getLogger(GameTelemetry.class
+        .getName());
+
+    private static final String PROP_INTERVAL = "net.sf.colossus.telemetryInterval";
+
+    private final String fileName;
+    private final String variantName;
+    private final long startTime;
+
+    private final Timer timer;
+
+    /** Time each player has been the active player so far, in ms */
+    private final Map<String, Long> activeMillis = new LinkedHashMap<String, Long>();
+
+    private String activePlayer;
+    private long activeSince;
+    private int round;
+
+    private int playerTurns;
+    private long playerTurnsMillis;
+    private long playerTurnMaxMillis;
+
+    private boolean finished = false;
+
+    public GameTelemetry(String fileName, String variantName)
+    {
+        this.fileName = fileName;
+        this.variantName = variantName;
+        this.startTime = System.currentTimeMillis();
+
+        long interval = Long.getLong(PROP_INTERVAL, 60).longValue() * 1000;
+        if (interval <= 0)
+        {
+            // only the final record
+            this.timer = null;
+            return;
+        }
+        this.timer = new Timer("GameTelemetry", true);
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                writeRecord(false);
+            }
+        }, interval, interval);
+    }
+
+    /**
+     * Called when a phase starts; when the active player changes, the
+     * turn of the previous one is over.
+     */
+    public synchronized void phaseStarted(int turnNumber, String playerName)
+    {
+        long now = System.currentTimeMillis();
+        round = turnNumber;
+        if (playerName.equals(activePlayer))
+        {
+            return;
+        }
+        if (activePlayer != null)
+        {
+            long millis = now - activeSince;
+            addActiveMillis(activePlayer, millis);
+            playerTurns++;
+            playerTurnsMillis += millis;
+            playerTurnMaxMillis = Math.max(playerTurnMaxMillis, millis);
+        }
+        activePlayer = playerName;
+        activeSince = now;
+    }
+
+    private void addActiveMillis(String playerName, long millis)
+    {
+        Long sum = activeMillis.get(playerName);
+        activeMillis.put(playerName,
+            Long.valueOf(millis + (sum == null ? 0 : sum.longValue())));
+    }
+
+    /**
+     * Write the final record and stop writing the periodic ones.
+     */
+    public void finish()
+    {
+        if (timer != null)
+        {
+            timer.cancel();
+        }
+        writeRecord(true);
+    }
+
+    private synchronized void writeRecord(boolean last)
+    {
+        if (finished)
+        {
+            return;
+        }
+        finished = last;
+        try
+        {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(fileName, true), "UTF-8"));
+            try
+            {
+                out.println(makeRecord(last));
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.WARNING, "Could not write telemetry to "
+                + fileName, e);
+        }
+    }
+
+    synchronized String makeRecord(boolean last)
+    {
+        long now = System.currentTimeMillis();
+        EventMetrics.ClientStats traffic = EventMetrics.getClientTotals();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("time=").append(now);
+        sb.append(" final=").append(last);
+        sb.append(" variant=").append(clean(variantName));
+        sb.append(" elapsedMs=").append(now - startTime);
+        sb.append(" round=").append(round);
+        sb.append(" playerTurns=").append(playerTurns);
+        sb.append(" playerTurnMeanMs=").append(
+            playerTurns == 0 ? 0 : playerTurnsMillis / playerTurns);
+        sb.append(" playerTurnMaxMs=").append(playerTurnMaxMillis);
+        sb.append(" aiDecisions=").append(
+            EventMetrics.AI_DECISIONS.getTotalCount());
+        sb.append(" aiDecisionMs=").append(
+            EventMetrics.AI_DECISIONS.getTotalMicros() / 1000);
+        sb.append(" aiDecisionMaxMs=").append(
+            EventMetrics.AI_DECISIONS.getMaxMicros() / 1000);
+        sb.append(" commands=").append(traffic.getCommands());
+        sb.append(" bytesIn=").append(traffic.getBytesIn());
+        sb.append(" bytesOut=").append(traffic.getBytesOut());
+        sb.append(" heapPeakMB=").append(getHeapPeakBytes() / (1024 * 1024));
+        for (Map.Entry<String, Long> entry : activeMillis.entrySet())
+        {
+            long millis = entry.getValue().longValue();
+            if (entry.getKey().equals(activePlayer))
+            {
+                // the turn still going on counts too
+                millis += now - activeSince;
+            }
+            sb.append(" activeMs.").append(clean(entry.getKey())).append('=')
+                .append(millis);
+        }
+        if (activePlayer != null && !activeMillis.containsKey(activePlayer))
+        {
+            sb.append(" activeMs.").append(clean(activePlayer)).append('=')
+                .append(now - activeSince);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The highest heap use of the process so far; the sum of the peaks
+     * of the heap memory pools, so it might be a bit more than the heap
+     * ever held at one time.
+     */
+    private static long getHeapPeakBytes()
+    {
+        long bytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid())
+            {
+                bytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return bytes;
+    }
+
+    /** Names must not break the key=value format */
+    private static String clean(String name)
+    {
+        return name.replaceAll("[\\s=]", "_");
+    }
+}
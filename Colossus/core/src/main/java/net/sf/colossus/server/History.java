@@ -2,6 +2,7 @@ package net.sf.colossus.server;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -112,6 +113,24 @@ public class History
         return (Element)root.clone();
     }
 
+    /**
+     *  All events before last commit, in order; this is the live list,
+     *  callers must not modify it.
+     */
+    @SuppressWarnings("unchecked")
+    List<Element> getEventElements()
+    {
+        return root.getChildren();
+    }
+
+    /**
+     *  Events since last commit, in order; callers must not modify them.
+     */
+    List<Element> getRecentEventElements()
+    {
+        return Collections.unmodifiableList(recentEvents);
+    }
+
     /**
      * Reached a commit point: append all recent events to the history,
      * clear list of recent events; caller should do this together with creating
@@ -0,0 +1,470 @@
+package net.sf.colossus.server;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import net.sf.colossus.client.SplitPredictionView;
+import net.sf.colossus.game.Legion;
+import net.sf.colossus.game.Player;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.Variant;
+
+import org.jdom.Element;
+
+
+/**
+ * What replaying the history of a game produces beyond the data which the
+ * save game contains anyway: the split prediction each client ends up
+ * with, and the last movement roll of each player.
+ *
+ * It is brought up to date at each commit point with the history events
+ * added since the previous one, without involving any client, and stored
+ * in the save game together with the number of history events it covers.
+ * Loading a game can then hand the result to the clients instead of
+ * replaying the whole history to them, see GameServerSide.loadGame2().
+ */
+final class HistoryCheckpoint
+{
+    private static final Logger LOGGER = Logger
+        .getLogger(HistoryCheckpoint.class.getName());
+
+    static final String ELEMENT_NAME = "HistoryCheckpoint";
+
+    private final Variant variant;
+
+    /** Split prediction of the client of each player, by player name */
+    private final Map<String, SplitPredictionView> playerViews = new TreeMap<String, SplitPredictionView>();
+
+    /** Split prediction of spectators: only what was revealed to all */
+    private final SplitPredictionView publicView;
+
+    /**
+     * Owner of the markers of each color (short name): the player who
+     * started with it, or whoever eliminated him.
+     */
+    private final Map<String, String> markerOwners = new TreeMap<String, String>();
+
+    /** Last movement roll of each player; the latest roll is last */
+    private final Map<String, Integer> movementRolls = new LinkedHashMap<String, Integer>();
+
+    /** Number of history events this checkpoint covers */
+    private int eventCount = 0;
+
+    /** False if some event could not be applied; then it's useless */
+    private boolean valid = true;
+
+    private HistoryCheckpoint(Variant variant)
+    {
+        this.variant = variant;
+        this.publicView = new SplitPredictionView(variant);
+    }
+
+    /**
+     * A copy of the part of other which spectators see; the views of the
+     * players are left out.
+     */
+    private HistoryCheckpoint(HistoryCheckpoint other)
+    {
+        this.variant = other.variant;
+        this.publicView = new SplitPredictionView(other.publicView);
+        markerOwners.putAll(other.markerOwners);
+        movementRolls.putAll(other.movementRolls);
+        eventCount = other.eventCount;
+        valid = other.valid;
+    }
+
+    /** Checkpoint at the start of the game */
+    HistoryCheckpoint(GameServerSide game)
+    {
+        this(game.getVariant());
+        for (Player player : game.getPlayers())
+        {
+            playerViews.put(player.getName(),
+                new SplitPredictionView(variant));
+            markerOwners.put(player.getShortColor(), player.getName());
+        }
+    }
+
+    boolean isValid()
+    {
+        return valid;
+    }
+
+    int getEventCount()
+    {
+        return eventCount;
+    }
+
+    /**
+     * The split prediction of the client of the given player, or the one
+     * of spectators if viewerName is null or not a player
+     */
+    SplitPredictionView getView(String viewerName)
+    {
+        SplitPredictionView view = viewerName == null ? null : playerViews
+            .get(viewerName);
+        return view != null ? view : publicView;
+    }
+
+    private List<SplitPredictionView> getAllViews()
+    {
+        List<SplitPredictionView> views = new ArrayList<SplitPredictionView>(
+            playerViews.values());
+        views.add(publicView);
+        return views;
+    }
+
+    /** Last movement roll of each player by name, the latest roll last */
+    Map<String, Integer> getMovementRolls()
+    {
+        return Collections.unmodifiableMap(movementRolls);
+    }
+
+    /**
+     * Apply all events which were added to the history since the last
+     * update.
+     *
+     * @param events All history events, see History.getEventElements()
+     */
+    void update(List<Element> events)
+    {
+        if (!valid)
+        {
+            return;
+        }
+        if (events.size() < eventCount)
+        {
+            invalidate("history has only " + events.size()
+                + " events, checkpoint covers " + eventCount, null);
+            return;
+        }
+        int count = events.size();
+        applyEvents(events.subList(eventCount, count));
+        eventCount = count;
+    }
+
+    private void applyEvents(List<Element> events)
+    {
+        for (Element el : events)
+        {
+            try
+            {
+                applyEvent(el);
+            }
+            catch (RuntimeException e)
+            {
+                invalidate("applying " + el.getName() + " event failed", e);
+                return;
+            }
+            catch (AssertionError e)
+            {
+                invalidate("applying " + el.getName() + " event failed", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The split prediction of spectators after the given events, which
+     * happened since the checkpoint; the checkpoint itself stays as it is.
+     *
+     * @param recentEvents See History.getRecentEventElements()
+     * @return The split prediction, or null if it is not known
+     */
+    SplitPredictionView getCurrentPublicView(List<Element> recentEvents)
+    {
+        if (!valid)
+        {
+            return null;
+        }
+        HistoryCheckpoint copy = new HistoryCheckpoint(this);
+        copy.applyEvents(recentEvents);
+        return copy.valid ? copy.publicView : null;
+    }
+
+    private void invalidate(String reason, Throwable cause)
+    {
+        LOGGER.warning("History checkpoint no longer usable: " + reason
+            + (cause != null ? " (" + cause + ")" : ""));
+        valid = false;
+    }
+
+    private String getOwner(String markerId)
+    {
+        String owner = markerOwners.get(markerId.substring(0, 2));
+        if (owner == null)
+        {
+            throw new IllegalStateException("No owner for marker " + markerId);
+        }
+        return owner;
+    }
+
+    // unchecked conversions from JDOM
+    @SuppressWarnings("unchecked")
+    private List<CreatureType> getCreatures(Element parent)
+    {
+        List<CreatureType> creatures = new ArrayList<CreatureType>();
+        for (Element creature : (List<Element>)parent.getChildren())
+        {
+            creatures.add(variant.getCreatureByName(creature
+                .getTextNormalize()));
+        }
+        return creatures;
+    }
+
+    /**
+     * Does to the split predictions what History.fireEventFromElement()
+     * makes the clients do.
+     */
+    // unchecked conversions from JDOM
+    @SuppressWarnings("unchecked")
+    private void applyEvent(Element el)
+    {
+        String eventName = el.getName();
+        if (eventName.equals("Reveal"))
+        {
+            String markerId = el.getAttributeValue("markerId");
+            String owner = getOwner(markerId);
+            List<CreatureType> creatures = getCreatures(el
+                .getChild("creatures"));
+            if ("true".equals(el.getAttributeValue("allPlayers")))
+            {
+                for (SplitPredictionView view : getAllViews())
+                {
+                    view.revealCreatures(owner, markerId, creatures);
+                }
+            }
+            else
+            {
+                for (Element viewer : (List<Element>)el.getChild("viewers")
+                    .getChildren())
+                {
+                    SplitPredictionView view = playerViews.get(viewer
+                        .getTextNormalize());
+                    if (view != null)
+                    {
+                        view.revealCreatures(owner, markerId, creatures);
+                    }
+                }
+            }
+        }
+        else if (eventName.equals("Split"))
+        {
+            String parentId = el.getAttributeValue("parentId");
+            String childId = el.getAttributeValue("childId");
+            int turn = Integer.parseInt(el.getAttributeValue("turn"));
+            int childHeight = el.getChild("splitoffs").getChildren().size();
+            String owner = getOwner(parentId);
+            for (SplitPredictionView view : getAllViews())
+            {
+                view.split(owner, parentId, childId, childHeight, turn);
+            }
+        }
+        else if (eventName.equals("Merge"))
+        {
+            String splitoffId = el.getAttributeValue("splitoffId");
+            String survivorId = el.getAttributeValue("survivorId");
+            String owner = getOwner(survivorId);
+            for (SplitPredictionView view : getAllViews())
+            {
+                view.merge(owner, splitoffId, survivorId);
+            }
+        }
+        else if (eventName.equals("AddCreature")
+            || eventName.equals("RemoveCreature"))
+        {
+            String markerId = el.getAttributeValue("markerId");
+            String owner = getOwner(markerId);
+            CreatureType type = variant.getCreatureByName(el
+                .getAttributeValue("creatureName"));
+            boolean add = eventName.equals("AddCreature");
+            for (SplitPredictionView view : getAllViews())
+            {
+                if (add)
+                {
+                    view.addCreature(owner, markerId, type);
+                }
+                else
+                {
+                    view.removeCreature(owner, markerId, type);
+                }
+            }
+        }
+        else if (eventName.equals("PlayerElim"))
+        {
+            String playerName = el.getAttributeValue("name");
+            String slayerName = el.getAttributeValue("slayer");
+            for (SplitPredictionView view : getAllViews())
+            {
+                view.removeOwner(playerName);
+            }
+            // The slayer gets the markers, see PlayerServerSide.handleSlaying()
+            if (slayerName != null)
+            {
+                for (Map.Entry<String, String> entry : markerOwners
+                    .entrySet())
+                {
+                    if (entry.getValue().equals(playerName))
+                    {
+                        entry.setValue(slayerName);
+                    }
+                }
+            }
+        }
+        else if (eventName.equals("MovementRoll"))
+        {
+            String playerName = el.getAttributeValue("playerName");
+            Integer roll = Integer.valueOf(el.getAttributeValue("roll"));
+            movementRolls.remove(playerName);
+            movementRolls.put(playerName, roll);
+        }
+        // RelocateLegion only changes the location, which the save game
+        // has anyway; other events are not in the history but in redo log
+    }
+
+    /**
+     * Whether the legions predicted by all views are those of the loaded
+     * game (before replay, see PlayerServerSide.backupLoadedData()).
+     */
+    boolean matchesLoadedLegions(GameServerSide game)
+    {
+        if (!valid)
+        {
+            return false;
+        }
+        for (Player p : game.getPlayers())
+        {
+            PlayerServerSide player = (PlayerServerSide)p;
+            Map<String, Integer> loaded = new TreeMap<String, Integer>();
+            if (!player.getDeadBeforeSave())
+            {
+                for (Legion legion : player.getLegionsBackup())
+                {
+                    loaded.put(legion.getMarkerId(), Integer.valueOf(legion
+                        .getHeight()));
+                }
+            }
+            for (SplitPredictionView view : getAllViews())
+            {
+                Map<String, Integer> predicted = view.getLegionHeights(player
+                    .getName());
+                if (!predicted.equals(loaded))
+                {
+                    LOGGER.warning("History checkpoint predicts legions "
+                        + predicted + " for " + player.getName()
+                        + ", but loaded are " + loaded);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The checkpoint as element for the save game, or null if it
+     *         is not valid
+     */
+    Element toElement()
+    {
+        if (!valid)
+        {
+            return null;
+        }
+        Element root = new Element(ELEMENT_NAME);
+        root.setAttribute("events", "" + eventCount);
+        for (Map.Entry<String, String> entry : markerOwners.entrySet())
+        {
+            Element el = new Element("MarkerOwner");
+            el.setAttribute("color", entry.getKey());
+            el.setAttribute("player", entry.getValue());
+            root.addContent(el);
+        }
+        for (Map.Entry<String, Integer> entry : movementRolls.entrySet())
+        {
+            Element el = new Element("MovementRoll");
+            el.setAttribute("player", entry.getKey());
+            el.setAttribute("roll", entry.getValue().toString());
+            root.addContent(el);
+        }
+        for (Map.Entry<String, SplitPredictionView> entry : playerViews
+            .entrySet())
+        {
+            Element viewEl = viewToElement(entry.getValue());
+            viewEl.setAttribute("viewer", entry.getKey());
+            root.addContent(viewEl);
+        }
+        root.addContent(viewToElement(publicView));
+        return root;
+    }
+
+    private static Element viewToElement(SplitPredictionView view)
+    {
+        Element viewEl = new Element("View");
+        for (String owner : view.getOwners())
+        {
+            Element ownerEl = new Element("Owner");
+            ownerEl.setAttribute("name", owner);
+            ownerEl.addContent(view.getSummary(owner));
+            viewEl.addContent(ownerEl);
+        }
+        return viewEl;
+    }
+
+    /**
+     * @param root The element from toElement(), may be null
+     * @return The checkpoint, or null if there is none or it can't be read
+     */
+    // unchecked conversions from JDOM
+    @SuppressWarnings("unchecked")
+    static HistoryCheckpoint fromElement(Element root, Variant variant)
+    {
+        if (root == null)
+        {
+            return null;
+        }
+        HistoryCheckpoint checkpoint = new HistoryCheckpoint(variant);
+        try
+        {
+            checkpoint.eventCount = Integer.parseInt(root
+                .getAttributeValue("events"));
+            for (Element el : (List<Element>)root.getChildren("MarkerOwner"))
+            {
+                checkpoint.markerOwners.put(el.getAttributeValue("color"), el
+                    .getAttributeValue("player"));
+            }
+            for (Element el : (List<Element>)root.getChildren("MovementRoll"))
+            {
+                checkpoint.movementRolls.put(el.getAttributeValue("player"),
+                    Integer.valueOf(el.getAttributeValue("roll")));
+            }
+            for (Element viewEl : (List<Element>)root.getChildren("View"))
+            {
+                String viewer = viewEl.getAttributeValue("viewer");
+                SplitPredictionView view = checkpoint.publicView;
+                if (viewer != null)
+                {
+                    view = new SplitPredictionView(variant);
+                    checkpoint.playerViews.put(viewer, view);
+                }
+                for (Element ownerEl : (List<Element>)viewEl
+                    .getChildren("Owner"))
+                {
+                    view.restore(ownerEl.getAttributeValue("name"), ownerEl
+                        .getText());
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.warning("Could not read history checkpoint: " + e);
+            return null;
+        }
+        return checkpoint;
+    }
+}
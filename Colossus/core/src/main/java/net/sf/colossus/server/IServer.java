@@ -29,6 +29,7 @@ public interface IServer
     public static final int CLIENT_VERSION_CAN_SUSPEND = 8;
     public static final int CLIENT_VERSION_NEW_PLAYER_INFO = 9;
     public static final int CLIENT_VERSION_MORE_DEBUG_INFO = 10;
+    public static final int CLIENT_VERSION_SPLIT_PREDICTION_RESTORE = 11;
 
     // New in version 2: replies to pingRequest
     // New in version 3: ability to reconnect (simple case only, so far)
@@ -38,7 +39,8 @@ public interface IServer
     // New in version 7: Client can ask user to approve/deny extra roll request
     // New in version 8: Client can ask user to approve/deny suspend request
     // New in version 9: Server sends only changed information
-    public static final int CLIENT_VERSION = CLIENT_VERSION_MORE_DEBUG_INFO;
+    // New in version 11: Client can restore split prediction from a summary
+    public static final int CLIENT_VERSION = CLIENT_VERSION_SPLIT_PREDICTION_RESTORE;
 
     // Clients that do not send version yet at all, are treated as version -1.
     // For those, even show on server side an error dialog and refuse them to
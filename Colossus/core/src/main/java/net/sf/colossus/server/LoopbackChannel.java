@@ -0,0 +1,194 @@
+package net.sf.colossus.server;
+
+
+import java.util.LinkedList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+
+/**
+ * In-memory replacement for the socket between the Server and a client
+ * which runs in the same JVM (right now: the local AI players).
+ *
+ * The messages are still the protocol lines which ClientHandlerStub and
+ * SocketClientThread produce - server and client have their own Legion,
+ * Player etc. objects, and the redo/resend queues work on those lines -
+ * but they are handed over as they are through two bounded queues, instead
+ * of being encoded, written to a TCP socket, selected, read and decoded.
+ *
+ * The client side blocks when the queue towards the server is full. The
+ * server thread must never block; whatever does not fit into the queue
+ * towards the client is kept back here (like ClientHandler does it when
+ * writing to the socket does not succeed), and the client moves it over
+ * whenever it takes something out of the queue. A client which lets more
+ * than MAX_KEPT_BACK messages pile up that way is considered hanging:
+ * the channel is closed, and the server handles it like a client which
+ * disconnected.
+ */
+public final class LoopbackChannel
+{
+    private static final Logger LOGGER = Logger
+        .getLogger(LoopbackChannel.class.getName());
+
+    static final int TO_CLIENT_CAPACITY = 1000;
+    static final int MAX_KEPT_BACK = 10000;
+    private static final int TO_SERVER_CAPACITY = 100;
+
+    /** How long client waits before it checks whether server is gone */
+    private static final long READ_POLL_MILLIS = 500;
+
+    private final Server server;
+
+    private final BlockingQueue<String> toClient = new LinkedBlockingQueue<String>(
+        TO_CLIENT_CAPACITY);
+    private final LinkedList<String> keptBack = new LinkedList<String>();
+
+    private final BlockingQueue<String> toServer = new LinkedBlockingQueue<String>(
+        TO_SERVER_CAPACITY);
+
+    private volatile boolean closedByServer = false;
+    private volatile boolean closedByClient = false;
+    private volatile boolean overflowed = false;
+
+    LoopbackChannel(Server server)
+    {
+        this.server = server;
+    }
+
+    // Server side, only called by the Server thread
+
+    synchronized void sendToClient(String message)
+    {
+        if (closedByClient || closedByServer)
+        {
+            // nobody will read it any more
+            return;
+        }
+        if (!keptBack.isEmpty() || !toClient.offer(message))
+        {
+            if (keptBack.size() >= MAX_KEPT_BACK)
+            {
+                LOGGER.warning("Loopback client did not read the last "
+                    + (TO_CLIENT_CAPACITY + keptBack.size())
+                    + " messages, closing the channel");
+                keptBack.clear();
+                overflowed = true;
+                closedByServer = true;
+                return;
+            }
+            keptBack.add(message);
+        }
+    }
+
+    String pollFromClient()
+    {
+        return toServer.poll();
+    }
+
+    /**
+     * @return true if client closed its end and all that it sent before
+     * was already processed
+     */
+    boolean isEndOfInput()
+    {
+        return closedByClient && toServer.isEmpty();
+    }
+
+    /**
+     * @return true if the channel was closed because the client did not
+     * read what was sent to it
+     */
+    boolean isOverflowed()
+    {
+        return overflowed;
+    }
+
+    void closeByServer()
+    {
+        closedByServer = true;
+    }
+
+    // Client side, called by SocketClientThread (reading) and by the
+    // Client / AI threads (writing)
+
+    /**
+     * Blocks until the next message from server is available.
+     *
+     * @return The message, or null if server has closed the channel
+     * @throws InterruptedException If client side interrupts the reader
+     */
+    public String readFromServer() throws InterruptedException
+    {
+        while (true)
+        {
+            String message = toClient.poll(READ_POLL_MILLIS,
+                TimeUnit.MILLISECONDS);
+            if (message != null)
+            {
+                moveKeptBack();
+                return message;
+            }
+            if (closedByServer)
+            {
+                moveKeptBack();
+                if (toClient.isEmpty())
+                {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private synchronized void moveKeptBack()
+    {
+        while (!keptBack.isEmpty() && toClient.offer(keptBack.getFirst()))
+        {
+            keptBack.removeFirst();
+        }
+    }
+
+    /**
+     * Hand one message to the server; blocks while the queue is full.
+     *
+     * @return false if the channel is closed or the thread was interrupted,
+     *         i.e. the message was not delivered
+     */
+    public boolean writeToServer(String message)
+    {
+        if (closedByClient || closedByServer)
+        {
+            return false;
+        }
+        try
+        {
+            while (!toServer.offer(message, READ_POLL_MILLIS,
+                TimeUnit.MILLISECONDS))
+            {
+                if (closedByServer)
+                {
+                    return false;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        server.wakeupSelector();
+        return true;
+    }
+
+    public void closeByClient()
+    {
+        closedByClient = true;
+        server.wakeupSelector();
+    }
+
+    public boolean isClosedByClient()
+    {
+        return closedByClient;
+    }
+}
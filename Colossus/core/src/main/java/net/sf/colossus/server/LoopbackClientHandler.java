@@ -0,0 +1,84 @@
+package net.sf.colossus.server;
+
+
+import net.sf.colossus.util.EventMetrics;
+
+
+/**
+ * Server side of a client in the same JVM which is connected via a
+ * LoopbackChannel instead of a socket. Everything except the actual
+ * transport (resend queues, commit points, callMethod, ...) is the same
+ * as in a socket based ClientHandler.
+ */
+final class LoopbackClientHandler extends ClientHandler
+{
+    /** Process at most that many lines per client in one selector round,
+     *  so that one busy client does not starve the others.
+     */
+    private static final int MAX_LINES_PER_ROUND = 50;
+
+    private final LoopbackChannel channel;
+
+    LoopbackClientHandler(Server server, LoopbackChannel channel)
+    {
+        super(server, null, null);
+        this.channel = channel;
+    }
+
+    LoopbackChannel getChannel()
+    {
+        return channel;
+    }
+
+    @Override
+    protected boolean hasChannel()
+    {
+        return true;
+    }
+
+    @Override
+    protected void sendViaChannel(String msg)
+    {
+        channel.sendToClient(msg);
+        // as if it were sent over a socket, with line end
+        EventMetrics.getClientStats(getClientName()).addBytesOut(
+            msg.length() + 1);
+    }
+
+    @Override
+    protected void flushQueuedContent()
+    {
+        // Nothing is ever queued on this side, see LoopbackChannel
+    }
+
+    /**
+     * Process what the client has sent so far.
+     *
+     * @return true if there is more input left for the next round
+     */
+    boolean processLoopbackInput()
+    {
+        for (int i = 0; i < MAX_LINES_PER_ROUND; i++)
+        {
+            String line = channel.pollFromClient();
+            if (line == null)
+            {
+                return false;
+            }
+            EventMetrics.getClientStats(getClientName()).addBytesIn(
+                line.length() + 1);
+            processLine(line);
+        }
+        return true;
+    }
+
+    boolean isEndOfInput()
+    {
+        return channel.isEndOfInput();
+    }
+
+    boolean isOverflowed()
+    {
+        return channel.isOverflowed();
+    }
+}
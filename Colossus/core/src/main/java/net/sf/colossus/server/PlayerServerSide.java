@@ -2,6 +2,7 @@ package net.sf.colossus.server;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
@@ -820,6 +821,26 @@ public final class PlayerServerSide extends Player implements
         return ok;
     }
 
+    /**
+     * Put the backed up data into place without comparing it to the result
+     * of a history replay; used when loading from the history checkpoint.
+     */
+    void restoreBackupData()
+    {
+        setPlayersElim(playersEliminatedBackup);
+        removeAllLegions();
+        for (Legion l : legionsBackup)
+        {
+            addLegion(l);
+        }
+    }
+
+    /** The legions as loaded, see backupLoadedData() */
+    List<Legion> getLegionsBackup()
+    {
+        return Collections.unmodifiableList(legionsBackup);
+    }
+
     @Override
     public int makeBattleRoll()
     {
@@ -18,6 +18,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -28,6 +29,7 @@ import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 
 import net.sf.colossus.client.IClient;
+import net.sf.colossus.client.SplitPredictionView;
 import net.sf.colossus.common.Constants;
 import net.sf.colossus.common.Options;
 import net.sf.colossus.common.WhatNextManager;
@@ -97,6 +99,16 @@ public final class Server extends Thread implements IServer
     /** List of SocketChannels that are currently active */
     private final List<SocketChannel> activeSocketChannelList = new ArrayList<SocketChannel>();
 
+    /** Channels of local clients which connected, but were not yet
+     *  picked up by the server thread (see handleLoopbackClients)
+     */
+    private final List<LoopbackChannel> newLoopbackChannels = new ArrayList<LoopbackChannel>();
+
+    /** Clients in same JVM connected via LoopbackChannel instead of a
+     *  socket; only accessed by the server thread
+     */
+    private final List<LoopbackClientHandler> loopbackClients = new ArrayList<LoopbackClientHandler>();
+
     /** ClientHandlers to be withdrawn, together with some related (timing)
      *  data; selector thread will do it then when it's the right time for it
      */
@@ -118,6 +130,17 @@ public final class Server extends Thread implements IServer
 
     private int spectators = 0;
 
+    /** How many spectators may catch up with the game at the same time */
+    private static final int MAX_CATCHING_UP_SPECTATORS = 3;
+
+    /** Spectators which got the catch-up messages, but did not confirm
+     *  yet that they have processed them
+     */
+    private final Set<ClientHandler> catchingUpSpectators = new HashSet<ClientHandler>();
+
+    /** Spectators which wait until they may start catching up */
+    private final LinkedList<ClientHandler> waitingSpectators = new LinkedList<ClientHandler>();
+
     private int connectionIdCounter = 1;
 
     /** Server socket port. */
@@ -320,6 +343,7 @@ public final class Server extends Thread implements IServer
         {
             LOGGER.fine("shuttingDown NOT set");
         }
+        closeLoopbackChannels();
 
         notifyThatGameFinished();
         LOGGER.fine("Server.run() ends.");
@@ -546,6 +570,7 @@ public final class Server extends Thread implements IServer
                 stopServerRunning();
             }
             handleSelectedKeys();
+            handleLoopbackClients();
             handleChannelChanges();
             repeatTellOneHasNetworkTrouble();
             allRequestPingIfNeeded();
@@ -642,7 +667,10 @@ public final class Server extends Thread implements IServer
             readyKeys.remove();
 
             int readyOps = key.readyOps();
-            LOGGER.finest("handleSelectedKyes, readyOps is " + readyOps);
+            if (LOGGER.isLoggable(Level.FINEST))
+            {
+                LOGGER.finest("handleSelectedKyes, readyOps is " + readyOps);
+            }
             if (key.isAcceptable() && (key.isReadable() || key.isWritable()))
             {
                 LOGGER
@@ -718,6 +746,123 @@ public final class Server extends Thread implements IServer
         selectedKeys.clear();
     }
 
+    /**
+     * Called by a client in the same JVM to connect via a LoopbackChannel
+     * instead of a socket. From here on it goes like with a socket client:
+     * the server thread sends the SignOn prompt, client sends signOn, etc.
+     *
+     * @return The channel for the client side to use
+     */
+    public LoopbackChannel connectLoopbackClient()
+    {
+        LoopbackChannel channel = new LoopbackChannel(this);
+        synchronized (newLoopbackChannels)
+        {
+            newLoopbackChannels.add(channel);
+        }
+        wakeupSelector();
+        return channel;
+    }
+
+    /**
+     * Make the server thread return from select(), because there is
+     * something to do for it which did not come in over a socket.
+     */
+    void wakeupSelector()
+    {
+        if (selector != null)
+        {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * For the clients connected via LoopbackChannel, this does what
+     * handleSelectedKeys does for the socket clients: accept new ones,
+     * process what they have sent, and handle the end of their input.
+     */
+    private void handleLoopbackClients()
+    {
+        synchronized (newLoopbackChannels)
+        {
+            for (LoopbackChannel channel : newLoopbackChannels)
+            {
+                LOGGER.info("Another loopback client accepted.");
+                LoopbackClientHandler ch = new LoopbackClientHandler(this,
+                    channel);
+                // Same as for socket clients, client waits for this first
+                ch.sendToClient("SignOn: processing");
+                loopbackClients.add(ch);
+            }
+            newLoopbackChannels.clear();
+        }
+
+        boolean moreInput = false;
+        // copy, because withdraw or EOF may remove clients from the list
+        List<LoopbackClientHandler> clients = new ArrayList<LoopbackClientHandler>(
+            loopbackClients);
+        for (LoopbackClientHandler ch : clients)
+        {
+            if (shuttingDown)
+            {
+                break;
+            }
+            processingCH = ch;
+            if (ch.isOverflowed())
+            {
+                ch.setIsGone("Loopback client does not read its messages");
+                withdrawFromGameIfRelevant(null, false);
+                disconnectLoopbackClient(ch);
+            }
+            else if (ch.processLoopbackInput())
+            {
+                moreInput = true;
+            }
+            else if (ch.isEndOfInput())
+            {
+                ch.setIsGone("EOF on loopback channel");
+                withdrawFromGameIfRelevant(null, ch.didExplicitDisconnect());
+                disconnectLoopbackClient(ch);
+            }
+            processingCH = null;
+        }
+
+        if (moreInput)
+        {
+            // don't wait in select() for the rest of it
+            selector.wakeup();
+        }
+    }
+
+    private void disconnectLoopbackClient(LoopbackClientHandler ch)
+    {
+        ch.getChannel().closeByServer();
+        if (loopbackClients.remove(ch))
+        {
+            synchronized (activeSocketChannelList)
+            {
+                stopServerIfNoConnectionLeft();
+            }
+        }
+    }
+
+    private void closeLoopbackChannels()
+    {
+        synchronized (newLoopbackChannels)
+        {
+            for (LoopbackChannel channel : newLoopbackChannels)
+            {
+                channel.closeByServer();
+            }
+            newLoopbackChannels.clear();
+        }
+        for (LoopbackClientHandler ch : loopbackClients)
+        {
+            ch.getChannel().closeByServer();
+        }
+        loopbackClients.clear();
+    }
+
     private void handleChannelChanges() throws IOException
     {
         synchronized (channelChanges)
@@ -735,7 +880,13 @@ public final class Server extends Thread implements IServer
             while (!channelChanges.isEmpty())
             {
                 ClientHandlerStub nextCHS = channelChanges.remove(0);
-                if (ClientHandler.class.isInstance(nextCHS))
+                if (nextCHS instanceof LoopbackClientHandler)
+                {
+                    LOGGER.info("Took from channelChanges loopback CH for "
+                        + nextCHS.getClientName());
+                    disconnectLoopbackClient((LoopbackClientHandler)nextCHS);
+                }
+                else if (ClientHandler.class.isInstance(nextCHS))
                 {
                     ClientHandler nextCH = (ClientHandler)nextCHS;
                     LOGGER.info("Took from channelChanges CH for "
@@ -931,8 +1082,11 @@ public final class Server extends Thread implements IServer
 
         if (read > 0)
         {
-            LOGGER.finest("Calling processByteBuffer to process the " + read
-                + " bytes received from channel" + sc);
+            if (LOGGER.isLoggable(Level.FINEST))
+            {
+                LOGGER.finest("Calling processByteBuffer to process the " + read
+                    + " bytes received from channel" + sc);
+            }
             processByteBuffer();
         }
         else
@@ -1251,45 +1405,54 @@ public final class Server extends Thread implements IServer
                 return;
             }
             activeSocketChannelList.remove(index);
+            stopServerIfNoConnectionLeft();
+        }
+        LOGGER.finest("activeSocketChannelList after synch ");
+    }
 
-            if (!serverRunning)
-            {
-                LOGGER.finest("serverRunning false");
-                return;
-            }
+    /**
+     * One socket or loopback connection went away; if there is no point
+     * to go on without it, stop the server.
+     * Caller must hold the lock on activeSocketChannelList.
+     */
+    private void stopServerIfNoConnectionLeft()
+    {
+        if (!serverRunning)
+        {
+            LOGGER.finest("serverRunning false");
+            return;
+        }
 
-            // no client whatsoever left => end the game and close server stuff
-            // Even if socket list is empty, client list may not be empty yet,
-            // and need to empty it and close all loggers.
-            if (activeSocketChannelList.isEmpty())
-            {
-                LOGGER.finest("Server.unregisterSocketChannel(): "
-                    + "activeSocketChannelList empty - stopping server...");
-                stopServerRunning();
-            }
+        // no client whatsoever left => end the game and close server stuff
+        // Even if socket list is empty, client list may not be empty yet,
+        // and need to empty it and close all loggers.
+        if (activeSocketChannelList.isEmpty() && loopbackClients.isEmpty())
+        {
+            LOGGER.finest("Server.unregisterSocketChannel(): "
+                + "activeSocketChannelList empty - stopping server...");
+            stopServerRunning();
+        }
 
-            else if (game.getOption(Options.goOnWithoutObserver))
-            {
-                LOGGER.finest("\n==========\nOne socket went away, "
-                    + "but we go on because goOnWithoutObserver is set...\n");
-            }
-            // or, if only AI player clients left as "observers",
-            // then close everything, too
-            else if (!anyNonAiSocketsLeft())
-            {
-                LOGGER.finest("Server.unregisterSocket(): "
-                    + "All connections to human or network players gone "
-                    + "(no point to keep AIs running if noone sees it) "
-                    + "- stopping server...");
-                stopServerRunning();
-            }
-            else
-            {
-                LOGGER.finest("Server.unregisterSocket(): ELSE case "
-                    + "(i.e. someone is left, so it makes sense to go on)");
-            }
+        else if (game.getOption(Options.goOnWithoutObserver))
+        {
+            LOGGER.finest("\n==========\nOne socket went away, "
+                + "but we go on because goOnWithoutObserver is set...\n");
+        }
+        // or, if only AI player clients left as "observers",
+        // then close everything, too
+        else if (!anyNonAiSocketsLeft())
+        {
+            LOGGER.finest("Server.unregisterSocket(): "
+                + "All connections to human or network players gone "
+                + "(no point to keep AIs running if noone sees it) "
+                + "- stopping server...");
+            stopServerRunning();
+        }
+        else
+        {
+            LOGGER.finest("Server.unregisterSocket(): ELSE case "
+                + "(i.e. someone is left, so it makes sense to go on)");
         }
-        LOGGER.finest("activeSocketChannelList after synch ");
     }
 
     public void setBoardVisibility(Player player, boolean val)
@@ -2138,7 +2301,7 @@ public final class Server extends Thread implements IServer
         }
     }
 
-    void oneTellAllLegionLocations(ClientHandler client)
+    void oneTellAllLegionLocations(IClient client)
     {
         List<Legion> legions = game.getAllLegions();
         for (Legion legion : legions)
@@ -2186,6 +2349,45 @@ public final class Server extends Thread implements IServer
         }
     }
 
+    boolean allCanHandleSplitPredictionRestore()
+    {
+        for (ClientHandler client : realClients)
+        {
+            if (!client.canHandleSplitPredictionRestore())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tell each client the split prediction for all living players which
+     * replaying the history would have given it; spectators (and the stub
+     * which collects messages for them) get what was revealed to all.
+     */
+    void allRestoreSplitPrediction(HistoryCheckpoint checkpoint)
+    {
+        for (IClient client : iClients)
+        {
+            String viewerName = null;
+            if (client instanceof ClientHandler
+                && !((ClientHandler)client).isSpectator())
+            {
+                viewerName = ((ClientHandler)client).getPlayerName();
+            }
+            SplitPredictionView view = checkpoint.getView(viewerName);
+            for (Player owner : game.getPlayers())
+            {
+                if (!owner.isDead())
+                {
+                    client.restoreSplitPrediction(owner, view
+                        .getSummary(owner.getName()));
+                }
+            }
+        }
+    }
+
     void repeatTellOneHasNetworkTrouble()
     {
         ArrayList<ClientHandler> troubleCHs = new ArrayList<ClientHandler>();
@@ -3897,6 +4099,12 @@ public final class Server extends Thread implements IServer
     {
         String clientName = ch.getClientName();
 
+        if (releaseSpectatorCatchup(ch, "won't confirm catch-up (" + reason
+            + ")"))
+        {
+            return;
+        }
+
         synchronized (waitingToCatchup)
         {
             if (waitingToCatchup.contains(ch))
@@ -3919,6 +4127,11 @@ public final class Server extends Thread implements IServer
         ClientHandler ch = processingCH;
         String clientName = ch.getClientName();
 
+        if (releaseSpectatorCatchup(ch, "confirmed catch-up"))
+        {
+            return;
+        }
+
         synchronized (waitingToCatchup)
         {
             if (waitingToCatchup.contains(ch))
@@ -4294,16 +4507,166 @@ public final class Server extends Thread implements IServer
     public void watchGame()
     {
         LOGGER.info("Got: watchGame from CH " + processingCH.getClientName());
-        processingCH.initResendQueueFromStub(clientStub);
-        addIClient(processingCH);
-        addRealClient(processingCH);
-        processingCH.syncAfterReconnect(-1, 0);
-        oneTellAllLegionLocations(processingCH);
-        processingCH.updatePlayerInfo(getPlayerInfo(false));
+        synchronized (catchingUpSpectators)
+        {
+            if (catchingUpSpectators.size() >= MAX_CATCHING_UP_SPECTATORS)
+            {
+                LOGGER.info("Already " + catchingUpSpectators.size()
+                    + " spectators catching up, "
+                    + processingCH.getClientName() + " has to wait.");
+                waitingSpectators.add(processingCH);
+                return;
+            }
+            startSpectatorCatchup(processingCH);
+        }
+    }
+
+    /**
+     * Send the spectator everything needed to catch up with the game, from
+     * then on it gets all messages as the other clients. It is asked to
+     * confirm when it has processed them, and until then it counts against
+     * MAX_CATCHING_UP_SPECTATORS.
+     */
+    private void startSpectatorCatchup(ClientHandler ch)
+    {
+        ClientHandlerStub snapshot = recordSpectatorSnapshot(ch);
+        if (snapshot != null)
+        {
+            LOGGER.info("Spectator " + ch.getClientName()
+                + " catches up from snapshot of current state");
+            ch.initResendQueueFromSnapshot(clientStub, snapshot);
+        }
+        else
+        {
+            LOGGER.info("Spectator " + ch.getClientName()
+                + " catches up by replay of all messages");
+            ch.initResendQueueFromStub(clientStub);
+        }
+        addIClient(ch);
+        addRealClient(ch);
+        ch.syncAfterReconnect(-1, 0);
+        oneTellAllLegionLocations(ch);
+        ch.updatePlayerInfo(getPlayerInfo(false));
         // Technically totally unnecessary to re-send it to all
         // (only the new watcher needs it), but it's much easier this way
         // at least at the moment...
         game.updateCaretakerDisplays();
+
+        catchingUpSpectators.add(ch);
+        ch.confirmWhenCaughtUp();
+    }
+
+    /**
+     * If ch is a spectator which is catching up or waiting for it: it is
+     * done with that, so let the next waiting spectators start.
+     *
+     * @return True if ch was such a spectator
+     */
+    private boolean releaseSpectatorCatchup(ClientHandler ch, String reason)
+    {
+        synchronized (catchingUpSpectators)
+        {
+            if (waitingSpectators.remove(ch))
+            {
+                LOGGER.info("Waiting spectator " + ch.getClientName() + " "
+                    + reason);
+                return true;
+            }
+            if (!catchingUpSpectators.remove(ch))
+            {
+                return false;
+            }
+            LOGGER.info("Spectator " + ch.getClientName() + " " + reason
+                + ", " + waitingSpectators.size() + " waiting");
+            while (!waitingSpectators.isEmpty()
+                && catchingUpSpectators.size() < MAX_CATCHING_UP_SPECTATORS)
+            {
+                ClientHandler next = waitingSpectators.removeFirst();
+                if (!next.isGone())
+                {
+                    startSpectatorCatchup(next);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The messages which tell a spectator the current state of the game,
+     * with only what was revealed to all as legion contents. Recorded by a
+     * throwaway stub, and given instead of all messages since the start of
+     * the game.
+     *
+     * @return The stub with the messages, or null if there can be no
+     *         snapshot now; during an engagement there is too much state
+     *         which only the message stream tells.
+     */
+    private ClientHandlerStub recordSpectatorSnapshot(ClientHandler ch)
+    {
+        Phase phase = game.getPhase();
+        if (!ch.canHandleSplitPredictionRestore() || phase == Phase.INIT
+            || game.isEngagementInProgress() || game.isBattleInProgress())
+        {
+            return null;
+        }
+        SplitPredictionView view = game.getPublicSplitPrediction();
+        if (view == null)
+        {
+            return null;
+        }
+
+        ClientHandlerStub snapshot = new ClientHandlerStub(this,
+            "spectatorSnapshot")
+        {
+            @Override
+            protected void commitPoint()
+            {
+                // just recording, the messages go into the spectator's
+                // resend queue
+            }
+        };
+
+        snapshot.updatePlayerInfo(getPlayerInfo(false));
+        for (Player player : game.getPlayers())
+        {
+            if (player.isDead())
+            {
+                snapshot.tellPlayerElim(player, null);
+            }
+            else
+            {
+                snapshot.restoreSplitPrediction(player, view
+                    .getSummary(player.getName()));
+            }
+        }
+        oneTellAllLegionLocations(snapshot);
+        oneUpdateLegionStatus(snapshot);
+
+        Player activePlayer = game.getActivePlayer();
+        int turnNumber = game.getTurnNumber();
+        int roll = ((PlayerServerSide)activePlayer).getMovementRoll();
+        if (roll > 0 && phase != Phase.SPLIT)
+        {
+            snapshot.tellMovementRoll(roll, null);
+        }
+        snapshot.setupTurnState(activePlayer, turnNumber);
+        if (phase == Phase.SPLIT)
+        {
+            snapshot.setupSplit(activePlayer, turnNumber);
+        }
+        else if (phase == Phase.MOVE)
+        {
+            snapshot.setupMove();
+        }
+        else if (phase == Phase.FIGHT)
+        {
+            snapshot.setupFight();
+        }
+        else if (phase == Phase.MUSTER)
+        {
+            snapshot.setupMuster();
+        }
+        return snapshot;
     }
 
     public void logMsgToServer(String severity, String message)
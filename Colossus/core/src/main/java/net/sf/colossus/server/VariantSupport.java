@@ -22,6 +22,7 @@ import javax.swing.text.StyledDocument;
 
 import net.sf.colossus.common.Constants;
 import net.sf.colossus.util.ErrorUtils;
+import net.sf.colossus.util.LoadProfile;
 import net.sf.colossus.util.ObjectCreationException;
 import net.sf.colossus.util.StaticResourceLoader;
 import net.sf.colossus.variant.AllCreatureType;
@@ -317,6 +318,7 @@ public final class VariantSupport
             directories.add(tempVarDirectory);
             directories.add(Constants.defaultDirName);
             task = "Load variant file \"" + tempVarFilename + "\"";
+            long begin = LoadProfile.begin();
             InputStream varIS = StaticResourceLoader.getInputStream(
                 tempVarFilename, directories);
             if (varIS == null)
@@ -373,11 +375,14 @@ public final class VariantSupport
                 LOGGER.log(Level.FINEST, "Variant depending upon "
                     + dependUpon);
             }
+            LoadProfile.end("variant file", tempVarFilename, begin);
             directories = new ArrayList<String>();
             directories.add(tempVarDirectory);
             task = "getDocument README*";
+            begin = LoadProfile.begin();
             varREADME = StaticResourceLoader
                 .getDocument("README", directories);
+            LoadProfile.end("readme", "README", begin);
 
             /* OK, what is the proper order here ?
              * We should start with HazardTerrain & HazardHexside, but those
@@ -391,9 +396,12 @@ public final class VariantSupport
 
             AllCreatureType creatureTypes = loadCreatures();
 
+            begin = LoadProfile.begin();
             IVariantInitializer trl = loadTerrainsAndRecruits(creatureTypes);
+            LoadProfile.end("terrains and recruits", recruitsFileName, begin);
             // TODO add things as the variant package gets fleshed out
 
+            begin = LoadProfile.begin();
             List<String> directoriesForMap = getVarDirectoriesList();
             InputStream mapIS = StaticResourceLoader.getInputStream(
                 VariantSupport.getMapName(), directoriesForMap);
@@ -405,6 +413,7 @@ public final class VariantSupport
 
             MasterBoard masterBoard = new MasterBoard(sml.getHorizSize(),
                 sml.getVertSize(), sml.getShow(), sml.getHexes());
+            LoadProfile.end("master board", mapName, begin);
 
             // varREADME seems to be used as flag for a successfully loaded
             // variant, but breaking the whole variant loading just because
@@ -415,12 +424,18 @@ public final class VariantSupport
                 varREADME = getMissingReadmeNotification();
             }
 
+            begin = LoadProfile.begin();
             CURRENT_VARIANT = new Variant(trl, creatureTypes, masterBoard,
                 varREADME, variantName);
+            LoadProfile.end("variant", "", begin);
             loadedVariant = true;
+            begin = LoadProfile.begin();
             loadHints(CURRENT_VARIANT);
+            LoadProfile.end("hints", hintName, begin);
             task = "loadMarkerNamesProperties";
+            begin = LoadProfile.begin();
             markerNames = loadMarkerNamesProperties();
+            LoadProfile.end("marker names", Constants.markersNameFile, begin);
         }
         catch (Exception e)
         {
@@ -453,6 +468,7 @@ public final class VariantSupport
             List<String> directories = VariantSupport.getVarDirectoriesList();
             for (String creaturesName : VariantSupport.getCreaturesNames())
             {
+                long begin = LoadProfile.begin();
                 InputStream creIS = StaticResourceLoader.getInputStream(
                     creaturesName, directories);
                 if (creIS == null)
@@ -460,6 +476,7 @@ public final class VariantSupport
                     throw new FileNotFoundException(creaturesName);
                 }
                 creatureLoader.fillCreatureLoader(creIS, directories);
+                LoadProfile.end("creatures", creaturesName, begin);
             }
         }
         catch (Exception e)
@@ -4,49 +4,157 @@ package net.sf.colossus.util;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 
 /**
  * Returns all possible combinations of n elements of a List.
- * 
+ *
+ * The combinations are created lazily one by one while iterating, from an
+ * array of n indices into the list; nothing is computed up front.
+ *
+ * Combos created with {@link #distinct(List, int)} treat the list as a
+ * multiset: equal elements are interchangeable, so e.g. for
+ * (Ogre, Ogre, Troll) and n=2 only (Ogre, Ogre) and (Ogre, Troll) are
+ * returned, not (Ogre, Troll) twice.
+ *
  * @author David Ripton
  */
-public final class Combos<T>
+public final class Combos<T> implements Iterable<List<T>>
 {
-    private final List<List<T>> retlist;
+    private final List<T> elements;
+    private final int n;
+
+    /**
+     * For each index in elements the index at which the next candidate
+     * for the same combination position starts; index + 1 for plain
+     * combinations, the start of the next group of equal elements for
+     * distinct ones.
+     */
+    private final int[] nextStart;
 
     public Combos(List<T> list, int n)
     {
-        retlist = new ArrayList<List<T>>();
-        findCombinations(list, n, new ArrayList<T>());
+        this.elements = new ArrayList<T>(list);
+        this.n = n;
+        this.nextStart = new int[elements.size()];
+        for (int i = 0; i < nextStart.length; i++)
+        {
+            nextStart[i] = i + 1;
+        }
     }
 
-    private void findCombinations(List<T> alist, int n, List<T> blist)
+    private Combos(List<T> groupedList, int n, int[] nextStart)
     {
-        if (n < 0 || n > alist.size())
-        {
-            return;
-        }
-        if (n == 0)
+        this.elements = groupedList;
+        this.n = n;
+        this.nextStart = nextStart;
+    }
+
+    /**
+     * Combinations of n elements of list, without the duplicates which
+     * would arise from equal elements in list.
+     */
+    public static <T> Combos<T> distinct(List<T> list, int n)
+    {
+        // Group equal elements together, in order of first occurrence
+        List<T> values = new ArrayList<T>();
+        List<Integer> counts = new ArrayList<Integer>();
+        for (T element : list)
         {
-            List<T> copy = new ArrayList<T>();
-            copy.addAll(blist);
-            retlist.add(copy);
-            return;
+            int index = values.indexOf(element);
+            if (index < 0)
+            {
+                values.add(element);
+                counts.add(Integer.valueOf(1));
+            }
+            else
+            {
+                counts.set(index,
+                    Integer.valueOf(counts.get(index).intValue() + 1));
+            }
         }
-        for (int i = 0; i < alist.size(); i++)
+
+        List<T> grouped = new ArrayList<T>(list.size());
+        int[] nextStart = new int[list.size()];
+        for (int v = 0; v < values.size(); v++)
         {
-            blist.add(alist.get(i));
-            List<T> sub = alist.subList(i + 1, alist.size());
-            List<T> subclone = new ArrayList<T>();
-            subclone.addAll(sub);
-            findCombinations(subclone, n - 1, blist);
-            blist.remove(blist.size() - 1);
+            int groupEnd = grouped.size() + counts.get(v).intValue();
+            while (grouped.size() < groupEnd)
+            {
+                nextStart[grouped.size()] = groupEnd;
+                grouped.add(values.get(v));
+            }
         }
+        return new Combos<T>(grouped, n, nextStart);
     }
 
     public Iterator<List<T>> iterator()
     {
-        return retlist.iterator();
+        return new ComboIterator();
+    }
+
+    private class ComboIterator implements Iterator<List<T>>
+    {
+        private final int[] indices;
+        private boolean hasNext;
+
+        ComboIterator()
+        {
+            hasNext = n >= 0 && n <= elements.size();
+            indices = new int[Math.max(n, 0)];
+            for (int i = 0; i < indices.length; i++)
+            {
+                indices[i] = i;
+            }
+        }
+
+        public boolean hasNext()
+        {
+            return hasNext;
+        }
+
+        public List<T> next()
+        {
+            if (!hasNext)
+            {
+                throw new NoSuchElementException();
+            }
+            List<T> combo = new ArrayList<T>(n);
+            for (int index : indices)
+            {
+                combo.add(elements.get(index));
+            }
+            hasNext = advance();
+            return combo;
+        }
+
+        /**
+         * Move the rightmost index which still can be moved to its next
+         * start, and the indices right of it directly behind it.
+         */
+        private boolean advance()
+        {
+            int size = elements.size();
+            for (int i = n - 1; i >= 0; i--)
+            {
+                int start = nextStart[indices[i]];
+                if (start <= size - n + i)
+                {
+                    indices[i] = start;
+                    for (int j = i + 1; j < n; j++)
+                    {
+                        indices[j] = indices[j - 1] + 1;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
     }
 }
@@ -0,0 +1,625 @@
+package net.sf.colossus.util;
+
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ *  Always-on timing and traffic metrics of client and server: how long
+ *  each command takes to execute, how long events wait in queues, how
+ *  long each kind of AI decision and saving the game take, and how many
+ *  bytes and commands each client sends and receives.
+ *
+ *  Recording is cheap enough to be done all the time: once a histogram
+ *  or client entry exists, recording is a map lookup plus some atomic
+ *  increments, without creating any objects.
+ *
+ *  The metrics can be looked at with any JMX console (jconsole, VisualVM)
+ *  as MBean net.sf.colossus:type=EventMetrics, and are written
+ *  periodically to a file if the system property net.sf.colossus.metricsFile
+ *  is set (every net.sf.colossus.metricsInterval seconds, default 60).
+ */
+public final class EventMetrics implements EventMetricsMBean
+{
+    private static final Logger LOGGER = Logger.getLogger(EventMetrics.class
+        .getName());
+
+    private static final String PROP_FILE = "net.sf.colossus.metricsFile";
+
+    private static final String PROP_INTERVAL = "net.sf.colossus.metricsInterval";
+
+    private static final String OBJECT_NAME = "net.sf.colossus:type=EventMetrics";
+
+    /** Execution time of the commands from the server, in the clients */
+    public static final Group CLIENT_COMMANDS = new Group("client.command");
+
+    /** Execution time of the commands from the clients, in the server */
+    public static final Group SERVER_COMMANDS = new Group("server.command");
+
+    /** Handling time of the lobby commands from the web clients */
+    public static final Group WEBSERVER_COMMANDS = new Group(
+        "webserver.command");
+
+    /** Handling time of the lobby commands from the web server */
+    public static final Group WEBCLIENT_COMMANDS = new Group(
+        "webclient.command");
+
+    /** Time per kind of AI decision (split, masterMove, battleMove ...) */
+    public static final Group AI_DECISIONS = new Group("ai.decision");
+
+    /** Other things worth timing, e.g. saving the game */
+    public static final Group TIMINGS = new Group("timing");
+
+    /** Time events from the server wait in the client's queue */
+    public static final Histogram CLIENT_QUEUE_WAIT = TIMINGS
+        .get("clientQueueWait");
+
+    /** Time to save the game (autosave or on request) */
+    public static final Histogram SAVE_GAME = TIMINGS.get("saveGame");
+
+    private static final List<Group> GROUPS = Collections
+        .unmodifiableList(Arrays.asList(CLIENT_COMMANDS,
+            SERVER_COMMANDS, WEBSERVER_COMMANDS, WEBCLIENT_COMMANDS,
+            AI_DECISIONS, TIMINGS));
+
+    private static final ConcurrentMap<String, ClientStats> clients = new ConcurrentHashMap<String, ClientStats>();
+
+    private static final EventMetrics INSTANCE = new EventMetrics();
+
+    static
+    {
+        INSTANCE.register();
+        INSTANCE.startPeriodicDump();
+    }
+
+    private EventMetrics()
+    {
+        // only the one instance, which is the MBean
+    }
+
+    /**
+     * Traffic and server side processing time of the given client,
+     * created when first needed.
+     */
+    public static ClientStats getClientStats(String clientName)
+    {
+        ClientStats stats = clients.get(clientName);
+        if (stats == null)
+        {
+            stats = new ClientStats();
+            ClientStats other = clients.putIfAbsent(clientName, stats);
+            if (other != null)
+            {
+                stats = other;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Traffic and processing time of all clients together
+     */
+    public static ClientStats getClientTotals()
+    {
+        ClientStats total = new ClientStats();
+        for (ClientStats stats : clients.values())
+        {
+            total.bytesIn.addAndGet(stats.bytesIn.get());
+            total.bytesOut.addAndGet(stats.bytesOut.get());
+            total.commands.addAndGet(stats.commands.get());
+            total.processingNanos.addAndGet(stats.processingNanos.get());
+            total.sendQueue.add(stats.sendQueue);
+            total.eventQueue.add(stats.eventQueue);
+        }
+        return total;
+    }
+
+    private void register()
+    {
+        try
+        {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (mbs.isRegistered(name))
+            {
+                // e.g. Tournament workers, which have an own copy of this
+                // class each
+                name = new ObjectName(OBJECT_NAME + ",id="
+                    + System.identityHashCode(EventMetrics.class));
+            }
+            mbs.registerMBean(this, name);
+        }
+        catch (JMException e)
+        {
+            LOGGER.log(Level.WARNING, "Could not register metrics MBean", e);
+        }
+    }
+
+    private void startPeriodicDump()
+    {
+        final String filename = System.getProperty(PROP_FILE);
+        if (filename == null)
+        {
+            return;
+        }
+        long interval = Long.getLong(PROP_INTERVAL, 60).longValue() * 1000;
+        Timer timer = new Timer("EventMetricsDump", true);
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                dump(filename);
+            }
+        }, interval, interval);
+    }
+
+    public String getReport()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# Colossus event metrics at ").append(new Date())
+            .append('\n');
+        for (Group group : GROUPS)
+        {
+            for (String key : group.getKeys())
+            {
+                Histogram h = group.get(key);
+                sb.append(group.name).append('/').append(key).append(": ")
+                    .append(h.toString()).append('\n');
+            }
+        }
+        sb.append("all clients: ").append(getClientTotals().toString())
+            .append('\n');
+        for (String name : getClientNames())
+        {
+            ClientStats stats = clients.get(name);
+            if (stats != null)
+            {
+                sb.append("client ").append(name).append(": ")
+                    .append(stats.toString()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    public String[] getHistogramNames()
+    {
+        List<String> names = new ArrayList<String>();
+        for (Group group : GROUPS)
+        {
+            for (String key : group.getKeys())
+            {
+                names.add(group.name + "/" + key);
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    public String[] getClientNames()
+    {
+        List<String> names = new ArrayList<String>(clients.keySet());
+        Collections.sort(names);
+        return names.toArray(new String[names.size()]);
+    }
+
+    public long getCount(String histogramName)
+    {
+        Histogram h = findHistogram(histogramName);
+        return h == null ? 0 : h.getCount();
+    }
+
+    public long getMeanMicros(String histogramName)
+    {
+        Histogram h = findHistogram(histogramName);
+        return h == null ? 0 : h.getMeanMicros();
+    }
+
+    public long getMaxMicros(String histogramName)
+    {
+        Histogram h = findHistogram(histogramName);
+        return h == null ? 0 : h.getMaxMicros();
+    }
+
+    public long getPercentileMicros(String histogramName, int percent)
+    {
+        Histogram h = findHistogram(histogramName);
+        return h == null ? 0 : h.getPercentileMicros(percent);
+    }
+
+    public long getBytesIn(String clientName)
+    {
+        ClientStats stats = clients.get(clientName);
+        return stats == null ? 0 : stats.bytesIn.get();
+    }
+
+    public long getBytesOut(String clientName)
+    {
+        ClientStats stats = clients.get(clientName);
+        return stats == null ? 0 : stats.bytesOut.get();
+    }
+
+    public long getSendQueueLength(String clientName)
+    {
+        ClientStats stats = clients.get(clientName);
+        return stats == null ? 0 : stats.sendQueue.getCurrent();
+    }
+
+    public long getEventQueueLength(String clientName)
+    {
+        ClientStats stats = clients.get(clientName);
+        return stats == null ? 0 : stats.eventQueue.getCurrent();
+    }
+
+    public String getTrace()
+    {
+        return TraceRecorder.dump();
+    }
+
+    public void reset()
+    {
+        for (Group group : GROUPS)
+        {
+            group.reset();
+        }
+        clients.clear();
+    }
+
+    public void dump(String filename)
+    {
+        try
+        {
+            PrintWriter out = new PrintWriter(new FileWriter(filename));
+            try
+            {
+                out.print(getReport());
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.WARNING, "Could not write metrics to "
+                + filename, e);
+        }
+    }
+
+    private static Histogram findHistogram(String histogramName)
+    {
+        int slash = histogramName.indexOf('/');
+        if (slash == -1)
+        {
+            return null;
+        }
+        String groupName = histogramName.substring(0, slash);
+        for (Group group : GROUPS)
+        {
+            if (group.name.equals(groupName))
+            {
+                return group.histograms.get(histogramName
+                    .substring(slash + 1));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Histograms by name, e.g. one per command; created when first needed.
+     */
+    public static final class Group
+    {
+        private final String name;
+
+        private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+        Group(String name)
+        {
+            this.name = name;
+        }
+
+        public Histogram get(String key)
+        {
+            Histogram h = histograms.get(key);
+            if (h == null)
+            {
+                h = new Histogram();
+                Histogram other = histograms.putIfAbsent(key, h);
+                if (other != null)
+                {
+                    h = other;
+                }
+            }
+            return h;
+        }
+
+        /** Record a duration for the given key */
+        public void record(String key, long nanos)
+        {
+            get(key).record(nanos);
+        }
+
+        /** How many durations were recorded, for all keys together */
+        public long getTotalCount()
+        {
+            long n = 0;
+            for (Histogram h : histograms.values())
+            {
+                n += h.getCount();
+            }
+            return n;
+        }
+
+        /** Sum of the durations recorded, for all keys together */
+        public long getTotalMicros()
+        {
+            long nanos = 0;
+            for (Histogram h : histograms.values())
+            {
+                nanos += h.totalNanos.get();
+            }
+            return nanos / 1000;
+        }
+
+        /** Longest duration recorded for any key */
+        public long getMaxMicros()
+        {
+            long max = 0;
+            for (Histogram h : histograms.values())
+            {
+                max = Math.max(max, h.getMaxMicros());
+            }
+            return max;
+        }
+
+        List<String> getKeys()
+        {
+            List<String> keys = new ArrayList<String>(histograms.keySet());
+            Collections.sort(keys);
+            return keys;
+        }
+
+        void reset()
+        {
+            for (Histogram h : histograms.values())
+            {
+                h.reset();
+            }
+        }
+    }
+
+    /**
+     * Counts durations in buckets of powers of two microseconds: bucket 0
+     * is below 1 microsecond, bucket i from 2^(i-1) to below 2^i.
+     */
+    public static final class Histogram
+    {
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos)
+        {
+            if (nanos < 0)
+            {
+                nanos = 0;
+            }
+            int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+            buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+            {
+                max = maxNanos.get();
+            }
+        }
+
+        public long getCount()
+        {
+            return count.get();
+        }
+
+        public long getMeanMicros()
+        {
+            long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / n / 1000;
+        }
+
+        public long getMaxMicros()
+        {
+            return maxNanos.get() / 1000;
+        }
+
+        /**
+         * Upper bound of the bucket in which the given percentage of the
+         * recorded durations is reached.
+         */
+        public long getPercentileMicros(int percent)
+        {
+            long n = count.get();
+            if (n == 0)
+            {
+                return 0;
+            }
+            long wanted = (n * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                seen += buckets.get(i);
+                if (seen >= wanted)
+                {
+                    return Math.min(1L << i, getMaxMicros());
+                }
+            }
+            return getMaxMicros();
+        }
+
+        void reset()
+        {
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "count=" + getCount() + " meanUs=" + getMeanMicros()
+                + " p50Us=" + getPercentileMicros(50) + " p90Us="
+                + getPercentileMicros(90) + " p99Us="
+                + getPercentileMicros(99) + " maxUs=" + getMaxMicros();
+        }
+    }
+
+    /**
+     * Current and highest value of some length, e.g. of a queue; for the
+     * totals of all clients, the sum of the current values and the
+     * highest of the highest ones.
+     */
+    public static final class Gauge
+    {
+        private final String name;
+        private final AtomicLong current = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Gauge(String name)
+        {
+            this.name = name;
+        }
+
+        public void set(long value)
+        {
+            current.set(value);
+            updateMax(value);
+        }
+
+        private void updateMax(long value)
+        {
+            long m = max.get();
+            while (value > m && !max.compareAndSet(m, value))
+            {
+                m = max.get();
+            }
+        }
+
+        void add(Gauge other)
+        {
+            current.addAndGet(other.current.get());
+            updateMax(other.max.get());
+        }
+
+        public long getCurrent()
+        {
+            return current.get();
+        }
+
+        public long getMax()
+        {
+            return max.get();
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + "=" + current.get() + " " + name + "Max="
+                + max.get();
+        }
+    }
+
+    /**
+     * Bytes from and to one client, how many commands from it the
+     * server processed in how much time, and how long the queues of the
+     * connection are.
+     */
+    public static final class ClientStats
+    {
+        private final AtomicLong bytesIn = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+        private final AtomicLong commands = new AtomicLong();
+        private final AtomicLong processingNanos = new AtomicLong();
+
+        /** Messages the server could not write to the client yet */
+        private final Gauge sendQueue = new Gauge("sendQueue");
+
+        /** Events waiting in the queue of the client */
+        private final Gauge eventQueue = new Gauge("eventQueue");
+
+        public void addBytesIn(long n)
+        {
+            bytesIn.addAndGet(n);
+        }
+
+        public void addBytesOut(long n)
+        {
+            bytesOut.addAndGet(n);
+        }
+
+        public void addCommand(long nanos)
+        {
+            commands.incrementAndGet();
+            processingNanos.addAndGet(nanos);
+        }
+
+        public void setSendQueueLength(long n)
+        {
+            sendQueue.set(n);
+        }
+
+        public void setEventQueueLength(long n)
+        {
+            eventQueue.set(n);
+        }
+
+        public long getBytesIn()
+        {
+            return bytesIn.get();
+        }
+
+        public long getBytesOut()
+        {
+            return bytesOut.get();
+        }
+
+        public long getCommands()
+        {
+            return commands.get();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "bytesIn=" + bytesIn.get() + " bytesOut=" + bytesOut.get()
+                + " commands=" + commands.get() + " processingMs="
+                + processingNanos.get() / 1000000 + " " + sendQueue + " "
+                + eventQueue;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.sf.colossus.util;
+
+
+/**
+ *  JMX view of the {@link EventMetrics}.
+ *
+ *  Histogram names are group/key, e.g. server.command/doMove; times are
+ *  in microseconds.
+ */
+public interface EventMetricsMBean
+{
+    /** All metrics as text, one line per histogram and client */
+    public String getReport();
+
+    public String[] getHistogramNames();
+
+    public String[] getClientNames();
+
+    public long getCount(String histogramName);
+
+    public long getMeanMicros(String histogramName);
+
+    public long getMaxMicros(String histogramName);
+
+    /** Upper bound for the given percentage of the recorded durations */
+    public long getPercentileMicros(String histogramName, int percent);
+
+    public long getBytesIn(String clientName);
+
+    public long getBytesOut(String clientName);
+
+    /** Messages the server could not write to the client yet */
+    public long getSendQueueLength(String clientName);
+
+    /** Events waiting in the queue of the client */
+    public long getEventQueueLength(String clientName);
+
+    /** The recent messages between server and clients, see TraceRecorder */
+    public String getTrace();
+
+    /** Start counting again from zero */
+    public void reset();
+
+    /** Write the report to the given file */
+    public void dump(String filename);
+}
@@ -0,0 +1,132 @@
+package net.sf.colossus.util;
+
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A cache of images for the StaticResourceLoader, bounded by the memory
+ * the pixels of the images take; when it is full, the images not used
+ * for the longest time are dropped.
+ *
+ * The lock is held only while looking up or storing, never while an
+ * image is loaded or rendered, so threads rendering images in parallel
+ * do not wait for each other. If two threads happen to render the same
+ * image, the one stored last wins, which does not matter since they are
+ * the same.
+ */
+final class ImageCache
+{
+    /** Stored for images which do not exist, so we don't look again */
+    static final Object MISSING = new Object();
+
+    /** Bytes counted for an image whose size we don't know */
+    private static final long UNKNOWN_SIZE_BYTES = 60 * 60 * 4;
+
+    private final String name;
+    private final long maxBytes;
+    private long bytes = 0;
+
+    private final LinkedHashMap<String, Object> entries = new LinkedHashMap<String, Object>(
+        256, 0.75f, true);
+
+    /**
+     * @param name For the log messages
+     * @param maxBytes When more than this many bytes are in the cache,
+     *     the least recently used images are dropped
+     */
+    ImageCache(String name, long maxBytes)
+    {
+        this.name = name;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return The Image stored for the key, MISSING, or null if nothing
+     *     is stored for it
+     */
+    synchronized Object get(String key)
+    {
+        return entries.get(key);
+    }
+
+    /**
+     * Store an Image (or MISSING) for the key, dropping the least recently
+     * used ones if the cache gets too big.
+     */
+    synchronized void put(String key, Object image)
+    {
+        Object old = entries.put(key, image);
+        if (old != null)
+        {
+            bytes -= getBytes(old);
+        }
+        bytes += getBytes(image);
+
+        Iterator<Map.Entry<String, Object>> it = entries.entrySet()
+            .iterator();
+        while (bytes > maxBytes && it.hasNext())
+        {
+            Map.Entry<String, Object> eldest = it.next();
+            if (eldest.getValue() == image)
+            {
+                // never drop what was just stored
+                continue;
+            }
+            bytes -= getBytes(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    /** How much memory the pixels of an image take, roughly */
+    static long getBytes(Object image)
+    {
+        if (image instanceof BufferedImage)
+        {
+            BufferedImage bi = (BufferedImage)image;
+            int bits = bi.getColorModel().getPixelSize();
+            return (long)bi.getWidth() * bi.getHeight()
+                * Math.max(1, (bits + 7) / 8);
+        }
+        if (image instanceof Image)
+        {
+            Image other = (Image)image;
+            int width = other.getWidth(null);
+            int height = other.getHeight(null);
+            if (width > 0 && height > 0)
+            {
+                return (long)width * height * 4;
+            }
+            return UNKNOWN_SIZE_BYTES;
+        }
+        // MISSING, just the entry
+        return 64;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "ImageCache " + name + ": " + entries.size() + " images, "
+            + (bytes / 1024) + " of " + (maxBytes / 1024) + " KB";
+    }
+}
@@ -0,0 +1,77 @@
+package net.sf.colossus.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Records how long the single steps of loading a variant take, if
+ * recording was switched on with {@link #start()}; otherwise the calls
+ * cost next to nothing.
+ *
+ * Usage around each step:
+ *   long begin = LoadProfile.begin();
+ *   ...
+ *   LoadProfile.end("creatures", filename, begin);
+ *
+ * The recording is per class loader (static), so the VariantCheck tool
+ * loads each variant with its own class loader.
+ */
+public final class LoadProfile
+{
+    private static volatile List<String[]> steps = null;
+
+    private LoadProfile()
+    {
+        // only static methods
+    }
+
+    /** Start recording, dropping anything recorded before */
+    public static void start()
+    {
+        steps = new ArrayList<String[]>();
+    }
+
+    /**
+     * Stop recording.
+     *
+     * @return The recorded steps as { step, file, milliseconds }, in the
+     *         order in which they were completed (nested steps before the
+     *         steps containing them)
+     */
+    public static List<String[]> stop()
+    {
+        List<String[]> recorded = steps;
+        steps = null;
+        return recorded == null ? new ArrayList<String[]>() : recorded;
+    }
+
+    /** The start time for end(), if recording */
+    public static long begin()
+    {
+        return steps == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Record a step, if recording.
+     *
+     * @param step What was done, e.g. "creatures"
+     * @param file The file that was loaded, or an empty String
+     * @param begin What begin() returned before the step
+     */
+    public static void end(String step, String file, long begin)
+    {
+        List<String[]> recorded = steps;
+        if (recorded == null)
+        {
+            return;
+        }
+        String ms = String.format("%.3f",
+            Double.valueOf((System.nanoTime() - begin) / 1000000.0));
+        synchronized (recorded)
+        {
+            recorded.add(new String[] { step, file, ms });
+        }
+    }
+}
@@ -45,4 +45,46 @@ public final class Split
         while (pos < len);
         return list;
     }
+
+    /**
+     * Same result as s.split(sep, limit), but sep is plain text, not a
+     * regular expression; so splitting does not need to compile the
+     * separator to a Pattern each time, which String.split does for all
+     * separators longer than one character.
+     *
+     * @param sep The separator, taken literally; not empty
+     * @param s The string to split
+     * @param limit As for String.split: if positive, at most this many
+     *     substrings; if 0, trailing empty substrings are dropped;
+     *     if negative, all of them are kept
+     */
+    public static String[] toArray(final String sep, final String s,
+        final int limit)
+    {
+        List<String> list = new ArrayList<String>();
+
+        int pos = 0;
+        int splitAt;
+        while ((limit <= 0 || list.size() < limit - 1)
+            && (splitAt = s.indexOf(sep, pos)) != -1)
+        {
+            list.add(s.substring(pos, splitAt));
+            pos = splitAt + sep.length();
+        }
+        if (list.isEmpty())
+        {
+            return new String[] { s };
+        }
+        list.add(s.substring(pos));
+
+        int size = list.size();
+        if (limit == 0)
+        {
+            while (size > 0 && list.get(size - 1).length() == 0)
+            {
+                size--;
+            }
+        }
+        return list.subList(0, size).toArray(new String[size]);
+    }
 }
@@ -7,11 +7,14 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MediaTracker;
-import java.awt.Toolkit;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -22,19 +25,26 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
-import java.net.MalformedURLException;
 import java.net.Socket;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.text.DefaultStyledDocument;
 import javax.swing.text.Document;
@@ -59,6 +69,12 @@ public final class StaticResourceLoader
 
     public static final String FILESERVER_IGNOREFAIL_SIGNAL = "~/~Ignore-Fail~/~";
 
+    /** Request for the list of all files the server has in its cache */
+    public static final String FILESERVER_MANIFEST_SIGNAL = "~/~Manifest~/~";
+
+    /** Request for the content of the files with the given hashes */
+    public static final String FILESERVER_BUNDLE_SIGNAL = "~/~Bundle~/~";
+
     /**
      * Class ColossusClassLoader allows for class loading outside the
      * CLASSPATH, i.e. from the various variant directories.
@@ -131,10 +147,17 @@ public final class StaticResourceLoader
         .getClassLoader();
     private static final ColossusClassLoader cl = new ColossusClassLoader(
         baseCL);
-    private static final Map<String, Object> imageCache = Collections
-        .synchronizedMap(new HashMap<String, Object>());
+    /** Images in the size in which they are used, drawn from the sources */
+    private static final ImageCache imageCache = new ImageCache("rendered",
+        32 * 1024 * 1024);
+    /** Images as they are in the files, to render other sizes from */
+    private static final ImageCache sourceImageCache = new ImageCache(
+        "source", 8 * 1024 * 1024);
     private static final Map<String, byte[]> fileCache = Collections
         .synchronizedMap(new HashMap<String, byte[]>());
+    /** Keys of files that were looked for locally but do not exist */
+    private static final Set<String> fileCacheMisses = Collections
+        .synchronizedSet(new HashSet<String>());
 
     // We used to use the normal separator from Constants, but that
     // does not need to be like that. Now introduced own constant
@@ -142,6 +165,9 @@ public final class StaticResourceLoader
     // to server.Constants.
     public final static String REQUEST_TOKEN_SEPARATOR = " ~ ";
 
+    private static final Pattern CONTENT_HASH_PATTERN = Pattern
+        .compile("[0-9a-f]{40}");
+
     private static String server = null;
     private static int serverPort = 0;
 
@@ -167,10 +193,11 @@ public final class StaticResourceLoader
     }
 
     /** empty the cache so that all Chits have to be redrawn */
-    public synchronized static void purgeImageCache()
+    public static void purgeImageCache()
     {
         LOGGER.log(Level.FINEST, "Purging Image Cache.");
         imageCache.clear();
+        sourceImageCache.clear();
     }
 
     /** empty the cache so that all files have to be reloaded */
@@ -178,6 +205,7 @@ public final class StaticResourceLoader
     {
         LOGGER.log(Level.FINEST, "Purging File Cache.");
         fileCache.clear();
+        fileCacheMisses.clear();
     }
 
     /**
@@ -186,47 +214,35 @@ public final class StaticResourceLoader
      * @param directories List of directories to search (in order).
      * @return The Image, or null if it was not found.
      */
-    public synchronized static Image getImage(String filename,
-        List<String> directories, int width, int height)
+    public static Image getImage(String filename, List<String> directories,
+        int width, int height)
     {
-        Image image = null;
         String mapKey = getMapKey(filename, directories);
         mapKey = mapKey + "(" + width + "," + height + ")";
         Object cached = imageCache.get(mapKey);
-        if ((cached != null) && (cached instanceof Image))
-        {
-            image = (Image)cached;
-        }
-        if ((cached != null) && (cached instanceof ImageIcon))
+        if (cached instanceof Image)
         {
-            image = ((ImageIcon)cached).getImage();
+            return (Image)cached;
         }
+
+        Image image = null;
         Iterator<String> it = directories.iterator();
         while (it.hasNext() && (image == null))
         {
             String path = it.next();
             for (int i = 0; ((i < imageExtension.length) && (image == null)); i++)
             {
-                image = tryLoadImageFromFile(filename + imageExtension[i],
-                    path, width, height);
-                if (image == null)
+                BufferedImage source = getSourceImage(filename
+                    + imageExtension[i], path);
+                if (source != null)
                 {
-                    ImageIcon temp = tryLoadImageIconFromResource(filename
-                        + imageExtension[i], path, width, height);
-                    if (temp != null)
-                    {
-                        image = temp.getImage();
-                    }
+                    image = getScaledImage(source, width, height);
                 }
             }
-            if (image != null)
-            {
-                imageCache.put(mapKey, image);
-            }
         }
         if (image != null)
         {
-            waitOnImage(image);
+            imageCache.put(mapKey, image);
         }
         return (image);
     }
@@ -237,135 +253,94 @@ public final class StaticResourceLoader
      * @param directories List of directories to search (in order).
      * @return The ImageIcon, or null if it was not found.
      */
-    public synchronized static ImageIcon getImageIcon(String filename,
+    public static ImageIcon getImageIcon(String filename,
         List<String> directories, int width, int height)
     {
-        ImageIcon icon = null;
-        String mapKey = getMapKey(filename, directories);
-        mapKey = mapKey + "(" + width + "," + height + ")";
-        Object cached = imageCache.get(mapKey);
-        if ((cached != null) && (cached instanceof Image))
+        Image image = getImage(filename, directories, width, height);
+        return image == null ? null : new ImageIcon(image);
+    }
+
+    /**
+     * The image in the given file as loaded, from the cache of source
+     * images if it was loaded before.
+     * @param filename Name of the file to load.
+     * @param path Path to search for the file, first in the file system,
+     *     then through the class loader.
+     * @return The image, or null if there is no such image.
+     */
+    private static BufferedImage getSourceImage(String filename, String path)
+    {
+        String fullPath = path + pathSeparator + fixFilename(filename);
+        Object cached = sourceImageCache.get(fullPath);
+        if (cached == ImageCache.MISSING)
         {
-            icon = new ImageIcon((Image)cached);
+            return null;
         }
-        if ((cached != null) && (cached instanceof ImageIcon))
+        if (cached != null)
         {
-            icon = (ImageIcon)cached;
+            return (BufferedImage)cached;
         }
-        Iterator<String> it = directories.iterator();
-        while (it.hasNext() && (icon == null))
-        {
-            String path = it.next();
 
-            for (int i = 0; ((i < imageExtension.length) && (icon == null)); i++)
+        BufferedImage image = null;
+        try
+        {
+            File file = new File(fullPath);
+            if (file.isFile())
             {
-                Image temp = tryLoadImageFromFile(
-                    filename + imageExtension[i], path, width, height);
-                if (temp == null)
-                {
-                    icon = tryLoadImageIconFromResource(filename
-                        + imageExtension[i], path, width, height);
-                }
-                else
-                {
-                    icon = new ImageIcon(temp);
-                }
+                image = ImageIO.read(file);
             }
-            if (icon != null)
+            else
             {
-                imageCache.put(mapKey, icon);
+                URL url = cl.getResource(fullPath);
+                if (url != null)
+                {
+                    image = ImageIO.read(url);
+                }
             }
         }
-        while (icon != null
-            && icon.getImageLoadStatus() == MediaTracker.LOADING)
-        { // no need for CPU time
-            Thread.yield();
+        catch (IOException e)
+        {
+            LOGGER.log(Level.FINE, "Can't read image " + fullPath, e);
         }
-        return (icon);
+        sourceImageCache.put(fullPath, image == null ? ImageCache.MISSING
+            : image);
+        return image;
     }
 
     /**
-     * Try loading the file with the given filename in the given path
-     * as an Image.
-     * @param filename Name of the file to load.
-     * @param path Path to search for the file
-     * @return Resulting Image, or null if it fails.
+     * Render an image in the given size. The result is a complete
+     * BufferedImage (not one that is produced later while drawing it),
+     * so it can be drawn at once and it can be rendered in any thread.
+     * @param source The image to scale.
+     * @param width Width of the result.
+     * @param height Height of the result.
+     * @return The scaled image, or the source if it has that size already.
      */
-    private static Image tryLoadImageFromFile(String filename, String path,
-        int width, int height)
+    private static Image getScaledImage(BufferedImage source, int width,
+        int height)
     {
-        Image image = null;
-        try
-        {
-            URL url;
-            url = new URL("file:" + path + pathSeparator
-                + fixFilename(filename));
-            // URL will not be null even if the file doesn't exist,
-            // so we need to check if connection can be opened
-            if (url.openStream() != null)
-            {
-                image = Toolkit.getDefaultToolkit().getImage(url);
-            }
-        }
-        catch (MalformedURLException e)
-        {
-            // nothing to do
-        }
-        catch (IOException e)
-        {
-            // nothing to do
-        }
-        if (image != null)
+        if (source.getWidth() == width && source.getHeight() == height)
         {
-            return image.getScaledInstance(width, height,
-                java.awt.Image.SCALE_SMOOTH);
-        }
-        else
-        {
-            return null;
+            return source;
         }
+        Image scaled = source.getScaledInstance(width, height,
+            Image.SCALE_SMOOTH);
+        waitOnImage(scaled);
+        BufferedImage bi = new BufferedImage(width, height,
+            BufferedImage.TYPE_INT_ARGB);
+        Graphics2D biContext = bi.createGraphics();
+        biContext.drawImage(scaled, 0, 0, null);
+        biContext.dispose();
+        return bi;
     }
 
     /**
-     * Try loading the file file with the given filename in the given path
-     * as an ImageIcon, through a Class loader.
-     * @param filename Name of the file to load.
-     * @param path Path to search for the file
-     * @return Resulting ImageIcon, or null if it fails.
+     * Describe the image caches, e.g. for the log.
+     * @return How many images and how much memory the caches hold.
      */
-    private static ImageIcon tryLoadImageIconFromResource(String filename,
-        String path, int width, int height)
+    public static String getImageCacheStatus()
     {
-        ImageIcon icon = null;
-        try
-        {
-            URL url = cl.getResource(path + pathSeparator
-                + fixFilename(filename));
-            // URL will can be null even if the file exist,
-            // so we need to check if connection can be opened
-            if (url != null && url.openStream() != null)
-            {
-                icon = new ImageIcon(url);
-            }
-
-        }
-        catch (Exception e)
-        {
-            // nothing to do
-        }
-        if (icon == null)
-        {
-            return null;
-        }
-        if ((icon.getIconWidth() == width) && (icon.getIconHeight() == height))
-        {
-            return icon;
-        }
-        else
-        {
-            return new ImageIcon(icon.getImage().getScaledInstance(width,
-                height, java.awt.Image.SCALE_SMOOTH));
-        }
+        return imageCache + "; " + sourceImageCache;
     }
 
     /**
@@ -449,6 +424,7 @@ public final class StaticResourceLoader
                 }
                 if (stream == null)
                 {
+                    fileCacheMisses.add(mapKey);
                     if (!remote && ignoreFail)
                     {
                         // If someone locally requests it as ignoreFail,
@@ -476,68 +452,58 @@ public final class StaticResourceLoader
                 }
             }
         }
+        else if (cached != null)
+        {
+            data = (byte[])cached;
+        }
         else
         {
-            synchronized (fileCache)
+            // Not holding the cache lock while waiting for the server, so
+            // that other threads can meanwhile use what is cached already
+            try
             {
-                if (cached != null)
+                Socket fileSocket = new Socket(server, serverPort);
+                InputStream is = fileSocket.getInputStream();
+
+                if (is == null)
                 {
-                    data = (byte[])cached;
+                    LOGGER.log(Level.WARNING, "getInputStream:: "
+                        + " Couldn't get InputStream from socket"
+                        + " for file " + filename + " in " + directories
+                        + (cachedOnly ? " (cached only)" : ""));
+                    // TODO this sounds more serious than just a warning in the logs
                 }
                 else
                 {
-                    try
+                    PrintWriter out = new PrintWriter(
+                        fileSocket.getOutputStream(), true);
+
+                    if (ignoreFail)
                     {
-                        Socket fileSocket = new Socket(server, serverPort);
-                        InputStream is = fileSocket.getInputStream();
-
-                        if (is == null)
-                        {
-                            LOGGER.log(Level.WARNING, "getInputStream:: "
-                                + " Couldn't get InputStream from socket"
-                                + " for file " + filename + " in "
-                                + directories
-                                + (cachedOnly ? " (cached only)" : ""));
-                            // TODO this sounds more serious than just a warning in the logs
-                        }
-                        else
-                        {
-                            PrintWriter out = new PrintWriter(
-                                fileSocket.getOutputStream(), true);
-
-                            if (ignoreFail)
-                            {
-                                out.print(FILESERVER_IGNOREFAIL_SIGNAL
-                                    + REQUEST_TOKEN_SEPARATOR);
-                            }
-                            out.print(filename);
-                            Iterator<String> it = directories.iterator();
-                            while (it.hasNext())
-                            {
-                                out.print(REQUEST_TOKEN_SEPARATOR + it.next());
-                            }
-                            out.println();
-                            data = getBytesFromInputStream(is);
-                            if (data != null && data.length == 0
-                                && !ignoreFail)
-                            {
-                                LOGGER.log(
-                                    Level.WARNING,
-                                    "Got empty contents for file " + filename
-                                        + " directories "
-                                        + directories.toString());
-                            }
-                            fileSocket.close();
-                            fileCache.put(mapKey, data);
-                        }
+                        out.print(FILESERVER_IGNOREFAIL_SIGNAL
+                            + REQUEST_TOKEN_SEPARATOR);
                     }
-                    catch (Exception e)
+                    out.print(filename);
+                    Iterator<String> it = directories.iterator();
+                    while (it.hasNext())
                     {
-                        LOGGER.log(Level.SEVERE, "Failed to read from stream",
-                            e);
+                        out.print(REQUEST_TOKEN_SEPARATOR + it.next());
                     }
+                    out.println();
+                    data = getBytesFromInputStream(is);
+                    if (data != null && data.length == 0 && !ignoreFail)
+                    {
+                        LOGGER.log(Level.WARNING, "Got empty contents for file "
+                            + filename + " directories "
+                            + directories.toString());
+                    }
+                    fileSocket.close();
+                    fileCache.put(mapKey, data);
                 }
-
+            }
+            catch (Exception e)
+            {
+                LOGGER.log(Level.SEVERE, "Failed to read from stream", e);
             }
         }
         return (data == null ? null : getInputStreamFromBytes(data));
@@ -580,7 +546,7 @@ public final class StaticResourceLoader
      */
     private static byte[] getBytesFromInputStream(InputStream is)
     {
-        byte[] all = new byte[0];
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
 
         try
         {
@@ -588,16 +554,7 @@ public final class StaticResourceLoader
             int r = is.read(data);
             while (r > 0)
             {
-                byte[] temp = new byte[all.length + r];
-                for (int i = 0; i < all.length; i++)
-                {
-                    temp[i] = all[i];
-                }
-                for (int i = 0; i < r; i++)
-                {
-                    temp[i + all.length] = data[i];
-                }
-                all = temp;
+                all.write(data, 0, r);
                 r = is.read(data);
             }
         }
@@ -605,7 +562,7 @@ public final class StaticResourceLoader
         {
             LOGGER.log(Level.SEVERE, "Can't Stringify stream " + is + ".", e);
         }
-        return all;
+        return all.toByteArray();
     }
 
     /**
@@ -779,7 +736,7 @@ public final class StaticResourceLoader
      * @param directories List of directories to search (in order).
      * @return The composite Image, or null if any part was not found.
      */
-    public synchronized static Image getCompositeImage(String[] filenames,
+    public static Image getCompositeImage(String[] filenames,
         List<String> directories, int width, int height)
     {
         BufferedImage bi;
@@ -787,14 +744,10 @@ public final class StaticResourceLoader
         mapKey = mapKey + "(" + width + "," + height + ")";
         Object cached = imageCache.get(mapKey);
 
-        if ((cached != null) && (cached instanceof Image))
+        if (cached instanceof Image)
         {
             return (Image)cached;
         }
-        if ((cached != null) && (cached instanceof ImageIcon))
-        {
-            return ((ImageIcon)cached).getImage();
-        }
         Image[] tempImage = new Image[filenames.length];
         for (int i = 0; i < filenames.length; i++)
         {
@@ -811,18 +764,75 @@ public final class StaticResourceLoader
                 return null;
             }
         }
+        // All layers are complete BufferedImages, so they can be drawn
+        // one after the other without waiting for anything
         bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D biContext = bi.createGraphics();
-        for (int i = 0; (biContext != null) && (i < filenames.length); i++)
+        for (int i = 0; i < filenames.length; i++)
         {
             biContext.drawImage(tempImage[i], 0, 0, width, height, null);
-            waitOnImage(bi);
         }
+        biContext.dispose();
         imageCache.put(mapKey, bi);
 
         return bi;
     }
 
+    /**
+     * Render the composite images for all the given arrays of filenames,
+     * on as many threads as there are processors, so that afterwards
+     * getCompositeImage finds them in the cache.
+     * Returns when all are rendered.
+     * @param allFilenames For each image the names of the layers.
+     * @param directories List of directories to search (in order).
+     * @param width Width of the images.
+     * @param height Height of the images.
+     */
+    public static void prerenderCompositeImages(
+        final List<String[]> allFilenames, final List<String> directories,
+        final int width, final int height)
+    {
+        final AtomicInteger next = new AtomicInteger();
+        Runnable renderer = new Runnable()
+        {
+            public void run()
+            {
+                int i;
+                while ((i = next.getAndIncrement()) < allFilenames.size())
+                {
+                    getCompositeImage(allFilenames.get(i), directories,
+                        width, height);
+                }
+            }
+        };
+
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+            allFilenames.size());
+        List<Thread> helpers = new ArrayList<Thread>();
+        for (int i = 1; i < threads; i++)
+        {
+            Thread helper = new Thread(renderer, "ImageRenderer-" + i);
+            helper.setDaemon(true);
+            helper.setPriority(Thread.currentThread().getPriority());
+            helper.start();
+            helpers.add(helper);
+        }
+        renderer.run();
+        for (Thread helper : helpers)
+        {
+            try
+            {
+                helper.join();
+            }
+            catch (InterruptedException e)
+            {
+                LOGGER.log(Level.FINE, "Interrupted while rendering images");
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     /**
      * Try to build an image when there is no source file to create it.
      *   Includes generation of some dynamic layers of images for
@@ -834,7 +844,7 @@ public final class StaticResourceLoader
      * @param directories List of searched directories.
      * @return The generated Image.
      */
-    private synchronized static Image tryBuildingNonexistentImage(
+    private static Image tryBuildingNonexistentImage(
         String filename, int width, int height, List<String> directories)
     {
         Image tempImage = null;
@@ -1049,15 +1059,10 @@ public final class StaticResourceLoader
         List<String> directories, int width, int height)
     {
         Image temp = getImage(filename, directories, width, height);
-        ImageIcon tempIcon = new ImageIcon(temp);
-        while (tempIcon.getImageLoadStatus() == MediaTracker.LOADING)
-        {
-            Thread.yield();
-        }
-        if (tempIcon.getImageLoadStatus() != MediaTracker.COMPLETE)
+        if (temp == null)
         {
             LOGGER.log(Level.SEVERE, "Image loading of " + filename
-                + " failed (" + tempIcon.getImageLoadStatus() + ")");
+                + " failed");
             return null;
         }
 
@@ -1065,33 +1070,30 @@ public final class StaticResourceLoader
             BufferedImage.TYPE_INT_ARGB);
         Graphics2D biContext = bi.createGraphics();
         biContext.drawImage(temp, 0, 0, width, height, null);
-        waitOnImage(bi);
+        biContext.dispose();
 
-        int[] pi;
-        WritableRaster ra = bi.getRaster();
         // rebuild the image from the Alpha Channel
         // fully-opaque pixel are set to the color,
         // everything else is white.
         // this should have been a LookupOp, but
         // I couldn't make it reliable across platform :-(
-        for (int x = 0; x < width; x++)
-        {
-            for (int y = 0; y < height; y++)
+        // So work on all ARGB ints of the image at once; getRGB/setRGB
+        // keep the image managed (accelerated) by Java2D, unlike taking
+        // the array of the data buffer.
+        int[] argb = bi.getRGB(0, 0, width, height, null, 0, width);
+        int opaqueColor = 0xFF000000 | (color.getRGB() & 0xFFFFFF);
+        for (int i = 0; i < argb.length; i++)
+        {
+            if ((argb[i] >>> 24) == 0xFF) // fully opaque
             {
-                pi = ra.getPixel(x, y, (int[])null);
-                if (pi[3] == 0xFF) // fully opaque
-                {
-                    pi[0] = color.getRed();
-                    pi[1] = color.getGreen();
-                    pi[2] = color.getBlue();
-                }
-                else
-                {
-                    pi[0] = pi[1] = pi[2] = 0xFF;
-                }
-                ra.setPixel(x, y, pi);
+                argb[i] = opaqueColor;
+            }
+            else
+            {
+                argb[i] |= 0xFFFFFF;
             }
         }
+        bi.setRGB(0, 0, width, height, argb, 0, width);
 
         return bi;
     }
@@ -1102,6 +1104,11 @@ public final class StaticResourceLoader
      */
     private static void waitOnImage(Image image)
     {
+        if (image instanceof BufferedImage)
+        {
+            // drawn completely when created
+            return;
+        }
         ImageIcon icon = new ImageIcon(image);
         while (icon.getImageLoadStatus() == MediaTracker.LOADING)
         {
@@ -1356,6 +1363,388 @@ public final class StaticResourceLoader
         fileCache.put(mapKey, data);
     }
 
+    /**
+     * Write the manifest of the file cache: for each file the key and the
+     * hash of its content, for files known to be missing an empty hash.
+     * This is what the FileServerThread sends for a
+     * FILESERVER_MANIFEST_SIGNAL request.
+     * @param os The stream to write to.
+     * @throws IOException If writing fails.
+     */
+    public static void writeFileCacheManifest(OutputStream os)
+        throws IOException
+    {
+        Map<String, byte[]> files;
+        List<String> misses;
+        synchronized (fileCache)
+        {
+            files = new HashMap<String, byte[]>(fileCache);
+        }
+        synchronized (fileCacheMisses)
+        {
+            misses = new ArrayList<String>(fileCacheMisses);
+        }
+        misses.removeAll(files.keySet());
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            os));
+        out.writeInt(files.size() + misses.size());
+        for (Map.Entry<String, byte[]> entry : files.entrySet())
+        {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(getContentHash(entry.getValue()));
+        }
+        for (String mapKey : misses)
+        {
+            out.writeUTF(mapKey);
+            out.writeUTF("");
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the content of the cached files with the given hashes as one
+     * compressed bundle: for each file the hash, the length and the
+     * content, ended by an empty hash. Hashes of files which are no longer
+     * in the cache are skipped.
+     * This is what the FileServerThread sends for a
+     * FILESERVER_BUNDLE_SIGNAL request.
+     * @param hashes The hashes of the wanted files, from the manifest.
+     * @param os The stream to write to.
+     * @throws IOException If writing fails.
+     */
+    public static void writeFileCacheBundle(List<String> hashes,
+        OutputStream os) throws IOException
+    {
+        Map<String, byte[]> byHash = new HashMap<String, byte[]>();
+        synchronized (fileCache)
+        {
+            for (byte[] data : fileCache.values())
+            {
+                byHash.put(getContentHash(data), data);
+            }
+        }
+
+        GZIPOutputStream zipped = new GZIPOutputStream(
+            new BufferedOutputStream(os));
+        DataOutputStream out = new DataOutputStream(zipped);
+        for (String hash : hashes)
+        {
+            byte[] data = byHash.get(hash);
+            if (data != null)
+            {
+                out.writeUTF(hash);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+        out.writeUTF("");
+        out.flush();
+        zipped.finish();
+        zipped.flush();
+    }
+
+    /**
+     * Fill the file cache with all files the data server has in its own
+     * cache, so that loading the variant does not need a connection to
+     * the server for each file.
+     *
+     * Only the manifest and the files not yet in the given cache
+     * directory are transferred (all in one bundle); the cache directory
+     * keeps the files named by the hash of their content, so a file which
+     * did not change since the last game is never fetched again.
+     *
+     * If the server does not support this (older version), nothing is
+     * done, and the files are requested one by one as before.
+     *
+     * @param cacheDir Directory for the files from the server.
+     * @return The number of files put into the file cache.
+     */
+    public static int prefetchFromDataServer(File cacheDir)
+    {
+        if (server == null)
+        {
+            return 0;
+        }
+
+        Map<String, String> manifest = new HashMap<String, String>();
+        try
+        {
+            Socket socket = openDataServerRequest(FILESERVER_MANIFEST_SIGNAL);
+            try
+            {
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    String mapKey = in.readUTF();
+                    String hash = in.readUTF();
+                    // the hash becomes a file name, so nothing else than
+                    // what getContentHash() produces is accepted
+                    if (hash.length() == 0 || isContentHash(hash))
+                    {
+                        manifest.put(mapKey, hash);
+                    }
+                    else
+                    {
+                        LOGGER.log(Level.WARNING, "Data server sent invalid "
+                            + "hash for " + mapKey + ", ignoring it.");
+                    }
+                }
+            }
+            finally
+            {
+                socket.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.INFO, "Data server sent no manifest ("
+                + e.toString() + "), requesting files one by one.");
+            return 0;
+        }
+
+        Map<String, byte[]> byHash = new HashMap<String, byte[]>();
+        List<String> missing = new ArrayList<String>();
+        for (String hash : new HashSet<String>(manifest.values()))
+        {
+            if (hash.length() == 0)
+            {
+                continue;
+            }
+            byte[] data = readFromContentCache(cacheDir, hash);
+            if (data == null)
+            {
+                missing.add(hash);
+            }
+            else
+            {
+                byHash.put(hash, data);
+            }
+        }
+        int fromDisk = byHash.size();
+
+        if (!missing.isEmpty())
+        {
+            try
+            {
+                fetchBundle(missing, byHash, cacheDir);
+            }
+            catch (IOException e)
+            {
+                LOGGER.log(Level.WARNING, "Fetching files from data server "
+                    + "failed, requesting the rest one by one.", e);
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<String, String> entry : manifest.entrySet())
+        {
+            if (entry.getValue().length() == 0)
+            {
+                // The same as the server sends when requested singly
+                fileCache.put(entry.getKey(), new byte[0]);
+            }
+            else
+            {
+                byte[] data = byHash.get(entry.getValue());
+                if (data != null)
+                {
+                    fileCache.put(entry.getKey(), data);
+                    count++;
+                }
+            }
+        }
+        LOGGER.log(Level.INFO, "Prefetched " + count + " files from data "
+            + "server, " + fromDisk + " of " + (fromDisk + missing.size())
+            + " different ones were in the local cache.");
+        return count;
+    }
+
+    /**
+     * Connect to the data server and send it the request line.
+     * @param request The request tokens.
+     * @return The socket from which to read the answer.
+     * @throws IOException If the connection or writing failed.
+     */
+    private static Socket openDataServerRequest(String... request)
+        throws IOException
+    {
+        Socket socket = new Socket(server, serverPort);
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        out.print(request[0]);
+        for (int i = 1; i < request.length; i++)
+        {
+            out.print(REQUEST_TOKEN_SEPARATOR + request[i]);
+        }
+        out.println();
+        return socket;
+    }
+
+    /**
+     * Request the files with the given hashes as one bundle, and store
+     * them in byHash and in the cache directory.
+     */
+    private static void fetchBundle(List<String> hashes,
+        Map<String, byte[]> byHash, File cacheDir) throws IOException
+    {
+        String[] request = new String[hashes.size() + 1];
+        request[0] = FILESERVER_BUNDLE_SIGNAL;
+        for (int i = 0; i < hashes.size(); i++)
+        {
+            request[i + 1] = hashes.get(i);
+        }
+
+        Socket socket = openDataServerRequest(request);
+        try
+        {
+            DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(socket.getInputStream())));
+            String hash = in.readUTF();
+            while (hash.length() != 0)
+            {
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                if (hash.equals(getContentHash(data)))
+                {
+                    byHash.put(hash, data);
+                    writeToContentCache(cacheDir, hash, data);
+                }
+                else
+                {
+                    LOGGER.log(Level.WARNING, "Data server sent file with "
+                        + "wrong hash " + hash + ", ignoring it.");
+                }
+                hash = in.readUTF();
+            }
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * The file with the given content hash from the cache directory, or
+     * null if it is not there (or damaged).
+     */
+    private static byte[] readFromContentCache(File cacheDir, String hash)
+    {
+        assert isContentHash(hash) : "Not a content hash: " + hash;
+        File file = new File(cacheDir, hash);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        byte[] data = null;
+        try
+        {
+            InputStream is = new FileInputStream(file);
+            try
+            {
+                data = getBytesFromInputStream(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.FINE, "Can't read cached file " + file, e);
+            return null;
+        }
+        if (!hash.equals(getContentHash(data)))
+        {
+            LOGGER.log(Level.INFO, "Cached file " + file
+                + " is damaged, deleting it.");
+            if (!file.delete())
+            {
+                LOGGER.log(Level.FINE, "Can't delete " + file);
+            }
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * Store a file in the cache directory, named by its content hash.
+     * It is written to a temporary file first, so that another client
+     * on the same machine never reads half of it.
+     */
+    private static void writeToContentCache(File cacheDir, String hash,
+        byte[] data)
+    {
+        assert isContentHash(hash) : "Not a content hash: " + hash;
+        File file = new File(cacheDir, hash);
+        try
+        {
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs())
+            {
+                LOGGER.log(Level.FINE, "Can't create " + cacheDir);
+                return;
+            }
+            File temp = File.createTempFile(hash, ".tmp", cacheDir);
+            OutputStream os = new FileOutputStream(temp);
+            try
+            {
+                os.write(data);
+            }
+            finally
+            {
+                os.close();
+            }
+            if (!temp.renameTo(file) && !temp.delete())
+            {
+                LOGGER.log(Level.FINE, "Can't delete " + temp);
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.FINE, "Can't write cached file " + file, e);
+        }
+    }
+
+    /**
+     * Whether the text looks like a result of getContentHash(): 40 lower
+     * case hex digits.
+     * @param text The text to check.
+     * @return true if it is a content hash.
+     */
+    public static boolean isContentHash(String text)
+    {
+        return CONTENT_HASH_PATTERN.matcher(text).matches();
+    }
+
+    /**
+     * The hash of a file content, as used in the manifest and as name in
+     * the cache directory.
+     * @param data The file content.
+     * @return The SHA-1 of the data, as hex digits.
+     */
+    public static String getContentHash(byte[] data)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform must support SHA-1
+            throw new IllegalStateException("No SHA-1 available", e);
+        }
+        byte[] hash = digest.digest(data);
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
     /**
      * Dump the file cache as a List of XML "DataFile" Element,
      *     with the file key as attribute "DataFileKey", and the
@@ -0,0 +1,89 @@
+package net.sf.colossus.util;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Keeps the last few thousand messages between server and clients in a
+ *  ring buffer, so that when something goes wrong one can see what led
+ *  to it, even if FINEST logging was not switched on.
+ *
+ *  Recording only stores the time, a kind code, a number and a reference
+ *  to the message String (which exists anyway) into preallocated arrays;
+ *  everything is formatted only when the buffer is dumped. Concurrent
+ *  writers may occasionally overwrite each others entries, which is fine
+ *  for a trace like this.
+ */
+public final class TraceRecorder
+{
+    /** Server received a line from a client; value: connection id */
+    public static final byte SERVER_RECEIVED = 1;
+
+    /** Server sent a message to a client; value: connection id */
+    public static final byte SERVER_SENT = 2;
+
+    /** Client executed a message; value: execution time in ns */
+    public static final byte CLIENT_EXECUTED = 3;
+
+    private static final String[] KIND_NAMES = { "?", "S<-", "S->", "C  " };
+
+    private static final int SIZE = 4096;
+
+    private static final int MASK = SIZE - 1;
+
+    private static final long[] times = new long[SIZE];
+
+    private static final long[] values = new long[SIZE];
+
+    private static final byte[] kinds = new byte[SIZE];
+
+    private static final String[] texts = new String[SIZE];
+
+    private static final AtomicLong next = new AtomicLong();
+
+    private TraceRecorder()
+    {
+        // only static methods
+    }
+
+    public static void record(byte kind, String text, long value)
+    {
+        int slot = (int)(next.getAndIncrement() & MASK);
+        times[slot] = System.nanoTime();
+        kinds[slot] = kind;
+        values[slot] = value;
+        texts[slot] = text;
+    }
+
+    /**
+     * The recorded entries, oldest first, one per line: milliseconds
+     * before now, kind, value and (truncated) message.
+     */
+    public static String dump()
+    {
+        long now = System.nanoTime();
+        long end = next.get();
+        long start = Math.max(0, end - SIZE);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Last ").append(end - start)
+            .append(" recorded messages:\n");
+        for (long i = start; i < end; i++)
+        {
+            int slot = (int)(i & MASK);
+            String text = texts[slot];
+            if (text == null)
+            {
+                continue;
+            }
+            if (text.length() > 100)
+            {
+                text = text.substring(0, 100) + "...";
+            }
+            sb.append(String.format("%9.3f ms %s %6d %s\n",
+                Double.valueOf((times[slot] - now) / 1000000.0),
+                KIND_NAMES[kinds[slot]], Long.valueOf(values[slot]), text));
+        }
+        return sb.toString();
+    }
+}
@@ -76,6 +76,12 @@ public class CreatureType implements Comparable<CreatureType>
 
     private final boolean isSummonable;
 
+    /**
+     * Position of this type in the name-sorted list of all creature types
+     * of the variant, -1 until the variant is created.
+     */
+    private int index = -1;
+
     /* NOTE for variant builder:
      * The subclasses in variant must use the following signature for the
      * constructor:
@@ -138,6 +144,27 @@ public class CreatureType implements Comparable<CreatureType>
         return name;
     }
 
+    /**
+     * A dense number for this type, 0 to the number of creature types in
+     * the variant minus one, so that values per creature type can be kept
+     * in arrays instead of maps.
+     *
+     * @see Variant#getCreatureByIndex(int)
+     */
+    public int getIndex()
+    {
+        assert index >= 0 : "No index assigned yet to creature type " + name;
+        return index;
+    }
+
+    /** Called once by the Variant which contains this creature type */
+    void setIndex(int index)
+    {
+        assert this.index == -1 || this.index == index : "Creature type "
+            + name + " already has index " + this.index;
+        this.index = index;
+    }
+
     /**
      * The name used for multiple creatures of this type.
      */
@@ -186,6 +213,10 @@ public class CreatureType implements Comparable<CreatureType>
     @Override
     public final boolean equals(Object object)
     {
+        if (object == this)
+        {
+            return true;
+        }
         if (object == null)
         {
             return false;
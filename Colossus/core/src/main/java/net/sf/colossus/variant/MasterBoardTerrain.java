@@ -16,6 +16,7 @@ import java.util.logging.Logger;
 import net.sf.colossus.client.HexMap;
 import net.sf.colossus.game.EntrySide;
 import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.util.LoadProfile;
 import net.sf.colossus.util.StaticResourceLoader;
 import net.sf.colossus.xmlparser.BattlelandLoader;
 
@@ -229,6 +230,7 @@ public class MasterBoardTerrain implements Comparable<MasterBoardTerrain>
         {
             // TODO variant loading code does not belong here
             { // static Battlelands
+                long begin = LoadProfile.begin();
                 InputStream batIS = StaticResourceLoader.getInputStream(
                     getId() + ".xml", directories);
 
@@ -237,6 +239,7 @@ public class MasterBoardTerrain implements Comparable<MasterBoardTerrain>
                 setStartList(tempTowerStartList);
                 setTower(bl.isTower());
                 setSubtitle(bl.getSubtitle());
+                LoadProfile.end("battleland", getId() + ".xml", begin);
             }
 
             /* slow & inefficient... */
@@ -52,6 +52,19 @@ public class Variant
      */
     private final Map<String, CreatureType> creatureTypeByNameCache = new HashMap<String, CreatureType>();
 
+    /**
+     * The creature types by their exact name, as they come over the
+     * network; tried before the case-insensitive cache, which needs a
+     * lower case copy of the name for each lookup.
+     */
+    private final Map<String, CreatureType> creatureTypeByExactName = new HashMap<String, CreatureType>();
+
+    /**
+     * All creature types, sorted by name; the position of each is its
+     * {@link CreatureType#getIndex()}.
+     */
+    private final CreatureType[] creatureTypesByIndex;
+
     public Variant(IVariantInitializer variantInitializer,
         AllCreatureType creatureTypes, MasterBoard masterBoard,
         Document readme, String name)
@@ -64,6 +77,14 @@ public class Variant
 
         // create some caches for faster lookups -- by name and by the "summonable" attribute
         initCreatureNameCache();
+        List<CreatureType> allTypes = this.creatureTypes
+            .getCreatureTypesAsList();
+        this.creatureTypesByIndex = allTypes
+            .toArray(new CreatureType[allTypes.size()]);
+        for (int i = 0; i < creatureTypesByIndex.length; i++)
+        {
+            creatureTypesByIndex[i].setIndex(i);
+        }
         this.summonableCreatureTypes = new ArrayList<CreatureType>();
         CollectionHelper.copySelective(this.creatureTypes.getCreatureTypes(),
             this.summonableCreatureTypes, new Predicate<CreatureType>()
@@ -90,6 +111,24 @@ public class Variant
         return this.creatureTypes.getCreatureTypes();
     }
 
+    /**
+     * The number of creature types, i.e. the size needed for arrays
+     * indexed by {@link CreatureType#getIndex()}.
+     */
+    public int getCreatureTypeCount()
+    {
+        return creatureTypesByIndex.length;
+    }
+
+    /**
+     * @param index A creature type index, 0 to getCreatureTypeCount() - 1
+     * @return The creature type with that {@link CreatureType#getIndex()}
+     */
+    public CreatureType getCreatureByIndex(int index)
+    {
+        return creatureTypesByIndex[index];
+    }
+
     public Collection<MasterBoardTerrain> getTerrains()
     {
         return this.terrains;
@@ -177,6 +216,11 @@ public class Variant
             return null;
         }
 
+        CreatureType exact = creatureTypeByExactName.get(name);
+        if (exact != null)
+        {
+            return exact;
+        }
         String lowerCaseName = name.toLowerCase();
         // XXX Why do I need to special-case angels but not titans?
         if (lowerCaseName.startsWith("angel"))
@@ -200,6 +244,7 @@ public class Variant
         {
             creatureTypeByNameCache.put(creatureType.getName().toLowerCase(),
                 creatureType);
+            creatureTypeByExactName.put(creatureType.getName(), creatureType);
         }
 
         // "null" (not a null pointer...) is used for recruiter
@@ -29,6 +29,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -110,6 +111,7 @@ public class WebClient extends KFrame implements IWebClient
     // 7: admin can delete suspened games via gui
     // 8: joinToWatch should work again. Also other changes that
     //    might help with the 'no BattleBoard' problem
+    // 9: understands gameInfoDelta (only the changed fields of a game)
     public final static int WC_VERSION_GENERAL_MESSAGE = 1;
     public final static int WC_VERSION_SUPPORTS_PING = 2;
     public final static int WC_VERSION_DINO_OK = 3;
@@ -118,8 +120,9 @@ public class WebClient extends KFrame implements IWebClient
     public final static int WC_VERSION_SCRATCH_RECONN_WIP = 6;
     public final static int WC_VERSION_DELETE_SUSPENDED_GAME = 7;
     public final static int WC_VERSION_WATCH_GAME_FIXED = 8;
+    public final static int WC_VERSION_GAMEINFO_DELTA = 9;
 
-    final static int WEB_CLIENT_VERSION = WC_VERSION_WATCH_GAME_FIXED;
+    final static int WEB_CLIENT_VERSION = WC_VERSION_GAMEINFO_DELTA;
 
     // TODO make this all based on Locale.getDefault()
     // Initially: use German. To make it variable, need also to set
@@ -292,7 +295,8 @@ public class WebClient extends KFrame implements IWebClient
 
     private ChatHandler generalChat;
 
-    private final ArrayList<GameInfo> gamesUpdates = new ArrayList<GameInfo>();
+    /** Games changed since the tables were updated last time */
+    private final LinkedHashMap<String, GameInfo> gamesUpdates = new LinkedHashMap<String, GameInfo>();
 
     /**
      * NOTE: shared with SocketThread, because WCST needs it to restore
@@ -3729,95 +3733,106 @@ public class WebClient extends KFrame implements IWebClient
         handleGameInfoUpdates(gi);
     }
 
+    /**
+     * Update the tables for the changed game later in the EDT, together
+     * with the games changed until then.
+     */
     private void handleGameInfoUpdates(GameInfo gi)
     {
         synchronized (gamesUpdates)
         {
-            gamesUpdates.add(gi);
+            boolean updateScheduled = !gamesUpdates.isEmpty();
+            gamesUpdates.put(gi.getGameId(), gi);
+            if (updateScheduled)
+            {
+                return;
+            }
         }
         SwingUtilities.invokeLater(new Runnable()
         {
             public void run()
             {
+                List<GameInfo> games;
                 synchronized (gamesUpdates)
                 {
-                    Iterator<GameInfo> it = gamesUpdates.iterator();
-                    while (it.hasNext())
+                    games = new ArrayList<GameInfo>(gamesUpdates.values());
+                    gamesUpdates.clear();
+                }
+                Iterator<GameInfo> it = games.iterator();
+                while (it.hasNext())
+                {
+                    GameInfo game = it.next();
+                    String gameId = game.getGameId();
+                    if (deletedGames.contains(gameId))
+                    {
+                        proposedGameDataModel.removeGame(gameId);
+                        continue;
+                    }
+                    GameState gameState = game.getGameState();
+
+                    switch (gameState)
                     {
-                        GameInfo game = it.next();
-                        String gameId = game.getGameId();
-                        if (deletedGames.contains(gameId))
-                        {
-                            proposedGameDataModel.removeGame(gameId);
+                        case PROPOSED:
+                            replaceInTable(proposedGameTable, game);
                             break;
-                        }
-                        GameState gameState = game.getGameState();
-
-                        switch (gameState)
-                        {
-                            case PROPOSED:
-                                replaceInTable(proposedGameTable, game);
-                                break;
-
-                            case DUE:
-                            case ACTIVATED:
-                                replaceInTable(proposedGameTable, game);
-                                break;
-
-                            case STARTING:
-                                // TODO: state never used anywhere else - remove it ?
-                                break;
-
-                            case READY_TO_CONNECT:
-                                replaceInTable(proposedGameTable, game);
-                                break;
-
-                            case RUNNING:
-                                replaceInTable(runGameTable, game);
-                                proposedGameDataModel.removeGame(game
-                                    .getGameId());
-                                suspGameDataModel.removeGame(game.getGameId());
-                                break;
-
-                            case SUSPENDED:
-                                if (game.isEnrolled(username) || isAdmin())
-                                {
-                                    replaceInTable(suspGameTable, game);
-                                }
-                                else
-                                {
-                                    suspGameDataModel.removeGame(game
-                                        .getGameId());
-                                }
-                                runGameDataModel.removeGame(game.getGameId());
-                                break;
-
-                            case ENDING:
-                                // Normally happens during change to RUNNING,
-                                // but if starting fails, it's changed to
-                                // ENDING immediately. So do it here again.
-                                // If it is not there anymore, no harm done.
-                                proposedGameDataModel.removeGame(game
-                                    .getGameId());
-                                runGameDataModel.removeGame(game.getGameId());
-                                break;
 
-                            case DELETED:
-                                proposedGameDataModel.removeGame(game
+                        case DUE:
+                        case ACTIVATED:
+                            replaceInTable(proposedGameTable, game);
+                            break;
+
+                        case STARTING:
+                            // TODO: state never used anywhere else - remove it ?
+                            break;
+
+                        case READY_TO_CONNECT:
+                            replaceInTable(proposedGameTable, game);
+                            break;
+
+                        case RUNNING:
+                            replaceInTable(runGameTable, game);
+                            proposedGameDataModel.removeGame(game
+                                .getGameId());
+                            suspGameDataModel.removeGame(game.getGameId());
+                            break;
+
+                        case SUSPENDED:
+                            if (game.isEnrolled(username) || isAdmin())
+                            {
+                                replaceInTable(suspGameTable, game);
+                            }
+                            else
+                            {
+                                suspGameDataModel.removeGame(game
                                     .getGameId());
-                                runGameDataModel.removeGame(game.getGameId());
-                                suspGameDataModel.removeGame(game.getGameId());
-                                break;
+                            }
+                            runGameDataModel.removeGame(game.getGameId());
+                            break;
+
+                        case ENDING:
+                            // Normally happens during change to RUNNING,
+                            // but if starting fails, it's changed to
+                            // ENDING immediately. So do it here again.
+                            // If it is not there anymore, no harm done.
+                            proposedGameDataModel.removeGame(game
+                                .getGameId());
+                            runGameDataModel.removeGame(game.getGameId());
+                            break;
 
-                            default:
-                                LOGGER.log(
-                                    Level.WARNING,
-                                    "Huups, unhandled game state "
-                                        + game.getStateString());
+                        case DELETED:
+                            proposedGameDataModel.removeGame(game
+                                .getGameId());
+                            runGameDataModel.removeGame(game.getGameId());
+                            suspGameDataModel.removeGame(game.getGameId());
+                            break;
+
+                        default:
+                            LOGGER.log(
+                                Level.WARNING,
+                                "Huups, unhandled game state "
+                                    + game.getStateString());
 
-                        }
                     }
-                    gamesUpdates.clear();
                 }
                 updateGUI();
             }
@@ -3828,8 +3843,8 @@ public class WebClient extends KFrame implements IWebClient
     {
         GameTableModel model = (GameTableModel)table.getModel();
         int index = model.getRowIndex(gi).intValue();
+        // repaints the row
         model.setRowAt(gi, index);
-        table.repaint();
     }
 
     public void connectionReset(boolean forced)
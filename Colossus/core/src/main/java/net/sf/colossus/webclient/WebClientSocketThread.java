@@ -13,6 +13,7 @@ import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -21,8 +22,10 @@ import java.util.logging.Logger;
 
 import net.sf.colossus.util.Glob;
 import net.sf.colossus.webcommon.GameInfo;
+import net.sf.colossus.webcommon.GameInfoDeltas;
 import net.sf.colossus.webcommon.IWebClient;
 import net.sf.colossus.webcommon.IWebServer;
+import net.sf.colossus.webcommon.LobbyCommands;
 import net.sf.colossus.webcommon.User;
 
 
@@ -47,6 +50,9 @@ public class WebClientSocketThread extends Thread implements IWebServer
     private IWebClient webClient = null;
     private final HashMap<String, GameInfo> gameHash;
 
+    /** The fields of each game as got from the server, for gameInfoDelta */
+    private final GameInfoDeltas gameDeltas = new GameInfoDeltas();
+
     private String hostname = null;
     private final int port;
 
@@ -478,15 +484,19 @@ public class WebClientSocketThread extends Thread implements IWebServer
         {
             while (!done && (fromServer = getOneLine()) != null)
             {
-                String[] tokens = fromServer.split(sep, -1);
+                long startNanos = System.nanoTime();
+                String[] tokens = LobbyCommands.tokenize(fromServer, -1);
                 String command = tokens[0];
+                String counted = command;
                 if (fromServer.startsWith("ACK: "))
                 {
+                    counted = LobbyCommands.ACK;
                     command = tokens[0].substring(5);
                     handleAckNack(command, tokens);
                 }
                 else if (fromServer.startsWith("NACK: "))
                 {
+                    counted = LobbyCommands.NACK;
                     command = tokens[0].substring(6);
                     handleAckNack(command, tokens);
                 }
@@ -501,11 +511,39 @@ public class WebClientSocketThread extends Thread implements IWebServer
                     forcedLogout = true;
                     done = true;
                 }
+                // most of the traffic, check them first
+                else if (command.equals(IWebClient.pingRequest))
+                {
+                    String arg1 = tokens[1];
+                    String arg2 = tokens[2];
+                    String arg3 = tokens[3];
+                    pingResponse(arg1, arg2, arg3);
+                }
+
+                else if (command.equals(IWebClient.chatDeliver))
+                {
+                    String chatId = tokens[1];
+                    long when = Long.parseLong(tokens[2]);
+                    String sender = tokens[3];
+                    String message = tokens[4];
+                    boolean resent = Boolean.valueOf(tokens[5]).booleanValue();
+                    webClient.chatDeliver(chatId, when, sender, message,
+                        resent);
+                }
+
                 else if (command.equals(IWebClient.gameInfo))
                 {
                     GameInfo gi = restoreGameInfo(tokens);
                     webClient.gameInfo(gi);
                 }
+                else if (command.equals(IWebClient.gameInfoDelta))
+                {
+                    GameInfo gi = applyGameInfoDelta(tokens);
+                    if (gi != null)
+                    {
+                        webClient.gameInfo(gi);
+                    }
+                }
                 else if (command.equals(IWebClient.userInfo))
                 {
                     int loggedin = Integer.parseInt(tokens[1]);
@@ -566,25 +604,6 @@ public class WebClientSocketThread extends Thread implements IWebServer
                         warnIV, timeout);
                 }
 
-                else if (command.equals(IWebClient.chatDeliver))
-                {
-                    String chatId = tokens[1];
-                    long when = Long.parseLong(tokens[2]);
-                    String sender = tokens[3];
-                    String message = tokens[4];
-                    boolean resent = Boolean.valueOf(tokens[5]).booleanValue();
-                    webClient.chatDeliver(chatId, when, sender, message,
-                        resent);
-                }
-
-                else if (command.equals(IWebClient.pingRequest))
-                {
-                    String arg1 = tokens[1];
-                    String arg2 = tokens[2];
-                    String arg3 = tokens[3];
-                    pingResponse(arg1, arg2, arg3);
-                }
-
                 else if (command.equals(IWebClient.generalMessage))
                 {
                     long when = Long.parseLong(tokens[1]);
@@ -644,6 +663,8 @@ public class WebClientSocketThread extends Thread implements IWebServer
                         */
                     }
                 }
+                LobbyCommands.TO_CLIENT.record(counted, System.nanoTime()
+                    - startNanos);
 
             } // while !done && readLine != null
 
@@ -677,9 +698,33 @@ public class WebClientSocketThread extends Thread implements IWebServer
     private GameInfo restoreGameInfo(String[] tokens)
     {
         GameInfo gi = GameInfo.fromString(tokens, gameHash, false);
+        String gameId = tokens[1];
+        gameDeltas.setFields(gameId,
+            Arrays.copyOfRange(tokens, 1, tokens.length));
         return gi;
     }
 
+    /**
+     * Apply the changed fields to the fields got earlier for the game, and
+     * update the GameInfo from them.
+     *
+     * @param tokens gameInfoDelta, gameId, version, number of fields, then
+     *     pairs of field index and new value
+     * @return The updated GameInfo, or null if the delta can't be applied
+     */
+    private GameInfo applyGameInfoDelta(String[] tokens)
+    {
+        String[] fields = gameDeltas.apply(tokens);
+        if (fields == null)
+        {
+            return null;
+        }
+        String[] gameTokens = new String[fields.length + 1];
+        gameTokens[0] = IWebClient.gameInfo;
+        System.arraycopy(fields, 0, gameTokens, 1, fields.length);
+        return GameInfo.fromString(gameTokens, gameHash, false);
+    }
+
     private void doCleanup()
     {
         if (socket != null)
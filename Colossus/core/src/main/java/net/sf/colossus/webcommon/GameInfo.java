@@ -2,6 +2,7 @@ package net.sf.colossus.webcommon;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -88,6 +89,12 @@ public class GameInfo
 
     private ArrayList<User> players = null;
 
+    /** Server side: the fields of toString(sep) as last looked at */
+    private String[] fields;
+
+    /** Server side: how often the fields have changed */
+    private int version = 0;
+
     // used on server side, to create a game proposed by client
 
     private GameInfo(GameType type)
@@ -427,6 +434,31 @@ public class GameInfo
         return message;
     }
 
+    /**
+     * On server side, the fields of toString(sep), for clients which get
+     * only the fields that changed since they got the game last time.
+     * If they differ from when this was called last time, the version
+     * number is increased.
+     */
+    public synchronized String[] getFields(String sep)
+    {
+        String[] current = Split.toArray(sep, toString(sep), -1);
+        if (!Arrays.equals(current, fields))
+        {
+            fields = current;
+            version++;
+        }
+        return fields;
+    }
+
+    /**
+     * @return How often the fields returned by getFields have changed
+     */
+    public synchronized int getVersion()
+    {
+        return version;
+    }
+
     /**
      * If webclients that cannot handle it receive a DELETED or
      * SUSPENDED state, they throw exception and disconnect :-(
@@ -0,0 +1,104 @@
+package net.sf.colossus.webcommon;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+
+/**
+ *  The gameInfoDelta message, with which the WebServer sends a client
+ *  only the fields of a GameInfo which changed since the client got the
+ *  game the last time:
+ *
+ *    gameInfoDelta ~ gameId ~ version ~ number of fields,
+ *    then for each changed field its index and new value
+ *
+ *  The number of fields changes with the number of enrolled players.
+ *
+ *  On the client side, an instance keeps the fields last got for each
+ *  game, so that the deltas can be applied to them; deltas with a
+ *  version not newer than the last one applied are ignored.
+ */
+public class GameInfoDeltas
+{
+    private static final Logger LOGGER = Logger.getLogger(GameInfoDeltas.class
+        .getName());
+
+    private static final String sep = IWebServer.WebProtocolSeparator;
+
+    /** Fields of each game, as got the last time */
+    private final HashMap<String, String[]> gameFields = new HashMap<String, String[]>();
+
+    /** Version of the last delta applied to each game */
+    private final HashMap<String, Integer> gameVersions = new HashMap<String, Integer>();
+
+    /**
+     * On server side, the delta line from the fields the client has to
+     * the current ones
+     */
+    public static String makeDelta(String gameId, int version,
+        String[] oldFields, String[] fields)
+    {
+        StringBuilder delta = new StringBuilder(IWebClient.gameInfoDelta);
+        delta.append(sep).append(gameId).append(sep).append(version)
+            .append(sep).append(fields.length);
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (i >= oldFields.length || !fields[i].equals(oldFields[i]))
+            {
+                delta.append(sep).append(i).append(sep).append(fields[i]);
+            }
+        }
+        return delta.toString();
+    }
+
+    /**
+     * A full gameInfo was got; later deltas are applied to its fields
+     *
+     * @param fields The tokens of the gameInfo line, without the command
+     */
+    public void setFields(String gameId, String[] fields)
+    {
+        gameFields.put(gameId, fields);
+        gameVersions.remove(gameId);
+    }
+
+    /**
+     * Apply a delta to the fields got earlier for the game
+     *
+     * @param tokens The tokens of the gameInfoDelta line
+     * @return The updated fields, or null if the game is unknown or the
+     *     delta is older than the last one applied
+     */
+    public String[] apply(String[] tokens)
+    {
+        String gameId = tokens[1];
+        int version = Integer.parseInt(tokens[2]);
+        int fieldCount = Integer.parseInt(tokens[3]);
+
+        String[] fields = gameFields.get(gameId);
+        if (fields == null)
+        {
+            LOGGER.warning("Got gameInfoDelta for unknown game " + gameId);
+            return null;
+        }
+        Integer lastVersion = gameVersions.get(gameId);
+        if (lastVersion != null && lastVersion.intValue() >= version)
+        {
+            LOGGER.warning("Got gameInfoDelta version " + version
+                + " for game " + gameId + " which has already version "
+                + lastVersion);
+            return null;
+        }
+
+        fields = Arrays.copyOf(fields, fieldCount);
+        for (int i = 4; i + 1 < tokens.length; i += 2)
+        {
+            fields[Integer.parseInt(tokens[i])] = tokens[i + 1];
+        }
+        gameFields.put(gameId, fields);
+        gameVersions.put(gameId, Integer.valueOf(version));
+        return fields;
+    }
+}
@@ -16,6 +16,7 @@ public interface IWebClient
     public static final String didEnroll = "didEnroll";
     public static final String didUnenroll = "didUnenroll";
     public static final String gameInfo = "gameInfo";
+    public static final String gameInfoDelta = "gameInfoDelta";
     public static final String userInfo = "userInfo";
     public static final String tellOwnInfo = "tellOwnInfo";
     public static final String gameStarted = "gameStarted";
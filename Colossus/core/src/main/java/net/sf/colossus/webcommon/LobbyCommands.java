@@ -0,0 +1,98 @@
+package net.sf.colossus.webcommon;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.colossus.util.EventMetrics;
+import net.sf.colossus.util.Split;
+
+
+/**
+ *  The commands of the lobby protocol between WebClient and WebServer,
+ *  one registry for each direction, and the splitting of the lines.
+ *
+ *  Lines are split with Split.toArray, i.e. without the regex engine
+ *  String.split uses for the separator " ~ ". The handling time of each
+ *  command is counted in EventMetrics (webserver.command on the server,
+ *  webclient.command in the client); the histograms of the known
+ *  commands are looked up once when the registry is created, anything
+ *  else is counted as "unknown", so that whatever a client sends can't
+ *  make the metrics grow.
+ */
+public final class LobbyCommands
+{
+    private static final String UNKNOWN = "unknown";
+
+    /** First token of the replies from the server to each command */
+    public static final String ACK = "ACK";
+    public static final String NACK = "NACK";
+
+    /** What the WebServer gets from the WebClients */
+    public static final LobbyCommands TO_SERVER = new LobbyCommands(
+        EventMetrics.WEBSERVER_COMMANDS, IWebServer.Login, IWebServer.Logout,
+        IWebServer.RegisterUser, IWebServer.ConfirmRegistration,
+        IWebServer.ChangePassword, IWebServer.Propose, IWebServer.Enroll,
+        IWebServer.Unenroll, IWebServer.Start, IWebServer.Resume,
+        IWebServer.DeleteSuspendedGame, IWebServer.StartAtPlayer,
+        IWebServer.StartedByPlayer, IWebServer.LocallyGameOver,
+        IWebServer.Cancel, IWebServer.ChatSubmit, IWebServer.ShutdownServer,
+        IWebServer.Echo, IWebServer.RereadLoginMessage,
+        IWebServer.RequestUserAttention, IWebServer.PingResponse,
+        IWebServer.WatchGame, IWebServer.ConfirmCommand,
+        IWebServer.MessageToAdmin, IWebServer.DumpInfo);
+
+    /** What the WebClient gets from the WebServer */
+    public static final LobbyCommands TO_CLIENT = new LobbyCommands(
+        EventMetrics.WEBCLIENT_COMMANDS, ACK, NACK,
+        IWebClient.alreadyLoggedIn, IWebClient.grantAdmin,
+        IWebClient.tooManyUsers, IWebClient.connectionClosed,
+        IWebClient.forcedLogout, IWebClient.didEnroll,
+        IWebClient.didUnenroll, IWebClient.gameInfo,
+        IWebClient.gameInfoDelta, IWebClient.userInfo,
+        IWebClient.tellOwnInfo, IWebClient.gameStarted,
+        IWebClient.gameStartsNow, IWebClient.gameStartsSoon,
+        IWebClient.gameCancelled, IWebClient.chatDeliver,
+        IWebClient.generalMessage, IWebClient.systemMessage,
+        IWebClient.requestAttention, IWebClient.watchGameInfo,
+        IWebClient.pingRequest);
+
+    /** Only read after the constructor, so no locking needed */
+    private final Map<String, EventMetrics.Histogram> histograms = new HashMap<String, EventMetrics.Histogram>();
+
+    private final EventMetrics.Histogram unknown;
+
+    private LobbyCommands(EventMetrics.Group group, String... commands)
+    {
+        for (String command : commands)
+        {
+            histograms.put(command, group.get(command));
+        }
+        this.unknown = group.get(UNKNOWN);
+    }
+
+    /**
+     * Split a line of the lobby protocol into command and arguments,
+     * like line.split(IWebServer.WebProtocolSeparator, limit) did.
+     */
+    public static String[] tokenize(String line, int limit)
+    {
+        return Split.toArray(IWebServer.WebProtocolSeparator, line, limit);
+    }
+
+    /**
+     * Count one handled command
+     *
+     * @param command The first token of the line
+     * @param nanos How long handling it took
+     */
+    public void record(String command, long nanos)
+    {
+        EventMetrics.Histogram h = histograms.get(command);
+        if (h == null)
+        {
+            h = unknown;
+        }
+        h.record(nanos);
+    }
+}
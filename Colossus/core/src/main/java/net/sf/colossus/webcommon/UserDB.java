@@ -2,30 +2,64 @@ package net.sf.colossus.webcommon;
 
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.colossus.webserver.WebServerClient;
 
 
+/**
+ *  The users of the WebServer, stored in the users file.
+ *
+ *  Writing the whole users file for each login and logout would block
+ *  the client threads at busy times, so each change of a user is instead
+ *  appended as the new line of that user to the change log (the users
+ *  file name plus ".log"). When the users are read, the lines in the
+ *  change log replace the ones from the users file. Every few minutes
+ *  (and at startup and shutdown) the users file is rewritten with all
+ *  users - into a temporary file which then replaces the old one - and
+ *  the change log is emptied.
+ */
 public class UserDB
 {
     private static final Logger LOGGER = Logger.getLogger(UserDB.class
         .getName());
 
+    private static final String CHANGE_LOG_SUFFIX = ".log";
+
+    private static final long COMPACT_INTERVAL_MS = 5 * 60 * 1000;
+
     private final int maxUsers;
 
     private final String usersFile;
 
+    /** Held while appending to the change log or rewriting the users file */
+    private final Object changeLogLock = new Object();
+
+    private PrintWriter changeLog;
+
+    /** Changes appended to the change log since the last rewrite */
+    private int loggedChanges;
+
+    private Timer compactTimer;
+
     private final HashMap<String, User> userMap = new HashMap<String, User>();
     private final HashMap<String, User> loggedInUserMap = new HashMap<String, User>();
 
@@ -40,6 +74,11 @@ public class UserDB
         if (usersFile != null)
         {
             readUsersFromFile();
+            // a previous run may have ended before it could rewrite
+            // the users file
+            readChangeLog();
+            storeUsersToFile();
+            startCompactTimer();
         }
     }
 
@@ -308,7 +347,7 @@ public class UserDB
 
         pendingRegistrations.remove(username);
         storeUser(u);
-        storeUsersToFile();
+        storeUserChange(u);
 
         return null;
     }
@@ -331,7 +370,7 @@ public class UserDB
         else
         {
             u.setProperties(newPW, email, isAdmin);
-            storeUsersToFile();
+            storeUserChange(u);
             return null;
         }
     }
@@ -385,6 +424,166 @@ public class UserDB
         }
     }
 
+    private File getChangeLogFile()
+    {
+        return new File(usersFile + CHANGE_LOG_SUFFIX);
+    }
+
+    /**
+     * Replace the users read from the users file with their lines from
+     * the change log. A line which was not completely written when the
+     * server went down is skipped.
+     */
+    private void readChangeLog()
+    {
+        File logFile = getChangeLogFile();
+        if (!logFile.exists())
+        {
+            return;
+        }
+        int count = 0;
+        try
+        {
+            BufferedReader changes = new BufferedReader(new InputStreamReader(
+                new FileInputStream(logFile)));
+            try
+            {
+                String line = null;
+                while ((line = changes.readLine()) != null)
+                {
+                    User u = makeUserFromChangeLine(line);
+                    if (u != null)
+                    {
+                        storeUser(u);
+                        if (u.getId() > highestExistingId)
+                        {
+                            highestExistingId = u.getId();
+                        }
+                        count++;
+                    }
+                }
+            }
+            finally
+            {
+                changes.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.SEVERE, "IOException while reading user "
+                + "change log " + logFile + "!", e);
+            System.exit(1);
+        }
+        LOGGER.info("Applied " + count + " user changes from " + logFile);
+    }
+
+    /**
+     * The change log line: the length of the user line, then the user
+     * line, so that a line cut off by a crash can be recognized.
+     */
+    static String makeChangeLine(User u)
+    {
+        String line = u.makeLine();
+        return line.length() + " " + line;
+    }
+
+    static User makeUserFromChangeLine(String changeLine)
+    {
+        int space = changeLine.indexOf(' ');
+        if (space > 0)
+        {
+            try
+            {
+                int length = Integer.parseInt(changeLine.substring(0, space));
+                String line = changeLine.substring(space + 1);
+                if (line.length() == length)
+                {
+                    return User.makeUserFromUserLine(line);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                // handled below
+            }
+        }
+        LOGGER.warning("Skipping incomplete line '" + changeLine
+            + "' in user change log.");
+        return null;
+    }
+
+    /**
+     * Append the current state of the user to the change log, instead of
+     * rewriting the whole users file.
+     */
+    public void storeUserChange(User u)
+    {
+        if (usersFile == null)
+        {
+            return;
+        }
+        String line = makeChangeLine(u);
+        synchronized (changeLogLock)
+        {
+            if (changeLog == null)
+            {
+                try
+                {
+                    changeLog = new PrintWriter(new OutputStreamWriter(
+                        new FileOutputStream(getChangeLogFile(), true)));
+                }
+                catch (FileNotFoundException e)
+                {
+                    LOGGER.log(Level.SEVERE, "Opening user change log "
+                        + getChangeLogFile() + " failed, writing the whole "
+                        + "users file instead.", e);
+                    storeUsersToFile();
+                    return;
+                }
+            }
+            changeLog.println(line);
+            changeLog.flush();
+            if (changeLog.checkError())
+            {
+                LOGGER.severe("Appending to user change log "
+                    + getChangeLogFile() + " failed, writing the whole "
+                    + "users file instead.");
+                changeLog.close();
+                changeLog = null;
+                storeUsersToFile();
+                return;
+            }
+            loggedChanges++;
+        }
+    }
+
+    private void startCompactTimer()
+    {
+        compactTimer = new Timer("UserDB-compaction", true);
+        compactTimer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (changeLogLock)
+                {
+                    if (loggedChanges == 0)
+                    {
+                        return;
+                    }
+                }
+                storeUsersToFile();
+            }
+        }, COMPACT_INTERVAL_MS, COMPACT_INTERVAL_MS);
+    }
+
+    /**
+     * Write all users to the users file and empty the change log.
+     *
+     * The users are written to a temporary file first, which then
+     * replaces the users file, so that the users file is complete
+     * even if the server goes down meanwhile. If writing fails, the
+     * change log is kept.
+     */
     public void storeUsersToFile()
     {
         if (usersFile == null)
@@ -395,26 +594,75 @@ public class UserDB
 
         // LOGGER.log(Level.FINE, "Storing users back to file " + filename);
 
-        PrintWriter out = null;
-        try
+        synchronized (changeLogLock)
         {
-            out = new PrintWriter(new FileOutputStream(usersFile));
+            File file = new File(usersFile);
+            File tmpFile = new File(usersFile + ".tmp");
+            try
+            {
+                List<User> users = new LinkedList<User>();
+                users.addAll(getAllUsers());
 
-            Collection<User> users = new LinkedList<User>();
-            users.addAll(getAllUsers());
+                FileOutputStream stream = new FileOutputStream(tmpFile);
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    stream));
+                try
+                {
+                    for (User user : users)
+                    {
+                        String line = user.makeLine();
+                        out.println(line);
+                    }
+                    out.flush();
+                    stream.getFD().sync();
+                }
+                finally
+                {
+                    out.close();
+                }
+                if (out.checkError())
+                {
+                    throw new IOException("Writing failed");
+                }
+                try
+                {
+                    Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (AtomicMoveNotSupportedException e)
+                {
+                    Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            catch (IOException e)
+            {
+                User.LOGGER.log(Level.SEVERE, "Writing users file "
+                    + usersFile + " failed, keeping the change log: ", e);
+                return;
+            }
 
-            for (User user : users)
+            // Everything is in the users file now, start an empty log
+            if (changeLog != null)
             {
-                String line = user.makeLine();
-                out.println(line);
+                changeLog.close();
+                changeLog = null;
             }
-            out.close();
-        }
-        catch (FileNotFoundException e)
-        {
-            User.LOGGER.log(Level.SEVERE, "Writing users file " + usersFile
-                + "failed: FileNotFoundException: ", e);
-            System.exit(1);
+            File logFile = getChangeLogFile();
+            if (logFile.exists() && !logFile.delete())
+            {
+                try
+                {
+                    new FileOutputStream(logFile).close();
+                }
+                catch (IOException e)
+                {
+                    LOGGER.log(Level.WARNING, "Could not empty user change log "
+                        + logFile, e);
+                }
+            }
+            loggedChanges = 0;
         }
     }
 
@@ -430,6 +678,19 @@ public class UserDB
 
     public void cleanup()
     {
+        if (compactTimer != null)
+        {
+            compactTimer.cancel();
+            compactTimer = null;
+        }
+        synchronized (changeLogLock)
+        {
+            if (changeLog != null)
+            {
+                changeLog.close();
+                changeLog = null;
+            }
+        }
         synchronized (userMap)
         {
             userMap.clear();
@@ -8,8 +8,18 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +31,14 @@ import net.sf.colossus.webcommon.User;
 import net.sf.colossus.webcommon.UserDB;
 
 
+/**
+ *  One chat channel of the WebServer.
+ *
+ *  A message is put together only once for all receivers and put into
+ *  the outgoing queue of each connection, so the sender's thread does not
+ *  wait for slow clients; writing the message to the chat log and the
+ *  message storage is left to one writer thread of the channel.
+ */
 public class ChatChannel
 {
     private static final Logger LOGGER = Logger.getLogger(ChatChannel.class
@@ -32,6 +50,12 @@ public class ChatChannel
     private final PrintWriter chatLog;
     private final FormatWhen whenFormatter;
 
+    /** Writes to chatLog and storage, one after another */
+    private final ExecutorService writer;
+
+    /** Name of a user, all lower case => users who ignore him */
+    private final Map<String, Set<User>> ignoredBy = new HashMap<String, Set<User>>();
+
     private final static String doubledashes = "=========================";
 
     private final static String[] chatHelp = new String[] { "Chat help:", "",
@@ -85,6 +109,15 @@ public class ChatChannel
         this.storage = new ChatMsgStorage(this, options);
         this.chatLog = openLogForAppend(options);
         this.whenFormatter = new FormatWhen();
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "ChatWriter-" + chatId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
     public String getChannelId()
@@ -94,18 +127,65 @@ public class ChatChannel
 
     public void dispose()
     {
+        writer.shutdown();
+        try
+        {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                LOGGER.warning("Chat writer for " + chatId
+                    + " did not finish in time.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            LOGGER.log(Level.WARNING, "Waiting for chat writer interrupted",
+                e);
+        }
         storage.dispose();
     }
 
+    /**
+     * Have the writer thread do something with the chat log or the
+     * message storage.
+     */
+    private void writeLater(Runnable task)
+    {
+        try
+        {
+            writer.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            LOGGER.warning("Chat " + chatId
+                + " already disposed, not writing to log.");
+        }
+    }
+
+    private void storeMessage(final ChatMessage msg, final boolean toChatLog)
+    {
+        synchronized (storage)
+        {
+            storage.storeMessage(msg);
+        }
+        writeLater(new Runnable()
+        {
+            public void run()
+            {
+                storage.appendMessage(msg);
+                if (toChatLog)
+                {
+                    appendToChatlog(msg);
+                }
+            }
+        });
+    }
+
     public void createWelcomeMessage()
     {
         long now = new Date().getTime();
         ChatMessage startMsg = new ChatMessage(this.chatId, now, "SYSTEM",
             "WebServer started. Welcome!!");
-        synchronized (storage)
-        {
-            storage.storeMessage(startMsg);
-        }
+        storeMessage(startMsg, false);
     }
 
     /** Send message of the day lines to one client. */
@@ -227,6 +307,16 @@ public class ChatChannel
             if (userToBeIgnored != null)
             {
                 ignoringUser.addToIgnoredUsers(ignoredUserName);
+                synchronized (ignoredBy)
+                {
+                    Set<User> ignoring = ignoredBy.get(ignoredUserName);
+                    if (ignoring == null)
+                    {
+                        ignoring = new HashSet<User>();
+                        ignoredBy.put(ignoredUserName, ignoring);
+                    }
+                    ignoring.add(ignoringUser);
+                }
                 tellListOfIgnoredUsers(ignoringUser, "Added to list: "
                     + ignoredUserName);
             }
@@ -256,7 +346,21 @@ public class ChatChannel
             User userToBeUnignored = userDB.findUserByName(words.get(1));
             if (userToBeUnignored != null)
             {
-                user.removeFromIgnoredUsers(userToBeUnignored.getName());
+                // same (all lower case) name as added by handleIgnore
+                String unignoredName = words.get(1);
+                user.removeFromIgnoredUsers(unignoredName);
+                synchronized (ignoredBy)
+                {
+                    Set<User> ignoring = ignoredBy.get(unignoredName);
+                    if (ignoring != null)
+                    {
+                        ignoring.remove(user);
+                        if (ignoring.isEmpty())
+                        {
+                            ignoredBy.remove(unignoredName);
+                        }
+                    }
+                }
                 tellListOfIgnoredUsers(user,
  "Removed from list: "
                     + userToBeUnignored.getName());
@@ -351,26 +455,47 @@ public class ChatChannel
     {
         long now = new Date().getTime();
         ChatMessage msg = new ChatMessage(this.chatId, now, sender, message);
-        synchronized (storage)
+        storeMessage(msg, true);
+        deliverMessage(msg, userDB);
+    }
+
+    private Set<User> getUsersIgnoring(String sender)
+    {
+        synchronized (ignoredBy)
         {
-            storage.storeMessage(msg);
+            Set<User> ignoring = ignoredBy.get(sender.toLowerCase());
+            if (ignoring == null)
+            {
+                return Collections.emptySet();
+            }
+            return new HashSet<User>(ignoring);
         }
-        appendToChatlog(msg);
-        deliverMessage(msg, userDB);
     }
 
     private void deliverMessage(ChatMessage msg, UserDB userDB)
     {
-        LOGGER.fine("Delivering message " + msg
-            + " to clients; checking ignore list:");
+        if (LOGGER.isLoggable(Level.FINE))
+        {
+            LOGGER.fine("Delivering message " + msg
+                + " to clients; checking ignore list:");
+        }
+        String line = WebServerClient.makeChatDeliverLine(msg.getChatId(),
+            msg.getWhen(), msg.getSender(), msg.getMessage(), false);
+        Set<User> ignoring = getUsersIgnoring(msg.getSender());
         Collection<User> users = userDB.getLoggedInUsers();
         for (User u : users)
         {
-            String sender = msg.getSender();
-            if (!u.isUserInIgnoredList(sender))
+            if (!ignoring.contains(u))
             {
                 IWebClient client = u.getWebserverClient();
-                deliverMessageToClient(msg, client, false);
+                if (client instanceof WebServerClient)
+                {
+                    ((WebServerClient)client).chatDeliverLine(line);
+                }
+                else if (client != null)
+                {
+                    deliverMessageToClient(msg, client, false);
+                }
             }
         }
     }
@@ -439,7 +564,19 @@ public class ChatChannel
         chatLog.flush();
     }
 
-    public void writeMessageToAdminToChatlog(long when, String fromUser,
+    public void writeMessageToAdminToChatlog(final long when,
+        final String fromUser, final String fromMail, final List<String> lines)
+    {
+        writeLater(new Runnable()
+        {
+            public void run()
+            {
+                appendMessageToAdmin(when, fromUser, fromMail, lines);
+            }
+        });
+    }
+
+    private void appendMessageToAdmin(long when, String fromUser,
         String fromMail, List<String> lines)
     {
         String whenTime = whenFormatter.timeAsString(when);
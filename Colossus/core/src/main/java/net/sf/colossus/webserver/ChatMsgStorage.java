@@ -12,6 +12,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +20,16 @@ import java.util.logging.Logger;
 import net.sf.colossus.webcommon.ChatMessage;
 
 
+/**
+ *  Keeps the last messages of a chat channel, to show them to users who
+ *  log in, also across restarts of the server.
+ *
+ *  Each message is appended to the messages file when it is stored (by
+ *  the writer thread of the ChatChannel). When the server starts, and
+ *  when many messages were appended, the file is rewritten with only the
+ *  last ones written so far; those the writer thread keeps itself, since
+ *  lastNChatMessages may already have messages it did not write yet.
+ */
 public class ChatMsgStorage
 {
     private static final Logger LOGGER = Logger.getLogger(ChatMsgStorage.class
@@ -34,6 +45,17 @@ public class ChatMsgStorage
      */
     private final static String SEP = " ~ ";
 
+    /** Messages appended to the file before it is rewritten */
+    private final static int MAX_APPENDED_MESSAGES = 10 * WebServerConstants.keepLastNMessages;
+
+    /** Appends to the messages file, only used by the writer thread */
+    private PrintWriter appender;
+
+    private int appendedMessages;
+
+    /** The last messages written to the file, only used by the writer */
+    private final LinkedList<ChatMessage> writtenMessages = new LinkedList<ChatMessage>();
+
     public ChatMsgStorage(ChatChannel theChannel, WebServerOptions options)
     {
         this.options = options;
@@ -42,11 +64,17 @@ public class ChatMsgStorage
             + getChannel().getChannelId());
         this.lastNChatMessages = new ArrayList<ChatMessage>();
         restoreMessages();
+        writtenMessages.addAll(lastNChatMessages);
+        storeMessages();
     }
 
     public void dispose()
     {
-        storeMessages();
+        if (appender != null)
+        {
+            appender.close();
+            appender = null;
+        }
         LOGGER.fine("disposing - stored " + lastNChatMessages.size()
             + " messages");
     }
@@ -75,10 +103,34 @@ public class ChatMsgStorage
         }
     }
 
-    /** Store all messages to a permanent storage (Disk file or DB) from where
-     *  they can be read back when server is restarting
+    /**
+     * Append a message stored with storeMessage to the messages file.
+     * Called only by the writer thread of the channel.
      */
-    private void storeMessages()
+    void appendMessage(ChatMessage msg)
+    {
+        writtenMessages.add(msg);
+        if (writtenMessages.size() > WebServerConstants.keepLastNMessages)
+        {
+            writtenMessages.removeFirst();
+        }
+        if (appendedMessages >= MAX_APPENDED_MESSAGES)
+        {
+            // writes msg, too
+            storeMessages();
+            return;
+        }
+        if (appender == null)
+        {
+            // opening failed, message is only kept in memory
+            return;
+        }
+        appender.println(makeLine(msg));
+        appender.flush();
+        appendedMessages++;
+    }
+
+    private File getMessagesFile()
     {
         String usersFileDirectory = options
             .getStringOption(WebServerConstants.optDataDirectory);
@@ -90,47 +142,55 @@ public class ChatMsgStorage
         }
         String filename = "Chatmessages-" + getChannel().getChannelId()
             + ".txt";
+        return new File(usersFileDirectory, filename);
+    }
 
-        PrintWriter out = null;
+    /** Store the last written messages to a permanent storage (Disk file
+     *  or DB) from where they can be read back when server is restarting,
+     *  and continue appending to it.
+     */
+    private void storeMessages()
+    {
+        if (appender != null)
+        {
+            appender.close();
+            appender = null;
+        }
+        appendedMessages = 0;
+
+        File file = getMessagesFile();
         try
         {
-            out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(
-                new File(usersFileDirectory, filename)),
-                WebServerConstants.charset));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), WebServerConstants.charset));
 
-            for (ChatMessage msg : getLastNChatMessages())
+            for (ChatMessage msg : writtenMessages)
             {
                 String line = makeLine(msg);
                 out.println(line);
             }
             out.close();
+
+            boolean append = true;
+            appender = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file, append),
+                WebServerConstants.charset));
         }
         catch (FileNotFoundException e)
         {
-            LOGGER.log(Level.SEVERE, "Writing char messages file " + filename
+            LOGGER.log(Level.SEVERE, "Writing char messages file " + file
                 + "failed: FileNotFoundException: ", e);
         }
-
     }
 
     private void restoreMessages()
     {
-        String usersFileDirectory = options
-            .getStringOption(WebServerConstants.optDataDirectory);
-        if (usersFileDirectory == null)
-        {
-            LOGGER
-                .severe("Data Directory (for chat messages file) is null! Define it in cf file!");
-            System.exit(1);
-        }
-        String filename = "Chatmessages-" + getChannel().getChannelId()
-            + ".txt";
+        File filename = getMessagesFile();
 
         try
         {
             BufferedReader msgs = new BufferedReader(new InputStreamReader(
-                new FileInputStream(new File(usersFileDirectory, filename)),
-                WebServerConstants.charset));
+                new FileInputStream(filename), WebServerConstants.charset));
 
             String line = null;
             while ((line = msgs.readLine()) != null)
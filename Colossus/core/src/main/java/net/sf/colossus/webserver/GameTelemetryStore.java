@@ -0,0 +1,299 @@
+package net.sf.colossus.webserver;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.colossus.util.Split;
+
+
+/**
+ *  Collects the telemetry of the games run on this server: when a game
+ *  process ends, the last record its GameTelemetry wrote is appended,
+ *  with game id and number of players, to game-telemetry.txt in the
+ *  StatisticsBaseDir. That file is one line per game of key=value pairs,
+ *  easy to look at with grep or awk, and read again at startup.
+ *
+ *  Per variant it sums up how long the games take and what they cost,
+ *  and it finds the games which took much more than the average of their
+ *  variant; both are written with the dumpInfo of the WebServer. This is
+ *  what to look at to plan how many games a host can take, and to find
+ *  games or variants that are unusually expensive.
+ */
+public class GameTelemetryStore
+{
+    private static final Logger LOGGER = Logger
+        .getLogger(GameTelemetryStore.class.getName());
+
+    /** Name of the file each game process writes, in its statistics dir */
+    static final String GAME_FILE_NAME = "telemetry.txt";
+
+    private static final String STORE_FILE_NAME = "game-telemetry.txt";
+
+    /** What a game needs to take more than its variant's average */
+    private static final int UNUSUAL_FACTOR = 3;
+
+    /** Below this, a variant's average means too little */
+    private static final int UNUSUAL_MIN_GAMES = 5;
+
+    private static final int UNUSUAL_MAX_REPORTED = 20;
+
+    /** What is summed up and compared, from the records */
+    private static final String[] MEASURES = { "elapsedMs", "aiDecisionMs",
+        "commands", "bytesOut", "heapPeakMB" };
+
+    private final File storeFile;
+
+    /** Per game: game id, variant, then the values of the MEASURES */
+    private final List<String[]> games = new ArrayList<String[]>();
+
+    public GameTelemetryStore(String statisticsBaseDir)
+    {
+        this.storeFile = new File(statisticsBaseDir, STORE_FILE_NAME);
+        readStoreFile();
+    }
+
+    private void readStoreFile()
+    {
+        if (!storeFile.exists())
+        {
+            return;
+        }
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(storeFile), "UTF-8"));
+            try
+            {
+                String line;
+                while ((line = in.readLine()) != null)
+                {
+                    if (line.length() > 0)
+                    {
+                        add(parseRecord(line));
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            LOGGER.info("Read telemetry of " + games.size() + " games from "
+                + storeFile);
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.WARNING, "Reading game telemetry from "
+                + storeFile + " failed", e);
+        }
+    }
+
+    /**
+     * Take the last record the process of a game wrote into the store
+     *
+     * @param gameId Id of the game on this server
+     * @param players How many players were enrolled
+     * @param gameFile The telemetry file the game process wrote
+     */
+    public synchronized void addGame(String gameId, int players,
+        File gameFile)
+    {
+        String record = readLastLine(gameFile);
+        if (record == null)
+        {
+            LOGGER.info("Game " + gameId + " did not write any telemetry.");
+            return;
+        }
+        String line = "game=" + gameId + " players=" + players + " "
+            + record;
+        add(parseRecord(line));
+        try
+        {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(storeFile, true), "UTF-8"));
+            try
+            {
+                out.println(line);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.WARNING, "Storing telemetry of game " + gameId
+                + " to " + storeFile + " failed", e);
+        }
+    }
+
+    private void add(Map<String, String> record)
+    {
+        String[] game = new String[2 + MEASURES.length];
+        game[0] = getValue(record, "game", "?");
+        game[1] = getValue(record, "variant", "?");
+        for (int i = 0; i < MEASURES.length; i++)
+        {
+            game[2 + i] = getValue(record, MEASURES[i], "0");
+        }
+        games.add(game);
+    }
+
+    private static String getValue(Map<String, String> record, String key,
+        String defaultValue)
+    {
+        String value = record.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private static long toLong(String value)
+    {
+        try
+        {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @return The key=value pairs of one record
+     */
+    static Map<String, String> parseRecord(String line)
+    {
+        Map<String, String> record = new HashMap<String, String>();
+        for (String pair : Split.toArray(" ", line, 0))
+        {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+            {
+                record.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+        }
+        return record;
+    }
+
+    private static String readLastLine(File file)
+    {
+        if (!file.exists())
+        {
+            return null;
+        }
+        String last = null;
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+            try
+            {
+                String line;
+                while ((line = in.readLine()) != null)
+                {
+                    if (line.length() > 0)
+                    {
+                        last = line;
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.WARNING, "Reading telemetry " + file
+                + " failed", e);
+        }
+        return last;
+    }
+
+    /**
+     * @return Per variant how many games and the average of each measure,
+     *     then the games which took more than UNUSUAL_FACTOR times the
+     *     average of their variant in one of the measures
+     */
+    public synchronized List<String> getReport()
+    {
+        Map<String, long[]> sums = new TreeMap<String, long[]>();
+        for (String[] game : games)
+        {
+            long[] sum = sums.get(game[1]);
+            if (sum == null)
+            {
+                sum = new long[1 + MEASURES.length];
+                sums.put(game[1], sum);
+            }
+            sum[0]++;
+            for (int i = 0; i < MEASURES.length; i++)
+            {
+                sum[1 + i] += toLong(game[2 + i]);
+            }
+        }
+
+        List<String> lines = new ArrayList<String>();
+        lines.add("Telemetry of " + games.size() + " games, per variant "
+            + "(average per game):");
+        for (Map.Entry<String, long[]> entry : sums.entrySet())
+        {
+            long[] sum = entry.getValue();
+            StringBuilder sb = new StringBuilder("  " + entry.getKey()
+                + ": games=" + sum[0]);
+            for (int i = 0; i < MEASURES.length; i++)
+            {
+                sb.append(' ').append(MEASURES[i]).append('=')
+                    .append(sum[1 + i] / sum[0]);
+            }
+            lines.add(sb.toString());
+        }
+
+        lines.add("Games with more than " + UNUSUAL_FACTOR
+            + " times the average of their variant:");
+        int reported = 0;
+        for (String[] game : games)
+        {
+            long[] sum = sums.get(game[1]);
+            if (sum[0] < UNUSUAL_MIN_GAMES)
+            {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < MEASURES.length; i++)
+            {
+                long value = toLong(game[2 + i]);
+                long average = sum[1 + i] / sum[0];
+                if (average > 0 && value > UNUSUAL_FACTOR * average)
+                {
+                    sb.append(' ').append(MEASURES[i]).append('=')
+                        .append(value);
+                }
+            }
+            if (sb.length() > 0)
+            {
+                if (reported == UNUSUAL_MAX_REPORTED)
+                {
+                    lines.add("  ...");
+                    break;
+                }
+                lines.add("  game " + game[0] + " (" + game[1] + "):" + sb);
+                reported++;
+            }
+        }
+        return lines;
+    }
+}
@@ -45,6 +45,8 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
 
     private final IRunWebServer server;
     private final WebServerOptions options;
+    private final GameRunnerPool pool;
+    private final GameTelemetryStore telemetry;
     private final GameInfo gi;
     private final String gameId;
 
@@ -56,16 +58,24 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
     private String colossusJar;
 
     private File flagFile;
+    private File telemetryFile;
     private File suspendedFlagfile;
 
     private boolean alreadyStarted;
     private String reasonStartFailed;
 
+    /**
+     * @param pool Where to take an already started process from, or null
+     *     to always start a new one
+     * @param telemetry Where the statistics of the game go when it is over
+     */
     public RunGameInOwnJVM(IRunWebServer server, WebServerOptions options,
-        GameInfo gi)
+        GameRunnerPool pool, GameTelemetryStore telemetry, GameInfo gi)
     {
         this.server = server;
         this.options = options;
+        this.pool = pool;
+        this.telemetry = telemetry;
         this.gi = gi;
         this.gameId = gi.getGameId();
         this.alreadyStarted = false;
@@ -169,6 +179,14 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
         LOGGER.finest("Creating dir " + statDir.toString());
         File diceStatFile = new File(statDir, "dice-statistics.txt");
 
+        // from an earlier run, if the game is resumed; already stored
+        this.telemetryFile = new File(statDir,
+            GameTelemetryStore.GAME_FILE_NAME);
+        if (telemetryFile.exists())
+        {
+            telemetryFile.delete();
+        }
+
         String flagFileName = "Game." + gameId + ".running.flag";
 
         this.flagFile = new File(gameDir, flagFileName);
@@ -183,10 +201,20 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
             suspendedFlagfile.delete();
         }
 
+        GameRunnerPool.Runner runner = (pool != null ? pool.take() : null);
+
         File logPropFile = new File(gameDir, "logging.properties");
         File logPropTemplate = new File(template);
+        String logFilePattern = "Colossus%g.log";
+        if (runner != null)
+        {
+            // A pooled process does not run in the game directory;
+            // the logger wants forward slashes also on Windows
+            logFilePattern = new File(gameDir, logFilePattern)
+                .getAbsolutePath().replace('\\', '/');
+        }
         boolean propFileOk = createLoggingPropertiesFromTemplate(
-            logPropTemplate, logPropFile);
+            logPropTemplate, logPropFile, logFilePattern);
 
         // Stores data from GameInfo into an options object and saves
         // the options to file on disk in the special game directory.
@@ -214,6 +242,25 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
             loadOptionString = " --latest";
         }
 
+        if (runner != null)
+        {
+            // Same as the command line below, see PooledGameRunner
+            String gameLine = gameDir.getAbsolutePath() + "\t"
+                + (propFileOk ? logPropFile.getAbsolutePath() : "") + "\t"
+                + (prop != null ? prop : "") + "\t-p\t" + hostingPort
+                + "\t-g\t--flagfile\t" + flagFile.getAbsolutePath()
+                + loadOptionString.replace(' ', '\t');
+            if (runner.startGame(gameLine))
+            {
+                LOGGER.info("Game " + gameId + " runs in an already "
+                    + "started process.");
+                superviseGameStartup();
+                refillPool();
+                waitForGameShutdown(runner.process, runner.out, runner.err);
+                return;
+            }
+        }
+
         String command = javaCommand + loggingFileArg + randomDotOrgArg
             + " -Duser.home="
             + gameDir + " -jar " + colossusJar + " -p " + hostingPort
@@ -229,6 +276,7 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
                 gameId + "_ERR: ").start();
 
             superviseGameStartup();
+            refillPool();
 
             waitForGameShutdown(p, ndout, nderr);
 
@@ -237,6 +285,19 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
         {
             LOGGER.log(Level.SEVERE, "Executing\n  " + command
                 + "\ndid throw exception", e);
+            refillPool();
+        }
+    }
+
+    /**
+     * Replace the process taken from the pool, now that the game does
+     * not need the CPU for its startup any more
+     */
+    private void refillPool()
+    {
+        if (pool != null)
+        {
+            pool.refill();
         }
     }
 
@@ -258,6 +319,8 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
         String statFileName = diceStatisticsFile.toString();
         LOGGER.finest("Statisticsfilename: " + statFileName);
         gameOptions.setOption(Options.diceStatisticsFile, statFileName);
+        gameOptions.setOption(Options.gameTelemetryFile,
+            telemetryFile.getAbsolutePath());
 
         gameOptions.saveOptions();
 
@@ -265,7 +328,7 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
     }
 
     private boolean createLoggingPropertiesFromTemplate(File logPropTemplate,
-        File logPropFile)
+        File logPropFile, String logFilePattern)
     {
         boolean ok = true;
         String patternLine = "java.util.logging.FileHandler.pattern=";
@@ -289,7 +352,7 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
                     // replace the \ of a Windows directory to /'es,
                     // because as it looks the java logger only accepts those,
                     // and uses backslashes just as quote character...
-                    line = patternLine + "Colossus%g.log";
+                    line = patternLine + logFilePattern;
                 }
                 out.println(line);
             }
@@ -419,6 +482,11 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
                 + flagFile.toString() + " is gone. Fine!");
         }
 
+        if (telemetry != null)
+        {
+            telemetry.addGame(gameId, gi.getPlayers().size(), telemetryFile);
+        }
+
         LOGGER.info("Before unregister game " + gameId);
         server.unregisterGame(gi, hostingPort);
     }
@@ -657,7 +725,7 @@ public class RunGameInOwnJVM extends Thread implements IGameRunner
      * there is not much output any more?
      *
      */
-    private static class NullDumper implements Runnable
+    static class NullDumper implements Runnable
     {
         Process process;
         boolean toNull;
@@ -23,12 +23,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sf.colossus.util.BuildInfo;
+import net.sf.colossus.util.Split;
 import net.sf.colossus.webclient.WebClient;
 import net.sf.colossus.webcommon.FormatWhen;
 import net.sf.colossus.webcommon.GameInfo;
@@ -66,6 +70,9 @@ public class WebServer implements IWebServer, IRunWebServer
 
     private final static int MIN_FREE_GAME_PORTS = 5;
 
+    /** Changes of games within this time are sent to clients together */
+    private final static long GAMEINFO_FLUSH_INTERVAL_MS = 200;
+
     private final int INACTIVITY_CHECK_INTERVAL = 10;
     private final int INACTIVITY_WARNING_INTERVAL = 30;
     private final int INACTIVITY_TIMEOUT = 90;
@@ -110,6 +117,17 @@ public class WebServer implements IWebServer, IRunWebServer
 
     private final ClientWatchDog watchDog;
 
+    /** Game processes started in advance */
+    private final GameRunnerPool gameRunnerPool;
+
+    /** Statistics of the games run so far */
+    private final GameTelemetryStore gameTelemetry;
+
+    /** Sends the game changes collected by allTellGameInfo */
+    private final Timer gameInfoFlusher;
+
+    private final AtomicBoolean gameInfosPending = new AtomicBoolean();
+
     private final FormatWhen whenFormatter;
 
     private PrintWriter dumpInfoFile;
@@ -245,6 +263,20 @@ public class WebServer implements IWebServer, IRunWebServer
         watchDog = new ClientWatchDog(userDB);
         watchDog.start();
 
+        gameRunnerPool = new GameRunnerPool(options);
+        gameTelemetry = new GameTelemetryStore(
+            options.getStringOption(WebServerConstants.optStatisticsBaseDir));
+
+        gameInfoFlusher = new Timer("GameInfoFlusher", true);
+        gameInfoFlusher.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                flushGameInfos();
+            }
+        }, GAMEINFO_FLUSH_INTERVAL_MS, GAMEINFO_FLUSH_INTERVAL_MS);
+
         updateGUI();
         /*
          boolean runGameConsole = false;
@@ -344,6 +376,10 @@ public class WebServer implements IWebServer, IRunWebServer
             }
         }
 
+        gameInfoFlusher.cancel();
+        flushGameInfos();
+        gameRunnerPool.shutdown();
+
         writeBackUsers();
         userDB.cleanup();
 
@@ -367,6 +403,14 @@ public class WebServer implements IWebServer, IRunWebServer
         userDB.storeUsersToFile();
     }
 
+    /**
+     * Persist a change of one user, e.g. login or logout time
+     */
+    public void storeUserChange(User u)
+    {
+        userDB.storeUserChange(u);
+    }
+
     public void updateLoggedinStatus(User u, WebServerClient wsc)
     {
         userDB.updateLoggedinStatus(u, wsc);
@@ -739,6 +783,10 @@ public class WebServer implements IWebServer, IRunWebServer
         pw.println(endingGames.size() + " games just ending: "
             + temporaryGameList.toString());
         pw.println(portBookKeeper.getStatus());
+        for (String line : gameTelemetry.getReport())
+        {
+            pw.println(line);
+        }
         pw.println("");
         pw.println("");
     }
@@ -886,6 +934,10 @@ public class WebServer implements IWebServer, IRunWebServer
         tellAllGamesFromListToOne(client, suspendedGames);
     }
 
+    /**
+     * Tell all clients about the changed game; several changes coming
+     * quickly one after another are sent only once.
+     */
     public void allTellGameInfo(GameInfo gi)
     {
         Collection<User> users = userDB.getLoggedInUsers();
@@ -894,7 +946,25 @@ public class WebServer implements IWebServer, IRunWebServer
             IWebClient client = u.getWebserverClient();
             if (client != null)
             {
-                client.gameInfo(gi);
+                ((WebServerClient)client).gameInfoLater(gi);
+            }
+        }
+        gameInfosPending.set(true);
+    }
+
+    private void flushGameInfos()
+    {
+        if (!gameInfosPending.getAndSet(false))
+        {
+            return;
+        }
+        Collection<User> users = userDB.getLoggedInUsers();
+        for (User u : users)
+        {
+            IWebClient client = u.getWebserverClient();
+            if (client != null)
+            {
+                ((WebServerClient)client).flushGameInfos();
             }
         }
     }
@@ -1760,7 +1830,8 @@ public class WebServer implements IWebServer, IRunWebServer
         // Reason for failure
         String reason = null;
 
-        RunGameInOwnJVM gr = new RunGameInOwnJVM(this, options, gi);
+        RunGameInOwnJVM gr = new RunGameInOwnJVM(this, options,
+            gameRunnerPool, gameTelemetry, gi);
         boolean ok = gr.makeRunningGame();
 
         if (!ok)
@@ -1943,7 +2014,7 @@ public class WebServer implements IWebServer, IRunWebServer
                     // GameInfo.fromString expects the token[0]
                     // to be the command name:
                     String lineWithCmd = "Dummy" + sep + line;
-                    String[] tokens = lineWithCmd.split(sep);
+                    String[] tokens = Split.toArray(sep, lineWithCmd, 0);
                     GameInfo gi = GameInfo.fromString(tokens, allGames, true);
                     if (gi.getGameState().equals(GameState.PROPOSED))
                     {
@@ -3,7 +3,10 @@ package net.sf.colossus.webserver;
 
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -13,8 +16,10 @@ import net.sf.colossus.util.Glob;
 import net.sf.colossus.util.Split;
 import net.sf.colossus.webclient.WebClient;
 import net.sf.colossus.webcommon.GameInfo;
+import net.sf.colossus.webcommon.GameInfoDeltas;
 import net.sf.colossus.webcommon.IWebClient;
 import net.sf.colossus.webcommon.IWebServer;
+import net.sf.colossus.webcommon.LobbyCommands;
 import net.sf.colossus.webcommon.User;
 
 
@@ -59,6 +64,15 @@ public class WebServerClient implements IWebClient
     /** Client side version */
     private int clientVersion;
 
+    /**
+     * Games which changed but were not sent yet; they are sent together
+     * a moment later, but always before any other message.
+     */
+    private final LinkedHashMap<String, GameInfo> pendingGameInfos = new LinkedHashMap<String, GameInfo>();
+
+    /** The fields of the games as last sent, for sending only changes */
+    private final HashMap<String, String[]> sentGameFields = new HashMap<String, String[]>();
+
     /** The user associated with this WebClient connection */
     private User user = null;
 
@@ -164,7 +178,7 @@ public class WebServerClient implements IWebClient
         {
             LOGGER.info("Handling logout for user " + getUsername());
             user.updateLastLogout();
-            server.writeBackUsers();
+            server.storeUserChange(user);
 
             if (user.getWebserverClient() == this)
             {
@@ -197,13 +211,14 @@ public class WebServerClient implements IWebClient
 
     public boolean parseLine(String fromClient)
     {
+        long startNanos = System.nanoTime();
         boolean done = false;
         boolean ok = true;
 
         String reason = null;
         GameInfo gi = null;
 
-        String[] tokens = fromClient.split(sep);
+        String[] tokens = LobbyCommands.tokenize(fromClient, 0);
         String command = tokens[0];
 
         if (!command.equals(IWebServer.PingResponse))
@@ -255,7 +270,7 @@ public class WebServerClient implements IWebClient
                     setUser(server.findUserByName(username));
                     loggedIn = true;
                     user.updateLastLogin();
-                    server.writeBackUsers();
+                    server.storeUserChange(user);
                     ok = true;
                     user.setWebClient(this);
                     server.updateLoggedinStatus(user, this);
@@ -355,6 +370,31 @@ public class WebServerClient implements IWebClient
             done = true;
         }
 
+        // ping responses and chat are most of the traffic, check them first
+        else if (command.equals(IWebServer.PingResponse))
+        {
+            long requestSentTime = Long.parseLong(tokens[1]);
+            int counter = Integer.parseInt(tokens[2]);
+            long requestResponseArriveTime = new Date().getTime();
+            long roundtripTime = requestResponseArriveTime - requestSentTime;
+            Level level = roundtripTime > 3000 ? Level.WARNING : Level.FINE;
+            if (LOGGER.isLoggable(level))
+            {
+                LOGGER.log(level, "Received ping response #" + counter
+                    + " from user " + getUsername()
+                    + ", request roundtrip time is " + roundtripTime + " ms.");
+            }
+            cst.storeEntry(requestResponseArriveTime, roundtripTime);
+        }
+
+        else if (command.equals(IWebServer.ChatSubmit))
+        {
+            String chatId = tokens[1];
+            String sender = tokens[2];
+            String message = tokens[3];
+            processChatLine(chatId, sender, message);
+        }
+
         else if (command.equals(IWebServer.Propose))
         {
 
@@ -477,13 +517,6 @@ public class WebServerClient implements IWebClient
             server.informLocallyGameOver(gameId);
         }
 
-        else if (command.equals(IWebServer.ChatSubmit))
-        {
-            String chatId = tokens[1];
-            String sender = tokens[2];
-            String message = tokens[3];
-            processChatLine(chatId, sender, message);
-        }
         else if (command.equals(IWebServer.ChangePassword))
         {
             String username = tokens[1];
@@ -551,27 +584,6 @@ public class WebServerClient implements IWebClient
             server.dumpInfo();
         }
 
-        else if (command.equals(IWebServer.PingResponse))
-        {
-            long requestSentTime = Long.parseLong(tokens[1]);
-            int counter = Integer.parseInt(tokens[2]);
-            String name = getUsername();
-            long requestResponseArriveTime = new Date().getTime();
-            long roundtripTime = requestResponseArriveTime - requestSentTime;
-            String msg = "Received ping response #" + counter + " from user "
-                + name + ", request roundtrip time is " + roundtripTime
-                + " ms.";
-            if (roundtripTime > 3000)
-            {
-                LOGGER.warning(msg);
-            }
-            else
-            {
-                LOGGER.fine(msg);
-            }
-            cst.storeEntry(requestResponseArriveTime, roundtripTime);
-        }
-
         else if (command.equals(IWebServer.ConfirmCommand))
         {
             long now = new Date().getTime();
@@ -756,6 +768,8 @@ public class WebServerClient implements IWebClient
 
         server.saveGamesIfNeeded();
 
+        LobbyCommands.TO_SERVER.record(command, System.nanoTime()
+            - startNanos);
         return done;
     }
 
@@ -898,6 +912,7 @@ public class WebServerClient implements IWebClient
 
     private void sendToClient(String s)
     {
+        flushGameInfos();
         cst.sendToClient(s);
     }
 
@@ -935,13 +950,98 @@ public class WebServerClient implements IWebClient
 
     public void gameInfo(GameInfo gi)
     {
-        String giString;
-        giString = gi.toStringCheckClientVersion(getUsername(),
-            getClientVersion(), sep);
+        synchronized (pendingGameInfos)
+        {
+            pendingGameInfos.remove(gi.getGameId());
+            sendGameInfo(gi);
+        }
+    }
 
-        sendToClient(gameInfo + sep + giString);
+    /**
+     * Send the game with the next flushGameInfos; if it changes again
+     * until then, it is sent only once.
+     */
+    void gameInfoLater(GameInfo gi)
+    {
+        synchronized (pendingGameInfos)
+        {
+            pendingGameInfos.put(gi.getGameId(), gi);
+        }
+    }
+
+    /**
+     * Send the games given to gameInfoLater
+     */
+    void flushGameInfos()
+    {
+        synchronized (pendingGameInfos)
+        {
+            if (pendingGameInfos.isEmpty())
+            {
+                return;
+            }
+            List<GameInfo> games = new ArrayList<GameInfo>(
+                pendingGameInfos.values());
+            pendingGameInfos.clear();
+            for (GameInfo gi : games)
+            {
+                sendGameInfo(gi);
+            }
+        }
+    }
+
+    /**
+     * Clients which know it get only the fields which changed since they
+     * got the game last time (nothing if none changed), otherwise the
+     * whole game.
+     */
+    private void sendGameInfo(GameInfo gi)
+    {
+        if (getClientVersion() < WebClient.WC_VERSION_GAMEINFO_DELTA)
+        {
+            String giString;
+            giString = gi.toStringCheckClientVersion(getUsername(),
+                getClientVersion(), sep);
+
+            cst.sendToClient(gameInfo + sep + giString);
+            return;
+        }
+
+        String[] fields;
+        int version;
+        synchronized (gi)
+        {
+            fields = gi.getFields(sep);
+            version = gi.getVersion();
+        }
+        String gameId = gi.getGameId();
+        String[] sentFields = sentGameFields.get(gameId);
+        if (sentFields == null)
+        {
+            cst.sendToClient(gameInfo + sep + Glob.glob(sep, fields));
+        }
+        else if (!Arrays.equals(fields, sentFields))
+        {
+            cst.sendToClient(GameInfoDeltas.makeDelta(gameId, version,
+                sentFields, fields));
+        }
+
+        if (gi.getGameState().equals(GameInfo.GameState.ENDING)
+            || gi.getGameState().equals(GameInfo.GameState.DELETED))
+        {
+            // client removes it from its tables
+            sentGameFields.remove(gameId);
+        }
+        else
+        {
+            sentGameFields.put(gameId, fields);
+        }
     }
 
+    /**
+     * gameInfoDelta ~ gameId ~ version ~ number of fields, then for each
+     * changed field its index and new value
+     */
     public void gameStartsSoon(String gameId, String byUser)
     {
         gameStartsSoonSent = new Date().getTime();
@@ -969,8 +1069,27 @@ public class WebServerClient implements IWebClient
     {
         // LOGGER.log(Level.FINEST, "chatDeliver() to client " + user.getName()
         //    + ": " + chatId + ", " + sender + ": " + message);
-        sendToClient(chatDeliver + sep + chatId + sep + when + sep + sender
-            + sep + message + sep + resent);
+        sendToClient(makeChatDeliverLine(chatId, when, sender, message,
+            resent));
+    }
+
+    /**
+     * The line chatDeliver sends, so that a chat message going to many
+     * clients can be put together only once
+     */
+    static String makeChatDeliverLine(String chatId, long when,
+        String sender, String message, boolean resent)
+    {
+        return chatDeliver + sep + chatId + sep + when + sep + sender + sep
+            + message + sep + resent;
+    }
+
+    /**
+     * Send a line made by makeChatDeliverLine
+     */
+    void chatDeliverLine(String line)
+    {
+        sendToClient(line);
     }
 
     public void deliverGeneralMessage(long when, boolean error, String title,
@@ -256,9 +256,13 @@ public class WebServerClientSocketThread extends Thread
                 long parsingCompletedAt = new Date().getTime();
                 long parsingDuration = parsingCompletedAt - lastPacketReceived;
 
-                LOGGER.log((parsingDuration > 1000 ? Level.WARNING
-                    : Level.FINEST), "Parsing+Processing took "
-                    + parsingDuration + " ms for line " + fromClient);
+                Level level = parsingDuration > 1000 ? Level.WARNING
+                    : Level.FINEST;
+                if (LOGGER.isLoggable(level))
+                {
+                    LOGGER.log(level, "Parsing+Processing took "
+                        + parsingDuration + " ms for line " + fromClient);
+                }
 
                 String tmpUsername = "<unknown>";
 
@@ -36,6 +36,7 @@ public final class WebServerConstants
     public final static String optLogPropTemplate = "LogPropTemplate";
     public final static String optWorkFilesBaseDir = "WorkFilesBaseDir";
     public final static String optStatisticsBaseDir = "StatisticsBaseDir";
+    public final static String optGameRunnerPoolSize = "GameRunnerPoolSize";
 
     // Mail sending related options / cf file entries:
     public final static String optMailServer = "MailServer";
@@ -4,14 +4,18 @@ package net.sf.colossus.xmlparser;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -126,6 +130,33 @@ public class TerrainRecruitLoader implements IVariantInitializer
      */
     private static RecruitGraph graph = new RecruitGraph(new VariantKnower());
 
+    /**
+     * The recruiting data of each terrain, computed on first use. For
+     * terrains without special recruiting it depends only on the variant,
+     * so it is computed only once instead of on every query.
+     */
+    private static final Map<MasterBoardTerrain, RecruitTable> recruitTables = new ConcurrentHashMap<MasterBoardTerrain, RecruitTable>();
+
+    /** How many legion compositions to remember the recruits for. */
+    static final int MAX_CACHED_COMPOSITIONS = 2048;
+
+    /**
+     * The recruits possible for a given terrain and legion composition,
+     * for terrains without special recruiting; the least recently used
+     * entries are dropped when the cache is full.
+     */
+    private static final Map<RecruitKey, List<CreatureType>> recruitsByComposition = Collections
+        .synchronizedMap(new LinkedHashMap<RecruitKey, List<CreatureType>>(
+            256, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<RecruitKey, List<CreatureType>> eldest)
+            {
+                return size() > MAX_CACHED_COMPOSITIONS;
+            }
+        });
+
     /** The AllCreatureType object to use, needed to convert from String (name)
      * to the actual CreatureType.
      */
@@ -249,6 +280,8 @@ public class TerrainRecruitLoader implements IVariantInitializer
         strToBelow.clear();
         strToRnd.clear();
         nameToInstance.clear();
+        recruitTables.clear();
+        recruitsByComposition.clear();
         graph.clear();
     }
 
@@ -805,6 +838,17 @@ public class TerrainRecruitLoader implements IVariantInitializer
      */
     public static List<CreatureType> getPossibleRecruits(
         MasterBoardTerrain terrain, MasterHex hex)
+    {
+        RecruitTable table = getRecruitTable(terrain);
+        if (table == null)
+        {
+            return computePossibleRecruits(terrain, hex);
+        }
+        return new ArrayList<CreatureType>(table.recruits);
+    }
+
+    private static List<CreatureType> computePossibleRecruits(
+        MasterBoardTerrain terrain, MasterHex hex)
     {
         List<RecruitNumber> al = strToRecruits.get(terrain);
         List<CreatureType> result = new ArrayList<CreatureType>();
@@ -863,6 +907,17 @@ public class TerrainRecruitLoader implements IVariantInitializer
      */
     public static List<CreatureType> getPossibleRecruiters(
         MasterBoardTerrain terrain, MasterHex hex)
+    {
+        RecruitTable table = getRecruitTable(terrain);
+        if (table == null)
+        {
+            return computePossibleRecruiters(terrain, hex);
+        }
+        return new ArrayList<CreatureType>(table.recruiters);
+    }
+
+    private static List<CreatureType> computePossibleRecruiters(
+        MasterBoardTerrain terrain, MasterHex hex)
     {
         List<RecruitNumber> al = strToRecruits.get(terrain);
         List<CreatureType> re = new ArrayList<CreatureType>();
@@ -965,6 +1020,19 @@ public class TerrainRecruitLoader implements IVariantInitializer
      */
     public static int numberOfRecruiterNeeded(CreatureType recruiter,
         CreatureType recruit, MasterBoardTerrain terrain, MasterHex hex)
+    {
+        RecruitTable table = getRecruitTable(terrain);
+        if (table == null)
+        {
+            return computeNumberOfRecruiterNeeded(recruiter, recruit,
+                terrain, hex);
+        }
+        return table.numberOfRecruiterNeeded(recruiter, recruit);
+    }
+
+    private static int computeNumberOfRecruiterNeeded(
+        CreatureType recruiter, CreatureType recruit,
+        MasterBoardTerrain terrain, MasterHex hex)
     {
         int g_value = graph.numberOfRecruiterNeeded(recruiter.getName(),
             recruit.getName(), terrain, hex);
@@ -987,6 +1055,195 @@ public class TerrainRecruitLoader implements IVariantInitializer
         return g_value;
     }
 
+    /**
+     * Give the creatures which a legion consisting of the given creatures
+     * could recruit in a terrain, no matter whether any of them are still
+     * available.
+     *
+     * @param terrain The terrain to consider.
+     * @param hex The specific hex to consider, may be null (see
+     * {@link #getPossibleRecruits(MasterBoardTerrain, MasterHex)}).
+     * @param creatures The creatures in the legion.
+     * @return Unmodifiable list of the recruits, in the order of
+     * {@link #getPossibleRecruits(MasterBoardTerrain, MasterHex)}.
+     */
+    public static List<CreatureType> getRecruitsWith(
+        MasterBoardTerrain terrain, MasterHex hex,
+        List<CreatureType> creatures)
+    {
+        if (getRecruitTable(terrain) == null)
+        {
+            // special recruiting depends on the state of the game
+            return Collections.unmodifiableList(computeRecruitsWith(terrain,
+                hex, creatures));
+        }
+        RecruitKey key = new RecruitKey(terrain, creatures);
+        List<CreatureType> recruits = recruitsByComposition.get(key);
+        if (recruits == null)
+        {
+            recruits = Collections.unmodifiableList(computeRecruitsWith(
+                terrain, hex, creatures));
+            recruitsByComposition.put(key, recruits);
+        }
+        return recruits;
+    }
+
+    private static List<CreatureType> computeRecruitsWith(
+        MasterBoardTerrain terrain, MasterHex hex,
+        List<CreatureType> creatures)
+    {
+        List<CreatureType> recruits = new ArrayList<CreatureType>();
+        List<CreatureType> recruiters = getPossibleRecruiters(terrain, hex);
+        for (CreatureType recruit : getPossibleRecruits(terrain, hex))
+        {
+            if (recruits.contains(recruit))
+            {
+                continue;
+            }
+            for (CreatureType recruiter : recruiters)
+            {
+                int number = numberOfRecruiterNeeded(recruiter, recruit,
+                    terrain, hex);
+                if (number <= Collections.frequency(creatures, recruiter))
+                {
+                    recruits.add(recruit);
+                    break;
+                }
+            }
+        }
+        return recruits;
+    }
+
+    /**
+     * The recruit table of the terrain, or null if the terrain has special
+     * recruiting and thus everything needs to be computed on each query.
+     */
+    private static RecruitTable getRecruitTable(MasterBoardTerrain terrain)
+    {
+        RecruitTable table = recruitTables.get(terrain);
+        if (table == null)
+        {
+            table = new RecruitTable(terrain);
+            recruitTables.put(terrain, table);
+        }
+        return table.special ? null : table;
+    }
+
+    /**
+     * The recruiting data of one terrain: recruits and recruiters are
+     * computed up front, the numbers of recruiters needed are filled in
+     * as they are asked for, in a table indexed by the creature type
+     * indices.
+     *
+     * The table is shared by all threads of the JVM (server, AIs, ...).
+     * It is an AtomicIntegerArray, filled with NOT_COMPUTED before the
+     * table is published through recruitTables, so that a reader sees
+     * either that or the complete number. Several threads may compute the
+     * same number concurrently, which only means it is computed more than
+     * once.
+     */
+    private static final class RecruitTable
+    {
+        private static final int NOT_COMPUTED = Integer.MIN_VALUE;
+
+        private final MasterBoardTerrain terrain;
+        private final boolean special;
+        private final List<CreatureType> recruits;
+        private final List<CreatureType> recruiters;
+        private final int typeCount;
+        /** Index recruiter index * typeCount + recruit index */
+        private final AtomicIntegerArray needed;
+
+        RecruitTable(MasterBoardTerrain terrain)
+        {
+            this.terrain = terrain;
+            boolean hasSpecial = false;
+            for (RecruitNumber tr : strToRecruits.get(terrain))
+            {
+                hasSpecial |= tr.getName().startsWith(Keyword_Special);
+            }
+            this.special = hasSpecial;
+            if (special)
+            {
+                this.recruits = null;
+                this.recruiters = null;
+                this.typeCount = 0;
+                this.needed = null;
+            }
+            else
+            {
+                this.recruits = Collections
+                    .unmodifiableList(computePossibleRecruits(terrain, null));
+                this.recruiters = Collections
+                    .unmodifiableList(computePossibleRecruiters(terrain, null));
+                this.typeCount = VariantSupport.getCurrentVariant()
+                    .getCreatureTypeCount();
+                this.needed = new AtomicIntegerArray(typeCount * typeCount);
+                for (int i = 0; i < needed.length(); i++)
+                {
+                    needed.set(i, NOT_COMPUTED);
+                }
+            }
+        }
+
+        int numberOfRecruiterNeeded(CreatureType recruiter,
+            CreatureType recruit)
+        {
+            int i = recruiter.getIndex() * typeCount + recruit.getIndex();
+            int number = needed.get(i);
+            if (number == NOT_COMPUTED)
+            {
+                number = computeNumberOfRecruiterNeeded(recruiter, recruit,
+                    terrain, null);
+                needed.set(i, number);
+            }
+            return number;
+        }
+    }
+
+    /**
+     * A terrain and a legion composition, the latter as the sorted indices
+     * of the creature types in the legion.
+     */
+    private static final class RecruitKey
+    {
+        private final MasterBoardTerrain terrain;
+        private final int[] creatureIndices;
+        private final int hash;
+
+        RecruitKey(MasterBoardTerrain terrain, List<CreatureType> creatures)
+        {
+            this.terrain = terrain;
+            this.creatureIndices = new int[creatures.size()];
+            for (int i = 0; i < creatureIndices.length; i++)
+            {
+                CreatureType type = creatures.get(i);
+                creatureIndices[i] = type == null ? -1 : type.getIndex();
+            }
+            Arrays.sort(creatureIndices);
+            this.hash = terrain.hashCode() * 31
+                + Arrays.hashCode(creatureIndices);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof RecruitKey))
+            {
+                return false;
+            }
+            RecruitKey other = (RecruitKey)obj;
+            return terrain.equals(other.terrain)
+                && Arrays.equals(creatureIndices, other.creatureIndices);
+        }
+    }
+
     public static boolean anonymousRecruitLegal(CreatureType recruit,
         MasterBoardTerrain terrain, MasterHex hex)
     {
@@ -6313,4 +6313,163 @@ public class PredictSplitsTest extends TestCase
 
         LOGGER.log(Level.FINEST, "\ntest %s ends");
     }
+
+    public void testPredictedContents()
+    {
+        ps = new PredictSplits("Rd01", cnl, variant);
+        CreatureType titan = variant.getCreatureByName("Titan");
+        CreatureType ogre = variant.getCreatureByName("Ogre");
+
+        ps.getLeaf("Rd01").split(4, new TestLegion(player, "Rd02"), 1);
+        PredictedContents contents = ps.getLeaf("Rd02")
+            .getPredictedContents();
+        assertFalse(contents.isCertain());
+        // Exactly one lord in each legion, and nothing else known
+        assertEquals(0.5, contents.getExpectedCount(titan), 1e-9);
+        assertEquals(1.0, contents.getExpectedCount(ogre), 1e-9);
+        double total = 0;
+        for (CreatureType type : contents.getCreatureTypes())
+        {
+            total += contents.getExpectedCount(type);
+        }
+        assertEquals(4.0, total, 1e-9);
+        // kept until the tree changes
+        assertSame(contents, ps.getLeaf("Rd02").getPredictedContents());
+
+        // a reveal in the sibling changes it
+        cnl.clear();
+        cnl.add(titan);
+        cnl.add(ogre);
+        cnl.add(ogre);
+        ps.getLeaf("Rd01").revealCreatures(cnl);
+        contents = ps.getLeaf("Rd02").getPredictedContents();
+        assertEquals(0.0, contents.getExpectedCount(titan), 1e-9);
+        assertEquals(0.0, contents.getProbabilityOfAtLeast(ogre, 1), 1e-9);
+        assertEquals(1.0, contents.getProbabilityOfAtLeast(
+            variant.getCreatureByName("Angel"), 1), 1e-9);
+    }
+
+    public void testPruneResolvedSplits()
+    {
+        ps = new PredictSplits("Rd01", cnl, variant);
+        ps.getLeaf("Rd01").split(4, new TestLegion(player, "Rd02"), 1);
+        cnl.clear();
+        cnl.add(variant.getCreatureByName("Titan"));
+        cnl.add(variant.getCreatureByName("Gargoyle"));
+        cnl.add(variant.getCreatureByName("Gargoyle"));
+        cnl.add(variant.getCreatureByName("Ogre"));
+        ps.getLeaf("Rd01").revealCreatures(cnl);
+        assertTrue(ps.getLeaf("Rd02").allCertain());
+
+        // Splits of the current turn are kept, they might be undone
+        ps.pruneResolvedSplits(1);
+        assertEquals(1, ps.getRoots().size());
+
+        ps.pruneResolvedSplits(2);
+        assertEquals(2, ps.getRoots().size());
+        assertNull(ps.getLeaf("Rd01").getParent());
+        assertEquals(4, ps.getLeaf("Rd02").getHeight());
+        assertTrue(ps.getLeaf("Rd02").getPredictedContents().isCertain());
+    }
+
+    public void testPruneResolvedSplitsBelowUnresolvedOnes()
+    {
+        ps = new PredictSplits("Rd01", cnl, variant);
+        CreatureType titan = variant.getCreatureByName("Titan");
+        CreatureType ogre = variant.getCreatureByName("Ogre");
+        ps.getLeaf("Rd01").split(4, new TestLegion(player, "Rd02"), 1);
+        ps.getLeaf("Rd01").split(1, new TestLegion(player, "Rd03"), 2);
+        ps.getLeaf("Rd01").split(1, new TestLegion(player, "Rd04"), 3);
+
+        // Resolves the split of turn 3, but neither of the older ones
+        cnl.clear();
+        cnl.add(titan);
+        cnl.add(ogre);
+        ps.getLeaf("Rd01").revealCreatures(cnl);
+        cnl.clear();
+        cnl.add(ogre);
+        ps.getLeaf("Rd04").revealCreatures(cnl);
+        assertFalse(ps.getLeaf("Rd03").allCertain());
+
+        ps.pruneResolvedSplits(4);
+        assertEquals(3, ps.getRoots().size());
+        assertNull(ps.getLeaf("Rd01").getParent());
+        assertNull(ps.getLeaf("Rd04").getParent());
+        // the split node stays for the split of turn 2, but is no leaf
+        PredictSplitNode node = ps.getLeaf("Rd03").getParent().getChild1();
+        assertTrue(node.hasDetachedChildren());
+        assertEquals(3, node.getHeight());
+        assertEquals(4, ps.getAllLeaves().size());
+        assertEquals(3, ps.getLeaf("Rd01").getTurnCreated());
+
+        String summary = ps.toSummary();
+        assertEquals(summary, PredictSplits.fromSummary(summary, variant)
+            .toSummary());
+
+        // Resolving the older splits drops that node, too
+        cnl.clear();
+        cnl.add(ps.getLeaf("Rd03").getCreatures().get(0).getType());
+        ps.getLeaf("Rd03").revealCreatures(cnl);
+        ps.pruneResolvedSplits(4);
+        assertEquals(4, ps.getRoots().size());
+        for (PredictSplitNode root : ps.getRoots())
+        {
+            assertFalse(root.hasDetachedChildren());
+            assertNull(root.getChild1());
+        }
+        assertEquals(4, ps.getAllLeaves().size());
+    }
+
+    public void testCopy()
+    {
+        ps = new PredictSplits("Rd01", cnl, variant);
+        ps.getLeaf("Rd01").split(4, new TestLegion(player, "Rd02"), 1);
+        ps.getLeaf("Rd02").addCreature(variant.getCreatureByName("Cyclops"));
+        String summary = ps.toSummary();
+
+        PredictSplits copy = new PredictSplits(ps);
+        assertEquals(summary, copy.toSummary());
+        assertNotSame(ps.getLeaf("Rd02"), copy.getLeaf("Rd02"));
+        assertSame(copy.getRoots().get(0), copy.getLeaf("Rd02").getParent());
+
+        // Changes of the copy don't touch the original
+        copy.getLeaf("Rd02").split(2, "Rd03", 2);
+        cnl.clear();
+        cnl.add(variant.getCreatureByName("Titan"));
+        copy.getLeaf("Rd01").revealCreatures(cnl);
+        assertEquals(summary, ps.toSummary());
+        assertNull(ps.getLeaf("Rd03"));
+    }
+
+    public void testSummaryRoundTrip()
+    {
+        ps = new PredictSplits("Rd01", cnl, variant);
+        ps.getLeaf("Rd01").split(4, new TestLegion(player, "Rd02"), 1);
+        ps.getLeaf("Rd02").addCreature(variant.getCreatureByName("Cyclops"));
+        ps.getLeaf("Rd01").removeCreature(variant.getCreatureByName("Titan"));
+
+        String summary = ps.toSummary();
+        PredictSplits restored = PredictSplits.fromSummary(summary, variant);
+        assertEquals(summary, restored.toSummary());
+        assertEquals(3, restored.getLeaf("Rd01").getHeight());
+        assertEquals(5, restored.getLeaf("Rd02").getHeight());
+        assertSame(restored.getRoots().get(0), restored.getLeaf("Rd02")
+            .getParent());
+
+        // The restored trees keep working like the original ones
+        ps.getLeaf("Rd02").split(2, new TestLegion(player, "Rd03"), 2);
+        restored.getLeaf("Rd02").split(2, "Rd03", 2);
+        assertEquals(ps.getLeaf("Rd03").getHeight(), restored.getLeaf("Rd03")
+            .getHeight());
+
+        try
+        {
+            PredictSplits.fromSummary("Rd01/0/0/Titan(", variant);
+            fail("Malformed summary accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
 }
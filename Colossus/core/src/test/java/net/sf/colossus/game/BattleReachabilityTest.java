@@ -0,0 +1,145 @@
+package net.sf.colossus.game;
+
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.variant.BattleHex;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.MasterBoardTerrain;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ *  Compares BattleReachability with the recursive search which
+ *  BattleMovement used before, on all battle lands of the Default variant.
+ */
+public class BattleReachabilityTest extends TestCase
+{
+    private Variant variant;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        variant = VariantSupport.loadVariantByName("Default", true);
+    }
+
+    public void testSameMovesAsRecursiveSearch()
+    {
+        Random random = new Random(4711);
+        for (MasterBoardTerrain terrain : variant.getTerrains())
+        {
+            BattleReachability reachability = new BattleReachability(terrain);
+            List<BattleHex> hexes = getAllHexes(terrain);
+            for (CreatureType creature : variant.getCreatureTypes())
+            {
+                for (int i = 0; i < 20; i++)
+                {
+                    BattleHex start = hexes.get(random.nextInt(hexes.size()));
+                    long occupied = 0;
+                    for (BattleHex hex : hexes)
+                    {
+                        if (hex != start && random.nextInt(5) == 0)
+                        {
+                            occupied = BattleReachability.with(occupied, hex);
+                        }
+                    }
+                    int movesLeft = random.nextInt(6);
+                    boolean cumulativeSlow = random.nextBoolean();
+                    boolean oneHexAllowed = random.nextBoolean();
+
+                    Set<BattleHex> expected = findMoves(start, creature,
+                        creature.isFlier(), movesLeft, -1, true, occupied,
+                        cumulativeSlow, oneHexAllowed);
+                    Set<BattleHex> actual = reachability
+                        .toHexSet(reachability.findMoves(start, creature,
+                            movesLeft, occupied, cumulativeSlow,
+                            oneHexAllowed));
+                    assertEquals(creature.getName() + " from "
+                        + start.getLabel() + " in " + terrain.getId(),
+                        expected, actual);
+                }
+            }
+        }
+    }
+
+    private static List<BattleHex> getAllHexes(MasterBoardTerrain terrain)
+    {
+        Set<BattleHex> hexes = new HashSet<BattleHex>();
+        List<BattleHex> toDo = new ArrayList<BattleHex>();
+        for (int k = 0; k < 6; k++)
+        {
+            toDo.add(terrain.getHexByLabel("X" + k));
+        }
+        while (!toDo.isEmpty())
+        {
+            BattleHex hex = toDo.remove(0);
+            if (hexes.add(hex))
+            {
+                for (int i = 0; i < 6; i++)
+                {
+                    if (hex.getNeighbor(i) != null)
+                    {
+                        toDo.add(hex.getNeighbor(i));
+                    }
+                }
+            }
+        }
+        return new ArrayList<BattleHex>(hexes);
+    }
+
+    /** The recursive search as it was in BattleMovement */
+    private static Set<BattleHex> findMoves(BattleHex hex,
+        CreatureType creature, boolean flies, int movesLeft, int cameFrom,
+        boolean first, long occupied, boolean cumulativeSlow,
+        boolean oneHexAllowed)
+    {
+        Set<BattleHex> set = new HashSet<BattleHex>();
+        for (int i = 0; i < 6; i++)
+        {
+            BattleHex neighbor = hex.getNeighbor(i);
+            if (i == cameFrom || neighbor == null)
+            {
+                continue;
+            }
+            int reverseDir = (i + 3) % 6;
+            int entryCost;
+            if (!BattleReachability.contains(occupied, neighbor))
+            {
+                entryCost = neighbor.getEntryCost(creature, reverseDir,
+                    cumulativeSlow);
+            }
+            else
+            {
+                entryCost = BattleHex.IMPASSIBLE_COST;
+            }
+
+            if ((entryCost != BattleHex.IMPASSIBLE_COST)
+                && ((entryCost <= movesLeft) || (first && oneHexAllowed)))
+            {
+                set.add(neighbor);
+                if (!flies && movesLeft > entryCost)
+                {
+                    set.addAll(findMoves(neighbor, creature, flies, movesLeft
+                        - entryCost, reverseDir, false, occupied,
+                        cumulativeSlow, oneHexAllowed));
+                }
+            }
+
+            if (flies && movesLeft > 1
+                && neighbor.canBeFlownOverBy(creature))
+            {
+                set.addAll(findMoves(neighbor, creature, flies,
+                    movesLeft - 1, reverseDir, false, occupied,
+                    cumulativeSlow, oneHexAllowed));
+            }
+        }
+        return set;
+    }
+}
@@ -0,0 +1,133 @@
+package net.sf.colossus.game;
+
+
+import java.awt.Color;
+
+import junit.framework.TestCase;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.IVariantKnower;
+import net.sf.colossus.variant.MasterBoardTerrain;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * JUnit test for the queries of RecruitGraph answered from the closure.
+ */
+public class RecruitGraphTest extends TestCase
+{
+    private Variant variant;
+    private MasterBoardTerrain plains;
+    private MasterBoardTerrain woods;
+    private RecruitGraph graph;
+
+    @Override
+    protected void setUp()
+    {
+        // terrains need a loaded variant
+        variant = VariantSupport.loadVariantByName("Default", true);
+        plains = new MasterBoardTerrain("Plains", "Plains", Color.YELLOW);
+        woods = new MasterBoardTerrain("Woods", "Woods", Color.GREEN);
+        graph = new RecruitGraph(new IVariantKnower()
+        {
+            public Variant getTheCurrentVariant()
+            {
+                return null;
+            }
+        });
+        graph.addEdge("Ogre", "Troll", 2, plains);
+        graph.addEdge("Troll", "Ranger", 2, plains);
+        graph.addEdge("Ogre", "Cyclops", 3, woods);
+        graph.addEdge("Cyclops", "Gorgon", 2, woods);
+    }
+
+    public void testRecruitDistanceIsTraversalOrder()
+    {
+        // traversal from Ogre: Ogre, Troll, Ranger, Cyclops, Gorgon
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Ogre", 0));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Troll", 1));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Ranger", 2));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 2));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 3));
+        assertFalse(graph.isRecruitDistanceLessThan("Troll", "Ogre", 10));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Unicorn", 10));
+    }
+
+    public void testClosureFollowsChanges()
+    {
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Minotaur", 10));
+        assertEquals(-1, graph.getMaximumUsefulNumber("Ranger"));
+
+        graph.addEdge("Ranger", "Minotaur", 3, plains);
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Minotaur", 3));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Minotaur", 2));
+        assertEquals(3, graph.getMaximumUsefulNumber("Ranger"));
+    }
+
+    public void testMaximumUsefulNumber()
+    {
+        assertEquals(3, graph.getMaximumUsefulNumber("Ogre"));
+        assertEquals(2, graph.getMaximumUsefulNumber("Troll"));
+        // not in the graph so far
+        assertEquals(-1, graph.getMaximumUsefulNumber("Unicorn"));
+    }
+
+    public void testRecruitDistanceWithCaretaker()
+    {
+        graph = new RecruitGraph(new IVariantKnower()
+        {
+            public Variant getTheCurrentVariant()
+            {
+                return variant;
+            }
+        });
+        graph.addEdge("Ogre", "Troll", 2, plains);
+        graph.addEdge("Troll", "Ranger", 2, plains);
+        graph.addEdge("Ogre", "Cyclops", 3, woods);
+        graph.addEdge("Cyclops", "Gorgon", 2, woods);
+
+        Caretaker caretaker = new Game(variant, new String[0])
+            .getCaretaker();
+        graph.setCaretaker(caretaker);
+        // all there: Ogre, Troll, Ranger, Cyclops, Gorgon
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Ranger", 2));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 2));
+
+        // no Troll left: Ogre, Cyclops, Gorgon
+        CreatureType troll = variant.getCreatureByName("Troll");
+        caretaker.setAvailableCount(troll, 0);
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Troll", 5));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Ranger", 5));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 1));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Gorgon", 2));
+
+        // one Cyclops is not enough to recruit a Gorgon: Ogre, Cyclops
+        CreatureType cyclops = variant.getCreatureByName("Cyclops");
+        caretaker.setAvailableCount(cyclops, 2);
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Gorgon", 2));
+        caretaker.takeOne(cyclops);
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Gorgon", 5));
+        assertTrue(graph.isRecruitDistanceLessThan("Cyclops", "Cyclops", 0));
+
+        // one Troll is not enough for a Ranger: Ogre, Troll, Cyclops
+        caretaker.putOneBack(troll);
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Ranger", 5));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 2));
+
+        // two are: Ogre, Troll, Ranger, Cyclops
+        caretaker.putOneBack(troll);
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Ranger", 2));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 2));
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Cyclops", 3));
+        assertFalse(graph.isRecruitDistanceLessThan("Ogre", "Gorgon", 5));
+
+        // all back, as when a new game starts
+        caretaker.resetAllCounts();
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Gorgon", 4));
+
+        // without caretaker again, availability does not matter
+        caretaker.setAvailableCount(troll, 0);
+        graph.setCaretaker(null);
+        assertTrue(graph.isRecruitDistanceLessThan("Ogre", "Ranger", 2));
+    }
+}
@@ -0,0 +1,224 @@
+package net.sf.colossus.server;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.sf.colossus.client.Client;
+import net.sf.colossus.client.LegionClientSide;
+import net.sf.colossus.client.PlayerClientSide;
+import net.sf.colossus.client.PredictSplitNode;
+import net.sf.colossus.common.Constants;
+import net.sf.colossus.common.Options;
+import net.sf.colossus.common.WhatNextManager;
+import net.sf.colossus.game.Legion;
+import net.sf.colossus.game.Player;
+import net.sf.colossus.util.ViableEntityManager;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * JUnit test that loading a game from the history checkpoint gives the
+ * clients the same state as replaying the whole history.
+ */
+public class HistoryCheckpointTest extends TestCase
+{
+    private static final int SAVE_IN_TURN = 5;
+
+    private File saveFile;
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        saveFile = File.createTempFile("checkpoint", ".xml");
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        saveFile.delete();
+    }
+
+    private static WhatNextManager createWhatNextManager()
+    {
+        Options startOptions = new Options(Constants.OPTIONS_START, true);
+        WhatNextManager whatNextManager = new WhatNextManager(startOptions);
+        whatNextManager.setInProcessRunner(true);
+        return whatNextManager;
+    }
+
+    private static Options createServerOptions(int port)
+    {
+        Options serverOptions = new Options(Constants.OPTIONS_SERVER_NAME,
+            true);
+        serverOptions.setOption(Options.variant, "Default");
+        serverOptions.setOption(Options.serveAtPort, port);
+        serverOptions.setOption(Options.autoQuit, true);
+        serverOptions.setOption(Options.autoStop, false);
+        serverOptions.setOption(Options.aiDelay, Constants.MIN_AI_DELAY);
+        return serverOptions;
+    }
+
+    /** An AI game which is saved and ends when the given turn begins */
+    private static class SavingGame extends GameServerSide
+    {
+        private final File file;
+
+        SavingGame(Options serverOptions, Variant variant, File file)
+        {
+            super(createWhatNextManager(), serverOptions, variant);
+            this.file = file;
+        }
+
+        @Override
+        protected boolean isTurnLimitReached(int turn)
+        {
+            if (turn < SAVE_IN_TURN)
+            {
+                return false;
+            }
+            saveGameWithErrorHandling(file.getPath(), false);
+            return true;
+        }
+    }
+
+    /** A loaded game which ends as soon as all clients have caught up */
+    private static class LoadedGame extends GameServerSide
+    {
+        private final List<Client> localClients = new ArrayList<Client>();
+        private String clientState;
+
+        LoadedGame(Options serverOptions, Variant variant)
+        {
+            super(createWhatNextManager(), serverOptions, variant);
+        }
+
+        @Override
+        protected void storeLocalClient(String playerName, Client c)
+        {
+            super.storeLocalClient(playerName, c);
+            synchronized (localClients)
+            {
+                localClients.add(c);
+            }
+        }
+
+        @Override
+        public void kickstartGame()
+        {
+            synchronized (localClients)
+            {
+                clientState = describe(localClients);
+            }
+            stopAllDueToFunctionalTestCompleted();
+        }
+    }
+
+    private void playAndSave()
+    {
+        Options serverOptions = createServerOptions(26671);
+        serverOptions.setOption(Options.playerName + 0, Constants.byType + 0);
+        serverOptions.setOption(Options.playerType + 0, "SimpleAI");
+        serverOptions.setOption(Options.playerName + 1, Constants.byType + 1);
+        serverOptions.setOption(Options.playerType + 1, "SimpleAI");
+        serverOptions.setOption(Options.playerName + 2, Constants.byType + 2);
+        serverOptions.setOption(Options.playerType + 2, "SimpleAI");
+        Variant variant = VariantSupport.loadVariantByName("Default", true);
+        SavingGame game = new SavingGame(serverOptions, variant, saveFile);
+        assertTrue(game.startNewGameAndWaitUntilOver(null));
+        ViableEntityManager.waitUntilAllGone();
+    }
+
+    private LoadedGame load(int port)
+    {
+        GameLoading loader = new GameLoading();
+        assertNull(loader.loadGame(saveFile.getPath()));
+        LoadedGame game = new LoadedGame(createServerOptions(port), loader
+            .getVariant());
+        game.setWasLoaded(true);
+        assertTrue(game.loadGameAndWaitUntilOver(loader.getRoot()));
+        ViableEntityManager.waitUntilAllGone();
+        assertNotNull("game came up", game.clientState);
+        return game;
+    }
+
+    /**
+     * What each client knows about each legion, and its split prediction
+     */
+    private static String describe(List<Client> clients)
+    {
+        List<String> lines = new ArrayList<String>();
+        for (Client client : clients)
+        {
+            String prefix = client.getOwningPlayer().getName() + " sees ";
+            for (Player player : client.getGame().getPlayers())
+            {
+                for (Legion legion : player.getLegions())
+                {
+                    LegionClientSide l = (LegionClientSide)legion;
+                    lines.add(prefix + l.getMarkerId() + " in "
+                        + l.getCurrentHex().getLabel() + ": "
+                        + l.getImageNames() + " " + l.getCertainties());
+                }
+                PlayerClientSide p = (PlayerClientSide)player;
+                if (p.getPredictSplits() != null)
+                {
+                    for (PredictSplitNode root : p.getPredictSplits()
+                        .getRoots())
+                    {
+                        describe(prefix, root, lines);
+                    }
+                }
+            }
+        }
+        Collections.sort(lines);
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines)
+        {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void describe(String prefix, PredictSplitNode node,
+        List<String> lines)
+    {
+        if (node == null)
+        {
+            return;
+        }
+        lines.add(prefix + "node " + node);
+        describe(prefix, node.getChild1(), lines);
+        describe(prefix, node.getChild2(), lines);
+    }
+
+    public void testCheckpointGivesSameClientStateAsReplay()
+    {
+        playAndSave();
+        assertTrue("saved", saveFile.length() > 0);
+
+        LoadedGame fromCheckpoint = load(26672);
+        assertTrue(fromCheckpoint.wasLoadedFromCheckpoint());
+
+        LoadedGame replayed;
+        System.setProperty("net.sf.colossus.fullReplay", "true");
+        try
+        {
+            assertTrue(Options.isFullReplayOnLoad());
+            replayed = load(26673);
+        }
+        finally
+        {
+            System.clearProperty("net.sf.colossus.fullReplay");
+        }
+        assertFalse(replayed.wasLoadedFromCheckpoint());
+
+        assertTrue("has split predictions", replayed.clientState
+            .contains(" node "));
+        assertEquals(replayed.clientState, fromCheckpoint.clientState);
+    }
+}
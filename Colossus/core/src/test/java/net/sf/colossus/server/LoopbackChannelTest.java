@@ -0,0 +1,55 @@
+package net.sf.colossus.server;
+
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for the queue from server to client of the LoopbackChannel.
+ */
+public class LoopbackChannelTest extends TestCase
+{
+    private final LoopbackChannel channel = new LoopbackChannel(null);
+
+    private void send(int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            channel.sendToClient("message " + i);
+        }
+    }
+
+    public void testKeptBackMessagesArriveInOrder()
+        throws InterruptedException
+    {
+        int count = LoopbackChannel.TO_CLIENT_CAPACITY + 100;
+        send(0, count);
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals("message " + i, channel.readFromServer());
+            // server goes on while client reads
+            send(count + i, count + i + 1);
+        }
+        assertFalse(channel.isOverflowed());
+        assertEquals("message " + count, channel.readFromServer());
+    }
+
+    public void testClientWhichDoesNotReadIsGivenUp()
+        throws InterruptedException
+    {
+        int count = LoopbackChannel.TO_CLIENT_CAPACITY
+            + LoopbackChannel.MAX_KEPT_BACK;
+        send(0, count);
+        assertFalse(channel.isOverflowed());
+
+        send(count, count + 1);
+        assertTrue(channel.isOverflowed());
+        // what was in the queue already can still be read, then it ends
+        send(count + 1, 2 * count);
+        for (int i = 0; i < LoopbackChannel.TO_CLIENT_CAPACITY; i++)
+        {
+            assertEquals("message " + i, channel.readFromServer());
+        }
+        assertNull(channel.readFromServer());
+    }
+}
@@ -2,8 +2,12 @@ package net.sf.colossus.util;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -41,4 +45,58 @@ public class CombosTest extends TestCase
 
         assertEquals(results.size(), 4);
     }
+
+    public void testCombosEdgeCases()
+    {
+        List<String> startlist = Arrays.asList("a", "b", "c");
+
+        int count = 0;
+        for (List<String> combo : new Combos<String>(startlist, 0))
+        {
+            assertTrue(combo.isEmpty());
+            count++;
+        }
+        assertEquals(1, count);
+
+        assertFalse(new Combos<String>(startlist, 4).iterator().hasNext());
+        assertFalse(new Combos<String>(startlist, -1).iterator().hasNext());
+
+        Iterator<List<String>> it = new Combos<String>(startlist, 3)
+            .iterator();
+        assertEquals(startlist, it.next());
+        assertFalse(it.hasNext());
+    }
+
+    public void testDistinctCombos()
+    {
+        List<String> startlist = Arrays.asList("ogre", "troll", "ogre",
+            "ogre", "lion");
+
+        Set<List<String>> results = new HashSet<List<String>>();
+        for (List<String> combo : Combos.distinct(startlist, 2))
+        {
+            Collections.sort(combo);
+            assertTrue("duplicate " + combo, results.add(combo));
+        }
+        // ogre+ogre, ogre+troll, ogre+lion, troll+lion
+        assertEquals(4, results.size());
+
+        // Same combinations as the plain ones, apart from the duplicates
+        Set<List<String>> plain = new HashSet<List<String>>();
+        for (List<String> combo : new Combos<String>(startlist, 2))
+        {
+            Collections.sort(combo);
+            plain.add(combo);
+        }
+        assertEquals(plain, results);
+
+        int count = 0;
+        for (Iterator<List<String>> it = Combos.distinct(startlist, 3)
+            .iterator(); it.hasNext(); it.next())
+        {
+            count++;
+        }
+        // 3 ogres; 2 ogres + troll/lion; 1 ogre + troll + lion
+        assertEquals(4, count);
+    }
 }
@@ -0,0 +1,71 @@
+package net.sf.colossus.util;
+
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for the histograms of EventMetrics.
+ */
+public class EventMetricsTest extends TestCase
+{
+    public void testHistogram()
+    {
+        EventMetrics.Histogram h = new EventMetrics.Histogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentileMicros(50));
+
+        // 90 fast ones at 3 us, 10 slow ones at 5 ms
+        for (int i = 0; i < 90; i++)
+        {
+            h.record(3000);
+        }
+        for (int i = 0; i < 10; i++)
+        {
+            h.record(5000000);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(5000, h.getMaxMicros());
+        assertEquals((90 * 3 + 10 * 5000) / 100, h.getMeanMicros());
+        // upper bounds of the buckets 2..4 us and 4096..8192 us
+        assertEquals(4, h.getPercentileMicros(50));
+        assertEquals(4, h.getPercentileMicros(90));
+        assertEquals(5000, h.getPercentileMicros(91));
+        assertEquals(5000, h.getPercentileMicros(100));
+    }
+
+    public void testReportViaJmx() throws Exception
+    {
+        EventMetrics.TIMINGS.record("testTiming", 1000);
+        EventMetrics.getClientStats("testClient").addBytesIn(42);
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        String report = (String)mbs.getAttribute(new ObjectName(
+            "net.sf.colossus:type=EventMetrics"), "Report");
+        assertTrue(report, report.indexOf("timing/testTiming: count=1") != -1);
+        assertTrue(report,
+            report.indexOf("client testClient: bytesIn=42") != -1);
+    }
+
+    public void testQueueLengthsPerClient()
+    {
+        EventMetrics.getClientStats("queueA").setSendQueueLength(5);
+        EventMetrics.getClientStats("queueA").setSendQueueLength(2);
+        EventMetrics.getClientStats("queueB").setSendQueueLength(3);
+
+        // one client does not hide the other
+        String report = EventMetrics.getClientStats("queueA").toString();
+        assertTrue(report, report.indexOf("sendQueue=2 sendQueueMax=5") != -1);
+        report = EventMetrics.getClientStats("queueB").toString();
+        assertTrue(report, report.indexOf("sendQueue=3 sendQueueMax=3") != -1);
+
+        EventMetrics.ClientStats totals = EventMetrics.getClientTotals();
+        assertTrue(totals.toString(),
+            totals.toString().indexOf("sendQueueMax=5") != -1);
+    }
+}
@@ -0,0 +1,47 @@
+package net.sf.colossus.util;
+
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for the eviction of the ImageCache.
+ */
+public class ImageCacheTest extends TestCase
+{
+    private static BufferedImage image(int size)
+    {
+        return new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    public void testLeastRecentlyUsedIsDropped()
+    {
+        // room for two 10x10 ARGB images
+        ImageCache cache = new ImageCache("test", 2 * 10 * 10 * 4);
+        BufferedImage a = image(10);
+        BufferedImage b = image(10);
+        cache.put("a", a);
+        cache.put("b", b);
+        assertEquals(800, cache.getBytes());
+
+        // using a makes b the least recently used one
+        assertSame(a, cache.get("a"));
+        cache.put("c", image(10));
+        assertSame(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(800, cache.getBytes());
+    }
+
+    public void testTooBigImageIsKept()
+    {
+        ImageCache cache = new ImageCache("test", 100);
+        cache.put("small", ImageCache.MISSING);
+        BufferedImage big = image(20);
+        cache.put("big", big);
+        assertSame(big, cache.get("big"));
+        assertNull(cache.get("small"));
+        assertEquals(1, cache.size());
+    }
+}
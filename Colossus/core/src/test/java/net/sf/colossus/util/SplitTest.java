@@ -0,0 +1,40 @@
+package net.sf.colossus.util;
+
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test that Split.toArray splits like String.split does.
+ */
+public class SplitTest extends TestCase
+{
+    private static final String SEP = " ~ ";
+
+    private static final String[] LINES = { "", "pingResponse",
+        "pingResponse ~ 123 ~ 4", "chatsubmit ~ #general ~ bob ~ ",
+        "a ~  ~ b ~  ~ ", " ~ ", " ~  ~ ", " ~ a", "a ~~ b ~", "~ ~ ~" };
+
+    private void assertSplitsLikeString(String line, int limit)
+    {
+        String[] expected = line.split(SEP, limit);
+        String[] actual = Split.toArray(SEP, line, limit);
+        assertTrue("'" + line + "' with limit " + limit + ": expected "
+            + Arrays.asList(expected) + " but got " + Arrays.asList(actual),
+            Arrays.equals(expected, actual));
+    }
+
+    public void testLikeStringSplit()
+    {
+        for (String line : LINES)
+        {
+            assertSplitsLikeString(line, 0);
+            assertSplitsLikeString(line, -1);
+            assertSplitsLikeString(line, 1);
+            assertSplitsLikeString(line, 2);
+            assertSplitsLikeString(line, 3);
+        }
+    }
+}
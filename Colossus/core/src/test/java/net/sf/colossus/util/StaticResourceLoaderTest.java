@@ -0,0 +1,291 @@
+package net.sf.colossus.util;
+
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for the manifest and the bundle the file server sends
+ * out of the file cache, and for the client prefetching them into its
+ * file cache and its cache directory.
+ */
+public class StaticResourceLoaderTest extends TestCase
+{
+    private static final byte[] VARIANT_FILE = "<variant/>".getBytes();
+    private static final byte[] MAP_FILE = "<map/>".getBytes();
+
+    private static final String VARIANT_KEY = "TestVar.xml,Test,Default";
+    private static final String MAP_KEY = "TestMap.xml,Test,Default";
+
+    /** What the data server answers, see startDataServer() */
+    private byte[] manifestBytes;
+    private byte[] bundleBytes;
+    private ServerSocket serverSocket;
+    private final List<String> requests = Collections
+        .synchronizedList(new ArrayList<String>());
+
+    private File tempDir;
+    private File cacheDir;
+
+    @Override
+    protected void setUp()
+    {
+        StaticResourceLoader.purgeFileCache();
+        StaticResourceLoader.putIntoFileCache(VARIANT_KEY, VARIANT_FILE);
+        StaticResourceLoader.putIntoFileCache(MAP_KEY, MAP_FILE);
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        StaticResourceLoader.purgeFileCache();
+        StaticResourceLoader.resetDataServer();
+        if (serverSocket != null)
+        {
+            serverSocket.close();
+        }
+        if (tempDir != null)
+        {
+            delete(tempDir);
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static Map<String, String> readManifest(byte[] bytes)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+            bytes));
+        Map<String, String> manifest = new HashMap<String, String>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            String mapKey = in.readUTF();
+            manifest.put(mapKey, in.readUTF());
+        }
+        return manifest;
+    }
+
+    private static Map<String, String> getClientManifest()
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StaticResourceLoader.writeFileCacheManifest(bytes);
+        return readManifest(bytes.toByteArray());
+    }
+
+    /**
+     * A data server which answers each manifest request with
+     * manifestBytes and each bundle request with bundleBytes; the file
+     * cache is emptied then, so that it is the one of the client.
+     */
+    private void startDataServer() throws IOException
+    {
+        if (bundleBytes == null)
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StaticResourceLoader.writeFileCacheBundle(Arrays.asList(
+                StaticResourceLoader.getContentHash(VARIANT_FILE),
+                StaticResourceLoader.getContentHash(MAP_FILE)), bytes);
+            bundleBytes = bytes.toByteArray();
+        }
+        if (manifestBytes == null)
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StaticResourceLoader.writeFileCacheManifest(bytes);
+            manifestBytes = bytes.toByteArray();
+        }
+        StaticResourceLoader.purgeFileCache();
+
+        tempDir = File.createTempFile("cache", "");
+        tempDir.delete();
+        tempDir.mkdir();
+        cacheDir = new File(tempDir, "cache");
+
+        serverSocket = new ServerSocket(0);
+        StaticResourceLoader.setDataServer("localhost", serverSocket
+            .getLocalPort());
+        Thread thread = new Thread("Test data server")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while (true)
+                    {
+                        answer(serverSocket.accept());
+                    }
+                }
+                catch (IOException e)
+                {
+                    // closed by tearDown
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void answer(Socket socket) throws IOException
+    {
+        try
+        {
+            String request = new BufferedReader(new InputStreamReader(
+                socket.getInputStream())).readLine();
+            requests.add(request);
+            OutputStream out = socket.getOutputStream();
+            if (request.startsWith(
+                StaticResourceLoader.FILESERVER_MANIFEST_SIGNAL))
+            {
+                out.write(manifestBytes);
+            }
+            else
+            {
+                out.write(bundleBytes);
+            }
+            out.flush();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    private int countBundleRequests()
+    {
+        int count = 0;
+        for (String request : requests)
+        {
+            if (request.startsWith(
+                StaticResourceLoader.FILESERVER_BUNDLE_SIGNAL))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void testContentHash()
+    {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+            StaticResourceLoader.getContentHash("abc".getBytes()));
+    }
+
+    public void testManifest() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StaticResourceLoader.writeFileCacheManifest(bytes);
+
+        Map<String, String> manifest = readManifest(bytes.toByteArray());
+        assertEquals(2, manifest.size());
+        assertEquals(StaticResourceLoader.getContentHash(MAP_FILE),
+            manifest.get("TestMap.xml,Test,Default"));
+    }
+
+    public void testBundleHasOnlyRequestedFiles() throws IOException
+    {
+        String mapHash = StaticResourceLoader.getContentHash(MAP_FILE);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StaticResourceLoader.writeFileCacheBundle(
+            Arrays.asList(mapHash, "0000"), bytes);
+
+        DataInputStream in = new DataInputStream(new GZIPInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(mapHash, in.readUTF());
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        assertTrue(Arrays.equals(MAP_FILE, data));
+        // the unknown hash is skipped, then the end marker
+        assertEquals("", in.readUTF());
+    }
+
+    public void testPrefetchUsesCacheDirectory() throws IOException
+    {
+        Map<String, String> serverManifest = getClientManifest();
+        startDataServer();
+        String mapHash = StaticResourceLoader.getContentHash(MAP_FILE);
+
+        assertEquals(2, StaticResourceLoader.prefetchFromDataServer(cacheDir));
+        assertEquals(serverManifest, getClientManifest());
+        assertEquals(1, countBundleRequests());
+        assertTrue(new File(cacheDir, mapHash).isFile());
+        assertTrue(new File(cacheDir, StaticResourceLoader
+            .getContentHash(VARIANT_FILE)).isFile());
+
+        // next game: all from the cache directory
+        StaticResourceLoader.purgeFileCache();
+        assertEquals(2, StaticResourceLoader.prefetchFromDataServer(cacheDir));
+        assertEquals(serverManifest, getClientManifest());
+        assertEquals(1, countBundleRequests());
+
+        // a damaged file is fetched again
+        OutputStream os = new FileOutputStream(new File(cacheDir, mapHash));
+        os.write("<damaged/>".getBytes());
+        os.close();
+        StaticResourceLoader.purgeFileCache();
+        assertEquals(2, StaticResourceLoader.prefetchFromDataServer(cacheDir));
+        assertEquals(serverManifest, getClientManifest());
+        assertEquals(2, countBundleRequests());
+        assertTrue(requests.get(requests.size() - 1).endsWith(mapHash));
+    }
+
+    public void testInvalidHashInManifestIsRejected() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(2);
+        out.writeUTF(MAP_KEY);
+        out.writeUTF(StaticResourceLoader.getContentHash(MAP_FILE));
+        out.writeUTF("Evil.xml,Test,Default");
+        out.writeUTF("../victim");
+        out.flush();
+        manifestBytes = bytes.toByteArray();
+        startDataServer();
+
+        File victim = new File(tempDir, "victim");
+        OutputStream os = new FileOutputStream(victim);
+        os.write("not yours".getBytes());
+        os.close();
+
+        assertEquals(1, StaticResourceLoader.prefetchFromDataServer(cacheDir));
+        assertTrue(victim.isFile());
+        assertFalse(getClientManifest().containsKey("Evil.xml,Test,Default"));
+        for (String request : requests)
+        {
+            assertFalse(request.contains("victim"));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.sf.colossus.webcommon;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for sending the changes of a GameInfo as gameInfoDelta,
+ * from the fields on the server to the GameInfo on the client.
+ */
+public class GameInfoDeltasTest extends TestCase
+{
+    private static final String sep = IWebServer.WebProtocolSeparator;
+
+    private GameInfo serverGame;
+    private String gameId;
+
+    /** What the client has */
+    private GameInfoDeltas clientDeltas;
+    private HashMap<String, GameInfo> clientGames;
+
+    @Override
+    protected void setUp()
+    {
+        List<String> noOptions = new ArrayList<String>();
+        serverGame = new GameInfo("alice", "Default", "all-public", -1, 0,
+            "a summary", "", noOptions, noOptions, 2, 4, 6);
+        gameId = serverGame.getGameId();
+
+        clientDeltas = new GameInfoDeltas();
+        clientGames = new HashMap<String, GameInfo>();
+        clientDeltas.setFields(gameId, serverGame.getFields(sep));
+    }
+
+    private void setPlayers(String... names)
+    {
+        ArrayList<User> players = new ArrayList<User>();
+        for (String name : names)
+        {
+            players.add(new User(name));
+        }
+        serverGame.setPlayerList(players);
+        serverGame.setEnrolledCount(names.length);
+    }
+
+    /**
+     * Like the WebServerClient does it, the delta line from the fields the
+     * client has to the current ones
+     */
+    private String makeDelta(String[] sentFields)
+    {
+        return GameInfoDeltas.makeDelta(gameId, serverGame.getVersion(),
+            sentFields, serverGame.getFields(sep));
+    }
+
+    /**
+     * Like the WebClientSocketThread does it
+     */
+    private GameInfo apply(String delta)
+    {
+        String[] fields = clientDeltas.apply(LobbyCommands.tokenize(delta,
+            -1));
+        if (fields == null)
+        {
+            return null;
+        }
+        String[] gameTokens = new String[fields.length + 1];
+        gameTokens[0] = IWebClient.gameInfo;
+        System.arraycopy(fields, 0, gameTokens, 1, fields.length);
+        return GameInfo.fromString(gameTokens, clientGames, false);
+    }
+
+    private void assertPlayers(GameInfo gi, String... names)
+    {
+        assertEquals(names.length, gi.getEnrolledCount().intValue());
+        assertEquals(names.length, gi.getPlayers().size());
+        for (int i = 0; i < names.length; i++)
+        {
+            assertEquals(names[i], gi.getPlayers().get(i).getName());
+        }
+    }
+
+    public void testChangedFields()
+    {
+        String[] sent = serverGame.getFields(sep);
+        serverGame.updateOnlineCount(3);
+        String[] fields = serverGame.getFields(sep);
+        String delta = makeDelta(sent);
+        // only the one field which changed (other fields, like the game
+        // id, may be "3" as well)
+        int changed = 0;
+        while (fields[changed].equals(sent[changed]))
+        {
+            changed++;
+        }
+        assertEquals("3", fields[changed]);
+        assertEquals(IWebClient.gameInfoDelta + sep + gameId + sep
+            + serverGame.getVersion() + sep + fields.length + sep + changed
+            + sep + "3", delta);
+
+        GameInfo gi = apply(delta);
+        assertEquals(3, gi.getOnlineCount());
+        assertEquals("a summary", gi.getSummary());
+    }
+
+    public void testLongerAndShorterPlayerList()
+    {
+        String[] sent = serverGame.getFields(sep);
+        setPlayers("alice", "bob", "carol");
+        GameInfo gi = apply(makeDelta(sent));
+        assertPlayers(gi, "alice", "bob", "carol");
+
+        sent = serverGame.getFields(sep);
+        setPlayers("alice", "carol");
+        gi = apply(makeDelta(sent));
+        assertPlayers(gi, "alice", "carol");
+
+        sent = serverGame.getFields(sep);
+        setPlayers();
+        gi = apply(makeDelta(sent));
+        assertPlayers(gi);
+        assertEquals("alice", gi.getInitiator());
+    }
+
+    public void testOutOfOrderVersionsAreIgnored()
+    {
+        String[] sent = serverGame.getFields(sep);
+        setPlayers("alice", "bob");
+        String older = makeDelta(sent);
+
+        sent = serverGame.getFields(sep);
+        setPlayers("alice");
+        String newer = makeDelta(sent);
+
+        assertPlayers(apply(older), "alice", "bob");
+        assertPlayers(apply(newer), "alice");
+        // late copies of either change nothing
+        assertNull(apply(older));
+        assertNull(apply(newer));
+        assertPlayers(clientGames.get(gameId), "alice");
+    }
+
+    public void testFullGameInfoResetsVersion()
+    {
+        String[] sent = serverGame.getFields(sep);
+        setPlayers("alice");
+        assertNotNull(apply(makeDelta(sent)));
+
+        // a reconnect starts again with the whole game
+        clientDeltas.setFields(gameId, serverGame.getFields(sep));
+        String[] fields = serverGame.getFields(sep).clone();
+        fields[fields.length - 1] = "bob";
+        assertPlayers(apply(GameInfoDeltas.makeDelta(gameId, 1,
+            serverGame.getFields(sep), fields)), "bob");
+    }
+
+    public void testUnknownGame()
+    {
+        assertNull(clientDeltas.apply(LobbyCommands.tokenize(
+            IWebClient.gameInfoDelta + sep + "unknown" + sep + "2" + sep
+                + "0", -1)));
+    }
+}
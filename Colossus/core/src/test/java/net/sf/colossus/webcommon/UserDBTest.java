@@ -0,0 +1,76 @@
+package net.sf.colossus.webcommon;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for the change log of the UserDB.
+ */
+public class UserDBTest extends TestCase
+{
+    private static final String USER_LINE = "1 ~ alice ~ secret ~ "
+        + "alice@example.org ~ user ~ 2010-01-01 10:00:00 ~ "
+        + "2010-01-01 10:00:00 ~ 2010-01-01 11:00:00 ~ 3600";
+
+    private File usersFile;
+    private File logFile;
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        usersFile = File.createTempFile("users", ".dat");
+        logFile = new File(usersFile.getPath() + ".log");
+        PrintWriter out = new PrintWriter(new FileOutputStream(usersFile));
+        out.println(USER_LINE);
+        out.close();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        usersFile.delete();
+        logFile.delete();
+    }
+
+    public void testChangesSurviveWithoutRewrite()
+    {
+        UserDB db = new UserDB(usersFile.getPath(), 10);
+        long snapshotLength = usersFile.length();
+        assertNull(db.changeProperties("alice", "secret", "newsecret",
+            null, null));
+        // only appended to the change log
+        assertEquals(snapshotLength, usersFile.length());
+        assertTrue(logFile.length() > 0);
+        // server goes down without rewriting the users file
+        db.cleanup();
+
+        UserDB restarted = new UserDB(usersFile.getPath(), 10);
+        assertNull(restarted.verifyLogin("alice", "newsecret"));
+        // the restart moved the change into the users file
+        assertFalse(logFile.exists());
+        restarted.cleanup();
+        assertNull(new UserDB(usersFile.getPath(), 10).verifyLogin("alice",
+            "newsecret"));
+    }
+
+    public void testIncompleteChangeIsSkipped() throws IOException
+    {
+        User changed = User.makeUserFromUserLine(USER_LINE);
+        changed.setProperties("other", null, null);
+        String line = UserDB.makeChangeLine(changed);
+        PrintWriter out = new PrintWriter(new FileOutputStream(logFile));
+        // cut off in the middle of the password
+        out.print(line.substring(0, line.indexOf("other") + 2));
+        out.close();
+
+        UserDB db = new UserDB(usersFile.getPath(), 10);
+        assertNull(db.verifyLogin("alice", "secret"));
+        db.cleanup();
+    }
+}
@@ -0,0 +1,108 @@
+package net.sf.colossus.webserver;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.sf.colossus.webcommon.ChatMessage;
+import net.sf.colossus.webcommon.IWebServer;
+import net.sf.colossus.webcommon.UserDB;
+
+
+/**
+ * JUnit test for appending, compacting and restoring the chat messages.
+ */
+public class ChatMsgStorageTest extends TestCase
+{
+    private File dir;
+    private WebServerOptions options;
+    private ChatChannel channel;
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        dir = File.createTempFile("chat", "");
+        dir.delete();
+        dir.mkdir();
+        new File(dir, "Chatmessages-" + IWebServer.generalChatName + ".txt")
+            .createNewFile();
+        options = new WebServerOptions(null);
+        options.setOption(WebServerConstants.optDataDirectory, dir.getPath());
+        channel = new ChatChannel(IWebServer.generalChatName, options,
+            new UserDB(null, 10));
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        channel.dispose();
+        for (File f : dir.listFiles())
+        {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Like ChatChannel does it: stored at once, written later by the
+     * writer thread, here after all of them were stored.
+     */
+    private void storeAndAppend(ChatMsgStorage storage, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            storage.storeMessage(new ChatMessage(IWebServer.generalChatName,
+                i, "alice", "message " + i));
+        }
+        for (ChatMessage msg : storage.getLastNChatMessages())
+        {
+            if (msg.getWhen() >= from)
+            {
+                storage.appendMessage(msg);
+            }
+        }
+    }
+
+    private void assertRestored(int last)
+    {
+        ChatMsgStorage restored = new ChatMsgStorage(channel, options);
+        List<ChatMessage> messages = restored.getLastNChatMessages();
+        assertEquals(WebServerConstants.keepLastNMessages, messages.size());
+        long when = last - WebServerConstants.keepLastNMessages + 1;
+        for (ChatMessage msg : messages)
+        {
+            assertEquals(when, msg.getWhen());
+            assertEquals("message " + when, msg.getMessage());
+            when++;
+        }
+        restored.dispose();
+    }
+
+    public void testAppendAndRestore()
+    {
+        ChatMsgStorage storage = new ChatMsgStorage(channel, options);
+        storeAndAppend(storage, 0, 70);
+        storage.dispose();
+        assertRestored(69);
+    }
+
+    public void testCompactionWritesNoDuplicates()
+    {
+        int n = WebServerConstants.keepLastNMessages;
+        ChatMsgStorage storage = new ChatMsgStorage(channel, options);
+        // up to the compaction, which happens while more messages are
+        // stored than written
+        int count = 0;
+        while (count < 10 * n)
+        {
+            storeAndAppend(storage, count, count + n);
+            count += n;
+        }
+        storeAndAppend(storage, count, count + 7);
+        count += 7;
+        storage.dispose();
+        assertRestored(count - 1);
+    }
+}
@@ -0,0 +1,89 @@
+package net.sf.colossus.webserver;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+
+/**
+ * JUnit test for collecting the game telemetry in the GameTelemetryStore.
+ */
+public class GameTelemetryStoreTest extends TestCase
+{
+    private File dir;
+    private File gameFile;
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        dir = File.createTempFile("telemetry", "");
+        dir.delete();
+        dir.mkdir();
+        gameFile = new File(dir, GameTelemetryStore.GAME_FILE_NAME);
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        for (File f : dir.listFiles())
+        {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private void writeGameFile(String... records) throws IOException
+    {
+        PrintWriter out = new PrintWriter(new FileOutputStream(gameFile));
+        for (String record : records)
+        {
+            out.println(record);
+        }
+        out.close();
+    }
+
+    public void testLastRecordIsStored() throws IOException
+    {
+        GameTelemetryStore store = new GameTelemetryStore(dir.getPath());
+        writeGameFile("final=false variant=Default elapsedMs=1000",
+            "final=true variant=Default elapsedMs=3000 heapPeakMB=50");
+        store.addGame("17", 2, gameFile);
+
+        // read again from the file, as after a restart
+        store = new GameTelemetryStore(dir.getPath());
+        List<String> report = store.getReport();
+        assertEquals("Telemetry of 1 games, per variant (average per game):",
+            report.get(0));
+        assertEquals("  Default: games=1 elapsedMs=3000 aiDecisionMs=0 "
+            + "commands=0 bytesOut=0 heapPeakMB=50", report.get(1));
+    }
+
+    public void testUnusualGamesAreReported() throws IOException
+    {
+        GameTelemetryStore store = new GameTelemetryStore(dir.getPath());
+        for (int i = 1; i <= 9; i++)
+        {
+            writeGameFile("variant=Default elapsedMs=1000");
+            store.addGame("" + i, 2, gameFile);
+        }
+        writeGameFile("variant=Default elapsedMs=50000");
+        store.addGame("10", 2, gameFile);
+
+        List<String> report = store.getReport();
+        assertEquals("  game 10 (Default): elapsedMs=50000",
+            report.get(report.size() - 1));
+        assertEquals(4, report.size());
+    }
+
+    public void testParseRecord()
+    {
+        assertEquals("7580", GameTelemetryStore.parseRecord(
+            "final=true activeMs.Clemens0=7580").get("activeMs.Clemens0"));
+        assertNull(GameTelemetryStore.parseRecord("broken =1").get(""));
+    }
+}
@@ -0,0 +1,154 @@
+package net.sf.colossus.xmlparser;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import net.sf.colossus.server.VariantSupport;
+import net.sf.colossus.variant.CreatureType;
+import net.sf.colossus.variant.IRecruiting;
+import net.sf.colossus.variant.MasterBoardTerrain;
+import net.sf.colossus.variant.Variant;
+
+
+/**
+ * JUnit test for the cache of the recruits per terrain and legion
+ * composition in TerrainRecruitLoader.getRecruitsWith().
+ */
+public class TerrainRecruitLoaderTest extends TestCase
+{
+    private static final int MAX = TerrainRecruitLoader.MAX_CACHED_COMPOSITIONS;
+
+    private List<MasterBoardTerrain> terrains;
+    private List<CreatureType> creatureTypes;
+    private Random random;
+    private Set<String> used;
+
+    @Override
+    protected void setUp()
+    {
+        Variant variant = VariantSupport.loadVariantByName("Default", true);
+        terrains = new ArrayList<MasterBoardTerrain>(variant.getTerrains());
+        creatureTypes = variant.getCreatureTypesAsList();
+        random = new Random(1);
+        used = new HashSet<String>();
+    }
+
+    /** A terrain and a legion composition not used before in the test */
+    private class Composition
+    {
+        final MasterBoardTerrain terrain;
+        final List<CreatureType> creatures = new ArrayList<CreatureType>();
+
+        Composition()
+        {
+            String key;
+            do
+            {
+                creatures.clear();
+                int size = 1 + random.nextInt(7);
+                for (int i = 0; i < size; i++)
+                {
+                    creatures.add(creatureTypes.get(random
+                        .nextInt(creatureTypes.size())));
+                }
+                List<String> names = new ArrayList<String>();
+                for (CreatureType type : creatures)
+                {
+                    names.add(type.getName());
+                }
+                Collections.sort(names);
+                key = names.toString();
+            }
+            while (!used.add(key));
+            terrain = terrains.get(random.nextInt(terrains.size()));
+        }
+
+        List<CreatureType> getRecruits()
+        {
+            return TerrainRecruitLoader.getRecruitsWith(terrain, null,
+                creatures);
+        }
+
+        /**
+         * The recruits straight from the recruiting subtree of the
+         * terrain, without any of the tables of TerrainRecruitLoader.
+         */
+        Set<CreatureType> computeUncached()
+        {
+            IRecruiting subTree = terrain.getRecruitingSubTree();
+            Set<CreatureType> recruits = new HashSet<CreatureType>();
+            for (CreatureType recruit : subTree.getPossibleRecruits(null))
+            {
+                for (CreatureType recruiter : new HashSet<CreatureType>(
+                    creatures))
+                {
+                    if (subTree.numberOfRecruiterNeeded(recruiter, recruit,
+                        null) <= Collections.frequency(creatures, recruiter))
+                    {
+                        recruits.add(recruit);
+                    }
+                }
+            }
+            return recruits;
+        }
+
+        void assertRecruitsCorrect()
+        {
+            List<CreatureType> recruits = getRecruits();
+            Set<CreatureType> recruitSet = new HashSet<CreatureType>(
+                recruits);
+            assertEquals("no duplicates", recruits.size(), recruitSet.size());
+            assertEquals(terrain.getId() + " " + creatures, computeUncached(),
+                recruitSet);
+        }
+    }
+
+    private void useOthers(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            new Composition().getRecruits();
+        }
+    }
+
+    public void testCachedRecruitsAreThoseComputed()
+    {
+        List<Composition> compositions = new ArrayList<Composition>();
+        for (int i = 0; i < 3 * MAX; i++)
+        {
+            Composition composition = new Composition();
+            composition.assertRecruitsCorrect();
+            compositions.add(composition);
+        }
+        // again, when some are still cached and some were dropped
+        for (int i = 0; i < compositions.size(); i++)
+        {
+            compositions.get(random.nextInt(compositions.size()))
+                .assertRecruitsCorrect();
+        }
+    }
+
+    public void testLeastRecentlyUsedAreDropped()
+    {
+        Composition composition = new Composition();
+        List<CreatureType> recruits = composition.getRecruits();
+        assertSame(recruits, composition.getRecruits());
+
+        // it is still in the cache, and using it makes it the newest entry
+        useOthers(MAX - 1);
+        assertSame(recruits, composition.getRecruits());
+        useOthers(MAX - 1);
+        assertSame(recruits, composition.getRecruits());
+
+        useOthers(MAX);
+        List<CreatureType> recomputed = composition.getRecruits();
+        assertNotSame(recruits, recomputed);
+        assertEquals(recruits, recomputed);
+    }
+}
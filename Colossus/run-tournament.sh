@@ -0,0 +1,18 @@
+#! /bin/bash
+
+#
+# Runs many AI-only games inside one JVM, several in parallel,
+# and writes the results to tournament-games.csv and
+# tournament-aitiming.csv (see class appmain.Tournament).
+#
+# Example:
+#   ./run-tournament.sh -n 20 -j 4 -v Default -a SimpleAI,ClemensAI,RationalAI
+#
+
+MEM_SIZE=2048M
+
+[ -e ~/.colossus/jre.SH ] && source ~/.colossus/jre.SH
+
+java $COLOSSUS_JRE_ARGS -Djava.util.logging.config.file=logging.properties \
+     -Djava.awt.headless=true -Xmx$MEM_SIZE \
+     -cp Colossus.jar net.sf.colossus.appmain.Tournament "$@"